@@ -47,6 +47,7 @@ import org.wso2.carbon.user.core.UserCoreConstants;
 import org.wso2.carbon.user.core.UserRealm;
 import org.wso2.carbon.user.core.util.UserCoreUtil;
 import org.wso2.carbon.user.mgt.UserMgtConstants;
+import org.wso2.carbon.user.mgt.permission.UIPermissionTreeCache;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -221,6 +222,8 @@ public class ApplicationMgtUtil {
         } catch (RegistryException e) {
             throw new IdentityApplicationManagementException("Error while renaming permission node "
                     + oldName + "to " + newName, e);
+        } finally {
+            invalidatePermissionTree();
         }
     }
 
@@ -295,6 +298,8 @@ public class ApplicationMgtUtil {
         } catch (Exception e) {
             throw new IdentityApplicationManagementException("Error while storing permissions for application " +
                     applicationName, e);
+        } finally {
+            invalidatePermissionTree();
         }
     }
 
@@ -350,6 +355,8 @@ public class ApplicationMgtUtil {
 
         } catch (RegistryException e) {
             throw new IdentityApplicationManagementException("Error while storing permissions", e);
+        } finally {
+            invalidatePermissionTree();
         }
 
     }
@@ -470,6 +477,7 @@ public class ApplicationMgtUtil {
 
             if (exist) {
                 tenantGovReg.delete(applicationNode);
+                invalidatePermissionTree();
             }
 
         } catch (RegistryException e) {
@@ -492,6 +500,15 @@ public class ApplicationMgtUtil {
     }
 
 
+    /**
+     * Drops the cached UI permission tree of the current tenant, so that permission listings pick up the changed
+     * application permissions.
+     */
+    private static void invalidatePermissionTree() {
+
+        UIPermissionTreeCache.getInstance().invalidate(CarbonContext.getThreadLocalCarbonContext().getTenantId());
+    }
+
     public static String getApplicationPermissionPath() {
 
         return CarbonConstants.UI_PERMISSION_NAME + RegistryConstants.PATH_SEPARATOR + APPLICATION_ROOT_PERMISSION;
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authentication.framework;
+
+import java.util.Set;
+
+/**
+ * Optional interface of application authenticators, which declares the request parameters an authenticator claims.
+ * The framework asks an authenticator implementing this interface for the context identifier of a returning request
+ * only if the request has one of the claimed parameters, instead of asking every deployed authenticator.
+ * <p>
+ * An authenticator implementing this interface must return null from
+ * {@link ApplicationAuthenticator#getContextIdentifier(javax.servlet.http.HttpServletRequest)} and false from
+ * {@link ApplicationAuthenticator#canHandle(javax.servlet.http.HttpServletRequest)} for a request without any of the
+ * claimed parameters.
+ */
+public interface AuthenticatorRoutingHints {
+
+    /**
+     * Returns the names of the request parameters claimed by the authenticator, eg. the parameter carrying the state
+     * of a federated authentication response. The names are read once, when the authenticator is registered.
+     *
+     * @return Names of the claimed request parameters
+     */
+    Set<String> getClaimedRequestParameters();
+}
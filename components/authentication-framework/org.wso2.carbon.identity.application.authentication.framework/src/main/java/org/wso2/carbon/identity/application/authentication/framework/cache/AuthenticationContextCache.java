@@ -18,29 +18,39 @@
 
 package org.wso2.carbon.identity.application.authentication.framework.cache;
 
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.base.MultitenantConstants;
+import org.wso2.carbon.identity.application.authentication.framework.context.AuthenticationContext;
+import org.wso2.carbon.identity.application.authentication.framework.store.SessionContextDO;
+import org.wso2.carbon.identity.application.authentication.framework.store.SessionDataDelta;
 import org.wso2.carbon.identity.application.authentication.framework.store.SessionDataStore;
 import org.wso2.carbon.identity.application.common.cache.BaseCache;
 import org.wso2.carbon.identity.core.util.IdentityTenantUtil;
 import org.wso2.carbon.identity.core.util.IdentityUtil;
 
-import java.io.Serializable;
-import java.util.Iterator;
+import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 
 /**
  * This class is used to cache the data about the
  * authentication request sent from a servlet.
+ * <p>
+ * When temporary session data persistence is enabled, a context is persisted in full in a base record the first time
+ * it is added, and only its changed parts are persisted in a delta record every time it is added afterwards. Once a
+ * context has the configured maximum number of deltas, it is compacted into a new base record.
  */
 public class AuthenticationContextCache extends
         BaseCache<AuthenticationContextCacheKey, AuthenticationContextCacheEntry> {
 
     private static Log log = LogFactory.getLog(AuthenticationContextCache.class);
     private static final String AUTHENTICATION_CONTEXT_CACHE_NAME = "AuthenticationContextCache";
+    private static final int DEFAULT_MAX_DELTAS = 10;
     private static volatile AuthenticationContextCache instance;
     private boolean isTemporarySessionDataPersistEnabled = false;
+    private int maxDeltas = DEFAULT_MAX_DELTAS;
 
     /**
      * Private constructor which will not allow to create objects of this class from outside
@@ -51,6 +61,15 @@ public class AuthenticationContextCache extends
             isTemporarySessionDataPersistEnabled = Boolean.parseBoolean(
                     IdentityUtil.getProperty("JDBCPersistenceManager.SessionDataPersist.Temporary"));
         }
+        String maxDeltasValue = IdentityUtil.getProperty("JDBCPersistenceManager.SessionDataPersist.MaxDeltas");
+        if (StringUtils.isNotBlank(maxDeltasValue)) {
+            try {
+                maxDeltas = Integer.parseInt(maxDeltasValue.trim());
+            } catch (NumberFormatException e) {
+                log.warn("Invalid maximum number of session data deltas: " + maxDeltasValue + ". Using the default " +
+                        "value: " + DEFAULT_MAX_DELTAS);
+            }
+        }
     }
 
     /**
@@ -85,20 +104,43 @@ public class AuthenticationContextCache extends
             }
 
             if (entry.getContext() != null && entry.getContext().getProperties() != null) {
-                Iterator it = entry.getContext().getProperties().entrySet().iterator();
-                while (it.hasNext())
-                {
-                    Map.Entry<String, Object> item =  (Map.Entry<String, Object>) it.next();
-                    if (!(item.getValue() instanceof Serializable)) {
-                        it.remove();
-                    }
-                }
-                SessionDataStore.getInstance().storeSessionData(key.getContextId(), AUTHENTICATION_CONTEXT_CACHE_NAME,
-                        entry, tenantId);
+                storeSessionData(key.getContextId(), entry, tenantId);
             }
         }
     }
 
+    private void storeSessionData(String contextId, AuthenticationContextCacheEntry entry, int tenantId) {
+
+        AuthenticationContext context = entry.getContext();
+        boolean isPersisted = context.isPersisted();
+        Map<String, byte[]> dirtyParts;
+        try {
+            dirtyParts = context.collectDirtyParts();
+        } catch (IOException e) {
+            context.resetPersistedState();
+            log.error("Error while serializing the authentication context: " + contextId, e);
+            return;
+        }
+
+        if (isPersisted && context.getPersistedDeltaCount() < maxDeltas) {
+            if (!dirtyParts.isEmpty()) {
+                SessionDataDelta delta = new SessionDataDelta(context.getPersistedBaseTime(),
+                        context.addPersistedDelta(), dirtyParts);
+                SessionDataStore.getInstance().storeSessionDataDelta(contextId, AUTHENTICATION_CONTEXT_CACHE_NAME,
+                        delta, tenantId);
+            }
+            return;
+        }
+
+        // The context is persisted in full the first time and once it has the maximum number of deltas.
+        AuthenticationContextCacheEntry baseEntry = new AuthenticationContextCacheEntry(context.getSerializableCopy());
+        baseEntry.setLoggedInUser(entry.getLoggedInUser());
+        boolean compact = isPersisted && context.getPersistedDeltaCount() > 0;
+        long baseTime = SessionDataStore.getInstance().storeBaseSessionData(contextId,
+                AUTHENTICATION_CONTEXT_CACHE_NAME, baseEntry, tenantId, compact);
+        context.setPersistedBase(baseTime);
+    }
+
     /**
      * Retrieves a cache entry.
      *
@@ -108,8 +150,40 @@ public class AuthenticationContextCache extends
     public AuthenticationContextCacheEntry getValueFromCache(AuthenticationContextCacheKey key) {
         AuthenticationContextCacheEntry entry = super.getValueFromCache(key);
         if (entry == null && isTemporarySessionDataPersistEnabled) {
-            entry = (AuthenticationContextCacheEntry) SessionDataStore.getInstance().
-                    getSessionData(key.getContextId(), AUTHENTICATION_CONTEXT_CACHE_NAME);
+            entry = getSessionData(key.getContextId());
+        }
+        return entry;
+    }
+
+    /**
+     * Rebuilds a context from its base record and the deltas on top of it.
+     */
+    private AuthenticationContextCacheEntry getSessionData(String contextId) {
+
+        SessionContextDO sessionContextDO = SessionDataStore.getInstance().getSessionContextData(contextId,
+                AUTHENTICATION_CONTEXT_CACHE_NAME);
+        if (sessionContextDO == null) {
+            return null;
+        }
+        AuthenticationContextCacheEntry entry = (AuthenticationContextCacheEntry) sessionContextDO.getEntry();
+        if (entry == null || entry.getContext() == null) {
+            return entry;
+        }
+        List<SessionDataDelta> deltas = SessionDataStore.getInstance().getSessionDataDeltas(contextId,
+                AUTHENTICATION_CONTEXT_CACHE_NAME, sessionContextDO.getNanoTime());
+        AuthenticationContext context = entry.getContext();
+        try {
+            for (SessionDataDelta delta : deltas) {
+                context = context.withParts(delta.getParts());
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            log.error("Error while applying the persisted changes of the authentication context: " + contextId, e);
+            return null;
+        }
+        entry.setContext(context);
+        if (log.isDebugEnabled()) {
+            log.debug("Authentication context: " + contextId + " is rebuilt from its base record and " +
+                    deltas.size() + " deltas.");
         }
         return entry;
     }
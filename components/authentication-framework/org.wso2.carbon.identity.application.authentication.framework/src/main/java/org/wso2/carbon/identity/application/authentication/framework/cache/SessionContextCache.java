@@ -27,9 +27,6 @@ import org.wso2.carbon.identity.application.authentication.framework.store.Sessi
 import org.wso2.carbon.identity.application.authentication.framework.util.FrameworkConstants;
 import org.wso2.carbon.identity.application.common.cache.BaseCache;
 import org.wso2.carbon.identity.core.util.IdentityTenantUtil;
-import org.wso2.carbon.idp.mgt.util.IdPManagementUtil;
-
-import java.util.concurrent.TimeUnit;
 
 public class SessionContextCache extends BaseCache<SessionContextCacheKey, SessionContextCacheEntry> {
 
@@ -85,7 +82,12 @@ public class SessionContextCache extends BaseCache<SessionContextCacheKey, Sessi
                 log.debug("Session corresponding to the key : " + key.getContextId() + " cannot be found.");
             }
             return null;
-        } else if (isValidIdleSession(key, cacheEntry) || isValidRememberMeSession(key, cacheEntry)) {
+        }
+
+        SessionPolicySnapshot sessionPolicy = SessionPolicySnapshot.getSnapshot(
+                CarbonContext.getThreadLocalCarbonContext().getTenantDomain());
+        if (isValidIdleSession(key, cacheEntry, sessionPolicy) ||
+                isValidRememberMeSession(key, cacheEntry, sessionPolicy)) {
             if(log.isDebugEnabled()) {
                 log.debug("Found a valid session corresponding to the key : " + key.getContextId());
             }
@@ -118,19 +120,20 @@ public class SessionContextCache extends BaseCache<SessionContextCacheKey, Sessi
     /**
      * Check whether the given session context is valid according to idle session timeout restrictions.
      *
-     * @param key        SessionContextCacheKey
-     * @param cacheEntry SessionContextCacheEntry
+     * @param key           SessionContextCacheKey
+     * @param cacheEntry    SessionContextCacheEntry
+     * @param sessionPolicy Session policy of the tenant
      * @return true if the session context is valid as per idle session configs; false otherwise
      */
-    private boolean isValidIdleSession(SessionContextCacheKey key, SessionContextCacheEntry cacheEntry) {
+    private boolean isValidIdleSession(SessionContextCacheKey key, SessionContextCacheEntry cacheEntry,
+                                       SessionPolicySnapshot sessionPolicy) {
         String contextId = key.getContextId();
 
         if (cacheEntry == null) {
             return false;
         }
 
-        String tenantDomain = CarbonContext.getThreadLocalCarbonContext().getTenantDomain();
-        long idleSessionTimeOut = TimeUnit.SECONDS.toMillis(IdPManagementUtil.getIdleSessionTimeOut(tenantDomain));
+        long idleSessionTimeOut = sessionPolicy.getIdleSessionTimeout();
 
         long currentTime = System.currentTimeMillis();
         long lastAccessedTime = cacheEntry.getAccessedTime();
@@ -153,11 +156,13 @@ public class SessionContextCache extends BaseCache<SessionContextCacheKey, Sessi
     /**
      * Check whether the given session context is valid according to remember me session timeout restrictions.
      *
-     * @param key        SessionContextCacheKey
-     * @param cacheEntry SessionContextCacheEntry
+     * @param key           SessionContextCacheKey
+     * @param cacheEntry    SessionContextCacheEntry
+     * @param sessionPolicy Session policy of the tenant
      * @return true if the session context is valid as per remember me session configs; false otherwise
      */
-    private boolean isValidRememberMeSession(SessionContextCacheKey key, SessionContextCacheEntry cacheEntry) {
+    private boolean isValidRememberMeSession(SessionContextCacheKey key, SessionContextCacheEntry cacheEntry,
+                                             SessionPolicySnapshot sessionPolicy) {
         String contextId = key.getContextId();
 
         if (cacheEntry == null) {
@@ -168,8 +173,7 @@ public class SessionContextCache extends BaseCache<SessionContextCacheKey, Sessi
             return false;
         }
 
-        String tenantDomain = CarbonContext.getThreadLocalCarbonContext().getTenantDomain();
-        long rememberMeSessionTimeOut = TimeUnit.SECONDS.toMillis(IdPManagementUtil.getRememberMeTimeout(tenantDomain));
+        long rememberMeSessionTimeOut = sessionPolicy.getRememberMeTimeout();
 
         long currentTime = System.currentTimeMillis();
         Long createdTime = cacheEntry.getAccessedTime();
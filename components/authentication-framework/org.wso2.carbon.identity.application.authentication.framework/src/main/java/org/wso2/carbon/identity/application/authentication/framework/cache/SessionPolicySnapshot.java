@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authentication.framework.cache;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.idp.mgt.util.IdPManagementUtil;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Immutable session policy of a tenant, read from the resident identity provider of the tenant. Session validity
+ * checks are done for every session lookup, so the policy is read once and published per tenant instead of building
+ * the resident identity provider for each check.
+ * <p>
+ * The snapshot of a tenant is replaced when the resident identity provider of the tenant is added or updated on this
+ * node. Snapshots are also refreshed after {@link #REFRESH_INTERVAL}, so that updates done on other nodes of a
+ * cluster are picked up.
+ */
+public final class SessionPolicySnapshot {
+
+    private static final Log log = LogFactory.getLog(SessionPolicySnapshot.class);
+
+    private static final long REFRESH_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+    private static final ConcurrentMap<String, SessionPolicySnapshot> snapshots = new ConcurrentHashMap<>();
+    private static final AtomicLong generation = new AtomicLong();
+
+    private final long idleSessionTimeout;
+    private final long rememberMeTimeout;
+    private final long expiryTime;
+
+    private SessionPolicySnapshot(long idleSessionTimeout, long rememberMeTimeout, long expiryTime) {
+
+        this.idleSessionTimeout = idleSessionTimeout;
+        this.rememberMeTimeout = rememberMeTimeout;
+        this.expiryTime = expiryTime;
+    }
+
+    /**
+     * Returns the session policy of a tenant.
+     *
+     * @param tenantDomain Tenant domain
+     * @return Session policy of the tenant
+     */
+    public static SessionPolicySnapshot getSnapshot(String tenantDomain) {
+
+        long currentTime = System.currentTimeMillis();
+        SessionPolicySnapshot snapshot = snapshots.get(tenantDomain);
+        if (snapshot == null || currentTime >= snapshot.expiryTime) {
+            long loadedGeneration = generation.get();
+            snapshot = new SessionPolicySnapshot(
+                    TimeUnit.SECONDS.toMillis(IdPManagementUtil.getIdleSessionTimeOut(tenantDomain)),
+                    TimeUnit.SECONDS.toMillis(IdPManagementUtil.getRememberMeTimeout(tenantDomain)),
+                    currentTime + REFRESH_INTERVAL);
+            // A policy read while the resident identity provider was being updated is used only by this lookup.
+            if (loadedGeneration == generation.get()) {
+                snapshots.put(tenantDomain, snapshot);
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Loaded the session policy of tenant: " + tenantDomain + " :: idleSessionTimeout : " +
+                        snapshot.idleSessionTimeout + ", rememberMeTimeout : " + snapshot.rememberMeTimeout);
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Drops the session policy of a tenant, so that it is read again by the next session lookup of the tenant.
+     *
+     * @param tenantDomain Tenant domain
+     */
+    public static void invalidate(String tenantDomain) {
+
+        generation.incrementAndGet();
+        if (tenantDomain == null) {
+            snapshots.clear();
+            return;
+        }
+        snapshots.remove(tenantDomain);
+    }
+
+    /**
+     * Returns the idle session timeout in milliseconds.
+     */
+    public long getIdleSessionTimeout() {
+        return idleSessionTimeout;
+    }
+
+    /**
+     * Returns the remember me session timeout in milliseconds.
+     */
+    public long getRememberMeTimeout() {
+        return rememberMeTimeout;
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authentication.framework.config;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.context.PrivilegedCarbonContext;
+import org.wso2.carbon.identity.application.authentication.framework.config.model.AuthenticatorConfig;
+import org.wso2.carbon.identity.application.authentication.framework.config.model.ExternalIdPConfig;
+import org.wso2.carbon.identity.application.authentication.framework.config.model.SequenceConfig;
+import org.wso2.carbon.identity.application.authentication.framework.config.model.StepConfig;
+import org.wso2.carbon.identity.application.authentication.framework.context.AuthenticationContext;
+import org.wso2.carbon.identity.application.authentication.framework.util.FrameworkConstants;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+import org.wso2.carbon.idp.mgt.IdentityProviderManagementException;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Prepares the steps of an authentication sequence by loading the configs of all the federated identity providers
+ * of the sequence in parallel, as soon as the sequence of the request is known. The config of an identity provider
+ * carries its claim mappings, role mappings and provisioning config, which are otherwise loaded one identity
+ * provider at a time on the request thread, when a step or the post authentication handling reaches them.
+ * <p>
+ * The configs are loaded on a bounded pool in the tenant flow of the request. When the pool is busy the config is
+ * not prefetched, and is loaded on the request thread as before.
+ */
+public class ExternalIdPConfigPrefetcher {
+
+    public static final String PREFETCH_ENABLE = "FederatedIdPConfigPrefetch.Enable";
+    public static final String PREFETCH_THREAD_POOL_SIZE = "FederatedIdPConfigPrefetch.ThreadPoolSize";
+
+    private static final Log log = LogFactory.getLog(ExternalIdPConfigPrefetcher.class);
+    private static final int DEFAULT_THREAD_POOL_SIZE = 8;
+    private static final int QUEUED_TASKS_PER_THREAD = 10;
+
+    private static volatile ExternalIdPConfigPrefetcher instance;
+
+    private final ThreadPoolExecutor executor;
+
+    private ExternalIdPConfigPrefetcher() {
+
+        String enableValue = IdentityUtil.getProperty(PREFETCH_ENABLE);
+        if (StringUtils.isBlank(enableValue) || Boolean.parseBoolean(enableValue)) {
+            executor = createExecutor(getThreadPoolSize());
+        } else {
+            executor = null;
+            if (log.isDebugEnabled()) {
+                log.debug("Prefetching the configs of federated identity providers is disabled.");
+            }
+        }
+    }
+
+    public static ExternalIdPConfigPrefetcher getInstance() {
+
+        if (instance == null) {
+            synchronized (ExternalIdPConfigPrefetcher.class) {
+                if (instance == null) {
+                    instance = new ExternalIdPConfigPrefetcher();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Starts loading the configs of the federated identity providers of the sequence of the context. Configs which
+     * are already being loaded for the context are not loaded again.
+     *
+     * @param context Authentication context with the sequence config set
+     */
+    public void prefetch(AuthenticationContext context) {
+
+        if (executor == null || context.getSequenceConfig() == null) {
+            return;
+        }
+
+        Map<String, Future<ExternalIdPConfig>> prefetchedIdPConfigs = new HashMap<>();
+        if (context.getPrefetchedIdPConfigs() != null) {
+            prefetchedIdPConfigs.putAll(context.getPrefetchedIdPConfigs());
+        }
+
+        PrivilegedCarbonContext carbonContext = PrivilegedCarbonContext.getThreadLocalCarbonContext();
+        for (String idPName : getFederatedIdPNames(context.getSequenceConfig())) {
+            if (prefetchedIdPConfigs.containsKey(idPName)) {
+                continue;
+            }
+            try {
+                prefetchedIdPConfigs.put(idPName, executor.submit(new IdPConfigLoader(idPName,
+                        context.getTenantDomain(), carbonContext.getTenantDomain(), carbonContext.getTenantId(),
+                        carbonContext.getUsername())));
+            } catch (RejectedExecutionException e) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Prefetch pool is busy. The config of IdP: " + idPName + " will be loaded when it " +
+                            "is used.");
+                }
+                break;
+            }
+        }
+        context.setPrefetchedIdPConfigs(prefetchedIdPConfigs);
+    }
+
+    /**
+     * Returns the config of an identity provider in the tenant domain of the context. The prefetched config is
+     * returned when the context has one, and the config is loaded on the calling thread otherwise.
+     *
+     * @param context Authentication context
+     * @param idPName Name of the identity provider
+     * @return Config of the identity provider, or null if there is no enabled identity provider by the name
+     * @throws IdentityProviderManagementException If the identity provider could not be loaded
+     */
+    public ExternalIdPConfig getIdPConfigByName(AuthenticationContext context, String idPName)
+            throws IdentityProviderManagementException {
+
+        Map<String, Future<ExternalIdPConfig>> prefetchedIdPConfigs = context.getPrefetchedIdPConfigs();
+        Future<ExternalIdPConfig> prefetchedIdPConfig = prefetchedIdPConfigs != null ?
+                prefetchedIdPConfigs.get(idPName) : null;
+
+        // A config still waiting in the queue is loaded here instead, rather than waiting for the pool to reach it.
+        if (prefetchedIdPConfig != null && (prefetchedIdPConfig.isDone() || !prefetchedIdPConfig.cancel(false))) {
+            try {
+                return prefetchedIdPConfig.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Interrupted while waiting for the config of IdP: " + idPName + " to be prefetched.");
+            } catch (CancellationException e) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Prefetching the config of IdP: " + idPName + " was cancelled.", e);
+                }
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IdentityProviderManagementException) {
+                    throw (IdentityProviderManagementException) e.getCause();
+                }
+                log.error("Error while prefetching the config of IdP: " + idPName, e.getCause());
+            }
+        }
+        return ConfigurationFacade.getInstance().getIdPConfigByName(idPName, context.getTenantDomain());
+    }
+
+    /**
+     * Stops the prefetch pool, if it was started. Configs which are not loaded yet are loaded on the request thread
+     * when used. The next {@link #getInstance()} call starts a new pool, so that prefetching resumes when the
+     * framework is activated again.
+     */
+    public static void shutdown() {
+
+        synchronized (ExternalIdPConfigPrefetcher.class) {
+            if (instance != null && instance.executor != null) {
+                instance.executor.shutdownNow();
+            }
+            instance = null;
+        }
+    }
+
+    private static Set<String> getFederatedIdPNames(SequenceConfig sequenceConfig) {
+
+        Set<String> idPNames = new LinkedHashSet<>();
+        for (StepConfig stepConfig : sequenceConfig.getStepMap().values()) {
+            for (AuthenticatorConfig authenticatorConfig : stepConfig.getAuthenticatorList()) {
+                for (String idPName : authenticatorConfig.getIdpNames()) {
+                    if (StringUtils.isNotBlank(idPName) && !FrameworkConstants.LOCAL_IDP_NAME.equals(idPName)) {
+                        idPNames.add(idPName);
+                    }
+                }
+            }
+        }
+        return idPNames;
+    }
+
+    private static int getThreadPoolSize() {
+
+        String threadPoolSizeValue = IdentityUtil.getProperty(PREFETCH_THREAD_POOL_SIZE);
+        if (StringUtils.isNotBlank(threadPoolSizeValue)) {
+            try {
+                return Math.max(1, Integer.parseInt(threadPoolSizeValue.trim()));
+            } catch (NumberFormatException e) {
+                log.warn("Invalid value: " + threadPoolSizeValue + " for " + PREFETCH_THREAD_POOL_SIZE +
+                        ". Using the default value: " + DEFAULT_THREAD_POOL_SIZE);
+            }
+        }
+        return DEFAULT_THREAD_POOL_SIZE;
+    }
+
+    private static ThreadPoolExecutor createExecutor(int threadPoolSize) {
+
+        final AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+
+                Thread thread = new Thread(runnable, "IdPConfigPrefetch-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threadPoolSize, threadPoolSize, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(threadPoolSize * QUEUED_TASKS_PER_THREAD), threadFactory,
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Loads the config of an identity provider in the tenant flow of the request the prefetch was started for.
+     */
+    private static class IdPConfigLoader implements Callable<ExternalIdPConfig> {
+
+        private final String idPName;
+        private final String tenantDomain;
+        private final String carbonTenantDomain;
+        private final int carbonTenantId;
+        private final String carbonUsername;
+
+        private IdPConfigLoader(String idPName, String tenantDomain, String carbonTenantDomain, int carbonTenantId,
+                                String carbonUsername) {
+
+            this.idPName = idPName;
+            this.tenantDomain = tenantDomain;
+            this.carbonTenantDomain = carbonTenantDomain;
+            this.carbonTenantId = carbonTenantId;
+            this.carbonUsername = carbonUsername;
+        }
+
+        @Override
+        public ExternalIdPConfig call() throws IdentityProviderManagementException {
+
+            PrivilegedCarbonContext.startTenantFlow();
+            try {
+                PrivilegedCarbonContext carbonContext = PrivilegedCarbonContext.getThreadLocalCarbonContext();
+                carbonContext.setTenantDomain(carbonTenantDomain);
+                carbonContext.setTenantId(carbonTenantId);
+                carbonContext.setUsername(carbonUsername);
+                return ConfigurationFacade.getInstance().getIdPConfigByName(idPName, tenantDomain);
+            } finally {
+                PrivilegedCarbonContext.endTenantFlow();
+            }
+        }
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authentication.framework.config.loader;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.application.authentication.framework.config.model.ApplicationConfig;
+import org.wso2.carbon.identity.application.authentication.framework.config.model.AuthenticatorConfig;
+import org.wso2.carbon.identity.application.authentication.framework.config.model.SequenceConfig;
+import org.wso2.carbon.identity.application.authentication.framework.config.model.StepConfig;
+import org.wso2.carbon.identity.application.common.model.ServiceProvider;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Node local cache of the sequence configurations compiled from service providers, so that the identity provider
+ * lookups and authenticator matching of {@link UIBasedConfigurationLoader} are done once per service provider
+ * instead of once per authentication request.
+ * <p>
+ * The cached configurations are templates which are never handed out. Every request gets its own copy, as the
+ * authentication flow updates the steps and authenticators of its sequence. A template is used only for the
+ * service provider instance it was compiled from and only while the configuration version of its tenant is
+ * unchanged. The version is changed by the application and identity provider management listeners of the tenant and
+ * by the registration of application authenticators.
+ * <p>
+ * Those listeners only run on the node where the change is made. Therefore a template keeps the default
+ * authenticators of the identity providers it was compiled with, rather than any identity provider configuration,
+ * and is used only while the loader resolves the same ones for the request.
+ */
+public class CompiledSequenceConfigCache {
+
+    private static final Log log = LogFactory.getLog(CompiledSequenceConfigCache.class);
+
+    private static final CompiledSequenceConfigCache instance = new CompiledSequenceConfigCache();
+
+    private final ConcurrentMap<String, ConcurrentMap<String, CompiledSequence>> tenantSequences =
+            new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicLong> tenantVersions = new ConcurrentHashMap<>();
+    private final AtomicLong globalVersion = new AtomicLong();
+
+    private CompiledSequenceConfigCache() {
+    }
+
+    public static CompiledSequenceConfigCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the configuration version of a tenant. It must be read before compiling a sequence, so that a sequence
+     * compiled while the configuration changes is not used afterwards.
+     *
+     * @param tenantDomain Tenant domain
+     * @return Configuration version
+     */
+    public long getVersion(String tenantDomain) {
+
+        // Both counters only increase, so the sum changes whenever either of them does.
+        return getTenantVersion(tenantDomain).get() + globalVersion.get();
+    }
+
+    /**
+     * Returns a copy of the sequence compiled from the given service provider.
+     *
+     * @param tenantDomain    Tenant domain
+     * @param loaderName      Name of the loader which compiled the sequence
+     * @param serviceProvider   Service provider
+     * @param version           Current configuration version of the tenant
+     * @param idpAuthenticators Current default authenticator names of the identity providers of the sequence
+     * @return Copy of the compiled sequence or null if it is not cached or is out of date
+     */
+    public SequenceConfig getSequenceConfig(String tenantDomain, String loaderName, ServiceProvider serviceProvider,
+                                            long version, Map<String, String> idpAuthenticators) {
+
+        Map<String, CompiledSequence> sequences = tenantSequences.get(tenantDomain);
+        if (sequences == null) {
+            return null;
+        }
+        CompiledSequence compiledSequence = sequences.get(getKey(loaderName, serviceProvider));
+        if (compiledSequence == null || compiledSequence.serviceProvider != serviceProvider ||
+                compiledSequence.version != version ||
+                !compiledSequence.idpAuthenticators.equals(idpAuthenticators)) {
+            return null;
+        }
+        return copySequenceConfig(compiledSequence.template, serviceProvider);
+    }
+
+    /**
+     * Caches a sequence compiled from the given service provider.
+     *
+     * @param tenantDomain    Tenant domain
+     * @param loaderName      Name of the loader which compiled the sequence
+     * @param serviceProvider   Service provider
+     * @param version           Configuration version of the tenant read before compiling the sequence
+     * @param idpAuthenticators Default authenticator names of the identity providers of the sequence, resolved
+     *                          before compiling the sequence
+     * @param template          Compiled sequence, which must not be used by the caller afterwards
+     * @return Copy of the compiled sequence for the caller
+     */
+    public SequenceConfig addSequenceConfig(String tenantDomain, String loaderName, ServiceProvider serviceProvider,
+                                            long version, Map<String, String> idpAuthenticators,
+                                            SequenceConfig template) {
+
+        ConcurrentMap<String, CompiledSequence> sequences = tenantSequences.get(tenantDomain);
+        if (sequences == null) {
+            ConcurrentMap<String, CompiledSequence> newSequences = new ConcurrentHashMap<>();
+            sequences = tenantSequences.putIfAbsent(tenantDomain, newSequences);
+            if (sequences == null) {
+                sequences = newSequences;
+            }
+        }
+        sequences.put(getKey(loaderName, serviceProvider), new CompiledSequence(serviceProvider, version,
+                new HashMap<>(idpAuthenticators), template));
+        return copySequenceConfig(template, serviceProvider);
+    }
+
+    /**
+     * Drops the compiled sequences of a tenant.
+     *
+     * @param tenantDomain Tenant domain
+     */
+    public void invalidate(String tenantDomain) {
+
+        if (tenantDomain == null) {
+            invalidateAll();
+            return;
+        }
+        getTenantVersion(tenantDomain).incrementAndGet();
+        tenantSequences.remove(tenantDomain);
+        if (log.isDebugEnabled()) {
+            log.debug("Cleared the compiled sequences of tenant: " + tenantDomain);
+        }
+    }
+
+    /**
+     * Drops the compiled sequences of all tenants.
+     */
+    public void invalidateAll() {
+
+        globalVersion.incrementAndGet();
+        tenantSequences.clear();
+        if (log.isDebugEnabled()) {
+            log.debug("Cleared the compiled sequences of all tenants.");
+        }
+    }
+
+    private AtomicLong getTenantVersion(String tenantDomain) {
+
+        AtomicLong version = tenantVersions.get(tenantDomain);
+        if (version == null) {
+            AtomicLong newVersion = new AtomicLong();
+            version = tenantVersions.putIfAbsent(tenantDomain, newVersion);
+            if (version == null) {
+                version = newVersion;
+            }
+        }
+        return version;
+    }
+
+    private static String getKey(String loaderName, ServiceProvider serviceProvider) {
+        return loaderName + ":" + serviceProvider.getApplicationID() + ":" + serviceProvider.getApplicationName();
+    }
+
+    private static SequenceConfig copySequenceConfig(SequenceConfig template, ServiceProvider serviceProvider) {
+
+        SequenceConfig sequenceConfig = new SequenceConfig();
+        sequenceConfig.setApplicationId(template.getApplicationId());
+        sequenceConfig.setApplicationConfig(copyApplicationConfig(template.getApplicationConfig(), serviceProvider));
+
+        if (!template.getReqPathAuthenticators().isEmpty()) {
+            List<AuthenticatorConfig> reqPathAuthenticators = new ArrayList<>();
+            for (AuthenticatorConfig authenticatorConfig : template.getReqPathAuthenticators()) {
+                reqPathAuthenticators.add(copyAuthenticatorConfig(authenticatorConfig));
+            }
+            sequenceConfig.setReqPathAuthenticators(reqPathAuthenticators);
+        }
+
+        for (Map.Entry<Integer, StepConfig> entry : template.getStepMap().entrySet()) {
+            sequenceConfig.getStepMap().put(entry.getKey(), copyStepConfig(entry.getValue()));
+        }
+        return sequenceConfig;
+    }
+
+    private static ApplicationConfig copyApplicationConfig(ApplicationConfig applicationConfig,
+                                                           ServiceProvider serviceProvider) {
+
+        try {
+            return (ApplicationConfig) applicationConfig.clone();
+        } catch (CloneNotSupportedException e) {
+            return new ApplicationConfig(serviceProvider);
+        }
+    }
+
+    private static StepConfig copyStepConfig(StepConfig template) {
+
+        StepConfig stepConfig = new StepConfig();
+        stepConfig.setOrder(template.getOrder());
+        stepConfig.setLoginPage(template.getLoginPage());
+        stepConfig.setSubjectIdentifierStep(template.isSubjectIdentifierStep());
+        stepConfig.setSubjectAttributeStep(template.isSubjectAttributeStep());
+        stepConfig.setMultiOption(template.isMultiOption());
+        stepConfig.setAuthenticatorMappings(new ArrayList<>(template.getAuthenticatorMappings()));
+        for (AuthenticatorConfig authenticatorConfig : template.getAuthenticatorList()) {
+            stepConfig.getAuthenticatorList().add(copyAuthenticatorConfig(authenticatorConfig));
+        }
+        return stepConfig;
+    }
+
+    private static AuthenticatorConfig copyAuthenticatorConfig(AuthenticatorConfig template) {
+
+        Map<String, String> parameterMap = template.getParameterMap() == null ? null :
+                new HashMap<>(template.getParameterMap());
+        AuthenticatorConfig authenticatorConfig = new AuthenticatorConfig(template.getName(), template.isEnabled(),
+                parameterMap);
+        authenticatorConfig.setApplicationAuthenticator(template.getApplicationAuthenticator());
+        authenticatorConfig.getIdpNames().addAll(template.getIdpNames());
+        authenticatorConfig.getIdps().putAll(template.getIdps());
+        return authenticatorConfig;
+    }
+
+    private static final class CompiledSequence {
+
+        private final ServiceProvider serviceProvider;
+        private final long version;
+        private final Map<String, String> idpAuthenticators;
+        private final SequenceConfig template;
+
+        private CompiledSequence(ServiceProvider serviceProvider, long version, Map<String, String> idpAuthenticators,
+                                 SequenceConfig template) {
+
+            this.serviceProvider = serviceProvider;
+            this.version = version;
+            this.idpAuthenticators = idpAuthenticators;
+            this.template = template;
+        }
+    }
+}
@@ -129,6 +129,11 @@ public class UIBasedConfigurationLoader implements SequenceLoader {
     /**
      * Loads the sequence in the way previous loading mechanism used to work.
      * Please do not use this for any new development.
+     * <p>
+     * The sequence of the authentication steps of the service provider is compiled once and a copy of it is
+     * returned for later calls, until the service provider or the configuration of the tenant changes. The default
+     * authenticators of the identity providers which are not embedded in the service provider are resolved again
+     * for every call, so that a change made on another node is picked up through the identity provider cache.
      *
      * @param serviceProvider
      * @param tenantDomain
@@ -142,6 +147,79 @@ public class UIBasedConfigurationLoader implements SequenceLoader {
         if (serviceProvider == null) {
             throw new FrameworkException("ServiceProvider cannot be null");
         }
+        if (tenantDomain == null || !isServiceProviderSteps(serviceProvider, authenticationSteps)) {
+            return compileSequence(serviceProvider, tenantDomain, authenticationSteps);
+        }
+
+        CompiledSequenceConfigCache sequenceConfigCache = CompiledSequenceConfigCache.getInstance();
+        String loaderName = getClass().getName();
+        long version = sequenceConfigCache.getVersion(tenantDomain);
+        // Resolved before compiling, so that a sequence compiled while an identity provider changes is not used
+        // afterwards.
+        Map<String, String> idpAuthenticators = resolveIdPAuthenticators(authenticationSteps, tenantDomain);
+        SequenceConfig sequenceConfig = sequenceConfigCache.getSequenceConfig(tenantDomain, loaderName,
+                serviceProvider, version, idpAuthenticators);
+        if (sequenceConfig != null) {
+            return sequenceConfig;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Compiling the authentication sequence of service provider: " +
+                    serviceProvider.getApplicationName() + " of tenant: " + tenantDomain);
+        }
+        return sequenceConfigCache.addSequenceConfig(tenantDomain, loaderName, serviceProvider, version,
+                idpAuthenticators, compileSequence(serviceProvider, tenantDomain, authenticationSteps));
+    }
+
+    /**
+     * Resolves the default authenticators of the identity providers of the steps which are not embedded in the
+     * service provider.
+     *
+     * @return Default authenticator names by identity provider name
+     */
+    private Map<String, String> resolveIdPAuthenticators(AuthenticationStep[] authenticationSteps,
+                                                         String tenantDomain) throws FrameworkException {
+
+        Map<String, String> idpAuthenticators = new HashMap<>();
+        if (authenticationSteps == null) {
+            return idpAuthenticators;
+        }
+        for (AuthenticationStep authenticationStep : authenticationSteps) {
+            IdentityProvider[] federatedIDPs = authenticationStep.getFederatedIdentityProviders();
+            if (federatedIDPs == null) {
+                continue;
+            }
+            for (IdentityProvider federatedIDP : federatedIDPs) {
+                if (federatedIDP.getDefaultAuthenticatorConfig() == null &&
+                        !idpAuthenticators.containsKey(federatedIDP.getIdentityProviderName())) {
+                    FederatedAuthenticatorConfig federatedAuthenticator = getDefaultAuthenticatorConfig(
+                            federatedIDP, tenantDomain);
+                    idpAuthenticators.put(federatedIDP.getIdentityProviderName(),
+                            federatedAuthenticator == null ? null : federatedAuthenticator.getName());
+                }
+            }
+        }
+        return idpAuthenticators;
+    }
+
+    /**
+     * Checks whether the given steps are the ones configured in the service provider, as only the sequences of
+     * those are cached.
+     */
+    private boolean isServiceProviderSteps(ServiceProvider serviceProvider, AuthenticationStep[] authenticationSteps) {
+
+        LocalAndOutboundAuthenticationConfig localAndOutboundAuthenticationConfig = serviceProvider
+                .getLocalAndOutBoundAuthenticationConfig();
+        AuthenticationStep[] serviceProviderSteps = localAndOutboundAuthenticationConfig == null ? null :
+                localAndOutboundAuthenticationConfig.getAuthenticationSteps();
+        if (authenticationSteps == null) {
+            return serviceProviderSteps == null || serviceProviderSteps.length == 0;
+        }
+        return authenticationSteps == serviceProviderSteps;
+    }
+
+    private SequenceConfig compileSequence(ServiceProvider serviceProvider, String tenantDomain,
+                                           AuthenticationStep[] authenticationSteps) throws FrameworkException {
+
         SequenceConfig sequenceConfig = new SequenceConfig();
         sequenceConfig.setApplicationId(serviceProvider.getApplicationName());
         sequenceConfig.setApplicationConfig(new ApplicationConfig(serviceProvider));
@@ -233,15 +311,7 @@ public class UIBasedConfigurationLoader implements SequenceLoader {
                 //When loading the federated IDP configuration from default.xml file in service-providers, we need to
                 // retrieve the federated IDP and load
                 if (federatedAuthenticator == null) {
-                    try {
-                        federatedAuthenticator = IdentityProviderManager.getInstance()
-                                .getIdPByName(federatedIDP.getIdentityProviderName(), tenantDomain)
-                                .getDefaultAuthenticatorConfig();
-                    } catch (IdentityProviderManagementException e) {
-                        throw new FrameworkException(
-                                "Failed to load the default authenticator for IDP : " + federatedIDP
-                                        .getIdentityProviderName(), e);
-                    }
+                    federatedAuthenticator = getDefaultAuthenticatorConfig(federatedIDP, tenantDomain);
                 }
 
                 String actualAuthenticatorName = federatedAuthenticator.getName();
@@ -251,6 +321,24 @@ public class UIBasedConfigurationLoader implements SequenceLoader {
         }
     }
 
+    /**
+     * Retrieves the default authenticator of an identity provider which is not embedded in the service provider.
+     */
+    protected FederatedAuthenticatorConfig getDefaultAuthenticatorConfig(IdentityProvider federatedIDP,
+                                                                         String tenantDomain)
+            throws FrameworkException {
+
+        try {
+            return IdentityProviderManager.getInstance()
+                    .getIdPByName(federatedIDP.getIdentityProviderName(), tenantDomain)
+                    .getDefaultAuthenticatorConfig();
+        } catch (IdentityProviderManagementException e) {
+            throw new FrameworkException(
+                    "Failed to load the default authenticator for IDP : " + federatedIDP.getIdentityProviderName(),
+                    e);
+        }
+    }
+
     protected void loadLocalAuthenticators(AuthenticationStep authenticationStep, StepConfig stepConfig) {
 
         LocalAuthenticatorConfig[] localAuthenticators = authenticationStep.getLocalAuthenticatorConfigs();
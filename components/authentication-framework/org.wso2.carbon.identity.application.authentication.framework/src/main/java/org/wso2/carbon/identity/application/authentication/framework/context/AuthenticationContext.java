@@ -26,22 +26,44 @@ import org.wso2.carbon.identity.application.authentication.framework.model.Authe
 import org.wso2.carbon.identity.application.authentication.framework.model.AuthenticationRequest;
 import org.wso2.carbon.identity.core.bean.context.MessageContext;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Future;
 import javax.servlet.http.HttpServletRequest;
 
 /**
  * This class is used for holding data about the
  * authentication request sent from a servlet.
  */
-public class AuthenticationContext extends MessageContext implements Serializable {
+public class AuthenticationContext extends MessageContext implements Serializable, Cloneable {
 
     private static final long serialVersionUID = 6438291349985653402L;
 
+    // Parts the context is persisted in between the authentication steps, so that only the changed parts are written
+    // after a step. The core part holds the fields which are not held by any other part.
+    private static final String PART_CORE = "core";
+    private static final String PART_SEQUENCE_CONFIG = "sequenceConfig";
+    private static final String PART_EXTERNAL_IDP = "externalIdP";
+    private static final String PART_AUTHENTICATION_REQUEST = "authenticationRequest";
+    private static final String PART_PREVIOUS_AUTHENTICATED_IDPS = "previousAuthenticatedIdPs";
+    private static final String PART_CURRENT_AUTHENTICATED_IDPS = "currentAuthenticatedIdPs";
+    private static final String PART_AUTHENTICATION_STEP_HISTORY = "authenticationStepHistory";
+    private static final String PART_PROPERTIES = "properties";
+    private static final String PART_DIGEST_ALGORITHM = "SHA-256";
+
     private String contextIdentifier;
     private String sessionIdentifier;
     private String callerPath;
@@ -97,6 +119,19 @@ public class AuthenticationContext extends MessageContext implements Serializabl
 	 */
     private AuthenticatorStateInfo stateInfo;
 
+    /* Digests of the parts as last persisted, and the time of the base record and the number of deltas they were
+     * persisted in. These are not serialized, so a context read from the session data store is persisted in full
+     * the next time.
+     */
+    private transient Map<String, byte[]> persistedPartDigests;
+    private transient long persistedBaseTime;
+    private transient int persistedDeltaCount;
+
+    /* Configs of the federated IdPs of the sequence being loaded in the background, keyed by the IdP name. These
+     * are not serialized, so the configs are loaded on use for a context read from the session data store.
+     */
+    private transient Map<String, Future<ExternalIdPConfig>> prefetchedIdPConfigs;
+
     public String getCallerPath() {
         return callerPath;
     }
@@ -424,4 +459,233 @@ public class AuthenticationContext extends MessageContext implements Serializabl
     public AuthenticatedUser getLastAuthenticatedUser() {
         return lastAuthenticatedUser;
     }
+
+    /**
+     * Returns the configs of the federated IdPs of the sequence being prefetched for this context. This is used by
+     * the framework internally.
+     *
+     * @return Prefetched IdP configs keyed by the IdP name, or null if the configs have not been prefetched
+     */
+    public Map<String, Future<ExternalIdPConfig>> getPrefetchedIdPConfigs() {
+        return prefetchedIdPConfigs;
+    }
+
+    public void setPrefetchedIdPConfigs(Map<String, Future<ExternalIdPConfig>> prefetchedIdPConfigs) {
+        this.prefetchedIdPConfigs = prefetchedIdPConfigs;
+    }
+
+    /**
+     * Returns whether the parts of the context have been persisted from this instance.
+     */
+    public boolean isPersisted() {
+        return persistedPartDigests != null;
+    }
+
+    public long getPersistedBaseTime() {
+        return persistedBaseTime;
+    }
+
+    public int getPersistedDeltaCount() {
+        return persistedDeltaCount;
+    }
+
+    /**
+     * Records that the context has been persisted in full in a base record.
+     *
+     * @param baseTime Time the base record is stored with
+     */
+    public void setPersistedBase(long baseTime) {
+
+        this.persistedBaseTime = baseTime;
+        this.persistedDeltaCount = 0;
+    }
+
+    /**
+     * Records that a delta of the context has been persisted on top of the base record.
+     *
+     * @return Sequence number of the delta, starting from 1 for the first delta of the base record
+     */
+    public int addPersistedDelta() {
+        return ++persistedDeltaCount;
+    }
+
+    /**
+     * Forgets the persisted state, so that the context is persisted in full the next time.
+     */
+    public void resetPersistedState() {
+
+        persistedPartDigests = null;
+        persistedBaseTime = 0;
+        persistedDeltaCount = 0;
+    }
+
+    /**
+     * Serializes the parts of the context and returns the ones which changed since they were last collected. All the
+     * parts are returned if they have not been collected from this instance before. The parts are compared by their
+     * serialized content, as the authentication flow updates the sequence, steps and maps of the context in place.
+     *
+     * @return Serialized parts which changed, keyed by the part name
+     * @throws IOException If a part of the context could not be serialized
+     */
+    public Map<String, byte[]> collectDirtyParts() throws IOException {
+
+        Map<String, byte[]> digests = new HashMap<>();
+        Map<String, byte[]> dirtyParts = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> part : getParts().entrySet()) {
+            byte[] serializedPart = serialize(part.getValue());
+            byte[] digest = getDigest(serializedPart);
+            digests.put(part.getKey(), digest);
+            if (persistedPartDigests == null || !Arrays.equals(digest, persistedPartDigests.get(part.getKey()))) {
+                dirtyParts.put(part.getKey(), serializedPart);
+            }
+        }
+        persistedPartDigests = digests;
+        return dirtyParts;
+    }
+
+    /**
+     * Returns a context with the given parts applied on top of this one. This context is not changed.
+     *
+     * @param parts Serialized parts, as returned by {@link #collectDirtyParts()}
+     * @return Context with the parts applied
+     * @throws IOException            If a part could not be deserialized
+     * @throws ClassNotFoundException If the class of a part could not be found
+     */
+    public AuthenticationContext withParts(Map<String, byte[]> parts) throws IOException, ClassNotFoundException {
+
+        AuthenticationContext context;
+        byte[] core = parts.get(PART_CORE);
+        if (core != null) {
+            context = (AuthenticationContext) deserialize(core);
+        } else {
+            context = copy();
+        }
+        for (Map.Entry<String, Object> part : getParts().entrySet()) {
+            if (PART_CORE.equals(part.getKey())) {
+                continue;
+            }
+            byte[] serializedPart = parts.get(part.getKey());
+            context.setPart(part.getKey(), serializedPart != null ? deserialize(serializedPart) : part.getValue());
+        }
+        context.resetPersistedState();
+        return context;
+    }
+
+    /**
+     * Returns a shallow copy of the context which can be serialized in full. Properties with values which are not
+     * serializable are left out of the copy, while this context keeps them.
+     *
+     * @return Serializable copy of the context
+     */
+    public AuthenticationContext getSerializableCopy() {
+
+        AuthenticationContext context = copy();
+        context.parameters = getSerializableProperties();
+        context.currentRequest = null;
+        context.resetPersistedState();
+        return context;
+    }
+
+    private Map<String, Object> getParts() {
+
+        AuthenticationContext core = copy();
+        core.sequenceConfig = null;
+        core.externalIdP = null;
+        core.authenticationRequest = null;
+        core.previousAuthenticatedIdPs = null;
+        core.currentAuthenticatedIdPs = null;
+        core.authenticationStepHistory = null;
+        core.parameters = new HashMap<>();
+        core.currentRequest = null;
+        core.resetPersistedState();
+
+        Map<String, Object> parts = new LinkedHashMap<>();
+        parts.put(PART_CORE, core);
+        parts.put(PART_SEQUENCE_CONFIG, sequenceConfig);
+        parts.put(PART_EXTERNAL_IDP, externalIdP);
+        parts.put(PART_AUTHENTICATION_REQUEST, authenticationRequest);
+        parts.put(PART_PREVIOUS_AUTHENTICATED_IDPS, previousAuthenticatedIdPs);
+        parts.put(PART_CURRENT_AUTHENTICATED_IDPS, currentAuthenticatedIdPs);
+        parts.put(PART_AUTHENTICATION_STEP_HISTORY, authenticationStepHistory);
+        parts.put(PART_PROPERTIES, getSerializableProperties());
+        return parts;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void setPart(String name, Object value) {
+
+        switch (name) {
+            case PART_SEQUENCE_CONFIG:
+                sequenceConfig = (SequenceConfig) value;
+                break;
+            case PART_EXTERNAL_IDP:
+                externalIdP = (ExternalIdPConfig) value;
+                break;
+            case PART_AUTHENTICATION_REQUEST:
+                authenticationRequest = (AuthenticationRequest) value;
+                break;
+            case PART_PREVIOUS_AUTHENTICATED_IDPS:
+                previousAuthenticatedIdPs = (Map<String, AuthenticatedIdPData>) value;
+                break;
+            case PART_CURRENT_AUTHENTICATED_IDPS:
+                currentAuthenticatedIdPs = (Map<String, AuthenticatedIdPData>) value;
+                break;
+            case PART_AUTHENTICATION_STEP_HISTORY:
+                authenticationStepHistory = (List<AuthHistory>) value;
+                break;
+            case PART_PROPERTIES:
+                parameters = (Map<String, Object>) value;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown authentication context part: " + name);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> getSerializableProperties() {
+
+        Map<String, Object> properties = new HashMap<>();
+        if (parameters != null) {
+            for (Map.Entry<String, Object> property : ((Map<String, Object>) parameters).entrySet()) {
+                if (property.getValue() == null || property.getValue() instanceof Serializable) {
+                    properties.put(property.getKey(), property.getValue());
+                }
+            }
+        }
+        return properties;
+    }
+
+    private AuthenticationContext copy() {
+
+        try {
+            return (AuthenticationContext) super.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException("Authentication context is not cloneable", e);
+        }
+    }
+
+    private static byte[] serialize(Object value) throws IOException {
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (ObjectOutputStream objectOutputStream = new ObjectOutputStream(outputStream)) {
+            objectOutputStream.writeObject(value);
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static Object deserialize(byte[] value) throws IOException, ClassNotFoundException {
+
+        try (ObjectInputStream objectInputStream = new ObjectInputStream(new ByteArrayInputStream(value))) {
+            return objectInputStream.readObject();
+        }
+    }
+
+    private static byte[] getDigest(byte[] value) {
+
+        try {
+            return MessageDigest.getInstance(PART_DIGEST_ALGORITHM).digest(value);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(PART_DIGEST_ALGORITHM + " is not available", e);
+        }
+    }
 }
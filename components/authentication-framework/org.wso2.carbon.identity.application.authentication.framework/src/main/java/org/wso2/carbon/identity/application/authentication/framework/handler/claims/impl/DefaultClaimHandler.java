@@ -51,6 +51,7 @@ import org.wso2.carbon.user.core.UserRealm;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -388,12 +389,6 @@ public class DefaultClaimHandler implements ClaimHandler {
         // key:value -> sp_dialect:claim_value
         Map<String, String> spRequestedClaims = new HashMap<>();
 
-        // Retrieve all non-null user claim values against local claim uris.
-        allLocalClaims = retrieveAllNunNullUserClaimValues(authenticatedUser, claimManager, appConfig,
-                (org.wso2.carbon.user.core.UserStoreManager) userStore);
-
-        context.setProperty(FrameworkConstants.UNFILTERED_LOCAL_CLAIM_VALUES, allLocalClaims);
-
         // if standard dialect get all claim mappings from standard dialect to carbon dialect
         spToLocalClaimMappings = getStanderDialectToCarbonMapping(spStandardDialect, context, spToLocalClaimMappings,
                 tenantDomain);
@@ -406,6 +401,13 @@ public class DefaultClaimHandler implements ClaimHandler {
             context.setProperty(FrameworkConstants.SP_TO_CARBON_CLAIM_MAPPING, requestedClaimMappings);
         }
 
+        // Retrieve non-null user claim values against the local claim uris required by the service provider.
+        allLocalClaims = retrieveNonNullUserClaimValues(authenticatedUser, claimManager, appConfig,
+                (org.wso2.carbon.user.core.UserStoreManager) userStore,
+                getRequiredLocalClaimURIs(context, appConfig, spToLocalClaimMappings));
+
+        context.setProperty(FrameworkConstants.UNFILTERED_LOCAL_CLAIM_VALUES, allLocalClaims);
+
         mapSPClaimsAndFilterRequestedClaims(spToLocalClaimMappings, requestedClaimMappings, allLocalClaims,
                                             allSPMappedClaims, spRequestedClaims);
 
@@ -526,9 +528,26 @@ public class DefaultClaimHandler implements ClaimHandler {
         return spToLocalClaimMappings;
     }
 
-    private Map<String, String> retrieveAllNunNullUserClaimValues(AuthenticatedUser authenticatedUser,
+    /**
+     * Returns the local claims to read from the user store. These are the claims in the retrieval plan of the service
+     * provider, and for OpenID requests, which return all claims mapped to the service provider, the mapped claims.
+     */
+    private Set<String> getRequiredLocalClaimURIs(AuthenticationContext context, ApplicationConfig appConfig,
+                                                  Map<String, String> spToLocalClaimMappings) {
+
+        Set<String> requiredLocalClaimURIs = LocalClaimRetrievalPlan.getLocalClaimURIs(context.getTenantDomain(),
+                appConfig.getServiceProvider());
+        if (FrameworkConstants.RequestType.CLAIM_TYPE_OPENID.equals(context.getRequestType())) {
+            requiredLocalClaimURIs = new HashSet<>(requiredLocalClaimURIs);
+            requiredLocalClaimURIs.addAll(spToLocalClaimMappings.values());
+        }
+        return requiredLocalClaimURIs;
+    }
+
+    private Map<String, String> retrieveNonNullUserClaimValues(AuthenticatedUser authenticatedUser,
             ClaimManager claimManager, ApplicationConfig appConfig,
-            org.wso2.carbon.user.core.UserStoreManager userStore) throws FrameworkException {
+            org.wso2.carbon.user.core.UserStoreManager userStore, Set<String> requiredLocalClaimURIs)
+            throws FrameworkException {
 
         String tenantDomain = authenticatedUser.getTenantDomain();
         String tenantAwareUserName = authenticatedUser.getUserName();
@@ -541,7 +560,12 @@ public class DefaultClaimHandler implements ClaimHandler {
             List<String> localClaimURIs = new ArrayList<>();
             for (org.wso2.carbon.user.api.ClaimMapping mapping : claimMappings) {
                 String claimURI = mapping.getClaim().getClaimUri();
-                localClaimURIs.add(claimURI);
+                if (requiredLocalClaimURIs.contains(claimURI)) {
+                    localClaimURIs.add(claimURI);
+                }
+            }
+            if (localClaimURIs.isEmpty()) {
+                return new HashMap<>();
             }
             allLocalClaims = userStore.getUserClaimValues(tenantAwareUserName,
                     localClaimURIs.toArray(new String[localClaimURIs.size()]), null);
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authentication.framework.handler.claims.impl;
+
+import org.apache.commons.lang.StringUtils;
+import org.wso2.carbon.identity.application.common.model.ClaimConfig;
+import org.wso2.carbon.identity.application.common.model.ClaimMapping;
+import org.wso2.carbon.identity.application.common.model.LocalAndOutboundAuthenticationConfig;
+import org.wso2.carbon.identity.application.common.model.ServiceProvider;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Local claims of a service provider which have to be read from the user store when a local user logs in. These are
+ * the requested and mandatory claims, the subject claim and the role claim of the service provider, so that the
+ * claim handler does not read every claim of the user only to filter out most of them.
+ * <p>
+ * Plans are computed once per service provider and used only for the service provider instance they were computed
+ * from, so an updated service provider gets a new plan.
+ */
+public class LocalClaimRetrievalPlan {
+
+    private static final ConcurrentMap<String, LocalClaimRetrievalPlan> plans = new ConcurrentHashMap<>();
+
+    private final ServiceProvider serviceProvider;
+    private final Set<String> localClaimURIs;
+
+    private LocalClaimRetrievalPlan(ServiceProvider serviceProvider, Set<String> localClaimURIs) {
+
+        this.serviceProvider = serviceProvider;
+        this.localClaimURIs = localClaimURIs;
+    }
+
+    /**
+     * Returns the local claims to read for a service provider.
+     *
+     * @param tenantDomain    Tenant domain of the service provider
+     * @param serviceProvider Service provider
+     * @return Unmodifiable set of local claim URIs
+     */
+    public static Set<String> getLocalClaimURIs(String tenantDomain, ServiceProvider serviceProvider) {
+
+        String key = tenantDomain + ":" + serviceProvider.getApplicationID() + ":" +
+                serviceProvider.getApplicationName();
+        LocalClaimRetrievalPlan plan = plans.get(key);
+        if (plan == null || plan.serviceProvider != serviceProvider) {
+            plan = new LocalClaimRetrievalPlan(serviceProvider, computeLocalClaimURIs(serviceProvider));
+            plans.put(key, plan);
+        }
+        return plan.localClaimURIs;
+    }
+
+    private static Set<String> computeLocalClaimURIs(ServiceProvider serviceProvider) {
+
+        Set<String> localClaimURIs = new HashSet<>();
+        ClaimConfig claimConfig = serviceProvider.getClaimConfig();
+        ClaimMapping[] claimMappings = claimConfig == null ? null : claimConfig.getClaimMappings();
+        if (claimMappings == null) {
+            claimMappings = new ClaimMapping[0];
+        }
+
+        for (ClaimMapping claimMapping : claimMappings) {
+            if ((claimMapping.isRequested() || claimMapping.isMandatory()) && claimMapping.getLocalClaim() != null &&
+                    claimMapping.getLocalClaim().getClaimUri() != null) {
+                localClaimURIs.add(claimMapping.getLocalClaim().getClaimUri());
+            }
+        }
+
+        LocalAndOutboundAuthenticationConfig outboundAuthConfig =
+                serviceProvider.getLocalAndOutBoundAuthenticationConfig();
+        if (outboundAuthConfig != null) {
+            addClaimURI(outboundAuthConfig.getSubjectClaimUri(), claimMappings, localClaimURIs);
+        }
+        if (claimConfig != null) {
+            addClaimURI(claimConfig.getRoleClaimURI(), claimMappings, localClaimURIs);
+        }
+        return Collections.unmodifiableSet(localClaimURIs);
+    }
+
+    /**
+     * Adds a claim URI of the service provider together with the local claim it is mapped to, as the subject and role
+     * claims are given in the local dialect or in the dialect of the service provider.
+     */
+    private static void addClaimURI(String claimURI, ClaimMapping[] claimMappings, Set<String> localClaimURIs) {
+
+        if (StringUtils.isBlank(claimURI)) {
+            return;
+        }
+        claimURI = claimURI.trim();
+        localClaimURIs.add(claimURI);
+        for (ClaimMapping claimMapping : claimMappings) {
+            if (claimMapping.getRemoteClaim() != null && claimURI.equals(claimMapping.getRemoteClaim().getClaimUri())
+                    && claimMapping.getLocalClaim() != null && claimMapping.getLocalClaim().getClaimUri() != null) {
+                localClaimURIs.add(claimMapping.getLocalClaim().getClaimUri());
+            }
+        }
+    }
+}
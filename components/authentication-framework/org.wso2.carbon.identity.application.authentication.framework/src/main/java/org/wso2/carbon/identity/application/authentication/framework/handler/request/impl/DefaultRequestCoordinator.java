@@ -28,6 +28,7 @@ import org.wso2.carbon.identity.application.authentication.framework.Authenticat
 import org.wso2.carbon.identity.application.authentication.framework.AuthenticatorFlowStatus;
 import org.wso2.carbon.identity.application.authentication.framework.cache.AuthenticationRequestCacheEntry;
 import org.wso2.carbon.identity.application.authentication.framework.config.ConfigurationFacade;
+import org.wso2.carbon.identity.application.authentication.framework.config.ExternalIdPConfigPrefetcher;
 import org.wso2.carbon.identity.application.authentication.framework.config.model.ApplicationConfig;
 import org.wso2.carbon.identity.application.authentication.framework.config.model.SequenceConfig;
 import org.wso2.carbon.identity.application.authentication.framework.context.AuthenticationContext;
@@ -471,6 +472,9 @@ public class DefaultRequestCoordinator extends AbstractRequestCoordinator implem
 
         // set the sequence for the current authentication/logout flow
         context.setSequenceConfig(effectiveSequence);
+
+        // start loading the configs of the federated IdPs the steps of the sequence will need
+        ExternalIdPConfigPrefetcher.getInstance().prefetch(context);
     }
 
     /**
@@ -24,7 +24,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.identity.application.authentication.framework.ApplicationAuthenticator;
 import org.wso2.carbon.identity.application.authentication.framework.FederatedApplicationAuthenticator;
-import org.wso2.carbon.identity.application.authentication.framework.config.ConfigurationFacade;
+import org.wso2.carbon.identity.application.authentication.framework.config.ExternalIdPConfigPrefetcher;
 import org.wso2.carbon.identity.application.authentication.framework.config.model.ApplicationConfig;
 import org.wso2.carbon.identity.application.authentication.framework.config.model.AuthenticatorConfig;
 import org.wso2.carbon.identity.application.authentication.framework.config.model.ExternalIdPConfig;
@@ -245,9 +245,8 @@ public class DefaultStepBasedSequenceHandler implements StepBasedSequenceHandler
 
                 ExternalIdPConfig externalIdPConfig = null;
                 try {
-                    externalIdPConfig = ConfigurationFacade.getInstance()
-                            .getIdPConfigByName(stepConfig.getAuthenticatedIdP(),
-                                    context.getTenantDomain());
+                    externalIdPConfig = ExternalIdPConfigPrefetcher.getInstance()
+                            .getIdPConfigByName(context, stepConfig.getAuthenticatedIdP());
                 } catch (IdentityProviderManagementException e) {
                     log.error("Exception while getting IdP by name", e);
                 }
@@ -26,6 +26,7 @@ import org.wso2.carbon.identity.application.authentication.framework.Application
 import org.wso2.carbon.identity.application.authentication.framework.AuthenticatorFlowStatus;
 import org.wso2.carbon.identity.application.authentication.framework.FederatedApplicationAuthenticator;
 import org.wso2.carbon.identity.application.authentication.framework.config.ConfigurationFacade;
+import org.wso2.carbon.identity.application.authentication.framework.config.ExternalIdPConfigPrefetcher;
 import org.wso2.carbon.identity.application.authentication.framework.config.builder.FileBasedConfigurationBuilder;
 import org.wso2.carbon.identity.application.authentication.framework.config.model.AuthenticatorConfig;
 import org.wso2.carbon.identity.application.authentication.framework.config.model.ExternalIdPConfig;
@@ -197,8 +198,8 @@ public class DefaultStepHandler implements StepHandler {
                     }
 
                     try {
-                        context.setExternalIdP(ConfigurationFacade.getInstance().getIdPConfigByName(
-                                idp, context.getTenantDomain()));
+                        context.setExternalIdP(ExternalIdPConfigPrefetcher.getInstance().getIdPConfigByName(
+                                context, idp));
                     } catch (IdentityProviderManagementException e) {
                         log.error("Exception while getting IdP by name", e);
                     }
@@ -243,9 +244,8 @@ public class DefaultStepHandler implements StepHandler {
 
                         // set the IdP to be called in the context
                         try {
-                            context.setExternalIdP(ConfigurationFacade.getInstance()
-                                                           .getIdPConfigByName(authenticatorConfig.getIdpNames().get(0),
-                                                                               context.getTenantDomain()));
+                            context.setExternalIdP(ExternalIdPConfigPrefetcher.getInstance()
+                                    .getIdPConfigByName(context, authenticatorConfig.getIdpNames().get(0)));
                         } catch (IdentityProviderManagementException e) {
                             log.error("Exception while getting IdP by name", e);
                         }
@@ -408,8 +408,8 @@ public class DefaultStepHandler implements StepHandler {
             }
 
             try {
-                ExternalIdPConfig externalIdPConfig = ConfigurationFacade.getInstance()
-                    .getIdPConfigByName(selectedIdp, context.getTenantDomain());
+                ExternalIdPConfig externalIdPConfig = ExternalIdPConfigPrefetcher.getInstance()
+                    .getIdPConfigByName(context, selectedIdp);
                 // TODO [IMPORTANT] validate the idp is inside the step.
                 context.setExternalIdP(externalIdPConfig);
             } catch (IdentityProviderManagementException e) {
@@ -45,7 +45,8 @@ public class IdentityProcessCoordinator {
     }
 
     private IdentityProcessor getIdentityProcessor(IdentityRequest identityRequest) {
-        List<IdentityProcessor> processors = FrameworkServiceDataHolder.getInstance().getIdentityProcessors();
+        List<IdentityProcessor> processors = FrameworkServiceDataHolder.getInstance().getIdentityProcessorRoutes()
+                .getCandidates(identityRequest.getPathInfo(), identityRequest.getParameterMap().keySet());
         for (IdentityProcessor requestProcessor : processors) {
             try {
                 if (requestProcessor.canHandle(identityRequest)) {
@@ -32,6 +32,7 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class IdentityServlet extends HttpServlet {
 
@@ -153,7 +154,11 @@ public class IdentityServlet extends HttpServlet {
      */
     private HttpIdentityRequestFactory getIdentityRequestFactory(HttpServletRequest request, HttpServletResponse response) {
 
-        List<HttpIdentityRequestFactory> factories = FrameworkServiceDataHolder.getInstance().getHttpIdentityRequestFactories();
+        InboundRouteTable<HttpIdentityRequestFactory> routes = FrameworkServiceDataHolder.getInstance()
+                .getHttpIdentityRequestFactoryRoutes();
+        // Reading the parameter map of a form post parses its body, so it is done only if it is used for routing.
+        Set<String> parameterNames = routes.hasParameterRoutes() ? request.getParameterMap().keySet() : null;
+        List<HttpIdentityRequestFactory> factories = routes.getCandidates(request.getPathInfo(), parameterNames);
         for (HttpIdentityRequestFactory requestBuilder : factories) {
             if (requestBuilder.canHandle(request, response)) {
                 return requestBuilder;
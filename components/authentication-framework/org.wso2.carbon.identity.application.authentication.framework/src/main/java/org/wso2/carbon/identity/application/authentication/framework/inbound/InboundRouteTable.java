@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authentication.framework.inbound;
+
+import org.apache.commons.lang.StringUtils;
+import org.wso2.carbon.identity.core.handler.IdentityHandler;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Route table of inbound request factories or processors, built from the priority ordered list of registered
+ * instances whenever it changes. Instances implementing {@link InboundRoutingHints} are indexed by their routed path
+ * segments and parameters. A request is offered to the indexed instances whose routes it matches and to the instances
+ * without routing hints, in priority order.
+ *
+ * @param <T> Type of the routed instances
+ */
+public class InboundRouteTable<T extends IdentityHandler> {
+
+    private final List<T> handlers;
+    private final Map<String, List<Integer>> positionsByPathSegment = new HashMap<>();
+    private final Map<String, List<Integer>> positionsByParameter = new HashMap<>();
+    private final List<Integer> unroutedPositions = new ArrayList<>();
+    private final List<T> unroutedHandlers;
+
+    /**
+     * @param handlers Registered instances, ordered by priority
+     */
+    public InboundRouteTable(List<T> handlers) {
+
+        this.handlers = new ArrayList<>(handlers);
+        List<T> unrouted = new ArrayList<>();
+        for (int position = 0; position < this.handlers.size(); position++) {
+            T handler = this.handlers.get(position);
+            if (!(handler instanceof InboundRoutingHints)) {
+                unroutedPositions.add(position);
+                unrouted.add(handler);
+                continue;
+            }
+            InboundRoutingHints routingHints = (InboundRoutingHints) handler;
+            addRoutes(routingHints.getRoutedPathSegments(), position, positionsByPathSegment);
+            addRoutes(routingHints.getRoutedParameters(), position, positionsByParameter);
+        }
+        unroutedHandlers = Collections.unmodifiableList(unrouted);
+    }
+
+    public static <T extends IdentityHandler> InboundRouteTable<T> empty() {
+        return new InboundRouteTable<>(Collections.<T>emptyList());
+    }
+
+    /**
+     * Returns whether any instance is routed by request parameters. If not, the parameter names of a request need not
+     * be read to find its candidates.
+     *
+     * @return True if an instance is routed by request parameters
+     */
+    public boolean hasParameterRoutes() {
+        return !positionsByParameter.isEmpty();
+    }
+
+    /**
+     * Returns the instances a request should be offered to, in priority order.
+     *
+     * @param pathInfo       Path info of the request
+     * @param parameterNames Names of the request parameters, or null if there are no parameter routes
+     * @return Instances which may handle the request
+     */
+    public List<T> getCandidates(String pathInfo, Collection<String> parameterNames) {
+
+        List<Integer> candidatePositions = null;
+        List<Integer> positions = positionsByPathSegment.get(getFirstPathSegment(pathInfo));
+        if (positions != null) {
+            candidatePositions = new ArrayList<>(unroutedPositions);
+            candidatePositions.addAll(positions);
+        }
+        if (!positionsByParameter.isEmpty() && parameterNames != null) {
+            for (String parameterName : parameterNames) {
+                positions = positionsByParameter.get(parameterName);
+                if (positions != null) {
+                    if (candidatePositions == null) {
+                        candidatePositions = new ArrayList<>(unroutedPositions);
+                    }
+                    candidatePositions.addAll(positions);
+                }
+            }
+        }
+        if (candidatePositions == null) {
+            return unroutedHandlers;
+        }
+
+        // Keep the priority order, and offer the request once to an instance matching several routes.
+        Collections.sort(candidatePositions);
+        List<T> candidates = new ArrayList<>(candidatePositions.size());
+        int previousPosition = -1;
+        for (int position : candidatePositions) {
+            if (position != previousPosition) {
+                candidates.add(handlers.get(position));
+                previousPosition = position;
+            }
+        }
+        return candidates;
+    }
+
+    private static void addRoutes(Set<String> routes, int position, Map<String, List<Integer>> positionsByRoute) {
+
+        if (routes == null) {
+            return;
+        }
+        for (String route : routes) {
+            List<Integer> positions = positionsByRoute.get(route);
+            if (positions == null) {
+                positions = new ArrayList<>();
+                positionsByRoute.put(route, positions);
+            }
+            positions.add(position);
+        }
+    }
+
+    private static String getFirstPathSegment(String pathInfo) {
+
+        if (StringUtils.isEmpty(pathInfo)) {
+            return null;
+        }
+        int start = pathInfo.charAt(0) == '/' ? 1 : 0;
+        int end = pathInfo.indexOf('/', start);
+        return end < 0 ? pathInfo.substring(start) : pathInfo.substring(start, end);
+    }
+}
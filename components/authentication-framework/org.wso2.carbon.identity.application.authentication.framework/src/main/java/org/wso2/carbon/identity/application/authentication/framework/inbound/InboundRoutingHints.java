@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authentication.framework.inbound;
+
+import java.util.Set;
+
+/**
+ * Optional interface of {@link HttpIdentityRequestFactory} and {@link IdentityProcessor} implementations, which
+ * declares the requests they handle, so that a request is routed to them without asking every registered factory or
+ * processor whether it can handle the request.
+ * <p>
+ * A factory or processor implementing this interface must not handle a request which neither has one of the routed
+ * paths nor one of the routed parameters. The routes are read once, when the factory or processor is registered.
+ */
+public interface InboundRoutingHints {
+
+    /**
+     * Returns the first segments of the path info of the handled requests, eg. "oauth2" for /identity/oauth2/token.
+     *
+     * @return Routed path segments, or an empty set
+     */
+    Set<String> getRoutedPathSegments();
+
+    /**
+     * Returns the names of the request parameters carried by the handled requests.
+     *
+     * @return Routed request parameter names, or an empty set
+     */
+    Set<String> getRoutedParameters();
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authentication.framework.internal;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.application.authentication.framework.ApplicationAuthenticator;
+import org.wso2.carbon.identity.application.authentication.framework.AuthenticatorRoutingHints;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Indexes of the registered application authenticators by name and by the request parameters claimed through
+ * {@link AuthenticatorRoutingHints}, so that requests are dispatched without asking every authenticator.
+ * Authenticators without routing hints are always dispatched to, in registration order.
+ * <p>
+ * The indexes are rebuilt when an authenticator is registered or unregistered, and published as a whole, so that
+ * lookups do not lock.
+ */
+public class AuthenticatorRegistry {
+
+    private static final Log log = LogFactory.getLog(AuthenticatorRegistry.class);
+
+    private static final AuthenticatorRegistry instance = new AuthenticatorRegistry();
+
+    private final List<ApplicationAuthenticator> authenticators = new ArrayList<>();
+    private volatile Index index = new Index(Collections.<ApplicationAuthenticator>emptyList());
+
+    AuthenticatorRegistry() {
+    }
+
+    public static AuthenticatorRegistry getInstance() {
+        return instance;
+    }
+
+    public synchronized void addAuthenticator(ApplicationAuthenticator authenticator) {
+
+        authenticators.add(authenticator);
+        index = new Index(authenticators);
+    }
+
+    public synchronized void removeAuthenticator(ApplicationAuthenticator authenticator) {
+
+        authenticators.remove(authenticator);
+        index = new Index(authenticators);
+    }
+
+    /**
+     * Returns the first registered authenticator with the given name.
+     *
+     * @param name Name of the authenticator
+     * @return Authenticator or null if no authenticator is registered with the name
+     */
+    public ApplicationAuthenticator getAuthenticator(String name) {
+        return index.authenticatorsByName.get(name);
+    }
+
+    /**
+     * Returns the authenticators which may handle a request, in registration order. These are the authenticators
+     * claiming a parameter of the request and the authenticators without routing hints.
+     *
+     * @param request Request
+     * @return Authenticators which may handle the request
+     */
+    public List<ApplicationAuthenticator> getCandidateAuthenticators(HttpServletRequest request) {
+
+        Index currentIndex = index;
+        List<Integer> candidatePositions = null;
+        if (!currentIndex.positionsByParameter.isEmpty()) {
+            // A request has a few parameters, so they are looked up in the index rather than the other way around.
+            for (Object parameterName : request.getParameterMap().keySet()) {
+                List<Integer> positions = currentIndex.positionsByParameter.get(parameterName);
+                if (positions != null) {
+                    if (candidatePositions == null) {
+                        candidatePositions = new ArrayList<>(currentIndex.unhintedPositions);
+                    }
+                    candidatePositions.addAll(positions);
+                }
+            }
+        }
+        if (candidatePositions == null) {
+            return currentIndex.unhintedAuthenticators;
+        }
+
+        // Keep the registration order, and dispatch once to an authenticator claiming several parameters.
+        Collections.sort(candidatePositions);
+        List<ApplicationAuthenticator> candidates = new ArrayList<>(candidatePositions.size());
+        int previousPosition = -1;
+        for (int position : candidatePositions) {
+            if (position != previousPosition) {
+                candidates.add(currentIndex.authenticators.get(position));
+                previousPosition = position;
+            }
+        }
+        return candidates;
+    }
+
+    private static final class Index {
+
+        private final List<ApplicationAuthenticator> authenticators;
+        private final Map<String, ApplicationAuthenticator> authenticatorsByName = new HashMap<>();
+        private final Map<String, List<Integer>> positionsByParameter = new HashMap<>();
+        private final List<Integer> unhintedPositions = new ArrayList<>();
+        private final List<ApplicationAuthenticator> unhintedAuthenticators;
+
+        private Index(List<ApplicationAuthenticator> registeredAuthenticators) {
+
+            authenticators = new ArrayList<>(registeredAuthenticators);
+            List<ApplicationAuthenticator> unhinted = new ArrayList<>();
+            for (int position = 0; position < authenticators.size(); position++) {
+                ApplicationAuthenticator authenticator = authenticators.get(position);
+                if (authenticator.getName() != null && !authenticatorsByName.containsKey(authenticator.getName())) {
+                    authenticatorsByName.put(authenticator.getName(), authenticator);
+                }
+
+                Set<String> claimedParameters = null;
+                if (authenticator instanceof AuthenticatorRoutingHints) {
+                    claimedParameters = ((AuthenticatorRoutingHints) authenticator).getClaimedRequestParameters();
+                }
+                if (claimedParameters == null) {
+                    unhintedPositions.add(position);
+                    unhinted.add(authenticator);
+                    continue;
+                }
+                for (String claimedParameter : claimedParameters) {
+                    List<Integer> positions = positionsByParameter.get(claimedParameter);
+                    if (positions == null) {
+                        positions = new ArrayList<>();
+                        positionsByParameter.put(claimedParameter, positions);
+                    }
+                    positions.add(position);
+                }
+            }
+            unhintedAuthenticators = Collections.unmodifiableList(unhinted);
+            if (log.isDebugEnabled()) {
+                log.debug("Indexed " + authenticators.size() + " application authenticators. " +
+                        unhinted.size() + " of them do not declare routing hints.");
+            }
+        }
+    }
+}
@@ -39,6 +39,8 @@ import org.wso2.carbon.identity.application.authentication.framework.JsFunctionR
 import org.wso2.carbon.identity.application.authentication.framework.LocalApplicationAuthenticator;
 import org.wso2.carbon.identity.application.authentication.framework.RequestPathApplicationAuthenticator;
 import org.wso2.carbon.identity.application.authentication.framework.config.ConfigurationFacade;
+import org.wso2.carbon.identity.application.authentication.framework.config.ExternalIdPConfigPrefetcher;
+import org.wso2.carbon.identity.application.authentication.framework.config.loader.CompiledSequenceConfigCache;
 import org.wso2.carbon.identity.application.authentication.framework.config.loader.UIBasedConfigurationLoader;
 import org.wso2.carbon.identity.application.authentication.framework.config.model.graph.JsFunctionRegistryImpl;
 import org.wso2.carbon.identity.application.authentication.framework.config.model.graph.JsGraphBuilderFactory;
@@ -51,6 +53,9 @@ import org.wso2.carbon.identity.application.authentication.framework.inbound.Ide
 import org.wso2.carbon.identity.application.authentication.framework.inbound.IdentityServlet;
 import org.wso2.carbon.identity.application.authentication.framework.internal.impl.AuthenticationMethodNameTranslatorImpl;
 import org.wso2.carbon.identity.application.authentication.framework.listener.AuthenticationEndpointTenantActivityListener;
+import org.wso2.carbon.identity.application.authentication.framework.listener.SequenceConfigApplicationMgtListener;
+import org.wso2.carbon.identity.application.authentication.framework.listener.SequenceConfigIdPMgtListener;
+import org.wso2.carbon.identity.application.authentication.framework.listener.SessionPolicyIdPMgtListener;
 import org.wso2.carbon.identity.application.authentication.framework.servlet.CommonAuthenticationServlet;
 import org.wso2.carbon.identity.application.authentication.framework.servlet.LoginContextServlet;
 import org.wso2.carbon.identity.application.authentication.framework.store.JavascriptCacheImpl;
@@ -61,8 +66,10 @@ import org.wso2.carbon.identity.application.common.model.FederatedAuthenticatorC
 import org.wso2.carbon.identity.application.common.model.LocalAuthenticatorConfig;
 import org.wso2.carbon.identity.application.common.model.Property;
 import org.wso2.carbon.identity.application.common.model.RequestPathAuthenticatorConfig;
+import org.wso2.carbon.identity.application.mgt.listener.ApplicationMgtListener;
 import org.wso2.carbon.identity.core.handler.HandlerComparator;
 import org.wso2.carbon.identity.core.util.IdentityCoreInitializedEvent;
+import org.wso2.carbon.idp.mgt.listener.IdentityProviderMgtListener;
 import org.wso2.carbon.registry.core.service.RegistryService;
 import org.wso2.carbon.stratos.common.listeners.TenantMgtListener;
 import org.wso2.carbon.user.core.service.RealmService;
@@ -198,6 +205,7 @@ public class FrameworkServiceComponent {
 
         FrameworkServiceDataHolder.getInstance().setBundleContext(bundleContext);
         FrameworkServiceDataHolder.getInstance().getHttpIdentityRequestFactories().add(new HttpIdentityRequestFactory());
+        FrameworkServiceDataHolder.getInstance().refreshHttpIdentityRequestFactoryRoutes();
         FrameworkServiceDataHolder.getInstance().getHttpIdentityResponseFactories().add(new
                 FrameworkLoginResponseFactory());
         FrameworkServiceDataHolder.getInstance().getHttpIdentityResponseFactories().add(new
@@ -213,6 +221,15 @@ public class FrameworkServiceComponent {
         FrameworkServiceDataHolder.getInstance().setSequenceLoader(uiBasedConfigurationLoader);
         FrameworkServiceDataHolder.getInstance().setJsGraphBuilderFactory(jsGraphBuilderFactory);
 
+        // Clear the compiled authentication sequences when service providers or identity providers change
+        bundleContext.registerService(ApplicationMgtListener.class.getName(),
+                new SequenceConfigApplicationMgtListener(), null);
+        bundleContext.registerService(IdentityProviderMgtListener.class.getName(), new SequenceConfigIdPMgtListener(),
+                null);
+        // Reload the session policy of a tenant when its resident identity provider changes
+        bundleContext.registerService(IdentityProviderMgtListener.class.getName(), new SessionPolicyIdPMgtListener(),
+                null);
+
         //this is done to load SessionDataStore class and start the cleanup tasks.
         SessionDataStore.getInstance();
 
@@ -228,6 +245,7 @@ public class FrameworkServiceComponent {
         }
 
         FrameworkServiceDataHolder.getInstance().setBundleContext(null);
+        ExternalIdPConfigPrefetcher.shutdown();
     }
 
     @Reference(
@@ -277,6 +295,8 @@ public class FrameworkServiceComponent {
     protected void setAuthenticator(ApplicationAuthenticator authenticator) {
 
         FrameworkServiceDataHolder.getInstance().getAuthenticators().add(authenticator);
+        AuthenticatorRegistry.getInstance().addAuthenticator(authenticator);
+        CompiledSequenceConfigCache.getInstance().invalidateAll();
 
         Property[] configProperties = null;
 
@@ -313,6 +333,8 @@ public class FrameworkServiceComponent {
     protected void unsetAuthenticator(ApplicationAuthenticator authenticator) {
 
         FrameworkServiceDataHolder.getInstance().getAuthenticators().remove(authenticator);
+        AuthenticatorRegistry.getInstance().removeAuthenticator(authenticator);
+        CompiledSequenceConfigCache.getInstance().invalidateAll();
         String authenticatorName = authenticator.getName();
         ApplicationAuthenticatorService appAuthenticatorService = ApplicationAuthenticatorService.getInstance();
 
@@ -349,6 +371,7 @@ public class FrameworkServiceComponent {
         Collections.sort(FrameworkServiceDataHolder.getInstance().getIdentityProcessors(),
                          new HandlerComparator());
         Collections.reverse(FrameworkServiceDataHolder.getInstance().getIdentityProcessors());
+        FrameworkServiceDataHolder.getInstance().refreshIdentityProcessorRoutes();
         if (log.isDebugEnabled()) {
             log.debug("Added IdentityProcessor : " + requestProcessor.getName());
         }
@@ -357,6 +380,7 @@ public class FrameworkServiceComponent {
     protected void removeIdentityProcessor(IdentityProcessor requestProcessor) {
 
         FrameworkServiceDataHolder.getInstance().getIdentityProcessors().remove(requestProcessor);
+        FrameworkServiceDataHolder.getInstance().refreshIdentityProcessorRoutes();
 
         if (log.isDebugEnabled()) {
             log.debug("Removed IdentityProcessor : " + requestProcessor.getName());
@@ -376,6 +400,7 @@ public class FrameworkServiceComponent {
         Collections.sort(FrameworkServiceDataHolder.getInstance().getHttpIdentityRequestFactories(),
                          new HandlerComparator());
         Collections.reverse(FrameworkServiceDataHolder.getInstance().getHttpIdentityRequestFactories());
+        FrameworkServiceDataHolder.getInstance().refreshHttpIdentityRequestFactoryRoutes();
         if (log.isDebugEnabled()) {
             log.debug("Added HttpIdentityRequestFactory : " + factory.getName());
         }
@@ -384,6 +409,7 @@ public class FrameworkServiceComponent {
     protected void removeHttpIdentityRequestFactory(HttpIdentityRequestFactory factory) {
 
         FrameworkServiceDataHolder.getInstance().getHttpIdentityRequestFactories().remove(factory);
+        FrameworkServiceDataHolder.getInstance().refreshHttpIdentityRequestFactoryRoutes();
         if (log.isDebugEnabled()) {
             log.debug("Removed HttpIdentityRequestFactory : " + factory.getName());
         }
@@ -28,6 +28,7 @@ import org.wso2.carbon.identity.application.authentication.framework.exception.F
 import org.wso2.carbon.identity.application.authentication.framework.inbound.HttpIdentityRequestFactory;
 import org.wso2.carbon.identity.application.authentication.framework.inbound.HttpIdentityResponseFactory;
 import org.wso2.carbon.identity.application.authentication.framework.inbound.IdentityProcessor;
+import org.wso2.carbon.identity.application.authentication.framework.inbound.InboundRouteTable;
 import org.wso2.carbon.registry.core.service.RegistryService;
 import org.wso2.carbon.user.core.service.RealmService;
 
@@ -47,6 +48,9 @@ public class FrameworkServiceDataHolder {
     private List<IdentityProcessor> identityProcessors = new ArrayList<IdentityProcessor>();
     private List<HttpIdentityRequestFactory> httpIdentityRequestFactories = new ArrayList<HttpIdentityRequestFactory>();
     private List<HttpIdentityResponseFactory> httpIdentityResponseFactories = new ArrayList<>();
+    private volatile InboundRouteTable<IdentityProcessor> identityProcessorRoutes = InboundRouteTable.empty();
+    private volatile InboundRouteTable<HttpIdentityRequestFactory> httpIdentityRequestFactoryRoutes =
+            InboundRouteTable.empty();
     private AuthenticationDataPublisher authnDataPublisherProxy = null;
     private SequenceLoader sequenceLoader = null;
     private JsGraphBuilderFactory JsGraphBuilderFactory;
@@ -125,6 +129,28 @@ public class FrameworkServiceDataHolder {
         return httpIdentityResponseFactories;
     }
 
+    public InboundRouteTable<IdentityProcessor> getIdentityProcessorRoutes() {
+        return identityProcessorRoutes;
+    }
+
+    /**
+     * Rebuilds the route table of identity processors from the priority ordered list of registered processors.
+     */
+    public void refreshIdentityProcessorRoutes() {
+        identityProcessorRoutes = new InboundRouteTable<>(identityProcessors);
+    }
+
+    public InboundRouteTable<HttpIdentityRequestFactory> getHttpIdentityRequestFactoryRoutes() {
+        return httpIdentityRequestFactoryRoutes;
+    }
+
+    /**
+     * Rebuilds the route table of request factories from the priority ordered list of registered factories.
+     */
+    public void refreshHttpIdentityRequestFactoryRoutes() {
+        httpIdentityRequestFactoryRoutes = new InboundRouteTable<>(httpIdentityRequestFactories);
+    }
+
     public AuthenticationDataPublisher getAuthnDataPublisherProxy() {
         return authnDataPublisherProxy;
     }
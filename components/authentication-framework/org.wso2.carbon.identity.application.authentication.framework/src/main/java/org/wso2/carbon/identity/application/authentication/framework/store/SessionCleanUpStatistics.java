@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authentication.framework.store;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statistics of a single run of the expired session data clean up. Counters are updated concurrently by the clean
+ * up workers.
+ */
+public class SessionCleanUpStatistics {
+
+    private final long startTime = System.currentTimeMillis();
+    private volatile long endTime;
+    private volatile int finalChunkSize;
+
+    private final AtomicInteger tenantsScanned = new AtomicInteger();
+    private final AtomicInteger tenantsSkipped = new AtomicInteger();
+    private final AtomicInteger tenantsFailed = new AtomicInteger();
+    private final AtomicLong deletedRecords = new AtomicLong();
+    private final AtomicInteger deleteChunks = new AtomicInteger();
+    private final AtomicInteger lockRetries = new AtomicInteger();
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public long getEndTime() {
+        return endTime;
+    }
+
+    public long getDuration() {
+        return endTime == 0 ? System.currentTimeMillis() - startTime : endTime - startTime;
+    }
+
+    /**
+     * Number of tenants for which expired records were deleted.
+     */
+    public int getTenantsScanned() {
+        return tenantsScanned.get();
+    }
+
+    /**
+     * Number of tenants skipped since they did not have any session records.
+     */
+    public int getTenantsSkipped() {
+        return tenantsSkipped.get();
+    }
+
+    public int getTenantsFailed() {
+        return tenantsFailed.get();
+    }
+
+    public long getDeletedRecords() {
+        return deletedRecords.get();
+    }
+
+    public int getDeleteChunks() {
+        return deleteChunks.get();
+    }
+
+    public int getLockRetries() {
+        return lockRetries.get();
+    }
+
+    /**
+     * Chunk size the clean up settled on at the end of the run.
+     */
+    public int getFinalChunkSize() {
+        return finalChunkSize;
+    }
+
+    void tenantScanned() {
+        tenantsScanned.incrementAndGet();
+    }
+
+    void tenantsSkipped(int count) {
+        tenantsSkipped.addAndGet(count);
+    }
+
+    void tenantFailed() {
+        tenantsFailed.incrementAndGet();
+    }
+
+    void chunkDeleted(int records) {
+        deleteChunks.incrementAndGet();
+        deletedRecords.addAndGet(records);
+    }
+
+    void lockRetried() {
+        lockRetries.incrementAndGet();
+    }
+
+    void finish(int finalChunkSize) {
+        this.finalChunkSize = finalChunkSize;
+        this.endTime = System.currentTimeMillis();
+    }
+
+    @Override
+    public String toString() {
+        return "tenants scanned: " + getTenantsScanned() + ", tenants skipped: " + getTenantsSkipped() +
+                ", tenants failed: " + getTenantsFailed() + ", records deleted: " + getDeletedRecords() +
+                ", delete chunks: " + getDeleteChunks() + ", lock retries: " + getLockRetries() +
+                ", final chunk size: " + getFinalChunkSize() + ", duration: " + getDuration() + "ms";
+    }
+}
@@ -35,6 +35,8 @@ public class SessionContextDO {
 
     private int tenantId;
 
+    private boolean compacting;
+
     public SessionContextDO(String key, String type, Object entry, long nanoTime) {
         this.type = type;
         this.key = key;
@@ -50,6 +52,11 @@ public class SessionContextDO {
         this.tenantId = tenantId;
     }
 
+    public SessionContextDO(String key, String type, Object entry, long nanoTime, int tenantId, boolean compacting) {
+        this(key, type, entry, nanoTime, tenantId);
+        this.compacting = compacting;
+    }
+
     public String getKey() {
         return key;
     }
@@ -89,4 +96,15 @@ public class SessionContextDO {
     public void setTenantId(int tenantId) {
         this.tenantId = tenantId;
     }
+
+    /**
+     * Returns whether the older records and deltas of the entry are removed once this record is persisted.
+     */
+    public boolean isCompacting() {
+        return compacting;
+    }
+
+    public void setCompacting(boolean compacting) {
+        this.compacting = compacting;
+    }
 }
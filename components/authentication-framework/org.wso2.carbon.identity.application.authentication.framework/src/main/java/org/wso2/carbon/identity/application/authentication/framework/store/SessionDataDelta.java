@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.identity.application.authentication.framework.store;
+
+import java.io.Serializable;
+import java.util.Map;
+
+/**
+ * Changes of a session data entry persisted on top of a base record of the entry. A delta holds the serialized parts
+ * of the entry which changed since the previous delta, or since the base record for the first delta. Deltas are
+ * applied in the order of their sequence numbers, and only on the base record they were persisted for.
+ */
+public class SessionDataDelta implements Serializable {
+
+    private static final long serialVersionUID = -2869310764018214337L;
+
+    private long baseTime;
+
+    private int sequence;
+
+    private Map<String, byte[]> parts;
+
+    public SessionDataDelta(long baseTime, int sequence, Map<String, byte[]> parts) {
+        this.baseTime = baseTime;
+        this.sequence = sequence;
+        this.parts = parts;
+    }
+
+    /**
+     * Returns the time of the base record the delta applies to.
+     */
+    public long getBaseTime() {
+        return baseTime;
+    }
+
+    public int getSequence() {
+        return sequence;
+    }
+
+    public Map<String, byte[]> getParts() {
+        return parts;
+    }
+}
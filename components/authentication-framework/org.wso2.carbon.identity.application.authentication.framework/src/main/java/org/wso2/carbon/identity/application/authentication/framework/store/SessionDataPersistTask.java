@@ -54,7 +54,7 @@ public class SessionDataPersistTask implements Runnable {
                         SessionDataStore.getInstance().persistSessionData(
                                 sessionContextDO.getKey(),sessionContextDO.getType(),
                                 sessionContextDO.getEntry(), sessionContextDO.getNanoTime(),
-                                sessionContextDO.getTenantId());
+                                sessionContextDO.getTenantId(), sessionContextDO.isCompacting());
                     }
                 }
             } catch (InterruptedException e) {
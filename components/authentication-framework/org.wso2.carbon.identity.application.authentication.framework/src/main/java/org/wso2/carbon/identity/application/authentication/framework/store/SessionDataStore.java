@@ -45,11 +45,18 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.BlockingDeque;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Data will be persisted or stored date will be removed from the store. These two events are considered as STORE operation
@@ -57,6 +64,8 @@ import java.util.concurrent.TimeUnit;
  * And these events are stored with unique sessionId, operation type and operation initiated timestamp.
  * Expired DELETE operations and related STORE operations will be deleted by a OperationCleanUpService task.
  * All expired operations will be deleted by SessionCleanUpService task.
+ * An entry may also be stored as a base record followed by deltas of the entry, which are stored with the session type
+ * suffixed by {@link #DELTA_TYPE_SUFFIX}. Compacting the entry into a new base record removes its older records.
  *
  */
 public class SessionDataStore {
@@ -64,6 +73,7 @@ public class SessionDataStore {
 
     private static final String OPERATION_DELETE = "DELETE";
     private static final String OPERATION_STORE = "STORE";
+    public static final String DELTA_TYPE_SUFFIX = ".Delta";
     private static final String SQL_INSERT_STORE_OPERATION =
             "INSERT INTO IDN_AUTH_SESSION_STORE(SESSION_ID, SESSION_TYPE, OPERATION, SESSION_OBJECT, TIME_CREATED, TENANT_ID) VALUES (?,?,?,?,?,?)";
     private static final String SQL_INSERT_DELETE_OPERATION =
@@ -98,6 +108,13 @@ public class SessionDataStore {
             "SELECT * FROM (SELECT OPERATION, SESSION_OBJECT, TIME_CREATED FROM IDN_AUTH_SESSION_STORE WHERE SESSION_ID =? AND" +
                     " SESSION_TYPE=? ORDER BY TIME_CREATED DESC) WHERE ROWNUM < 2";
 
+    private static final String SQL_SELECT_DELTAS =
+            "SELECT SESSION_OBJECT FROM IDN_AUTH_SESSION_STORE WHERE SESSION_ID =? AND SESSION_TYPE=? " +
+                    "AND OPERATION = '" + OPERATION_STORE + "' AND TIME_CREATED > ? ORDER BY TIME_CREATED ASC";
+    private static final String SQL_DELETE_COMPACTED_RECORDS =
+            "DELETE FROM IDN_AUTH_SESSION_STORE WHERE SESSION_ID =? AND SESSION_TYPE IN (?,?) AND OPERATION = '" +
+                    OPERATION_STORE + "' AND TIME_CREATED < ?";
+
     private static final String SQL_DELETE_EXPIRED_DATA_TASK_MYSQL =
             "DELETE FROM IDN_AUTH_SESSION_STORE WHERE TIME_CREATED < ? AND TENANT_ID=? LIMIT %d";
     private static final String SQL_DELETE_EXPIRED_DATA_TASK_MSSQL =
@@ -113,6 +130,10 @@ public class SessionDataStore {
             "DELETE FROM IDN_AUTH_SESSION_STORE WHERE (SESSION_ID, SESSION_TYPE, OPERATION, TIME_CREATED) IN " +
                     "(SELECT SESSION_ID, SESSION_TYPE, OPERATION, TIME_CREATED FROM IDN_AUTH_SESSION_STORE WHERE " +
                     "TIME_CREATED < ? AND TENANT_ID = ? FETCH FIRST %d ROWS ONLY)";
+    // Served from the (TENANT_ID, TIME_CREATED) index, so tenants without session data are skipped without touching
+    // the table itself.
+    private static final String SQL_SELECT_TENANTS_WITH_SESSION_DATA =
+            "SELECT DISTINCT TENANT_ID FROM IDN_AUTH_SESSION_STORE";
     private static final String MYSQL_DATABASE = "MySQL";
     private static final String H2_DATABASE = "H2";
     private static final String DB2_DATABASE = "DB2";
@@ -122,6 +143,10 @@ public class SessionDataStore {
     private static final String INFORMIX_DATABASE = "Informix";
 
     private static final int DEFAULT_DELETE_LIMIT = 50000;
+    private static final int MIN_DELETE_LIMIT = 1000;
+    private static final int DEFAULT_CLEANUP_THREAD_COUNT = 4;
+    private static final long DEFAULT_DELETE_CHUNK_TARGET_LATENCY = 2000;
+    private static final int MAX_LOCK_RETRIES = 3;
     private static int maxPoolSize = 100;
     private static BlockingDeque<SessionContextDO> sessionContextQueue = new LinkedBlockingDeque();
     private static volatile SessionDataStore instance;
@@ -131,8 +156,14 @@ public class SessionDataStore {
     private String sqlDeleteSTORETask;
     private String sqlDeleteDELETETask;
     private String sqlSelect;
+    // Contains a %d place holder for the chunk size, which is filled per statement as the chunk size adapts.
     private String sqlDeleteExpiredDataTask;
     private int deleteChunkSize = DEFAULT_DELETE_LIMIT;
+    private int minDeleteChunkSize;
+    private AtomicInteger currentDeleteChunkSize;
+    private int cleanUpThreadCount = DEFAULT_CLEANUP_THREAD_COUNT;
+    private long deleteChunkTargetLatency = DEFAULT_DELETE_CHUNK_TARGET_LATENCY;
+    private volatile SessionCleanUpStatistics lastCleanUpStatistics;
     private boolean sessionDataCleanupEnabled = true;
     private boolean operationDataCleanupEnabled = false;
 
@@ -204,8 +235,22 @@ public class SessionDataStore {
             deleteChunkSize = Integer.parseInt(deleteChunkSizeString);
         }
 
+        minDeleteChunkSize = Math.max(1, Math.min(MIN_DELETE_LIMIT, deleteChunkSize));
+        currentDeleteChunkSize = new AtomicInteger(deleteChunkSize);
+
+        String cleanUpThreadCountString = IdentityUtil.getProperty("JDBCPersistenceManager.SessionDataPersist" +
+                ".SessionDataCleanUp.CleanUpThreadCount");
+        if (StringUtils.isNotBlank(cleanUpThreadCountString)) {
+            cleanUpThreadCount = Math.max(1, Integer.parseInt(cleanUpThreadCountString));
+        }
+        String targetLatencyString = IdentityUtil.getProperty("JDBCPersistenceManager.SessionDataPersist" +
+                ".SessionDataCleanUp.DeleteChunkTargetLatency");
+        if (StringUtils.isNotBlank(targetLatencyString)) {
+            deleteChunkTargetLatency = Long.parseLong(targetLatencyString);
+        }
+
         if (StringUtils.isNotBlank(deleteExpiredDataTaskSQL)) {
-            sqlDeleteExpiredDataTask = String.format(deleteExpiredDataTaskSQL, deleteChunkSize);
+            sqlDeleteExpiredDataTask = deleteExpiredDataTaskSQL;
         }
 
         if (!enablePersist) {
@@ -321,6 +366,92 @@ public class SessionDataStore {
         }
     }
 
+    /**
+     * Stores session data as a base record, which deltas of the entry can be stored on top of.
+     *
+     * @param key      Key of the entry
+     * @param type     Type of the entry
+     * @param entry    Entry
+     * @param tenantId Tenant id of the entry
+     * @param compact  Whether the older records and deltas of the entry are removed once the base record is persisted
+     * @return Time the base record is stored with, which the deltas on top of it refer to
+     */
+    public long storeBaseSessionData(String key, String type, Object entry, int tenantId, boolean compact) {
+
+        long nanoTime = FrameworkUtils.getCurrentStandardNano();
+        if (!enablePersist) {
+            return nanoTime;
+        }
+        if (maxPoolSize > 0) {
+            sessionContextQueue.push(new SessionContextDO(key, type, entry, nanoTime, tenantId, compact));
+        } else {
+            persistSessionData(key, type, entry, nanoTime, tenantId, compact);
+        }
+        return nanoTime;
+    }
+
+    /**
+     * Stores a delta of an entry on top of its base record.
+     *
+     * @param key      Key of the entry
+     * @param type     Type of the entry
+     * @param delta    Delta of the entry
+     * @param tenantId Tenant id of the entry
+     */
+    public void storeSessionDataDelta(String key, String type, SessionDataDelta delta, int tenantId) {
+        storeSessionData(key, type + DELTA_TYPE_SUFFIX, delta, tenantId);
+    }
+
+    /**
+     * Returns the deltas stored on top of a base record of an entry, in the order they should be applied. Deltas
+     * following a missing delta, eg. one still queued to be persisted, are not returned.
+     *
+     * @param key      Key of the entry
+     * @param type     Type of the entry
+     * @param baseTime Time of the base record
+     * @return Deltas of the base record
+     */
+    public List<SessionDataDelta> getSessionDataDeltas(String key, String type, long baseTime) {
+
+        List<SessionDataDelta> deltas = new ArrayList<>();
+        if (!enablePersist) {
+            return deltas;
+        }
+        Connection connection = null;
+        try {
+            connection = IdentityDatabaseUtil.getDBConnection();
+        } catch (IdentityRuntimeException e) {
+            log.error(e.getMessage(), e);
+            return deltas;
+        }
+        PreparedStatement preparedStatement = null;
+        ResultSet resultSet = null;
+        try {
+            preparedStatement = connection.prepareStatement(SQL_SELECT_DELTAS);
+            preparedStatement.setString(1, key);
+            preparedStatement.setString(2, type + DELTA_TYPE_SUFFIX);
+            preparedStatement.setLong(3, baseTime);
+            resultSet = preparedStatement.executeQuery();
+            while (resultSet.next()) {
+                Object delta = getBlobObject(resultSet.getBinaryStream(1));
+                if (!(delta instanceof SessionDataDelta) || ((SessionDataDelta) delta).getBaseTime() != baseTime) {
+                    // Stored on top of another base record of the entry.
+                    continue;
+                }
+                if (((SessionDataDelta) delta).getSequence() != deltas.size() + 1) {
+                    break;
+                }
+                deltas.add((SessionDataDelta) delta);
+            }
+        } catch (ClassNotFoundException | IOException | SQLException |
+                IdentityApplicationManagementException e) {
+            log.error("Error while retrieving session data deltas", e);
+        } finally {
+            IdentityDatabaseUtil.closeAllConnections(connection, resultSet, preparedStatement);
+        }
+        return deltas;
+    }
+
     public void clearSessionData(String key, String type) {
         if (!enablePersist) {
             return;
@@ -335,7 +466,8 @@ public class SessionDataStore {
 
     /**
      * Gets the DB specific query for the session data removal, this may be overridden by the configuration
-     * "JDBCPersistenceManager.SessionDataPersist.SQL.DeleteExpiredDataTask"
+     * "JDBCPersistenceManager.SessionDataPersist.SQL.DeleteExpiredDataTask". The returned query still contains the
+     * place holder for the chunk size.
      *
      * @return
      * @throws IdentityApplicationManagementException
@@ -361,7 +493,7 @@ public class SessionDataStore {
             } else {
                 nonFormattedQuery = SQL_DELETE_EXPIRED_DATA_TASK_ORACLE;
             }
-            return String.format(nonFormattedQuery, deleteChunkSize);
+            return nonFormattedQuery;
         } catch (SQLException e) {
             throw new IdentityApplicationManagementException("Error while retrieving DB connection meta-data", e);
         } finally {
@@ -370,7 +502,8 @@ public class SessionDataStore {
     }
 
     /**
-     * Removes all records related to expired sessions from DB
+     * Removes all records related to expired sessions from DB. Tenants are cleaned in parallel on a bounded pool, and
+     * tenants without any session records are skipped.
      */
     private void removeExpiredRememberMeSessions() {
 
@@ -382,11 +515,13 @@ public class SessionDataStore {
             }
         }
 
+        final SessionCleanUpStatistics statistics = new SessionCleanUpStatistics();
+        Set<Integer> tenantIds = new LinkedHashSet<>();
         try {
             Tenant[] tenants =
                     FrameworkServiceDataHolder.getInstance().getRealmService().getTenantManager().getAllTenants();
             for (Tenant tenant : tenants) {
-                removeExpiredRememberMeSessions(tenant.getId());
+                tenantIds.add(tenant.getId());
             }
         } catch (UserStoreException e) {
             log.error("Error while listing tenants for session clean up task", e);
@@ -394,16 +529,86 @@ public class SessionDataStore {
 
         //The above method doesn't return the super tenant, hence we have to specifically do the clean up for
         // super tenant
-        removeExpiredRememberMeSessions(MultitenantConstants.SUPER_TENANT_ID);
+        tenantIds.add(MultitenantConstants.SUPER_TENANT_ID);
         //remove the entries for invalid tenant.
-        removeExpiredRememberMeSessions(MultitenantConstants.INVALID_TENANT_ID);
+        tenantIds.add(MultitenantConstants.INVALID_TENANT_ID);
+
+        Set<Integer> tenantsWithSessionData = getTenantsWithSessionData();
+        if (tenantsWithSessionData != null) {
+            int tenantCount = tenantIds.size();
+            tenantIds.retainAll(tenantsWithSessionData);
+            statistics.tenantsSkipped(tenantCount - tenantIds.size());
+        }
+
+        if (!tenantIds.isEmpty()) {
+            ExecutorService cleanUpPool = Executors.newFixedThreadPool(Math.min(cleanUpThreadCount,
+                    tenantIds.size()));
+            try {
+                for (final int tenantId : tenantIds) {
+                    cleanUpPool.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            removeExpiredRememberMeSessions(tenantId, statistics);
+                        }
+                    });
+                }
+            } finally {
+                cleanUpPool.shutdown();
+            }
+            try {
+                while (!cleanUpPool.awaitTermination(1, TimeUnit.MINUTES)) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Waiting for session data clean up to complete. " + statistics);
+                    }
+                }
+            } catch (InterruptedException e) {
+                cleanUpPool.shutdownNow();
+                Thread.currentThread().interrupt();
+                log.warn("Interrupted while waiting for session data clean up to complete.");
+            }
+        }
+
+        statistics.finish(currentDeleteChunkSize.get());
+        lastCleanUpStatistics = statistics;
+        log.info("Session data clean up completed. " + statistics);
+    }
+
+    /**
+     * Returns the ids of the tenants that have session records, or null if they could not be retrieved, in which
+     * case all tenants are cleaned.
+     */
+    private Set<Integer> getTenantsWithSessionData() {
+
+        Connection connection = null;
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+        try {
+            connection = IdentityDatabaseUtil.getDBConnection();
+            statement = connection.prepareStatement(SQL_SELECT_TENANTS_WITH_SESSION_DATA);
+            resultSet = statement.executeQuery();
+            Set<Integer> tenantIds = new HashSet<>();
+            while (resultSet.next()) {
+                tenantIds.add(resultSet.getInt(1));
+            }
+            return tenantIds;
+        } catch (IdentityRuntimeException | SQLException e) {
+            log.error("Error while retrieving the tenants with session data. Session data of all tenants will be " +
+                    "cleaned.", e);
+            return null;
+        } finally {
+            IdentityDatabaseUtil.closeAllConnections(connection, resultSet, statement);
+        }
     }
 
     /**
-     * Removes the records of a given tenant related to expired sessions from DB
-     * @param tenantId The tenant Id of whose data needs to be removed
+     * Removes the records of a given tenant related to expired sessions from DB. Records are deleted in chunks, and
+     * the chunk size shared by all tenants is halved when a chunk takes longer than the target latency or has to wait
+     * for locks, and grown back towards the configured chunk size when chunks complete well within it.
+     *
+     * @param tenantId   The tenant Id of whose data needs to be removed
+     * @param statistics Statistics of the current clean up run
      */
-    private void removeExpiredRememberMeSessions(int tenantId) {
+    private void removeExpiredRememberMeSessions(int tenantId, SessionCleanUpStatistics statistics) {
 
         Connection connection = null;
         PreparedStatement statement = null;
@@ -412,6 +617,7 @@ public class SessionDataStore {
             connection = IdentityDatabaseUtil.getDBConnection();
         } catch (IdentityRuntimeException e) {
             log.error(e.getMessage(), e);
+            statistics.tenantFailed();
             return;
         }
 
@@ -420,41 +626,101 @@ public class SessionDataStore {
         long cleanupLimitNano = FrameworkUtils.getCurrentStandardNano() -
                 TimeUnit.MINUTES.toNanos(IdentityUtil.getCleanUpTimeout());
 
-        if (tenantId != MultitenantConstants.INVALID_TENANT_ID) {
-            String tenantDomain = IdentityTenantUtil.getTenantDomain(tenantId);
-            cleanupLimitNano = FrameworkUtils.getCurrentStandardNano() -
-                    TimeUnit.SECONDS.toNanos(IdPManagementUtil.getRememberMeTimeout(tenantDomain));
-        }
         try {
+            if (tenantId != MultitenantConstants.INVALID_TENANT_ID) {
+                String tenantDomain = IdentityTenantUtil.getTenantDomain(tenantId);
+                cleanupLimitNano = FrameworkUtils.getCurrentStandardNano() -
+                        TimeUnit.SECONDS.toNanos(IdPManagementUtil.getRememberMeTimeout(tenantDomain));
+            }
+
             boolean deleteCompleted = false;
             int totalDeletedEntries = 0;
+            int lockRetries = 0;
             while (!deleteCompleted) {
-                statement = connection.prepareStatement(sqlDeleteExpiredDataTask);
-                statement.setLong(1, cleanupLimitNano);
-                statement.setInt(2, tenantId);
+                int chunkSize = currentDeleteChunkSize.get();
+                long startTime = System.currentTimeMillis();
+                int noOfDeletedRecords;
+                try {
+                    statement = connection.prepareStatement(String.format(sqlDeleteExpiredDataTask, chunkSize));
+                    statement.setLong(1, cleanupLimitNano);
+                    statement.setInt(2, tenantId);
+                    noOfDeletedRecords = statement.executeUpdate();
+                    if (!connection.getAutoCommit()) {
+                        connection.commit();
+                    }
+                } catch (SQLException e) {
+                    if (!isLockWait(e) || lockRetries >= MAX_LOCK_RETRIES) {
+                        throw e;
+                    }
+                    lockRetries++;
+                    statistics.lockRetried();
+                    if (!connection.getAutoCommit()) {
+                        connection.rollback();
+                    }
+                    shrinkDeleteChunkSize(chunkSize);
+                    if (log.isDebugEnabled()) {
+                        log.debug(String.format("Lock wait while removing expired session records for tenant id: " +
+                                "%d. Retrying with a chunk size of %d.", tenantId, currentDeleteChunkSize.get()));
+                    }
+                    continue;
+                } finally {
+                    IdentityDatabaseUtil.closeStatement(statement);
+                }
 
-                int noOfDeletedRecords = statement.executeUpdate();
-                deleteCompleted = noOfDeletedRecords < deleteChunkSize;
+                long latency = System.currentTimeMillis() - startTime;
+                if (latency > deleteChunkTargetLatency) {
+                    shrinkDeleteChunkSize(chunkSize);
+                } else if (noOfDeletedRecords == chunkSize && latency < deleteChunkTargetLatency / 2) {
+                    growDeleteChunkSize(chunkSize);
+                }
+
+                deleteCompleted = noOfDeletedRecords < chunkSize;
                 totalDeletedEntries += noOfDeletedRecords;
+                statistics.chunkDeleted(noOfDeletedRecords);
                 if (log.isDebugEnabled()) {
-                    log.debug(String.format("Removed %d expired session records for tenant id: %d.",
-                            noOfDeletedRecords, tenantId));
-                }
-                if (!connection.getAutoCommit()) {
-                    connection.commit();
+                    log.debug(String.format("Removed %d expired session records for tenant id: %d in %d ms.",
+                            noOfDeletedRecords, tenantId, latency));
                 }
             }
+            statistics.tenantScanned();
             if (log.isDebugEnabled()) {
                 log.debug(String.format("Deleted total of %d entries for the tenant id: %d", totalDeletedEntries,
                         tenantId));
             }
         } catch (SQLException e) {
+            statistics.tenantFailed();
             log.error("Error while removing session data from the database for nano time " + cleanupLimitNano, e);
+        } catch (RuntimeException e) {
+            statistics.tenantFailed();
+            log.error("Error while removing session data of tenant id: " + tenantId, e);
         } finally {
-            IdentityDatabaseUtil.closeAllConnections(connection, null, statement);
+            IdentityDatabaseUtil.closeConnection(connection);
         }
     }
 
+    private boolean isLockWait(SQLException e) {
+        // SQL state class 40 is transaction rollback, which covers deadlocks and lock wait time outs.
+        return e instanceof SQLTransientException || StringUtils.startsWith(e.getSQLState(), "40");
+    }
+
+    private void shrinkDeleteChunkSize(int usedChunkSize) {
+        int shrunk = Math.max(minDeleteChunkSize, usedChunkSize / 2);
+        currentDeleteChunkSize.compareAndSet(usedChunkSize, shrunk);
+    }
+
+    private void growDeleteChunkSize(int usedChunkSize) {
+        int grown = Math.min(deleteChunkSize, usedChunkSize + Math.max(1, usedChunkSize / 4));
+        currentDeleteChunkSize.compareAndSet(usedChunkSize, grown);
+    }
+
+    /**
+     * Returns the statistics of the last completed session data clean up, or null if the clean up has not run yet.
+     */
+    public SessionCleanUpStatistics getLastCleanUpStatistics() {
+
+        return lastCleanUpStatistics;
+    }
+
     /**
      * Cleans the session data and operation data (if enabled) from the DB
      */
@@ -479,6 +745,21 @@ public class SessionDataStore {
     }
 
     public void persistSessionData(String key, String type, Object entry, long nanoTime, int tenantId) {
+        persistSessionData(key, type, entry, nanoTime, tenantId, false);
+    }
+
+    /**
+     * Persists session data.
+     *
+     * @param key      Key of the entry
+     * @param type     Type of the entry
+     * @param entry    Entry
+     * @param nanoTime Time the entry is stored with
+     * @param tenantId Tenant id of the entry
+     * @param compact  Whether the older records and deltas of the entry are removed along with persisting it
+     */
+    public void persistSessionData(String key, String type, Object entry, long nanoTime, int tenantId,
+                                   boolean compact) {
         if (!enablePersist) {
             return;
         }
@@ -499,6 +780,9 @@ public class SessionDataStore {
             preparedStatement.setLong(5, nanoTime);
             preparedStatement.setInt(6, tenantId);
             preparedStatement.executeUpdate();
+            if (compact) {
+                removeCompactedSessionData(connection, key, type, nanoTime);
+            }
             if (!connection.getAutoCommit()) {
                 connection.commit();
             }
@@ -509,6 +793,26 @@ public class SessionDataStore {
         }
     }
 
+    private void removeCompactedSessionData(Connection connection, String key, String type, long nanoTime)
+            throws SQLException {
+
+        PreparedStatement preparedStatement = null;
+        try {
+            preparedStatement = connection.prepareStatement(SQL_DELETE_COMPACTED_RECORDS);
+            preparedStatement.setString(1, key);
+            preparedStatement.setString(2, type);
+            preparedStatement.setString(3, type + DELTA_TYPE_SUFFIX);
+            preparedStatement.setLong(4, nanoTime);
+            int noOfDeletedRecords = preparedStatement.executeUpdate();
+            if (log.isDebugEnabled()) {
+                log.debug(String.format("Removed %d session records compacted into the record of type: %s",
+                        noOfDeletedRecords, type));
+            }
+        } finally {
+            IdentityDatabaseUtil.closeStatement(preparedStatement);
+        }
+    }
+
     public void removeSessionData(String key, String type, long nanoTime) {
         if (!enablePersist) {
             return;
@@ -69,6 +69,7 @@ import org.wso2.carbon.identity.application.authentication.framework.handler.seq
 import org.wso2.carbon.identity.application.authentication.framework.handler.sequence.impl.DefaultStepBasedSequenceHandler;
 import org.wso2.carbon.identity.application.authentication.framework.handler.step.StepHandler;
 import org.wso2.carbon.identity.application.authentication.framework.handler.step.impl.DefaultStepHandler;
+import org.wso2.carbon.identity.application.authentication.framework.internal.AuthenticatorRegistry;
 import org.wso2.carbon.identity.application.authentication.framework.internal.FrameworkServiceComponent;
 import org.wso2.carbon.identity.application.authentication.framework.internal.FrameworkServiceDataHolder;
 import org.wso2.carbon.identity.application.authentication.framework.model.AuthenticatedIdPData;
@@ -237,6 +238,12 @@ public class FrameworkUtils {
      */
     public static ApplicationAuthenticator getAppAuthenticatorByName(String name) {
 
+        ApplicationAuthenticator registeredAuthenticator = AuthenticatorRegistry.getInstance().getAuthenticator(name);
+        if (registeredAuthenticator != null) {
+            return registeredAuthenticator;
+        }
+
+        // Authenticators not registered as services are not indexed.
         for (ApplicationAuthenticator authenticator : FrameworkServiceComponent.getAuthenticators()) {
 
             if (name.equals(authenticator.getName())) {
@@ -255,7 +262,8 @@ public class FrameworkUtils {
 
         AuthenticationContext context = null;
 
-        for (ApplicationAuthenticator authenticator : FrameworkServiceComponent.getAuthenticators()) {
+        for (ApplicationAuthenticator authenticator :
+                AuthenticatorRegistry.getInstance().getCandidateAuthenticators(request)) {
             try {
                 String contextIdentifier = authenticator.getContextIdentifier(request);
 
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authentication.framework.benchmark;
+
+import org.apache.commons.lang.StringUtils;
+import org.wso2.carbon.identity.application.authentication.framework.AbstractApplicationAuthenticator;
+import org.wso2.carbon.identity.application.authentication.framework.AuthenticatorRoutingHints;
+import org.wso2.carbon.identity.application.authentication.framework.FederatedApplicationAuthenticator;
+import org.wso2.carbon.identity.application.authentication.framework.context.AuthenticationContext;
+import org.wso2.carbon.identity.application.authentication.framework.exception.AuthenticationFailedException;
+import org.wso2.carbon.identity.application.authentication.framework.model.AuthenticatedUser;
+import org.wso2.carbon.identity.application.common.model.ClaimMapping;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Outbound authenticator of the login benchmark, which stands for a federated protocol. The user is sent to the
+ * identity provider with the context identifier as the state, and the identity provider returns the state and an
+ * assertion naming the user. The user gets a value for each remote claim mapped by the identity provider.
+ */
+public class BenchmarkFederatedAuthenticator extends AbstractApplicationAuthenticator
+        implements FederatedApplicationAuthenticator, AuthenticatorRoutingHints {
+
+    public static final String AUTHENTICATOR_NAME = "BenchmarkFederatedAuthenticator";
+    public static final String STATE = "state";
+    public static final String ASSERTION = "assertion";
+
+    private static final long serialVersionUID = -2735071458374802614L;
+
+    /**
+     * Returns the authorization endpoint of a simulated identity provider.
+     *
+     * @param idPName Name of the identity provider
+     * @return Authorization endpoint URL
+     */
+    public static String getAuthorizationEndpoint(String idPName) {
+        return "https://" + idPName + ".example.com/authorize";
+    }
+
+    @Override
+    public boolean canHandle(HttpServletRequest request) {
+        return request.getParameter(STATE) != null && request.getParameter(ASSERTION) != null;
+    }
+
+    @Override
+    public Set<String> getClaimedRequestParameters() {
+        return Collections.singleton(STATE);
+    }
+
+    @Override
+    protected void initiateAuthenticationRequest(HttpServletRequest request, HttpServletResponse response,
+                                                 AuthenticationContext context)
+            throws AuthenticationFailedException {
+
+        try {
+            response.sendRedirect(getAuthorizationEndpoint(context.getExternalIdP().getIdPName()) + "?" + STATE +
+                    "=" + context.getContextIdentifier());
+        } catch (IOException e) {
+            throw new AuthenticationFailedException("Error while redirecting to the identity provider", e);
+        }
+    }
+
+    @Override
+    protected void processAuthenticationResponse(HttpServletRequest request, HttpServletResponse response,
+                                                 AuthenticationContext context)
+            throws AuthenticationFailedException {
+
+        String subject = request.getParameter(ASSERTION);
+        if (StringUtils.isBlank(subject)) {
+            throw new AuthenticationFailedException("The identity provider did not assert a subject");
+        }
+
+        Map<ClaimMapping, String> userAttributes = new HashMap<>();
+        for (ClaimMapping claimMapping : context.getExternalIdP().getClaimMappings()) {
+            String remoteClaimURI = claimMapping.getRemoteClaim().getClaimUri();
+            userAttributes.put(ClaimMapping.build(remoteClaimURI, remoteClaimURI, null, false),
+                    remoteClaimURI + "-" + subject);
+        }
+        AuthenticatedUser authenticatedUser =
+                AuthenticatedUser.createFederateAuthenticatedUserFromSubjectIdentifier(subject);
+        authenticatedUser.setUserAttributes(userAttributes);
+        context.setSubject(authenticatedUser);
+    }
+
+    @Override
+    protected boolean retryAuthenticationEnabled() {
+        return false;
+    }
+
+    @Override
+    public String getContextIdentifier(HttpServletRequest request) {
+        return request.getParameter(STATE);
+    }
+
+    @Override
+    public String getName() {
+        return AUTHENTICATOR_NAME;
+    }
+
+    @Override
+    public String getFriendlyName() {
+        return AUTHENTICATOR_NAME;
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authentication.framework.benchmark;
+
+import org.wso2.carbon.identity.application.authentication.framework.AbstractApplicationAuthenticator;
+import org.wso2.carbon.identity.application.authentication.framework.AuthenticatorRoutingHints;
+import org.wso2.carbon.identity.application.authentication.framework.LocalApplicationAuthenticator;
+import org.wso2.carbon.identity.application.authentication.framework.config.ConfigurationFacade;
+import org.wso2.carbon.identity.application.authentication.framework.config.model.StepConfig;
+import org.wso2.carbon.identity.application.authentication.framework.context.AuthenticationContext;
+import org.wso2.carbon.identity.application.authentication.framework.exception.AuthenticationFailedException;
+import org.wso2.carbon.identity.application.authentication.framework.internal.FrameworkServiceDataHolder;
+import org.wso2.carbon.identity.application.authentication.framework.model.AuthenticatedUser;
+import org.wso2.carbon.identity.application.authentication.framework.util.FrameworkConstants;
+import org.wso2.carbon.user.api.UserStoreException;
+import org.wso2.carbon.utils.multitenancy.MultitenantConstants;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Local authenticator of the login benchmark, which sends the user to the login page and verifies the submitted
+ * credential against {@link BenchmarkUserStoreManager}. The password authenticator identifies the user, and the one
+ * time code authenticator verifies the user identified by an earlier step.
+ */
+public class BenchmarkLocalAuthenticator extends AbstractApplicationAuthenticator
+        implements LocalApplicationAuthenticator, AuthenticatorRoutingHints {
+
+    public static final String PASSWORD_AUTHENTICATOR_NAME = "BenchmarkPasswordAuthenticator";
+    public static final String ONE_TIME_CODE_AUTHENTICATOR_NAME = "BenchmarkOneTimeCodeAuthenticator";
+    public static final String USER_NAME = "username";
+    public static final String PASSWORD = "password";
+    public static final String ONE_TIME_CODE = "oneTimeCode";
+
+    private static final long serialVersionUID = 6032475125962390816L;
+
+    private final String name;
+    private final String credentialParameter;
+
+    private BenchmarkLocalAuthenticator(String name, String credentialParameter) {
+
+        this.name = name;
+        this.credentialParameter = credentialParameter;
+    }
+
+    public static BenchmarkLocalAuthenticator createPasswordAuthenticator() {
+        return new BenchmarkLocalAuthenticator(PASSWORD_AUTHENTICATOR_NAME, PASSWORD);
+    }
+
+    public static BenchmarkLocalAuthenticator createOneTimeCodeAuthenticator() {
+        return new BenchmarkLocalAuthenticator(ONE_TIME_CODE_AUTHENTICATOR_NAME, ONE_TIME_CODE);
+    }
+
+    @Override
+    public boolean canHandle(HttpServletRequest request) {
+        return request.getParameter(credentialParameter) != null;
+    }
+
+    @Override
+    public Set<String> getClaimedRequestParameters() {
+        return Collections.singleton(credentialParameter);
+    }
+
+    @Override
+    protected void initiateAuthenticationRequest(HttpServletRequest request, HttpServletResponse response,
+                                                 AuthenticationContext context)
+            throws AuthenticationFailedException {
+
+        String loginPage = ConfigurationFacade.getInstance().getAuthenticationEndpointURL();
+        try {
+            response.sendRedirect(loginPage + "?" + context.getContextIdIncludedQueryParams() + "&authenticators=" +
+                    getName() + ":" + FrameworkConstants.LOCAL_IDP_NAME);
+        } catch (IOException e) {
+            throw new AuthenticationFailedException("Error while redirecting to the login page", e);
+        }
+    }
+
+    @Override
+    protected void processAuthenticationResponse(HttpServletRequest request, HttpServletResponse response,
+                                                 AuthenticationContext context)
+            throws AuthenticationFailedException {
+
+        BenchmarkUserStoreManager userStore = getUserStore();
+        String credential = request.getParameter(credentialParameter);
+        String userName;
+        boolean authenticated;
+        if (PASSWORD.equals(credentialParameter)) {
+            userName = request.getParameter(USER_NAME);
+            try {
+                authenticated = userStore.authenticate(userName, credential);
+            } catch (org.wso2.carbon.user.core.UserStoreException e) {
+                throw new AuthenticationFailedException("Error while authenticating user: " + userName, e);
+            }
+        } else {
+            AuthenticatedUser identifiedUser = getIdentifiedUser(context);
+            if (identifiedUser == null) {
+                throw new AuthenticationFailedException("No user is identified by the earlier steps");
+            }
+            userName = identifiedUser.getUserName();
+            authenticated = userStore.verifyOneTimeCode(userName, credential);
+        }
+        if (!authenticated) {
+            throw new AuthenticationFailedException("Invalid credential of user: " + userName);
+        }
+        context.setSubject(AuthenticatedUser.createLocalAuthenticatedUserFromSubjectIdentifier(userName));
+    }
+
+    @Override
+    protected boolean retryAuthenticationEnabled() {
+        return false;
+    }
+
+    @Override
+    public String getContextIdentifier(HttpServletRequest request) {
+        return canHandle(request) ? request.getParameter(FrameworkConstants.SESSION_DATA_KEY) : null;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getFriendlyName() {
+        return name;
+    }
+
+    private static AuthenticatedUser getIdentifiedUser(AuthenticationContext context) {
+
+        for (StepConfig stepConfig : context.getSequenceConfig().getStepMap().values()) {
+            if (stepConfig.getOrder() < context.getCurrentStep() && stepConfig.getAuthenticatedUser() != null) {
+                return stepConfig.getAuthenticatedUser();
+            }
+        }
+        return null;
+    }
+
+    private static BenchmarkUserStoreManager getUserStore() throws AuthenticationFailedException {
+
+        try {
+            return (BenchmarkUserStoreManager) FrameworkServiceDataHolder.getInstance().getRealmService()
+                    .getTenantUserRealm(MultitenantConstants.SUPER_TENANT_ID).getUserStoreManager();
+        } catch (UserStoreException e) {
+            throw new AuthenticationFailedException("Error while retrieving the user store of the super tenant", e);
+        }
+    }
+}
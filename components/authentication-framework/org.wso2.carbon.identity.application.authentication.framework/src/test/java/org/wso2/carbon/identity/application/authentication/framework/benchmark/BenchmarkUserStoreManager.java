@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authentication.framework.benchmark;
+
+import org.wso2.carbon.identity.common.testng.realm.MockUserStoreManager;
+import org.wso2.carbon.user.api.RealmConfiguration;
+import org.wso2.carbon.user.core.UserCoreConstants;
+import org.wso2.carbon.user.core.UserStoreException;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In memory user store of the login benchmark. Every user has a password, a one time code for the second step of
+ * the multi step logins, and a value for each of the local claims of the benchmark.
+ */
+public class BenchmarkUserStoreManager extends MockUserStoreManager {
+
+    private final Map<String, BenchmarkUser> users = new ConcurrentHashMap<>();
+
+    public BenchmarkUserStoreManager() {
+
+        setRealmConfiguration(new RealmConfiguration());
+        addSecondaryUserStoreManager(UserCoreConstants.PRIMARY_DEFAULT_DOMAIN_NAME, this);
+    }
+
+    public void addUser(String userName, String password, String oneTimeCode) {
+        users.put(userName, new BenchmarkUser(password, oneTimeCode));
+    }
+
+    @Override
+    public boolean authenticate(String userName, Object credential) throws UserStoreException {
+
+        BenchmarkUser user = users.get(userName);
+        return user != null && user.password.equals(credential);
+    }
+
+    /**
+     * Verifies the one time code of a user, which is the second factor of the multi step logins.
+     *
+     * @param userName    User name
+     * @param oneTimeCode One time code
+     * @return Whether the code is the one of the user
+     */
+    public boolean verifyOneTimeCode(String userName, String oneTimeCode) {
+
+        BenchmarkUser user = users.get(userName);
+        return user != null && user.oneTimeCode.equals(oneTimeCode);
+    }
+
+    @Override
+    public boolean isExistingUser(String userName) throws UserStoreException {
+        return users.containsKey(userName);
+    }
+
+    @Override
+    public String getUserClaimValue(String userName, String claim, String profileName) throws UserStoreException {
+        return users.containsKey(userName) ? getClaimValue(userName, claim) : null;
+    }
+
+    @Override
+    public Map<String, String> getUserClaimValues(String userName, String[] claims, String profileName)
+            throws UserStoreException {
+
+        if (!users.containsKey(userName)) {
+            throw new UserStoreException("UserNotFound: User " + userName + " does not exist in the user store");
+        }
+        Map<String, String> claimValues = new HashMap<>();
+        for (String claim : claims) {
+            claimValues.put(claim, getClaimValue(userName, claim));
+        }
+        return claimValues;
+    }
+
+    private static String getClaimValue(String userName, String claim) {
+        return claim.substring(claim.lastIndexOf('/') + 1) + "-" + userName;
+    }
+
+    private static final class BenchmarkUser {
+
+        private final String password;
+        private final String oneTimeCode;
+
+        private BenchmarkUser(String password, String oneTimeCode) {
+
+            this.password = password;
+            this.oneTimeCode = oneTimeCode;
+        }
+    }
+}
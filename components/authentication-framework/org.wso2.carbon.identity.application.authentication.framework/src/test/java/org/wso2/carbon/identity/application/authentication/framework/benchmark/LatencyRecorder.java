@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authentication.framework.benchmark;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latencies of the logins of a measured run. Each thread records into its own recorder, and the recorders of the
+ * threads are merged once the run is over, so that recording does not add contention to the measured code.
+ */
+public class LatencyRecorder {
+
+    private long[] latencies;
+    private int count;
+
+    public LatencyRecorder(int expectedCount) {
+        latencies = new long[Math.max(1, expectedCount)];
+    }
+
+    /**
+     * Records the latency of a login.
+     *
+     * @param latencyInNanos Latency in nanoseconds
+     */
+    public void record(long latencyInNanos) {
+
+        if (count == latencies.length) {
+            latencies = Arrays.copyOf(latencies, count * 2);
+        }
+        latencies[count++] = latencyInNanos;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Merges the latencies of the given recorders.
+     *
+     * @param recorders Recorders of the threads of a run
+     * @return Recorder with the latencies of all of the given recorders
+     */
+    public static LatencyRecorder merge(Iterable<LatencyRecorder> recorders) {
+
+        LatencyRecorder merged = new LatencyRecorder(0);
+        for (LatencyRecorder recorder : recorders) {
+            for (int i = 0; i < recorder.count; i++) {
+                merged.record(recorder.latencies[i]);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Returns the latency below which the given percentage of the recorded latencies fall, using the nearest rank.
+     *
+     * @param percentile Percentile between 0 and 100
+     * @return Latency in nanoseconds, or 0 if nothing is recorded
+     */
+    public long getPercentile(double percentile) {
+
+        if (count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100 * count);
+        return sorted[Math.min(count, Math.max(1, rank)) - 1];
+    }
+
+    /**
+     * Builds the report of a run.
+     *
+     * @param scenario           Name of the scenario
+     * @param elapsedTimeInNanos Wall clock time of the run
+     * @return Throughput and latency percentiles of the run
+     */
+    public String getReport(String scenario, long elapsedTimeInNanos) {
+
+        double throughput = elapsedTimeInNanos <= 0 ? 0 : count * (double) TimeUnit.SECONDS.toNanos(1) /
+                elapsedTimeInNanos;
+        return String.format("%s: %d logins, %.1f logins/s, p50 %.3f ms, p99 %.3f ms, max %.3f ms", scenario, count,
+                throughput, toMillis(getPercentile(50)), toMillis(getPercentile(99)), toMillis(getPercentile(100)));
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authentication.framework.benchmark;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.carbon.context.PrivilegedCarbonContext;
+import org.wso2.carbon.identity.application.authentication.framework.model.AuthenticationResult;
+import org.wso2.carbon.identity.common.testng.WithCarbonHome;
+import org.wso2.carbon.identity.common.testng.WithH2Database;
+import org.wso2.carbon.utils.multitenancy.MultitenantConstants;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Login benchmark of the authentication framework. Concurrent browsers log in through the request coordinator, and
+ * the latency of each complete login, from the inbound request to the redirect back to the inbound protocol, is
+ * reported as throughput and percentiles.
+ * <p>
+ * The benchmark is not part of the unit test suite. It runs with the benchmark profile of the module:
+ * <pre>
+ * mvn test -Dbenchmark=true -Dbenchmark.threads=8 -Dbenchmark.iterations=10000
+ * </pre>
+ * See {@link LoginBenchmarkConfig} for the parameters of the benchmark.
+ */
+@WithCarbonHome
+@WithH2Database(files = {"dbScripts/identity-session-store.sql"})
+public class LoginBenchmark {
+
+    private static final Log log = LogFactory.getLog(LoginBenchmark.class);
+
+    private LoginBenchmarkConfig config;
+    private LoginBenchmarkEnvironment environment;
+
+    @BeforeClass
+    public void setUp() throws Exception {
+
+        config = LoginBenchmarkConfig.fromSystemProperties();
+        environment = new LoginBenchmarkEnvironment(config);
+        environment.deploy();
+        log.info("Running the login benchmark with " + config);
+    }
+
+    @Test
+    public void testMultiStepLogin() throws Exception {
+
+        runScenario("Multi step login", new LoginScenario() {
+            @Override
+            public SimulatedBrowser getBrowser(int iteration) {
+                return environment.createBrowser(iteration);
+            }
+
+            @Override
+            public String getServiceProvider(int iteration) {
+                return environment.getMultiStepServiceProvider(iteration);
+            }
+        });
+    }
+
+    @Test
+    public void testFederatedLogin() throws Exception {
+
+        runScenario("Federated login", new LoginScenario() {
+            @Override
+            public SimulatedBrowser getBrowser(int iteration) {
+                return environment.createBrowser(iteration);
+            }
+
+            @Override
+            public String getServiceProvider(int iteration) {
+                return environment.getFederatedServiceProvider(iteration);
+            }
+        });
+    }
+
+    @Test
+    public void testSingleSignOnLogin() throws Exception {
+
+        final int threads = config.getThreads();
+        final SimulatedBrowser[] browsers = new SimulatedBrowser[config.getSessions()];
+        startTenantFlow();
+        try {
+            for (int i = 0; i < browsers.length; i++) {
+                browsers[i] = environment.createBrowser(i);
+                assertLoggedIn(browsers[i], browsers[i].login(environment.getMultiStepServiceProvider(i)));
+            }
+        } finally {
+            PrivilegedCarbonContext.endTenantFlow();
+        }
+
+        // Each login thread uses only its own browsers, as a browser does not log in to two service providers at
+        // the same time. The logins of a thread rotate through its browsers and the service providers.
+        runScenario("Single sign on login", new LoginScenario() {
+            @Override
+            public SimulatedBrowser getBrowser(int iteration) {
+
+                int thread = iteration % threads;
+                int ownedBrowsers = (browsers.length - thread + threads - 1) / threads;
+                return browsers[thread + (iteration / threads % ownedBrowsers) * threads];
+            }
+
+            @Override
+            public String getServiceProvider(int iteration) {
+                return environment.getMultiStepServiceProvider(iteration + 1);
+            }
+        });
+    }
+
+    private void runScenario(String name, LoginScenario scenario) throws Exception {
+
+        ExecutorService executor = Executors.newFixedThreadPool(config.getThreads());
+        try {
+            runLogins(executor, scenario, config.getWarmUpIterations());
+
+            long startTime = System.nanoTime();
+            LatencyRecorder latencies = runLogins(executor, scenario, config.getIterations());
+            long elapsedTime = System.nanoTime() - startTime;
+
+            assertEquals(latencies.getCount(), config.getIterations(), "Not all the logins of " + name +
+                    " completed.");
+            log.info(latencies.getReport(name, elapsedTime));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private LatencyRecorder runLogins(ExecutorService executor, LoginScenario scenario, int iterations)
+            throws Exception {
+
+        List<Future<LatencyRecorder>> threads = new ArrayList<>();
+        for (int thread = 0; thread < config.getThreads(); thread++) {
+            threads.add(executor.submit(new LoginThread(scenario, thread, iterations)));
+        }
+        List<LatencyRecorder> latencies = new ArrayList<>();
+        for (Future<LatencyRecorder> thread : threads) {
+            latencies.add(thread.get());
+        }
+        return LatencyRecorder.merge(latencies);
+    }
+
+    private static void assertLoggedIn(SimulatedBrowser browser, AuthenticationResult result) {
+
+        assertTrue(result.isAuthenticated(), "The login of user: " + browser.getUserName() + " failed.");
+        assertNotNull(result.getSubject(), "No subject in the login of user: " + browser.getUserName());
+        assertEquals(result.getSubject().getUserName(), browser.getUserName());
+    }
+
+    private static void startTenantFlow() {
+
+        PrivilegedCarbonContext.startTenantFlow();
+        PrivilegedCarbonContext.getThreadLocalCarbonContext()
+                .setTenantDomain(MultitenantConstants.SUPER_TENANT_DOMAIN_NAME);
+        PrivilegedCarbonContext.getThreadLocalCarbonContext().setTenantId(MultitenantConstants.SUPER_TENANT_ID);
+    }
+
+    /**
+     * Logins of a benchmark scenario, numbered from zero. Login threads take the iterations in turn, so iteration
+     * {@code i} always runs on thread {@code i % threads}.
+     */
+    private interface LoginScenario {
+
+        SimulatedBrowser getBrowser(int iteration);
+
+        String getServiceProvider(int iteration);
+    }
+
+    /**
+     * Runs the logins of one thread of a scenario in the tenant flow of the super tenant, as the inbound protocol
+     * servlets do.
+     */
+    private class LoginThread implements Callable<LatencyRecorder> {
+
+        private final LoginScenario scenario;
+        private final int thread;
+        private final int iterations;
+
+        private LoginThread(LoginScenario scenario, int thread, int iterations) {
+
+            this.scenario = scenario;
+            this.thread = thread;
+            this.iterations = iterations;
+        }
+
+        @Override
+        public LatencyRecorder call() throws IOException {
+
+            LatencyRecorder latencies = new LatencyRecorder(iterations / config.getThreads() + 1);
+            startTenantFlow();
+            try {
+                for (int iteration = thread; iteration < iterations; iteration += config.getThreads()) {
+                    SimulatedBrowser browser = scenario.getBrowser(iteration);
+                    String serviceProvider = scenario.getServiceProvider(iteration);
+
+                    long startTime = System.nanoTime();
+                    AuthenticationResult result = browser.login(serviceProvider);
+                    latencies.record(System.nanoTime() - startTime);
+
+                    assertLoggedIn(browser, result);
+                }
+            } finally {
+                PrivilegedCarbonContext.endTenantFlow();
+            }
+            return latencies;
+        }
+    }
+}
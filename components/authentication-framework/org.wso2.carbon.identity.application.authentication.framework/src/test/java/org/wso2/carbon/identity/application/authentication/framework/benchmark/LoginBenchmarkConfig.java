@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authentication.framework.benchmark;
+
+/**
+ * Size of the login benchmark scenarios, read from system properties so that they can be changed from the maven
+ * command line, eg. -Dbenchmark.serviceProviders=200.
+ */
+public class LoginBenchmarkConfig {
+
+    private final int serviceProviders;
+    private final int identityProviders;
+    private final int claims;
+    private final int sessions;
+    private final int threads;
+    private final int warmUpIterations;
+    private final int iterations;
+
+    private LoginBenchmarkConfig() {
+
+        serviceProviders = getPositiveInteger("benchmark.serviceProviders", 20);
+        identityProviders = getPositiveInteger("benchmark.identityProviders", 10);
+        claims = getPositiveInteger("benchmark.claims", 40);
+        threads = getPositiveInteger("benchmark.threads", 4);
+        // Every thread needs at least one session of its own for the SSO scenario.
+        sessions = Math.max(threads, getPositiveInteger("benchmark.sessions", 100));
+        warmUpIterations = getPositiveInteger("benchmark.warmUpIterations", 500);
+        iterations = getPositiveInteger("benchmark.iterations", 2000);
+    }
+
+    public static LoginBenchmarkConfig fromSystemProperties() {
+        return new LoginBenchmarkConfig();
+    }
+
+    public int getServiceProviders() {
+        return serviceProviders;
+    }
+
+    public int getIdentityProviders() {
+        return identityProviders;
+    }
+
+    public int getClaims() {
+        return claims;
+    }
+
+    public int getSessions() {
+        return sessions;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getWarmUpIterations() {
+        return warmUpIterations;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    @Override
+    public String toString() {
+        return "serviceProviders=" + serviceProviders + ", identityProviders=" + identityProviders + ", claims=" +
+                claims + ", sessions=" + sessions + ", threads=" + threads + ", warmUpIterations=" +
+                warmUpIterations + ", iterations=" + iterations;
+    }
+
+    private static int getPositiveInteger(String name, int defaultValue) {
+
+        String value = System.getProperty(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        int intValue = Integer.parseInt(value.trim());
+        if (intValue <= 0) {
+            throw new IllegalArgumentException(name + " must be a positive integer: " + value);
+        }
+        return intValue;
+    }
+}
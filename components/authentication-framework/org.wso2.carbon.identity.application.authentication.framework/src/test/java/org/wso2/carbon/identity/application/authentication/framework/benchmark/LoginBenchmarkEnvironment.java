@@ -0,0 +1,350 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authentication.framework.benchmark;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.wso2.carbon.identity.application.authentication.framework.ApplicationAuthenticator;
+import org.wso2.carbon.identity.application.authentication.framework.config.builder.FileBasedConfigurationBuilder;
+import org.wso2.carbon.identity.application.authentication.framework.config.loader.UIBasedConfigurationLoader;
+import org.wso2.carbon.identity.application.authentication.framework.internal.AuthenticatorRegistry;
+import org.wso2.carbon.identity.application.authentication.framework.internal.FrameworkServiceDataHolder;
+import org.wso2.carbon.identity.application.authentication.framework.util.FrameworkConstants;
+import org.wso2.carbon.identity.application.common.model.AuthenticationStep;
+import org.wso2.carbon.identity.application.common.model.ClaimConfig;
+import org.wso2.carbon.identity.application.common.model.ClaimMapping;
+import org.wso2.carbon.identity.application.common.model.FederatedAuthenticatorConfig;
+import org.wso2.carbon.identity.application.common.model.IdentityProvider;
+import org.wso2.carbon.identity.application.common.model.IdentityProviderProperty;
+import org.wso2.carbon.identity.application.common.model.LocalAndOutboundAuthenticationConfig;
+import org.wso2.carbon.identity.application.common.model.LocalAuthenticatorConfig;
+import org.wso2.carbon.identity.application.common.model.ServiceProvider;
+import org.wso2.carbon.identity.application.common.model.User;
+import org.wso2.carbon.identity.application.common.util.IdentityApplicationConstants;
+import org.wso2.carbon.identity.application.mgt.ApplicationConstants;
+import org.wso2.carbon.identity.application.mgt.ApplicationManagementServiceImpl;
+import org.wso2.carbon.identity.core.persistence.JDBCPersistenceManager;
+import org.wso2.carbon.identity.core.util.IdentityConfigParser;
+import org.wso2.carbon.identity.core.util.IdentityTenantUtil;
+import org.wso2.carbon.idp.mgt.IdentityProviderManager;
+import org.wso2.carbon.idp.mgt.dao.CacheBackedIdPMgtDAO;
+import org.wso2.carbon.registry.core.service.RegistryService;
+import org.wso2.carbon.user.api.Claim;
+import org.wso2.carbon.user.core.UserCoreConstants;
+import org.wso2.carbon.user.core.UserRealm;
+import org.wso2.carbon.user.core.claim.ClaimManager;
+import org.wso2.carbon.user.core.service.RealmService;
+import org.wso2.carbon.user.core.tenant.TenantManager;
+import org.wso2.carbon.utils.multitenancy.MultitenantConstants;
+
+import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Deployment the login benchmark runs against. Service providers, identity providers and the user realm are served
+ * from memory through the same services the framework uses in a server, so that the framework code between the
+ * inbound request and the response is the code of a real login. The framework configuration is read from the
+ * benchmark configuration files, and sessions are persisted to the H2 database of the test.
+ * <p>
+ * Multi step service providers authenticate the user with a password and a one time code. Federated service
+ * providers send the user to one of the identity providers. All service providers request half of the claims of the
+ * benchmark.
+ */
+public class LoginBenchmarkEnvironment {
+
+    public static final String MULTI_STEP_SERVICE_PROVIDER_PREFIX = "benchmark-multi-step-sp-";
+    public static final String FEDERATED_SERVICE_PROVIDER_PREFIX = "benchmark-federated-sp-";
+    public static final String USER_NAME_PREFIX = "benchmark-user-";
+
+    private static final String IDENTITY_PROVIDER_PREFIX = "benchmark-idp-";
+    private static final String LOCAL_CLAIM_PREFIX = "http://wso2.org/claims/benchmark";
+    private static final String IDP_CLAIM_PREFIX = "http://idp.example.com/claims/attribute";
+    private static final String SP_CLAIM_PREFIX = "http://sp.example.com/claims/attribute";
+    private static final String IDENTITY_CONFIG_FILE = "identity-LoginBenchmark.xml";
+    private static final String APPLICATION_AUTHENTICATION_FILE = "application-authentication-LoginBenchmark.xml";
+
+    private final LoginBenchmarkConfig config;
+    private final Map<String, ServiceProvider> serviceProviders = new HashMap<>();
+    private final Map<String, IdentityProvider> identityProviders = new HashMap<>();
+
+    public LoginBenchmarkEnvironment(LoginBenchmarkConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * Deploys the benchmark. Must be called from the thread the H2 database of the test was created on, as the
+     * database is looked up from the JNDI context of that thread.
+     *
+     * @throws Exception If the deployment fails
+     */
+    public void deploy() throws Exception {
+
+        IdentityConfigParser.getInstance(getClass().getResource(IDENTITY_CONFIG_FILE).getPath());
+        setStaticField(FileBasedConfigurationBuilder.class, "configFilePath",
+                getClass().getResource(APPLICATION_AUTHENTICATION_FILE).getPath());
+        // Looks up the data source once, so that the login threads share it.
+        JDBCPersistenceManager.getInstance();
+
+        deployRealm();
+        deployAuthenticators();
+        deployIdentityProviders();
+        deployServiceProviders();
+        FrameworkServiceDataHolder.getInstance().setSequenceLoader(new UIBasedConfigurationLoader());
+    }
+
+    public String getMultiStepServiceProvider(int index) {
+        return MULTI_STEP_SERVICE_PROVIDER_PREFIX + (index % config.getServiceProviders());
+    }
+
+    public String getFederatedServiceProvider(int index) {
+        return FEDERATED_SERVICE_PROVIDER_PREFIX + (index % config.getServiceProviders());
+    }
+
+    /**
+     * Creates the browser of a user of the benchmark.
+     *
+     * @param index Index of the user, which wraps around the number of sessions of the benchmark
+     * @return Browser without a session
+     */
+    public SimulatedBrowser createBrowser(int index) {
+
+        int user = index % config.getSessions();
+        return new SimulatedBrowser(USER_NAME_PREFIX + user, getPassword(user), getOneTimeCode(user));
+    }
+
+    private void deployRealm() throws Exception {
+
+        BenchmarkUserStoreManager userStore = new BenchmarkUserStoreManager();
+        for (int i = 0; i < config.getSessions(); i++) {
+            userStore.addUser(USER_NAME_PREFIX + i, getPassword(i), getOneTimeCode(i));
+        }
+
+        org.wso2.carbon.user.api.ClaimMapping[] localClaims =
+                new org.wso2.carbon.user.api.ClaimMapping[config.getClaims()];
+        for (int i = 0; i < localClaims.length; i++) {
+            Claim claim = new Claim();
+            claim.setClaimUri(LOCAL_CLAIM_PREFIX + i);
+            localClaims[i] = new org.wso2.carbon.user.api.ClaimMapping();
+            localClaims[i].setClaim(claim);
+        }
+        ClaimManager claimManager = createMock(ClaimManager.class);
+        when(claimManager.getAllClaimMappings(anyString())).thenReturn(localClaims);
+
+        UserRealm realm = createMock(UserRealm.class);
+        when(realm.getUserStoreManager()).thenReturn(userStore);
+        when(realm.getClaimManager()).thenReturn(claimManager);
+
+        TenantManager tenantManager = createMock(TenantManager.class);
+        when(tenantManager.getTenantId(anyString())).thenReturn(MultitenantConstants.SUPER_TENANT_ID);
+        when(tenantManager.isTenantActive(anyInt())).thenReturn(true);
+        RealmService realmService = createMock(RealmService.class);
+        when(realmService.getTenantManager()).thenReturn(tenantManager);
+        when(realmService.getTenantUserRealm(anyInt())).thenReturn(realm);
+        when(realmService.getBootstrapRealm()).thenReturn(realm);
+
+        RegistryService registryService = createMock(RegistryService.class);
+        when(registryService.getUserRealm(anyInt())).thenReturn(realm);
+
+        FrameworkServiceDataHolder.getInstance().setRealmService(realmService);
+        FrameworkServiceDataHolder.getInstance().setRegistryService(registryService);
+        IdentityTenantUtil.setRealmService(realmService);
+    }
+
+    private void deployAuthenticators() {
+
+        List<ApplicationAuthenticator> authenticators = new ArrayList<>();
+        authenticators.add(BenchmarkLocalAuthenticator.createPasswordAuthenticator());
+        authenticators.add(BenchmarkLocalAuthenticator.createOneTimeCodeAuthenticator());
+        authenticators.add(new BenchmarkFederatedAuthenticator());
+        for (ApplicationAuthenticator authenticator : authenticators) {
+            FrameworkServiceDataHolder.getInstance().getAuthenticators().add(authenticator);
+            AuthenticatorRegistry.getInstance().addAuthenticator(authenticator);
+        }
+    }
+
+    private void deployIdentityProviders() throws Exception {
+
+        identityProviders.put(FrameworkConstants.LOCAL_IDP_NAME, createResidentIdentityProvider());
+        for (int i = 0; i < config.getIdentityProviders(); i++) {
+            IdentityProvider identityProvider = createIdentityProvider(IDENTITY_PROVIDER_PREFIX + i);
+            identityProviders.put(identityProvider.getIdentityProviderName(), identityProvider);
+        }
+
+        CacheBackedIdPMgtDAO identityProviderDAO = createMock(CacheBackedIdPMgtDAO.class);
+        when(identityProviderDAO.getIdPByName(any(Connection.class), anyString(), anyInt(), anyString()))
+                .thenAnswer(new Answer<IdentityProvider>() {
+                    @Override
+                    public IdentityProvider answer(InvocationOnMock invocation) {
+                        return identityProviders.get((String) invocation.getArguments()[1]);
+                    }
+                });
+        Field daoField = IdentityProviderManager.class.getDeclaredField("dao");
+        daoField.setAccessible(true);
+        daoField.set(IdentityProviderManager.getInstance(), identityProviderDAO);
+    }
+
+    private void deployServiceProviders() throws Exception {
+
+        for (int i = 0; i < config.getServiceProviders(); i++) {
+            AuthenticationStep passwordStep = createLocalStep(1,
+                    BenchmarkLocalAuthenticator.PASSWORD_AUTHENTICATOR_NAME, true);
+            AuthenticationStep oneTimeCodeStep = createLocalStep(2,
+                    BenchmarkLocalAuthenticator.ONE_TIME_CODE_AUTHENTICATOR_NAME, false);
+            addServiceProvider(MULTI_STEP_SERVICE_PROVIDER_PREFIX + i, 2 * i + 1, passwordStep, oneTimeCodeStep);
+
+            AuthenticationStep federatedStep = new AuthenticationStep();
+            federatedStep.setStepOrder(1);
+            federatedStep.setSubjectStep(true);
+            federatedStep.setAttributeStep(true);
+            federatedStep.setFederatedIdentityProviders(new IdentityProvider[]{
+                    identityProviders.get(IDENTITY_PROVIDER_PREFIX + (i % config.getIdentityProviders()))});
+            addServiceProvider(FEDERATED_SERVICE_PROVIDER_PREFIX + i, 2 * i + 2, federatedStep);
+        }
+
+        ApplicationManagementServiceImpl applicationManagementService =
+                createMock(ApplicationManagementServiceImpl.class);
+        when(applicationManagementService.getServiceProviderByClientId(anyString(), anyString(), anyString()))
+                .thenAnswer(new Answer<ServiceProvider>() {
+                    @Override
+                    public ServiceProvider answer(InvocationOnMock invocation) {
+                        return serviceProviders.get((String) invocation.getArguments()[0]);
+                    }
+                });
+        setStaticField(ApplicationManagementServiceImpl.class, "appMgtService", applicationManagementService);
+    }
+
+    private void addServiceProvider(String name, int applicationId, AuthenticationStep... steps) {
+
+        User owner = new User();
+        owner.setUserName("admin");
+        owner.setUserStoreDomain(UserCoreConstants.PRIMARY_DEFAULT_DOMAIN_NAME);
+        owner.setTenantDomain(MultitenantConstants.SUPER_TENANT_DOMAIN_NAME);
+
+        LocalAndOutboundAuthenticationConfig authenticationConfig = new LocalAndOutboundAuthenticationConfig();
+        authenticationConfig.setAuthenticationType(ApplicationConstants.AUTH_TYPE_FLOW);
+        authenticationConfig.setAuthenticationSteps(steps);
+
+        // Every other claim is requested, so that the claim handling filters the claims of the user.
+        ClaimMapping[] claimMappings = new ClaimMapping[config.getClaims()];
+        for (int i = 0; i < claimMappings.length; i++) {
+            claimMappings[i] = ClaimMapping.build(LOCAL_CLAIM_PREFIX + i, SP_CLAIM_PREFIX + i, null, i % 2 == 0);
+        }
+        ClaimConfig claimConfig = new ClaimConfig();
+        claimConfig.setLocalClaimDialect(false);
+        claimConfig.setClaimMappings(claimMappings);
+
+        ServiceProvider serviceProvider = new ServiceProvider();
+        serviceProvider.setApplicationID(applicationId);
+        serviceProvider.setApplicationName(name);
+        serviceProvider.setOwner(owner);
+        serviceProvider.setLocalAndOutBoundAuthenticationConfig(authenticationConfig);
+        serviceProvider.setClaimConfig(claimConfig);
+        serviceProviders.put(name, serviceProvider);
+    }
+
+    private static AuthenticationStep createLocalStep(int order, String authenticatorName, boolean subjectStep) {
+
+        LocalAuthenticatorConfig authenticatorConfig = new LocalAuthenticatorConfig();
+        authenticatorConfig.setName(authenticatorName);
+        authenticatorConfig.setDisplayName(authenticatorName);
+        authenticatorConfig.setEnabled(true);
+
+        AuthenticationStep step = new AuthenticationStep();
+        step.setStepOrder(order);
+        step.setSubjectStep(subjectStep);
+        step.setAttributeStep(subjectStep);
+        step.setLocalAuthenticatorConfigs(new LocalAuthenticatorConfig[]{authenticatorConfig});
+        return step;
+    }
+
+    private IdentityProvider createIdentityProvider(String name) {
+
+        FederatedAuthenticatorConfig authenticatorConfig = new FederatedAuthenticatorConfig();
+        authenticatorConfig.setName(BenchmarkFederatedAuthenticator.AUTHENTICATOR_NAME);
+        authenticatorConfig.setDisplayName(BenchmarkFederatedAuthenticator.AUTHENTICATOR_NAME);
+        authenticatorConfig.setEnabled(true);
+
+        ClaimMapping[] claimMappings = new ClaimMapping[config.getClaims()];
+        for (int i = 0; i < claimMappings.length; i++) {
+            claimMappings[i] = ClaimMapping.build(LOCAL_CLAIM_PREFIX + i, IDP_CLAIM_PREFIX + i, null, false);
+        }
+        ClaimConfig claimConfig = new ClaimConfig();
+        claimConfig.setLocalClaimDialect(false);
+        claimConfig.setClaimMappings(claimMappings);
+
+        IdentityProvider identityProvider = new IdentityProvider();
+        identityProvider.setIdentityProviderName(name);
+        identityProvider.setEnable(true);
+        identityProvider.setFederatedAuthenticatorConfigs(new FederatedAuthenticatorConfig[]{authenticatorConfig});
+        identityProvider.setDefaultAuthenticatorConfig(authenticatorConfig);
+        identityProvider.setClaimConfig(claimConfig);
+        return identityProvider;
+    }
+
+    private static IdentityProvider createResidentIdentityProvider() {
+
+        IdentityProviderProperty idleSessionTimeout = new IdentityProviderProperty();
+        idleSessionTimeout.setName(IdentityApplicationConstants.SESSION_IDLE_TIME_OUT);
+        idleSessionTimeout.setValue(IdentityApplicationConstants.SESSION_IDLE_TIME_OUT_DEFAULT);
+        IdentityProviderProperty rememberMeTimeout = new IdentityProviderProperty();
+        rememberMeTimeout.setName(IdentityApplicationConstants.REMEMBER_ME_TIME_OUT);
+        rememberMeTimeout.setValue(IdentityApplicationConstants.REMEMBER_ME_TIME_OUT_DEFAULT);
+
+        IdentityProvider identityProvider = new IdentityProvider();
+        identityProvider.setIdentityProviderName(IdentityApplicationConstants.RESIDENT_IDP_RESERVED_NAME);
+        identityProvider.setEnable(true);
+        identityProvider.setPrimary(true);
+        identityProvider.setFederatedAuthenticatorConfigs(new FederatedAuthenticatorConfig[0]);
+        identityProvider.setIdpProperties(new IdentityProviderProperty[]{idleSessionTimeout, rememberMeTimeout});
+        return identityProvider;
+    }
+
+    private static String getPassword(int user) {
+        return "password-" + user;
+    }
+
+    private static String getOneTimeCode(int user) {
+        return String.valueOf(100000 + user % 900000);
+    }
+
+    /**
+     * Creates a mock which does not record its invocations, as the mocks are called by every login.
+     */
+    private static <T> T createMock(Class<T> type) {
+        return mock(type, withSettings().stubOnly());
+    }
+
+    private static void setStaticField(Class<?> type, String name, Object value) throws Exception {
+
+        Field field = type.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(null, value);
+    }
+}
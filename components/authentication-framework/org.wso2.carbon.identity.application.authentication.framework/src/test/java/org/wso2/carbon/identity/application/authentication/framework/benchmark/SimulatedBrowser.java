@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authentication.framework.benchmark;
+
+import org.wso2.carbon.identity.application.authentication.framework.cache.AuthenticationRequestCacheEntry;
+import org.wso2.carbon.identity.application.authentication.framework.cache.AuthenticationResultCacheEntry;
+import org.wso2.carbon.identity.application.authentication.framework.model.AuthenticationRequest;
+import org.wso2.carbon.identity.application.authentication.framework.model.AuthenticationResult;
+import org.wso2.carbon.identity.application.authentication.framework.util.FrameworkConstants;
+import org.wso2.carbon.identity.application.authentication.framework.util.FrameworkUtils;
+import org.wso2.carbon.utils.multitenancy.MultitenantConstants;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import javax.servlet.http.Cookie;
+
+/**
+ * Browser of a single user, which logs in to service providers by following the redirects of the framework. It
+ * keeps the cookies set by the framework, so that a later login of the same browser reuses its session.
+ * <p>
+ * A login starts as the request an inbound protocol servlet forwards to the framework, fills the login page with
+ * the credentials of the user, answers the simulated identity providers with an assertion naming the user, and ends
+ * with the redirect back to the inbound protocol servlet.
+ */
+public class SimulatedBrowser {
+
+    public static final String REQUEST_TYPE = "samlsso";
+    public static final String CALLER_PATH = "/samlsso";
+    public static final String LOGIN_PAGE = "/authenticationendpoint/login.do";
+
+    private static final int MAX_ROUND_TRIPS = 10;
+
+    private final String userName;
+    private final String password;
+    private final String oneTimeCode;
+    private final Map<String, Cookie> cookies = new LinkedHashMap<>();
+
+    public SimulatedBrowser(String userName, String password, String oneTimeCode) {
+
+        this.userName = userName;
+        this.password = password;
+        this.oneTimeCode = oneTimeCode;
+    }
+
+    public String getUserName() {
+        return userName;
+    }
+
+    /**
+     * Logs in to a service provider.
+     *
+     * @param relyingParty Issuer of the service provider
+     * @return Result the framework returns to the inbound protocol servlet
+     * @throws IOException If the framework does not complete the login
+     */
+    public AuthenticationResult login(String relyingParty) throws IOException {
+
+        String callerSessionKey = UUID.randomUUID().toString();
+        SimulatedRequest request = createInboundRequest(callerSessionKey, relyingParty);
+        for (int i = 0; i < MAX_ROUND_TRIPS; i++) {
+            SimulatedResponse response = new SimulatedResponse();
+            FrameworkUtils.getRequestCoordinator().handle(request, response);
+            storeCookies(response);
+
+            String location = response.getRedirectLocation();
+            if (location == null) {
+                throw new IOException("The framework did not redirect the browser of user: " + userName);
+            }
+            if (location.startsWith(CALLER_PATH)) {
+                return getAuthenticationResult(callerSessionKey);
+            }
+            if (location.startsWith(LOGIN_PAGE)) {
+                request = fillLoginPage(getQueryParameters(location));
+            } else if (location.startsWith("https://")) {
+                request = answerIdentityProvider(getQueryParameters(location));
+            } else {
+                throw new IOException("The login of user: " + userName + " failed with redirect: " + location);
+            }
+        }
+        throw new IOException("The login of user: " + userName + " did not complete in " + MAX_ROUND_TRIPS +
+                " round trips");
+    }
+
+    private SimulatedRequest createInboundRequest(String callerSessionKey, String relyingParty) {
+
+        AuthenticationRequest authenticationRequest = new AuthenticationRequest();
+        authenticationRequest.setType(REQUEST_TYPE);
+        authenticationRequest.setCommonAuthCallerPath(CALLER_PATH);
+        authenticationRequest.setRelyingParty(relyingParty);
+        authenticationRequest.setTenantDomain(MultitenantConstants.SUPER_TENANT_DOMAIN_NAME);
+        authenticationRequest.setForceAuth(false);
+        authenticationRequest.setPassiveAuth(false);
+
+        // The inbound protocol servlets hand the request over as an attribute instead of through the cache.
+        SimulatedRequest request = newRequest("GET")
+                .addParameter(FrameworkConstants.SESSION_DATA_KEY, callerSessionKey)
+                .addParameter(FrameworkConstants.RequestParams.TYPE, REQUEST_TYPE);
+        request.setAttribute(FrameworkConstants.RequestAttribute.AUTH_REQUEST,
+                new AuthenticationRequestCacheEntry(authenticationRequest));
+        return request;
+    }
+
+    private SimulatedRequest fillLoginPage(Map<String, String> queryParameters) throws IOException {
+
+        String authenticators = queryParameters.get("authenticators");
+        SimulatedRequest request = newRequest("POST")
+                .addParameter(FrameworkConstants.SESSION_DATA_KEY,
+                        queryParameters.get(FrameworkConstants.SESSION_DATA_KEY));
+        if (authenticators == null) {
+            throw new IOException("The login page of user: " + userName + " has no authenticators");
+        } else if (authenticators.startsWith(BenchmarkLocalAuthenticator.PASSWORD_AUTHENTICATOR_NAME)) {
+            request.addParameter(BenchmarkLocalAuthenticator.USER_NAME, userName)
+                    .addParameter(BenchmarkLocalAuthenticator.PASSWORD, password);
+        } else if (authenticators.startsWith(BenchmarkLocalAuthenticator.ONE_TIME_CODE_AUTHENTICATOR_NAME)) {
+            request.addParameter(BenchmarkLocalAuthenticator.ONE_TIME_CODE, oneTimeCode);
+        } else {
+            throw new IOException("Unknown authenticators on the login page: " + authenticators);
+        }
+        return request;
+    }
+
+    private SimulatedRequest answerIdentityProvider(Map<String, String> queryParameters) {
+
+        return newRequest("POST")
+                .addParameter(BenchmarkFederatedAuthenticator.STATE,
+                        queryParameters.get(BenchmarkFederatedAuthenticator.STATE))
+                .addParameter(BenchmarkFederatedAuthenticator.ASSERTION, userName);
+    }
+
+    private SimulatedRequest newRequest(String method) {
+        return new SimulatedRequest(method, new ArrayList<>(cookies.values()));
+    }
+
+    private void storeCookies(SimulatedResponse response) {
+
+        for (Cookie cookie : response.getCookies()) {
+            if (cookie.getMaxAge() == 0) {
+                cookies.remove(cookie.getName());
+            } else {
+                cookies.put(cookie.getName(), cookie);
+            }
+        }
+    }
+
+    private AuthenticationResult getAuthenticationResult(String callerSessionKey) throws IOException {
+
+        // Read the result the way the inbound protocol servlet does.
+        AuthenticationResultCacheEntry resultCacheEntry =
+                FrameworkUtils.getAuthenticationResultFromCache(callerSessionKey);
+        FrameworkUtils.removeAuthenticationResultFromCache(callerSessionKey);
+        if (resultCacheEntry == null || resultCacheEntry.getResult() == null) {
+            throw new IOException("No authentication result for the login of user: " + userName);
+        }
+        return resultCacheEntry.getResult();
+    }
+
+    private static Map<String, String> getQueryParameters(String location) throws UnsupportedEncodingException {
+
+        Map<String, String> parameters = new HashMap<>();
+        int queryStart = location.indexOf('?');
+        if (queryStart < 0) {
+            return parameters;
+        }
+        for (String parameter : location.substring(queryStart + 1).split("&")) {
+            int separator = parameter.indexOf('=');
+            if (separator > 0) {
+                parameters.put(URLDecoder.decode(parameter.substring(0, separator), "UTF-8"),
+                        URLDecoder.decode(parameter.substring(separator + 1), "UTF-8"));
+            }
+        }
+        return parameters;
+    }
+}
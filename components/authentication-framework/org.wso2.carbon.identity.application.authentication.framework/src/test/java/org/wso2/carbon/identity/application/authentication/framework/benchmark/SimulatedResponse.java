@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authentication.framework.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Response of the common auth servlet to {@link SimulatedBrowser}, which keeps the redirect location and the added
+ * cookies. Everything else is answered by a mock shared by all responses, which does not record its invocations.
+ */
+public class SimulatedResponse extends HttpServletResponseWrapper {
+
+    private static final HttpServletResponse DEFAULT_RESPONSE = mock(HttpServletResponse.class,
+            withSettings().stubOnly());
+
+    private final List<Cookie> cookies = new ArrayList<>();
+    private String redirectLocation;
+
+    public SimulatedResponse() {
+        super(DEFAULT_RESPONSE);
+    }
+
+    @Override
+    public void sendRedirect(String location) {
+        redirectLocation = location;
+    }
+
+    @Override
+    public void addCookie(Cookie cookie) {
+        cookies.add(cookie);
+    }
+
+    public String getRedirectLocation() {
+        return redirectLocation;
+    }
+
+    public List<Cookie> getCookies() {
+        return cookies;
+    }
+}
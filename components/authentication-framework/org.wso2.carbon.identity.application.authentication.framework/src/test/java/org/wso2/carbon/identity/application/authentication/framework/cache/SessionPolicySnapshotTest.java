@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authentication.framework.cache;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.idp.mgt.util.IdPManagementUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Matchers.anyString;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.powermock.api.mockito.PowerMockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+
+@PrepareForTest(IdPManagementUtil.class)
+public class SessionPolicySnapshotTest {
+
+    private static final int TENANT_COUNT = 50;
+    private static final int LOOKUP_COUNT = 100000;
+    private static final int THREAD_COUNT = 8;
+    private static final int IDLE_SESSION_TIMEOUT = 15 * 60;
+    private static final int REMEMBER_ME_TIMEOUT = 14 * 24 * 60 * 60;
+
+    private final AtomicInteger residentIdPReads = new AtomicInteger();
+
+    @BeforeMethod
+    public void setUp() {
+
+        mockStatic(IdPManagementUtil.class);
+        when(IdPManagementUtil.getIdleSessionTimeOut(anyString())).thenAnswer(countResidentIdPRead(
+                IDLE_SESSION_TIMEOUT));
+        when(IdPManagementUtil.getRememberMeTimeout(anyString())).thenAnswer(countResidentIdPRead(
+                REMEMBER_ME_TIMEOUT));
+        SessionPolicySnapshot.invalidate(null);
+        residentIdPReads.set(0);
+    }
+
+    @Test
+    public void testSessionLookupsDoNotReadResidentIdPAfterWarmUp() throws Exception {
+
+        for (int i = 0; i < TENANT_COUNT; i++) {
+            SessionPolicySnapshot.getSnapshot(getTenantDomain(i));
+        }
+        int warmUpReads = residentIdPReads.get();
+        assertEquals(warmUpReads, TENANT_COUNT * 2);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        List<Future<Integer>> results = new ArrayList<>();
+        try {
+            for (int thread = 0; thread < THREAD_COUNT; thread++) {
+                final int firstLookup = thread;
+                results.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        return lookUpSessions(firstLookup);
+                    }
+                }));
+            }
+            int validSessions = 0;
+            for (Future<Integer> result : results) {
+                validSessions += result.get(1, TimeUnit.MINUTES);
+            }
+            assertEquals(validSessions, LOOKUP_COUNT);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(residentIdPReads.get(), warmUpReads);
+    }
+
+    @Test
+    public void testPolicyIsReloadedAfterInvalidation() {
+
+        String tenantDomain = getTenantDomain(0);
+        SessionPolicySnapshot snapshot = SessionPolicySnapshot.getSnapshot(tenantDomain);
+        assertSame(SessionPolicySnapshot.getSnapshot(tenantDomain), snapshot);
+        assertEquals(snapshot.getIdleSessionTimeout(), TimeUnit.SECONDS.toMillis(IDLE_SESSION_TIMEOUT));
+        assertEquals(snapshot.getRememberMeTimeout(), TimeUnit.SECONDS.toMillis(REMEMBER_ME_TIMEOUT));
+
+        SessionPolicySnapshot.invalidate(tenantDomain);
+        assertNotSame(SessionPolicySnapshot.getSnapshot(tenantDomain), snapshot);
+        assertEquals(residentIdPReads.get(), 4);
+    }
+
+    private static int lookUpSessions(int firstLookup) {
+
+        int validSessions = 0;
+        long lastAccessedTime = System.currentTimeMillis();
+        for (int lookup = firstLookup; lookup < LOOKUP_COUNT; lookup += THREAD_COUNT) {
+            SessionPolicySnapshot snapshot = SessionPolicySnapshot.getSnapshot(getTenantDomain(lookup % TENANT_COUNT));
+            if (System.currentTimeMillis() - lastAccessedTime <= snapshot.getIdleSessionTimeout()) {
+                validSessions++;
+            }
+        }
+        return validSessions;
+    }
+
+    private static String getTenantDomain(int tenant) {
+        return "tenant" + tenant + ".com";
+    }
+
+    private Answer<Integer> countResidentIdPRead(final int timeout) {
+
+        return new Answer<Integer>() {
+            @Override
+            public Integer answer(InvocationOnMock invocation) {
+                residentIdPReads.incrementAndGet();
+                return timeout;
+            }
+        };
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authentication.framework.config;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.context.PrivilegedCarbonContext;
+import org.wso2.carbon.identity.application.authentication.framework.config.builder.FileBasedConfigurationBuilder;
+import org.wso2.carbon.identity.application.authentication.framework.config.model.AuthenticatorConfig;
+import org.wso2.carbon.identity.application.authentication.framework.config.model.ExternalIdPConfig;
+import org.wso2.carbon.identity.application.authentication.framework.config.model.SequenceConfig;
+import org.wso2.carbon.identity.application.authentication.framework.config.model.StepConfig;
+import org.wso2.carbon.identity.application.authentication.framework.context.AuthenticationContext;
+import org.wso2.carbon.identity.application.authentication.framework.util.FrameworkConstants;
+import org.wso2.carbon.identity.application.common.model.IdentityProvider;
+import org.wso2.carbon.identity.common.testng.WithCarbonHome;
+import org.wso2.carbon.identity.core.util.IdentityTenantUtil;
+import org.wso2.carbon.idp.mgt.IdentityProviderManager;
+import org.wso2.carbon.idp.mgt.dao.CacheBackedIdPMgtDAO;
+import org.wso2.carbon.user.core.service.RealmService;
+import org.wso2.carbon.user.core.tenant.TenantManager;
+
+import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+@WithCarbonHome
+public class ExternalIdPConfigPrefetcherTest {
+
+    private static final Log log = LogFactory.getLog(ExternalIdPConfigPrefetcherTest.class);
+
+    private static final String APPLICATION_AUTHENTICATION_FILE = "/org/wso2/carbon/identity/application/" +
+            "authentication/framework/handler/step/impl/application-authentication-AdaptiveStepHandlerTest.xml";
+    private static final String TENANT_DOMAIN = "prefetch.com";
+    private static final int TENANT_ID = 7;
+    private static final long DAO_DELAY = 200;
+    private static final List<String> IDP_NAMES = Arrays.asList("facebook", "google", "twitter", "partner");
+
+    // Tenant domain of the carbon context each IdP was loaded in, keyed by the IdP name.
+    private Map<String, String> loadedInTenantDomains;
+    private Object previousIdentityProviderDAO;
+    private RealmService previousRealmService;
+    private Object previousConfigFilePath;
+
+    @BeforeClass
+    public void setUpClass() throws Exception {
+
+        previousIdentityProviderDAO = getField(IdentityProviderManager.getInstance(), IdentityProviderManager.class,
+                "dao");
+        previousRealmService = IdentityTenantUtil.getRealmService();
+        previousConfigFilePath = getField(null, FileBasedConfigurationBuilder.class, "configFilePath");
+    }
+
+    @AfterClass
+    public void tearDownClass() throws Exception {
+
+        setField(IdentityProviderManager.getInstance(), IdentityProviderManager.class, "dao",
+                previousIdentityProviderDAO);
+        IdentityTenantUtil.setRealmService(previousRealmService);
+        setField(null, FileBasedConfigurationBuilder.class, "configFilePath", previousConfigFilePath);
+    }
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+
+        loadedInTenantDomains = new ConcurrentHashMap<>();
+        CacheBackedIdPMgtDAO identityProviderDAO = mock(CacheBackedIdPMgtDAO.class);
+        when(identityProviderDAO.getIdPByName(any(Connection.class), anyString(), anyInt(), anyString()))
+                .thenAnswer(new Answer<IdentityProvider>() {
+                    @Override
+                    public IdentityProvider answer(InvocationOnMock invocation) throws InterruptedException {
+
+                        String idPName = (String) invocation.getArguments()[1];
+                        loadedInTenantDomains.put(idPName,
+                                PrivilegedCarbonContext.getThreadLocalCarbonContext().getTenantDomain());
+                        // Stands for the database round trips of the IdP, its claim and role mappings.
+                        Thread.sleep(DAO_DELAY);
+                        if (!IDP_NAMES.contains(idPName)) {
+                            return null;
+                        }
+                        IdentityProvider identityProvider = new IdentityProvider();
+                        identityProvider.setIdentityProviderName(idPName);
+                        identityProvider.setEnable(true);
+                        return identityProvider;
+                    }
+                });
+        setField(IdentityProviderManager.getInstance(), IdentityProviderManager.class, "dao", identityProviderDAO);
+
+        RealmService realmService = mock(RealmService.class);
+        TenantManager tenantManager = mock(TenantManager.class);
+        when(tenantManager.getTenantId(TENANT_DOMAIN)).thenReturn(TENANT_ID);
+        when(realmService.getTenantManager()).thenReturn(tenantManager);
+        IdentityTenantUtil.setRealmService(realmService);
+
+        setField(null, FileBasedConfigurationBuilder.class, "configFilePath",
+                getClass().getResource(APPLICATION_AUTHENTICATION_FILE).getPath());
+
+        PrivilegedCarbonContext.startTenantFlow();
+        PrivilegedCarbonContext.getThreadLocalCarbonContext().setTenantDomain(TENANT_DOMAIN);
+        PrivilegedCarbonContext.getThreadLocalCarbonContext().setTenantId(TENANT_ID);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        PrivilegedCarbonContext.endTenantFlow();
+    }
+
+    @Test
+    public void testTenantFlowIsCarriedToPrefetch() throws Exception {
+
+        AuthenticationContext context = createContext();
+        ExternalIdPConfigPrefetcher.getInstance().prefetch(context);
+
+        assertEquals(context.getPrefetchedIdPConfigs().keySet(), new HashSet<>(IDP_NAMES));
+        for (String idPName : IDP_NAMES) {
+            ExternalIdPConfig externalIdPConfig =
+                    ExternalIdPConfigPrefetcher.getInstance().getIdPConfigByName(context, idPName);
+            assertNotNull(externalIdPConfig);
+            assertEquals(externalIdPConfig.getIdPName(), idPName);
+        }
+        assertEquals(loadedInTenantDomains.size(), IDP_NAMES.size());
+        for (Map.Entry<String, String> loadedInTenantDomain : loadedInTenantDomains.entrySet()) {
+            assertEquals(loadedInTenantDomain.getValue(), TENANT_DOMAIN, "IdP: " + loadedInTenantDomain.getKey() +
+                    " was not loaded in the tenant flow of the request.");
+        }
+        assertEquals(PrivilegedCarbonContext.getThreadLocalCarbonContext().getTenantDomain(), TENANT_DOMAIN);
+    }
+
+    @Test
+    public void testPrefetchReducesLatency() throws Exception {
+
+        long startTime = System.nanoTime();
+        for (String idPName : IDP_NAMES) {
+            assertNotNull(ConfigurationFacade.getInstance().getIdPConfigByName(idPName, TENANT_DOMAIN));
+        }
+        long serialTime = System.nanoTime() - startTime;
+
+        startTime = System.nanoTime();
+        AuthenticationContext context = createContext();
+        ExternalIdPConfigPrefetcher.getInstance().prefetch(context);
+        for (String idPName : IDP_NAMES) {
+            assertNotNull(ExternalIdPConfigPrefetcher.getInstance().getIdPConfigByName(context, idPName));
+        }
+        long prefetchedTime = System.nanoTime() - startTime;
+
+        log.info(String.format("Loading %d IdPs: %d ms one after another, %d ms prefetched.", IDP_NAMES.size(),
+                serialTime / 1000000, prefetchedTime / 1000000));
+        assertTrue(prefetchedTime < serialTime / 2, "Prefetching took: " + prefetchedTime / 1000000 +
+                " ms, while loading the IdPs one after another took: " + serialTime / 1000000 + " ms");
+    }
+
+    @Test
+    public void testIdPIsLoadedOnUseWithoutPrefetch() throws Exception {
+
+        AuthenticationContext context = createContext();
+
+        assertNull(context.getPrefetchedIdPConfigs());
+        assertEquals(ExternalIdPConfigPrefetcher.getInstance().getIdPConfigByName(context, "google").getIdPName(),
+                "google");
+        assertEquals(loadedInTenantDomains.keySet(), Collections.singleton("google"));
+    }
+
+    @Test
+    public void testLocalIdPIsNotPrefetched() {
+
+        AuthenticationContext context = new AuthenticationContext();
+        context.setTenantDomain(TENANT_DOMAIN);
+        context.setSequenceConfig(createSequenceConfig(Collections.<String>emptyList()));
+        ExternalIdPConfigPrefetcher.getInstance().prefetch(context);
+
+        assertTrue(context.getPrefetchedIdPConfigs().isEmpty());
+    }
+
+    @Test
+    public void testPrefetchResumesAfterShutdown() throws Exception {
+
+        ExternalIdPConfigPrefetcher prefetcher = ExternalIdPConfigPrefetcher.getInstance();
+        ExternalIdPConfigPrefetcher.shutdown();
+        assertNull(getField(null, ExternalIdPConfigPrefetcher.class, "instance"));
+        ExternalIdPConfigPrefetcher.shutdown();
+        assertNull(getField(null, ExternalIdPConfigPrefetcher.class, "instance"));
+
+        assertNotSame(ExternalIdPConfigPrefetcher.getInstance(), prefetcher);
+        AuthenticationContext context = createContext();
+        ExternalIdPConfigPrefetcher.getInstance().prefetch(context);
+        assertEquals(context.getPrefetchedIdPConfigs().keySet(), new HashSet<>(IDP_NAMES));
+        for (String idPName : IDP_NAMES) {
+            assertNotNull(ExternalIdPConfigPrefetcher.getInstance().getIdPConfigByName(context, idPName));
+        }
+    }
+
+    private static AuthenticationContext createContext() {
+
+        AuthenticationContext context = new AuthenticationContext();
+        context.setTenantDomain(TENANT_DOMAIN);
+        context.setSequenceConfig(createSequenceConfig(IDP_NAMES));
+        return context;
+    }
+
+    /**
+     * Creates a sequence with a local first step, and a second step offering the given federated IdPs.
+     */
+    private static SequenceConfig createSequenceConfig(List<String> federatedIdPNames) {
+
+        AuthenticatorConfig localAuthenticator = new AuthenticatorConfig();
+        localAuthenticator.setName("BasicAuthenticator");
+        localAuthenticator.getIdpNames().add(FrameworkConstants.LOCAL_IDP_NAME);
+        StepConfig localStep = new StepConfig();
+        localStep.setOrder(1);
+        localStep.getAuthenticatorList().add(localAuthenticator);
+
+        Map<Integer, StepConfig> stepMap = new HashMap<>();
+        stepMap.put(1, localStep);
+        if (!federatedIdPNames.isEmpty()) {
+            StepConfig federatedStep = new StepConfig();
+            federatedStep.setOrder(2);
+            for (String idPName : federatedIdPNames) {
+                AuthenticatorConfig federatedAuthenticator = new AuthenticatorConfig();
+                federatedAuthenticator.setName(idPName + "Authenticator");
+                federatedAuthenticator.getIdpNames().add(idPName);
+                federatedStep.getAuthenticatorList().add(federatedAuthenticator);
+            }
+            stepMap.put(2, federatedStep);
+        }
+
+        SequenceConfig sequenceConfig = new SequenceConfig();
+        sequenceConfig.setStepMap(stepMap);
+        return sequenceConfig;
+    }
+
+    private static Object getField(Object target, Class<?> type, String name) throws Exception {
+
+        Field field = type.getDeclaredField(name);
+        field.setAccessible(true);
+        return field.get(target);
+    }
+
+    private static void setField(Object target, Class<?> type, String name, Object value) throws Exception {
+
+        Field field = type.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authentication.framework.config.loader;
+
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.application.authentication.framework.config.model.SequenceConfig;
+import org.wso2.carbon.identity.application.authentication.framework.config.model.StepConfig;
+import org.wso2.carbon.identity.application.common.model.AuthenticationStep;
+import org.wso2.carbon.identity.application.common.model.FederatedAuthenticatorConfig;
+import org.wso2.carbon.identity.application.common.model.IdentityProvider;
+import org.wso2.carbon.identity.application.common.model.LocalAndOutboundAuthenticationConfig;
+import org.wso2.carbon.identity.application.common.model.LocalAuthenticatorConfig;
+import org.wso2.carbon.identity.application.common.model.ServiceProvider;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertTrue;
+
+@Test
+public class CompiledSequenceConfigCacheTest {
+
+    private static final String TENANT_DOMAIN = "compiled_sequence_domain";
+
+    public void testCompiledSequenceIsCopiedForEachRequest() throws Exception {
+
+        CountingConfigurationLoader loader = new CountingConfigurationLoader();
+        ServiceProvider serviceProvider = createServiceProvider("copiedSequenceApp", 3);
+
+        SequenceConfig first = loader.getSequence(serviceProvider, TENANT_DOMAIN);
+        first.getStepMap().get(1).setCompleted(true);
+        first.getStepMap().get(1).getAuthenticatorList().get(0).getIdpNames().add("modified");
+        SequenceConfig second = loader.getSequence(serviceProvider, TENANT_DOMAIN);
+
+        assertEquals(loader.compiledSteps, 3);
+        assertNotSame(second, first);
+        assertEquals(second.getStepMap().size(), 3);
+        assertFalse(second.getStepMap().get(1).isCompleted());
+        assertEquals(second.getStepMap().get(1).getAuthenticatorList().get(0).getIdpNames().size(), 1);
+        assertEquals(second.getApplicationId(), "copiedSequenceApp");
+    }
+
+    public void testSequenceIsCompiledAgainAfterInvalidation() throws Exception {
+
+        CountingConfigurationLoader loader = new CountingConfigurationLoader();
+        ServiceProvider serviceProvider = createServiceProvider("invalidatedSequenceApp", 2);
+
+        loader.getSequence(serviceProvider, TENANT_DOMAIN);
+        CompiledSequenceConfigCache.getInstance().invalidate(TENANT_DOMAIN);
+        loader.getSequence(serviceProvider, TENANT_DOMAIN);
+        loader.getSequence(serviceProvider, TENANT_DOMAIN);
+
+        assertEquals(loader.compiledSteps, 4);
+    }
+
+    public void testSequenceIsCompiledForNewServiceProviderInstance() throws Exception {
+
+        CountingConfigurationLoader loader = new CountingConfigurationLoader();
+
+        loader.getSequence(createServiceProvider("reloadedSequenceApp", 1), TENANT_DOMAIN);
+        SequenceConfig sequenceConfig = loader.getSequence(createServiceProvider("reloadedSequenceApp", 2),
+                TENANT_DOMAIN);
+
+        assertEquals(loader.compiledSteps, 3);
+        assertEquals(sequenceConfig.getStepMap().size(), 2);
+    }
+
+    public void testCustomStepsAreNotCached() throws Exception {
+
+        CountingConfigurationLoader loader = new CountingConfigurationLoader();
+        ServiceProvider serviceProvider = createServiceProvider("customStepsApp", 2);
+        AuthenticationStep[] customSteps = new AuthenticationStep[]{createStep(1)};
+
+        loader.getSequence(serviceProvider, TENANT_DOMAIN, customSteps);
+        SequenceConfig sequenceConfig = loader.getSequence(serviceProvider, TENANT_DOMAIN, customSteps);
+
+        assertEquals(loader.compiledSteps, 2);
+        assertTrue(sequenceConfig.getStepMap().containsKey(1));
+    }
+
+    public void testSequenceIsCompiledAgainWhenIdPAuthenticatorChanges() throws Exception {
+
+        CountingConfigurationLoader loader = new CountingConfigurationLoader();
+        loader.idpAuthenticators.put("federatedIdP", "SAMLSSOAuthenticator");
+        ServiceProvider serviceProvider = createServiceProvider("federatedSequenceApp", 1);
+        IdentityProvider federatedIdP = new IdentityProvider();
+        federatedIdP.setIdentityProviderName("federatedIdP");
+        serviceProvider.getLocalAndOutBoundAuthenticationConfig().getAuthenticationSteps()[0]
+                .setFederatedIdentityProviders(new IdentityProvider[]{federatedIdP});
+
+        loader.getSequence(serviceProvider, TENANT_DOMAIN);
+        loader.getSequence(serviceProvider, TENANT_DOMAIN);
+        assertEquals(loader.compiledSteps, 1);
+
+        // The default authenticator of the identity provider is changed on another node, so no listener runs here.
+        loader.idpAuthenticators.put("federatedIdP", "OpenIDConnectAuthenticator");
+        SequenceConfig sequenceConfig = loader.getSequence(serviceProvider, TENANT_DOMAIN);
+
+        assertEquals(loader.compiledSteps, 2);
+        assertEquals(sequenceConfig.getStepMap().get(1).getAuthenticatorList().get(0).getName(),
+                "OpenIDConnectAuthenticator");
+    }
+
+    private static ServiceProvider createServiceProvider(String applicationName, int stepCount) {
+
+        AuthenticationStep[] authenticationSteps = new AuthenticationStep[stepCount];
+        for (int i = 0; i < stepCount; i++) {
+            authenticationSteps[i] = createStep(i + 1);
+        }
+        LocalAndOutboundAuthenticationConfig localAndOutboundAuthenticationConfig =
+                new LocalAndOutboundAuthenticationConfig();
+        localAndOutboundAuthenticationConfig.setAuthenticationSteps(authenticationSteps);
+
+        ServiceProvider serviceProvider = new ServiceProvider();
+        serviceProvider.setApplicationName(applicationName);
+        serviceProvider.setLocalAndOutBoundAuthenticationConfig(localAndOutboundAuthenticationConfig);
+        return serviceProvider;
+    }
+
+    private static AuthenticationStep createStep(int stepOrder) {
+
+        LocalAuthenticatorConfig localAuthenticatorConfig = new LocalAuthenticatorConfig();
+        localAuthenticatorConfig.setName("BasicAuthenticator");
+
+        AuthenticationStep authenticationStep = new AuthenticationStep();
+        authenticationStep.setStepOrder(stepOrder);
+        authenticationStep.setLocalAuthenticatorConfigs(new LocalAuthenticatorConfig[]{localAuthenticatorConfig});
+        return authenticationStep;
+    }
+
+    private static class CountingConfigurationLoader extends UIBasedConfigurationLoader {
+
+        private int compiledSteps;
+        private final Map<String, String> idpAuthenticators = new HashMap<>();
+
+        @Override
+        protected StepConfig createStepConfigurationObject(int stepOrder, AuthenticationStep authenticationStep) {
+
+            compiledSteps++;
+            return super.createStepConfigurationObject(stepOrder, authenticationStep);
+        }
+
+        @Override
+        protected FederatedAuthenticatorConfig getDefaultAuthenticatorConfig(IdentityProvider federatedIDP,
+                                                                             String tenantDomain) {
+
+            FederatedAuthenticatorConfig federatedAuthenticatorConfig = new FederatedAuthenticatorConfig();
+            federatedAuthenticatorConfig.setName(idpAuthenticators.get(federatedIDP.getIdentityProviderName()));
+            return federatedAuthenticatorConfig;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authentication.framework.context;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.application.authentication.framework.cache.AuthenticationContextCacheEntry;
+import org.wso2.carbon.identity.application.authentication.framework.config.model.AuthenticatorConfig;
+import org.wso2.carbon.identity.application.authentication.framework.config.model.SequenceConfig;
+import org.wso2.carbon.identity.application.authentication.framework.config.model.StepConfig;
+import org.wso2.carbon.identity.application.authentication.framework.model.AuthenticatedIdPData;
+import org.wso2.carbon.identity.application.authentication.framework.model.AuthenticatedUser;
+import org.wso2.carbon.identity.application.authentication.framework.model.AuthenticationRequest;
+import org.wso2.carbon.identity.application.authentication.framework.store.SessionDataDelta;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+@Test
+public class AuthenticationContextDeltaTest {
+
+    private static final Log log = LogFactory.getLog(AuthenticationContextDeltaTest.class);
+
+    private static final int STEP_COUNT = 3;
+    private static final long BASE_TIME = 1000L;
+    private static final String[] IDPS = {"LOCAL", "Google", "SMSOTP"};
+
+    public void testMultiStepLoginPersistsOnlyChangedParts() throws Exception {
+
+        AuthenticationContext context = createContext();
+        byte[] base = serialize(new AuthenticationContextCacheEntry(context.getSerializableCopy()));
+        context.collectDirtyParts();
+        context.setPersistedBase(BASE_TIME);
+
+        // Without deltas, the whole context is written again after every step.
+        long fullBytesWritten = base.length;
+        long deltaBytesWritten = base.length;
+        List<SessionDataDelta> deltas = new ArrayList<>();
+        for (int step = 1; step <= STEP_COUNT; step++) {
+            authenticateStep(context, step);
+            fullBytesWritten += serialize(new AuthenticationContextCacheEntry(context.getSerializableCopy())).length;
+
+            SessionDataDelta delta = new SessionDataDelta(BASE_TIME, context.addPersistedDelta(),
+                    context.collectDirtyParts());
+            assertEquals(delta.getSequence(), step);
+            assertFalse(delta.getParts().containsKey("authenticationRequest"));
+            assertFalse(delta.getParts().containsKey("previousAuthenticatedIdPs"));
+            deltaBytesWritten += serialize(delta).length;
+            deltas.add(delta);
+        }
+
+        long startTime = System.nanoTime();
+        AuthenticationContext rebuilt = ((AuthenticationContextCacheEntry) deserialize(base)).getContext();
+        for (SessionDataDelta delta : deltas) {
+            rebuilt = rebuilt.withParts(delta.getParts());
+        }
+        long rebuildLatency = System.nanoTime() - startTime;
+        log.info(String.format("Bytes written for a %d step login: %d in full, %d with deltas. Rebuilt the context " +
+                "from %d deltas in %d us.", STEP_COUNT, fullBytesWritten, deltaBytesWritten, deltas.size(),
+                rebuildLatency / 1000));
+
+        assertTrue(deltaBytesWritten < fullBytesWritten);
+        assertEquals(rebuilt.getContextIdentifier(), context.getContextIdentifier());
+        assertEquals(rebuilt.getCurrentStep(), STEP_COUNT);
+        assertEquals(rebuilt.getSubject().getUserName(), "user" + STEP_COUNT);
+        for (int step = 1; step <= STEP_COUNT; step++) {
+            assertTrue(rebuilt.getSequenceConfig().getStepMap().get(step).isCompleted());
+            assertTrue(rebuilt.getCurrentAuthenticatedIdPs().containsKey(IDPS[step - 1]));
+        }
+        assertEquals(rebuilt.getAuthenticationStepHistory().size(), STEP_COUNT);
+        assertEquals(rebuilt.getProperty("step"), STEP_COUNT);
+        assertEquals(rebuilt.getAuthenticationRequest().getRequestQueryParam("SAMLRequest")[0],
+                context.getAuthenticationRequest().getRequestQueryParam("SAMLRequest")[0]);
+        assertEquals(rebuilt.getPreviousAuthenticatedIdPs().size(), 1);
+    }
+
+    public void testUnchangedContextHasNoDirtyParts() throws Exception {
+
+        AuthenticationContext context = createContext();
+        assertFalse(context.isPersisted());
+        assertFalse(context.collectDirtyParts().isEmpty());
+        assertTrue(context.isPersisted());
+        assertTrue(context.collectDirtyParts().isEmpty());
+
+        context.getSequenceConfig().getStepMap().get(1).setCompleted(true);
+        assertEquals(context.collectDirtyParts().keySet().size(), 1);
+        assertTrue(context.collectDirtyParts().isEmpty());
+    }
+
+    public void testUnserializablePropertiesAreKeptInContext() throws Exception {
+
+        AuthenticationContext context = createContext();
+        Object unserializable = new Object();
+        context.setProperty("unserializable", unserializable);
+
+        AuthenticationContext copy = context.getSerializableCopy();
+        context.collectDirtyParts();
+        serialize(copy);
+
+        assertSame(context.getProperty("unserializable"), unserializable);
+        assertNull(copy.getProperty("unserializable"));
+        assertEquals(copy.getProperty("step"), 0);
+    }
+
+    public void testApplyingPartsDoesNotChangeContext() throws Exception {
+
+        AuthenticationContext context = createContext();
+        context.collectDirtyParts();
+        context.addAuthenticationStepHistory(new AuthHistory("BasicAuthenticator", "LOCAL"));
+        context.setCurrentStep(1);
+
+        AuthenticationContext base = createContext();
+        AuthenticationContext rebuilt = base.withParts(context.collectDirtyParts());
+
+        assertEquals(rebuilt.getCurrentStep(), 1);
+        assertEquals(rebuilt.getAuthenticationStepHistory().size(), 1);
+        assertEquals(base.getCurrentStep(), 0);
+        assertTrue(base.getAuthenticationStepHistory().isEmpty());
+        assertFalse(rebuilt.isPersisted());
+    }
+
+    private static AuthenticationContext createContext() {
+
+        AuthenticationContext context = new AuthenticationContext();
+        context.setContextIdentifier("2c5a9b3e-7f51-4d0c-9a7e-3f1d2b6c8e40");
+        context.setTenantDomain("carbon.super");
+        context.setServiceProviderName("travelocity.com");
+        context.setRequestType("samlsso");
+        context.setProperty("step", 0);
+
+        SequenceConfig sequenceConfig = new SequenceConfig();
+        sequenceConfig.setApplicationId("travelocity.com");
+        for (int step = 1; step <= STEP_COUNT; step++) {
+            StepConfig stepConfig = new StepConfig();
+            stepConfig.setOrder(step);
+            stepConfig.getAuthenticatorList().add(new AuthenticatorConfig(IDPS[step - 1] + "Authenticator", true,
+                    null));
+            sequenceConfig.getStepMap().put(step, stepConfig);
+        }
+        context.setSequenceConfig(sequenceConfig);
+
+        AuthenticationRequest authenticationRequest = new AuthenticationRequest();
+        authenticationRequest.setRelyingParty("travelocity.com");
+        authenticationRequest.addRequestQueryParam("SAMLRequest", new String[]{StringUtils.repeat("PHNhbWxwOkF1dGhu",
+                256)});
+        context.setAuthenticationRequest(authenticationRequest);
+
+        AuthenticatedIdPData previousIdPData = new AuthenticatedIdPData();
+        previousIdPData.setIdpName("LOCAL");
+        previousIdPData.setUser(createUser("user0"));
+        context.getPreviousAuthenticatedIdPs().put("LOCAL", previousIdPData);
+        return context;
+    }
+
+    private static void authenticateStep(AuthenticationContext context, int step) {
+
+        AuthenticatedUser user = createUser("user" + step);
+        StepConfig stepConfig = context.getSequenceConfig().getStepMap().get(step);
+        stepConfig.setAuthenticatedUser(user);
+        stepConfig.setAuthenticatedIdP(IDPS[step - 1]);
+        stepConfig.setCompleted(true);
+
+        AuthenticatedIdPData idPData = new AuthenticatedIdPData();
+        idPData.setIdpName(IDPS[step - 1]);
+        idPData.setUser(user);
+        context.getCurrentAuthenticatedIdPs().put(IDPS[step - 1], idPData);
+        context.addAuthenticationStepHistory(new AuthHistory(IDPS[step - 1] + "Authenticator", IDPS[step - 1]));
+        context.setSubject(user);
+        context.setCurrentStep(step);
+        context.setProperty("step", step);
+    }
+
+    private static AuthenticatedUser createUser(String userName) {
+
+        AuthenticatedUser user = new AuthenticatedUser();
+        user.setUserName(userName);
+        user.setTenantDomain("carbon.super");
+        user.setUserStoreDomain("PRIMARY");
+        return user;
+    }
+
+    private static byte[] serialize(Object value) throws IOException {
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (ObjectOutputStream objectOutputStream = new ObjectOutputStream(outputStream)) {
+            objectOutputStream.writeObject(value);
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static Object deserialize(byte[] value) throws IOException, ClassNotFoundException {
+
+        try (ObjectInputStream objectInputStream = new ObjectInputStream(new ByteArrayInputStream(value))) {
+            return objectInputStream.readObject();
+        }
+    }
+}
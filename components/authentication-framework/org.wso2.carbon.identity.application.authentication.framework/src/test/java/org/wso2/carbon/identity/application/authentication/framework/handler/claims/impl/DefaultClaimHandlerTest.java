@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authentication.framework.handler.claims.impl;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.testng.IObjectFactory;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.ObjectFactory;
+import org.testng.annotations.Test;
+import org.wso2.carbon.core.util.AnonymousSessionUtil;
+import org.wso2.carbon.identity.application.authentication.framework.config.model.ApplicationConfig;
+import org.wso2.carbon.identity.application.authentication.framework.config.model.SequenceConfig;
+import org.wso2.carbon.identity.application.authentication.framework.config.model.StepConfig;
+import org.wso2.carbon.identity.application.authentication.framework.context.AuthenticationContext;
+import org.wso2.carbon.identity.application.authentication.framework.model.AuthenticatedUser;
+import org.wso2.carbon.identity.application.authentication.framework.util.FrameworkConstants;
+import org.wso2.carbon.identity.application.common.model.ClaimConfig;
+import org.wso2.carbon.identity.application.common.model.ClaimMapping;
+import org.wso2.carbon.identity.application.common.model.LocalAndOutboundAuthenticationConfig;
+import org.wso2.carbon.identity.application.common.model.ServiceProvider;
+import org.wso2.carbon.registry.core.service.RegistryService;
+import org.wso2.carbon.user.api.Claim;
+import org.wso2.carbon.user.api.RealmConfiguration;
+import org.wso2.carbon.user.core.UserRealm;
+import org.wso2.carbon.user.core.UserStoreManager;
+import org.wso2.carbon.user.core.claim.ClaimManager;
+import org.wso2.carbon.user.core.service.RealmService;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.powermock.api.mockito.PowerMockito.mock;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.powermock.api.mockito.PowerMockito.when;
+import static org.testng.Assert.assertEquals;
+
+@PrepareForTest(AnonymousSessionUtil.class)
+public class DefaultClaimHandlerTest {
+
+    private static final String TENANT_DOMAIN = "carbon.super";
+    private static final String LOCAL_CLAIM_PREFIX = "http://wso2.org/claims/claim";
+    private static final String SP_CLAIM_PREFIX = "http://sp.example.com/claims/claim";
+    private static final int PROFILE_SIZE = 40;
+
+    private final List<Integer> fetchedAttributeCounts = new ArrayList<>();
+    private final Map<String, String> userProfile = new HashMap<>();
+
+    @ObjectFactory
+    public IObjectFactory getObjectFactory() {
+        return new org.powermock.modules.testng.PowerMockObjectFactory();
+    }
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+
+        fetchedAttributeCounts.clear();
+        org.wso2.carbon.user.api.ClaimMapping[] localClaims = new org.wso2.carbon.user.api.ClaimMapping[PROFILE_SIZE];
+        for (int i = 0; i < PROFILE_SIZE; i++) {
+            Claim claim = new Claim();
+            claim.setClaimUri(LOCAL_CLAIM_PREFIX + i);
+            localClaims[i] = new org.wso2.carbon.user.api.ClaimMapping();
+            localClaims[i].setClaim(claim);
+            userProfile.put(LOCAL_CLAIM_PREFIX + i, "value" + i);
+        }
+
+        ClaimManager claimManager = mock(ClaimManager.class);
+        when(claimManager.getAllClaimMappings(anyString())).thenReturn(localClaims);
+
+        // In memory user store which counts the attributes it is asked for.
+        UserStoreManager userStore = mock(UserStoreManager.class);
+        when(userStore.getRealmConfiguration()).thenReturn(mock(RealmConfiguration.class));
+        when(userStore.getUserClaimValues(anyString(), any(String[].class), any(String.class))).thenAnswer(
+                new Answer<Map<String, String>>() {
+                    @Override
+                    public Map<String, String> answer(InvocationOnMock invocation) {
+                        String[] claimURIs = (String[]) invocation.getArguments()[1];
+                        fetchedAttributeCounts.add(claimURIs.length);
+                        Map<String, String> claimValues = new HashMap<>();
+                        for (String claimURI : claimURIs) {
+                            claimValues.put(claimURI, userProfile.get(claimURI));
+                        }
+                        return claimValues;
+                    }
+                });
+
+        UserRealm realm = mock(UserRealm.class);
+        when(realm.getClaimManager()).thenReturn(claimManager);
+        when(realm.getUserStoreManager()).thenReturn(userStore);
+        mockStatic(AnonymousSessionUtil.class);
+        when(AnonymousSessionUtil.getRealmByTenantDomain(any(RegistryService.class), any(RealmService.class),
+                anyString())).thenReturn(realm);
+    }
+
+    @Test
+    public void testOnlyRequiredClaimsAreFetched() throws Exception {
+
+        ServiceProvider serviceProvider = createServiceProvider(1, 2, 3);
+        for (int login = 0; login < 3; login++) {
+            AuthenticationContext context = createContext(serviceProvider);
+            Map<String, String> claims = DefaultClaimHandler.getInstance().handleClaimMappings(createStepConfig(),
+                    context, null, false);
+
+            assertEquals(claims.size(), 3);
+            assertEquals(claims.get(SP_CLAIM_PREFIX + 2), "value2");
+            assertEquals(context.getProperty(FrameworkConstants.SERVICE_PROVIDER_SUBJECT_CLAIM_VALUE), "value5");
+        }
+        // The requested claims, the mandatory claim 4 and the subject claim 5, instead of the whole profile.
+        assertEquals(fetchedAttributeCounts.size(), 3);
+        for (int fetchedAttributeCount : fetchedAttributeCounts) {
+            assertEquals(fetchedAttributeCount, 5);
+        }
+    }
+
+    @Test
+    public void testUpdatedServiceProviderGetsNewPlan() throws Exception {
+
+        DefaultClaimHandler.getInstance().handleClaimMappings(createStepConfig(),
+                createContext(createServiceProvider(1)), null, false);
+        Map<String, String> claims = DefaultClaimHandler.getInstance().handleClaimMappings(createStepConfig(),
+                createContext(createServiceProvider(1, 6, 7, 8)), null, false);
+
+        assertEquals(claims.size(), 4);
+        assertEquals(claims.get(SP_CLAIM_PREFIX + 8), "value8");
+        assertEquals(fetchedAttributeCounts.get(0).intValue(), 3);
+        assertEquals(fetchedAttributeCounts.get(1).intValue(), 6);
+    }
+
+    private static ServiceProvider createServiceProvider(int... requestedClaims) {
+
+        ClaimMapping[] claimMappings = new ClaimMapping[PROFILE_SIZE];
+        for (int i = 0; i < PROFILE_SIZE; i++) {
+            boolean requested = false;
+            for (int requestedClaim : requestedClaims) {
+                requested |= requestedClaim == i;
+            }
+            claimMappings[i] = ClaimMapping.build(LOCAL_CLAIM_PREFIX + i, SP_CLAIM_PREFIX + i, null, requested,
+                    i == 4);
+        }
+        ClaimConfig claimConfig = new ClaimConfig();
+        claimConfig.setClaimMappings(claimMappings);
+        LocalAndOutboundAuthenticationConfig outboundAuthConfig = new LocalAndOutboundAuthenticationConfig();
+        outboundAuthConfig.setSubjectClaimUri(SP_CLAIM_PREFIX + 5);
+
+        ServiceProvider serviceProvider = new ServiceProvider();
+        serviceProvider.setApplicationID(1);
+        serviceProvider.setApplicationName("travelocity");
+        serviceProvider.setClaimConfig(claimConfig);
+        serviceProvider.setLocalAndOutBoundAuthenticationConfig(outboundAuthConfig);
+        return serviceProvider;
+    }
+
+    private static AuthenticationContext createContext(ServiceProvider serviceProvider) {
+
+        SequenceConfig sequenceConfig = new SequenceConfig();
+        sequenceConfig.setApplicationConfig(new ApplicationConfig(serviceProvider));
+        AuthenticationContext context = new AuthenticationContext();
+        context.setTenantDomain(TENANT_DOMAIN);
+        context.setRequestType(FrameworkConstants.RequestType.CLAIM_TYPE_SAML_SSO);
+        context.setSequenceConfig(sequenceConfig);
+        return context;
+    }
+
+    private static StepConfig createStepConfig() {
+
+        AuthenticatedUser authenticatedUser = new AuthenticatedUser();
+        authenticatedUser.setUserName("john");
+        authenticatedUser.setTenantDomain(TENANT_DOMAIN);
+        StepConfig stepConfig = new StepConfig();
+        stepConfig.setAuthenticatedUser(authenticatedUser);
+        return stepConfig;
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authentication.framework.inbound;
+
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.core.handler.HandlerComparator;
+import org.wso2.carbon.identity.core.handler.IdentityHandler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link InboundRouteTable}
+ */
+public class InboundRouteTableTest {
+
+    private static final int HANDLER_COUNT = 20;
+
+    private final AtomicInteger canHandleCalls = new AtomicInteger();
+
+    @Test
+    public void testCandidatesAreInPriorityOrder() throws Exception {
+
+        List<IdentityProcessor> processors = new ArrayList<>();
+        processors.add(new RoutedProcessor("low", 10, "oauth2", null));
+        processors.add(new TestProcessor("unrouted", 20, null, null));
+        processors.add(new RoutedProcessor("high", 90, "oauth2", null));
+        processors.add(new RoutedProcessor("parameter", 50, null, "sessionDataKey"));
+        sortByPriority(processors);
+        InboundRouteTable<IdentityProcessor> routes = new InboundRouteTable<>(processors);
+        assertTrue(routes.hasParameterRoutes());
+
+        IdentityRequest request = createRequest("/oauth2/token", "sessionDataKey");
+        List<IdentityProcessor> candidates = routes.getCandidates(request.getPathInfo(),
+                request.getParameterMap().keySet());
+        assertEquals(getNames(candidates), "high,parameter,unrouted,low");
+
+        request = createRequest("/samlsso", null);
+        candidates = routes.getCandidates(request.getPathInfo(), request.getParameterMap().keySet());
+        assertEquals(getNames(candidates), "unrouted");
+    }
+
+    @Test
+    public void testRoutedProcessorsAreResolvedWithoutScanning() throws Exception {
+
+        List<IdentityProcessor> processors = new ArrayList<>();
+        IdentityRequest[] requests = new IdentityRequest[HANDLER_COUNT];
+        for (int i = 0; i < HANDLER_COUNT; i++) {
+            processors.add(new RoutedProcessor("processor" + i, i, "protocol" + i, null));
+            requests[i] = createRequest("/protocol" + i + "/authorize", null);
+        }
+        sortByPriority(processors);
+        InboundRouteTable<IdentityProcessor> routes = new InboundRouteTable<>(processors);
+
+        canHandleCalls.set(0);
+        for (int i = 0; i < HANDLER_COUNT; i++) {
+            assertEquals(findProcessor(processors, requests[i]).getName(), "processor" + i);
+        }
+        int scanCalls = canHandleCalls.getAndSet(0);
+
+        for (int i = 0; i < HANDLER_COUNT; i++) {
+            List<IdentityProcessor> candidates = routes.getCandidates(requests[i].getPathInfo(),
+                    requests[i].getParameterMap().keySet());
+            assertEquals(findProcessor(candidates, requests[i]).getName(), "processor" + i);
+        }
+
+        assertEquals(canHandleCalls.get(), HANDLER_COUNT);
+        assertEquals(scanCalls, HANDLER_COUNT * (HANDLER_COUNT + 1) / 2);
+    }
+
+    @Test
+    public void testRoutedFactoriesAreResolvedWithoutScanning() {
+
+        List<HttpIdentityRequestFactory> factories = new ArrayList<>();
+        HttpServletRequest[] requests = new HttpServletRequest[HANDLER_COUNT];
+        for (int i = 0; i < HANDLER_COUNT; i++) {
+            factories.add(new RoutedFactory("factory" + i, i, "protocol" + i));
+            requests[i] = mock(HttpServletRequest.class);
+            when(requests[i].getPathInfo()).thenReturn("/protocol" + i + "/authorize");
+        }
+        sortByPriority(factories);
+        InboundRouteTable<HttpIdentityRequestFactory> routes = new InboundRouteTable<>(factories);
+        assertFalse(routes.hasParameterRoutes());
+
+        canHandleCalls.set(0);
+        for (HttpServletRequest request : requests) {
+            List<HttpIdentityRequestFactory> candidates = routes.getCandidates(request.getPathInfo(), null);
+            assertEquals(candidates.size(), 1);
+            assertEquals(candidates.get(0).canHandle(request, null), true);
+        }
+        assertEquals(canHandleCalls.get(), HANDLER_COUNT);
+    }
+
+    /**
+     * Orders handlers the way the framework service component does, highest priority first.
+     */
+    private static <T extends IdentityHandler> void sortByPriority(List<T> handlers) {
+
+        Collections.sort(handlers, new HandlerComparator());
+        Collections.reverse(handlers);
+    }
+
+    private static IdentityProcessor findProcessor(List<IdentityProcessor> processors, IdentityRequest request) {
+
+        for (IdentityProcessor processor : processors) {
+            if (processor.canHandle(request)) {
+                return processor;
+            }
+        }
+        return null;
+    }
+
+    private static IdentityRequest createRequest(String pathInfo, String parameter) throws Exception {
+
+        Map<String, String[]> parameters = new HashMap<>();
+        if (parameter != null) {
+            parameters.put(parameter, new String[]{"value"});
+        }
+        return new IdentityRequest.IdentityRequestBuilder().setPathInfo(pathInfo).setParameters(parameters).build();
+    }
+
+    private static String getNames(List<? extends IdentityHandler> handlers) {
+
+        StringBuilder names = new StringBuilder();
+        for (IdentityHandler handler : handlers) {
+            names.append(names.length() == 0 ? "" : ",").append(handler.getName());
+        }
+        return names.toString();
+    }
+
+    private static Set<String> toSet(String value) {
+        return value == null ? Collections.<String>emptySet() : Collections.singleton(value);
+    }
+
+    private class TestProcessor extends IdentityProcessor {
+
+        private final String name;
+        private final int priority;
+        protected final String pathSegment;
+        protected final String parameter;
+
+        private TestProcessor(String name, int priority, String pathSegment, String parameter) {
+
+            this.name = name;
+            this.priority = priority;
+            this.pathSegment = pathSegment;
+            this.parameter = parameter;
+        }
+
+        @Override
+        public IdentityResponse.IdentityResponseBuilder process(IdentityRequest identityRequest) {
+            return null;
+        }
+
+        @Override
+        public String getCallbackPath(IdentityMessageContext context) {
+            return null;
+        }
+
+        @Override
+        public String getRelyingPartyId() {
+            return null;
+        }
+
+        @Override
+        public String getRelyingPartyId(IdentityMessageContext context) {
+            return null;
+        }
+
+        @Override
+        public boolean canHandle(IdentityRequest identityRequest) {
+
+            canHandleCalls.incrementAndGet();
+            return (pathSegment != null && identityRequest.getPathInfo().startsWith("/" + pathSegment + "/")) ||
+                    (parameter != null && identityRequest.getParameter(parameter) != null);
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public int getPriority() {
+            return priority;
+        }
+    }
+
+    private class RoutedProcessor extends TestProcessor implements InboundRoutingHints {
+
+        private RoutedProcessor(String name, int priority, String pathSegment, String parameter) {
+            super(name, priority, pathSegment, parameter);
+        }
+
+        @Override
+        public Set<String> getRoutedPathSegments() {
+            return toSet(pathSegment);
+        }
+
+        @Override
+        public Set<String> getRoutedParameters() {
+            return toSet(parameter);
+        }
+    }
+
+    private class RoutedFactory extends HttpIdentityRequestFactory implements InboundRoutingHints {
+
+        private final String name;
+        private final int priority;
+        private final String pathSegment;
+
+        private RoutedFactory(String name, int priority, String pathSegment) {
+
+            this.name = name;
+            this.priority = priority;
+            this.pathSegment = pathSegment;
+        }
+
+        @Override
+        public boolean canHandle(HttpServletRequest request, HttpServletResponse response) {
+
+            canHandleCalls.incrementAndGet();
+            return request.getPathInfo().startsWith("/" + pathSegment + "/");
+        }
+
+        @Override
+        public Set<String> getRoutedPathSegments() {
+            return toSet(pathSegment);
+        }
+
+        @Override
+        public Set<String> getRoutedParameters() {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public int getPriority() {
+            return priority;
+        }
+    }
+}
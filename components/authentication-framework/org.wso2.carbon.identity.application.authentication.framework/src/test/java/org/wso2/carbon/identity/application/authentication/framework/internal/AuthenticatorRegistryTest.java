@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authentication.framework.internal;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.application.authentication.framework.ApplicationAuthenticator;
+import org.wso2.carbon.identity.application.authentication.framework.AuthenticatorRoutingHints;
+import org.wso2.carbon.identity.application.authentication.framework.MockAuthenticator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.http.HttpServletRequest;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+public class AuthenticatorRegistryTest {
+
+    private static final int HINTED_AUTHENTICATOR_COUNT = 36;
+    private static final int UNHINTED_AUTHENTICATOR_COUNT = 4;
+
+    private AuthenticatorRegistry registry;
+    private List<ApplicationAuthenticator> authenticators;
+    private final AtomicInteger contextIdentifierCalls = new AtomicInteger();
+
+    @BeforeMethod
+    public void setUp() {
+
+        registry = new AuthenticatorRegistry();
+        authenticators = new ArrayList<>();
+        for (int i = 0; i < HINTED_AUTHENTICATOR_COUNT; i++) {
+            authenticators.add(new HintedAuthenticator("HintedAuthenticator" + i, "state" + i,
+                    contextIdentifierCalls));
+            if (i % (HINTED_AUTHENTICATOR_COUNT / UNHINTED_AUTHENTICATOR_COUNT) == 0) {
+                authenticators.add(new UnhintedAuthenticator("UnhintedAuthenticator" + i, contextIdentifierCalls));
+            }
+        }
+        for (ApplicationAuthenticator authenticator : authenticators) {
+            registry.addAuthenticator(authenticator);
+        }
+    }
+
+    @Test
+    public void testCandidatesAreFilteredByClaimedParameters() {
+
+        HttpServletRequest request = createRequest("state20");
+        List<ApplicationAuthenticator> candidates = registry.getCandidateAuthenticators(request);
+        assertEquals(candidates.size(), UNHINTED_AUTHENTICATOR_COUNT + 1);
+
+        // Registration order is kept, so the unhinted authenticators registered first are asked first.
+        List<String> candidateNames = new ArrayList<>();
+        for (ApplicationAuthenticator candidate : candidates) {
+            candidateNames.add(candidate.getName());
+        }
+        assertEquals(candidateNames.indexOf("HintedAuthenticator20"), 3);
+        assertEquals(registry.getCandidateAuthenticators(createRequest(null)).size(), UNHINTED_AUTHENTICATOR_COUNT);
+    }
+
+    @Test
+    public void testAuthenticatorsAreLookedUpByName() {
+
+        assertSame(registry.getAuthenticator("HintedAuthenticator7"), authenticators.get(8));
+        registry.removeAuthenticator(authenticators.get(8));
+        assertNull(registry.getAuthenticator("HintedAuthenticator7"));
+        assertEquals(registry.getCandidateAuthenticators(createRequest("state7")).size(),
+                UNHINTED_AUTHENTICATOR_COUNT);
+    }
+
+    @Test
+    public void testIndexedDispatchOnlyAsksCandidates() {
+
+        HttpServletRequest[] requests = new HttpServletRequest[HINTED_AUTHENTICATOR_COUNT];
+        int expectedLinearScanCalls = 0;
+        int expectedIndexCalls = 0;
+        for (int i = 0; i < requests.length; i++) {
+            requests[i] = createRequest("state" + i);
+            // The linear scan asks every authenticator registered before the one claiming the request, while the
+            // index only asks the unhinted ones among them.
+            int position = getPosition("HintedAuthenticator" + i);
+            expectedLinearScanCalls += position + 1;
+            expectedIndexCalls += position - i + 1;
+        }
+
+        contextIdentifierCalls.set(0);
+        int linearScanHits = dispatchByLinearScan(requests);
+        int linearScanCalls = contextIdentifierCalls.getAndSet(0);
+        int indexHits = dispatchByIndex(requests);
+        int indexCalls = contextIdentifierCalls.get();
+
+        assertEquals(linearScanHits, requests.length);
+        assertEquals(indexHits, requests.length);
+        assertEquals(linearScanCalls, expectedLinearScanCalls);
+        assertEquals(indexCalls, expectedIndexCalls);
+    }
+
+    private int getPosition(String authenticatorName) {
+
+        for (int i = 0; i < authenticators.size(); i++) {
+            if (authenticators.get(i).getName().equals(authenticatorName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int dispatchByLinearScan(HttpServletRequest[] requests) {
+
+        int hits = 0;
+        for (HttpServletRequest request : requests) {
+            hits += dispatch(authenticators, request);
+        }
+        return hits;
+    }
+
+    private int dispatchByIndex(HttpServletRequest[] requests) {
+
+        int hits = 0;
+        for (HttpServletRequest request : requests) {
+            hits += dispatch(registry.getCandidateAuthenticators(request), request);
+        }
+        return hits;
+    }
+
+    private static int dispatch(List<ApplicationAuthenticator> candidates, HttpServletRequest request) {
+
+        for (ApplicationAuthenticator candidate : candidates) {
+            if (candidate.getContextIdentifier(request) != null) {
+                return 1;
+            }
+        }
+        return 0;
+    }
+
+    private static HttpServletRequest createRequest(String stateParameter) {
+
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        Map<String, String[]> parameters = new HashMap<>();
+        parameters.put("sessionDataKey", new String[]{"sessionDataKey"});
+        if (stateParameter != null) {
+            parameters.put(stateParameter, new String[]{"key"});
+            when(request.getParameter(stateParameter)).thenReturn("key");
+        }
+        when(request.getParameterMap()).thenReturn(parameters);
+        return request;
+    }
+
+    private static class UnhintedAuthenticator extends MockAuthenticator {
+
+        private final AtomicInteger contextIdentifierCalls;
+
+        private UnhintedAuthenticator(String name, AtomicInteger contextIdentifierCalls) {
+
+            super(name);
+            this.contextIdentifierCalls = contextIdentifierCalls;
+        }
+
+        @Override
+        public String getContextIdentifier(HttpServletRequest request) {
+
+            contextIdentifierCalls.incrementAndGet();
+            return null;
+        }
+    }
+
+    private static class HintedAuthenticator extends MockAuthenticator implements AuthenticatorRoutingHints {
+
+        private final String stateParameter;
+        private final AtomicInteger contextIdentifierCalls;
+
+        private HintedAuthenticator(String name, String stateParameter, AtomicInteger contextIdentifierCalls) {
+
+            super(name);
+            this.stateParameter = stateParameter;
+            this.contextIdentifierCalls = contextIdentifierCalls;
+        }
+
+        @Override
+        public String getContextIdentifier(HttpServletRequest request) {
+
+            contextIdentifierCalls.incrementAndGet();
+            return request.getParameter(stateParameter);
+        }
+
+        @Override
+        public Set<String> getClaimedRequestParameters() {
+            return Collections.singleton(stateParameter);
+        }
+    }
+}
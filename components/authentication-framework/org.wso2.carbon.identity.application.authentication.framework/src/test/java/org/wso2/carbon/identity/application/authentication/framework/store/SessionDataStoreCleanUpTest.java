@@ -0,0 +1,504 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authentication.framework.store;
+
+import org.apache.commons.dbcp.BasicDataSource;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.reflect.Whitebox;
+import org.testng.IObjectFactory;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.ObjectFactory;
+import org.testng.annotations.Test;
+import org.wso2.carbon.base.MultitenantConstants;
+import org.wso2.carbon.identity.application.authentication.framework.internal.FrameworkServiceDataHolder;
+import org.wso2.carbon.identity.application.authentication.framework.util.FrameworkUtils;
+import org.wso2.carbon.identity.common.testng.MockInitialContextFactory;
+import org.wso2.carbon.identity.common.testng.WithCarbonHome;
+import org.wso2.carbon.identity.core.persistence.JDBCPersistenceManager;
+import org.wso2.carbon.identity.core.util.IdentityTenantUtil;
+import org.wso2.carbon.idp.mgt.util.IdPManagementUtil;
+import org.wso2.carbon.user.core.UserStoreException;
+import org.wso2.carbon.user.core.service.RealmService;
+import org.wso2.carbon.user.core.tenant.Tenant;
+import org.wso2.carbon.user.core.tenant.TenantManager;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransactionRollbackException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Runs the expired session data clean up against an in-memory H2 database. Lock waits, slow deletes and failures
+ * are injected through a wrapper of the data source.
+ */
+@WithCarbonHome
+@PrepareForTest(IdPManagementUtil.class)
+public class SessionDataStoreCleanUpTest {
+
+    private static final String DATA_SOURCE_NAME = "jdbc/SessionDataStoreCleanUpTest";
+    private static final String DB_SCRIPT = "dbScripts/identity-session-store.sql";
+    private static final int REMEMBER_ME_TIMEOUT = 600;
+    private static final int TENANT_1 = 1;
+    private static final int TENANT_2 = 2;
+    private static final int TENANT_3 = 3;
+
+    private BasicDataSource dataSource;
+    private FaultInjector faultInjector;
+    private TenantManager tenantManager;
+    private Object previousPersistenceManager;
+    private RealmService previousFrameworkRealmService;
+    private RealmService previousRealmService;
+    private SessionDataStore sessionDataStore;
+
+    @ObjectFactory
+    public IObjectFactory getObjectFactory() {
+        return new org.powermock.modules.testng.PowerMockObjectFactory();
+    }
+
+    @BeforeClass
+    public void setUp() throws Exception {
+
+        dataSource = MockInitialContextFactory.initializeDatasource(DATA_SOURCE_NAME, getClass(),
+                new String[]{DB_SCRIPT});
+        faultInjector = new FaultInjector(dataSource);
+        JDBCPersistenceManager persistenceManager = Whitebox.newInstance(JDBCPersistenceManager.class);
+        Whitebox.setInternalState(persistenceManager, "dataSource", faultInjector.getDataSource());
+        previousPersistenceManager = Whitebox.getInternalState(JDBCPersistenceManager.class, "instance");
+        Whitebox.setInternalState(JDBCPersistenceManager.class, "instance", persistenceManager);
+
+        RealmService realmService = mock(RealmService.class);
+        tenantManager = mock(TenantManager.class);
+        when(realmService.getTenantManager()).thenReturn(tenantManager);
+        previousFrameworkRealmService = FrameworkServiceDataHolder.getInstance().getRealmService();
+        FrameworkServiceDataHolder.getInstance().setRealmService(realmService);
+        previousRealmService = IdentityTenantUtil.getRealmService();
+        IdentityTenantUtil.setRealmService(realmService);
+    }
+
+    @AfterClass
+    public void tearDown() throws Exception {
+
+        Whitebox.setInternalState(JDBCPersistenceManager.class, "instance", previousPersistenceManager);
+        FrameworkServiceDataHolder.getInstance().setRealmService(previousFrameworkRealmService);
+        IdentityTenantUtil.setRealmService(previousRealmService);
+        MockInitialContextFactory.closeDatasource(DATA_SOURCE_NAME);
+    }
+
+    @BeforeMethod
+    public void setUpMethod() throws Exception {
+
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("DELETE FROM IDN_AUTH_SESSION_STORE")) {
+            statement.executeUpdate();
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+        }
+        faultInjector.reset();
+
+        when(tenantManager.getAllTenants()).thenReturn(new Tenant[]{createTenant(TENANT_1), createTenant(TENANT_2),
+                createTenant(TENANT_3)});
+        when(tenantManager.getDomain(anyInt())).thenReturn("wso2.com");
+        mockStatic(IdPManagementUtil.class);
+        when(IdPManagementUtil.getRememberMeTimeout(anyString())).thenReturn(REMEMBER_ME_TIMEOUT);
+
+        // Built without the constructor, which would schedule the clean up task.
+        sessionDataStore = Whitebox.newInstance(SessionDataStore.class);
+        Whitebox.setInternalState(sessionDataStore, "sqlDeleteExpiredDataTask",
+                Whitebox.getInternalState(SessionDataStore.class, "SQL_DELETE_EXPIRED_DATA_TASK_MYSQL"));
+        Whitebox.setInternalState(sessionDataStore, "sessionDataCleanupEnabled", true);
+        Whitebox.setInternalState(sessionDataStore, "operationDataCleanupEnabled", false);
+        configure(10, 10, 10, 4, TimeUnit.MINUTES.toMillis(1));
+    }
+
+    @Test
+    public void testExpiredSessionsAreRemovedInChunks() throws Exception {
+
+        addSessions(TENANT_1, 25, 5);
+        addSessions(TENANT_2, 25, 5);
+        addSessions(MultitenantConstants.SUPER_TENANT_ID, 25, 5);
+
+        SessionCleanUpStatistics statistics = cleanUp();
+
+        assertEquals(countSessions(TENANT_1), 5);
+        assertEquals(countSessions(TENANT_2), 5);
+        assertEquals(countSessions(MultitenantConstants.SUPER_TENANT_ID), 5);
+        assertEquals(statistics.getDeletedRecords(), 75);
+        // 10, 10 and 5 records of each tenant.
+        assertEquals(statistics.getDeleteChunks(), 9);
+        assertEquals(statistics.getTenantsScanned(), 3);
+        assertEquals(statistics.getTenantsFailed(), 0);
+        assertEquals(statistics.getFinalChunkSize(), 10);
+    }
+
+    @Test
+    public void testTenantsWithoutSessionsAreSkipped() throws Exception {
+
+        addSessions(TENANT_1, 5, 0);
+
+        SessionCleanUpStatistics statistics = cleanUp();
+
+        // Tenant 2, tenant 3, the super tenant and the invalid tenant do not have session records.
+        assertEquals(statistics.getTenantsSkipped(), 4);
+        assertEquals(statistics.getTenantsScanned(), 1);
+        assertEquals(faultInjector.getFirstChunkSizes().keySet(), Collections.singleton(TENANT_1));
+        assertEquals(countSessions(TENANT_1), 0);
+    }
+
+    @Test
+    public void testAllTenantsAreCleanedWhenTenantsWithSessionsAreNotKnown() throws Exception {
+
+        addSessions(TENANT_1, 5, 0);
+        faultInjector.failTenantQuery = true;
+
+        SessionCleanUpStatistics statistics = cleanUp();
+
+        assertEquals(statistics.getTenantsSkipped(), 0);
+        assertEquals(statistics.getTenantsScanned(), 5);
+        assertEquals(statistics.getTenantsFailed(), 0);
+        assertEquals(countSessions(TENANT_1), 0);
+    }
+
+    @Test
+    public void testTenantsAreCleanedInParallel() throws Exception {
+
+        addSessions(TENANT_1, 5, 0);
+        addSessions(TENANT_2, 5, 0);
+        configure(10, 10, 10, 2, TimeUnit.MINUTES.toMillis(1));
+        // The first delete of each tenant waits for the other, so both tenants are only cleaned if they are cleaned
+        // at the same time.
+        faultInjector.barrier = new CyclicBarrier(2);
+
+        SessionCleanUpStatistics statistics = cleanUp();
+
+        assertEquals(statistics.getTenantsFailed(), 0);
+        assertEquals(statistics.getTenantsScanned(), 2);
+        assertEquals(countSessions(TENANT_1), 0);
+        assertEquals(countSessions(TENANT_2), 0);
+    }
+
+    @Test
+    public void testChunkSizeShrinksWhenChunksAreSlow() throws Exception {
+
+        addSessions(TENANT_1, 40, 0);
+        configure(16, 2, 16, 4, 20);
+        faultInjector.deleteDelay = 50;
+
+        SessionCleanUpStatistics statistics = cleanUp();
+
+        assertEquals(countSessions(TENANT_1), 0);
+        assertEquals(statistics.getDeletedRecords(), 40);
+        assertEquals(statistics.getFinalChunkSize(), 2);
+    }
+
+    @Test
+    public void testChunkSizeGrowsBackWhenChunksAreFast() throws Exception {
+
+        addSessions(TENANT_1, 200, 0);
+        configure(100, 10, 10, 4, TimeUnit.MINUTES.toMillis(1));
+
+        SessionCleanUpStatistics statistics = cleanUp();
+
+        assertEquals(countSessions(TENANT_1), 0);
+        assertTrue(statistics.getFinalChunkSize() > 10, "Chunk size did not grow: " + statistics);
+        assertTrue(statistics.getFinalChunkSize() <= 100, "Chunk size grew past the configured size: " +
+                statistics);
+    }
+
+    @Test
+    public void testLockWaitIsRetriedWithSmallerChunks() throws Exception {
+
+        addSessions(TENANT_1, 10, 2);
+        addSessions(TENANT_2, 10, 2);
+        configure(16, 2, 16, 1, TimeUnit.MINUTES.toMillis(1));
+        faultInjector.addLockWaits(TENANT_1, 2);
+
+        SessionCleanUpStatistics statistics = cleanUp();
+
+        assertEquals(statistics.getLockRetries(), 2);
+        assertEquals(statistics.getTenantsFailed(), 0);
+        assertEquals(statistics.getTenantsScanned(), 2);
+        assertEquals(countSessions(TENANT_1), 2);
+        assertEquals(countSessions(TENANT_2), 2);
+        // The chunk size was halved on each lock wait, from 16 to 4.
+        assertEquals(faultInjector.getFirstChunkSizes().get(TENANT_1).intValue(), 4);
+    }
+
+    @Test
+    public void testTenantFailsAfterLockRetries() throws Exception {
+
+        addSessions(TENANT_1, 10, 0);
+        addSessions(TENANT_2, 10, 0);
+        faultInjector.addLockWaits(TENANT_1, 4);
+
+        SessionCleanUpStatistics statistics = cleanUp();
+
+        assertEquals(statistics.getLockRetries(), 3);
+        assertEquals(statistics.getTenantsFailed(), 1);
+        assertEquals(statistics.getTenantsScanned(), 1);
+        assertEquals(countSessions(TENANT_1), 10);
+        assertEquals(countSessions(TENANT_2), 0);
+    }
+
+    @Test
+    public void testFailedTenantsDoNotStopOthers() throws Exception {
+
+        addSessions(TENANT_1, 10, 0);
+        addSessions(TENANT_2, 10, 0);
+        addSessions(TENANT_3, 10, 0);
+        faultInjector.failingTenants.add(TENANT_1);
+        when(tenantManager.getDomain(TENANT_3)).thenThrow(new UserStoreException("Tenant not found"));
+
+        SessionCleanUpStatistics statistics = cleanUp();
+
+        assertEquals(statistics.getTenantsFailed(), 2);
+        assertEquals(statistics.getTenantsScanned(), 1);
+        assertEquals(statistics.getLockRetries(), 0);
+        assertEquals(countSessions(TENANT_1), 10);
+        assertEquals(countSessions(TENANT_2), 0);
+        assertEquals(countSessions(TENANT_3), 10);
+    }
+
+    private SessionCleanUpStatistics cleanUp() {
+
+        sessionDataStore.removeExpiredSessionData();
+        SessionCleanUpStatistics statistics = sessionDataStore.getLastCleanUpStatistics();
+        assertNotNull(statistics);
+        return statistics;
+    }
+
+    private void configure(int deleteChunkSize, int minDeleteChunkSize, int currentDeleteChunkSize,
+                           int cleanUpThreadCount, long deleteChunkTargetLatency) {
+
+        Whitebox.setInternalState(sessionDataStore, "deleteChunkSize", deleteChunkSize);
+        Whitebox.setInternalState(sessionDataStore, "minDeleteChunkSize", minDeleteChunkSize);
+        Whitebox.setInternalState(sessionDataStore, "currentDeleteChunkSize",
+                new AtomicInteger(currentDeleteChunkSize));
+        Whitebox.setInternalState(sessionDataStore, "cleanUpThreadCount", cleanUpThreadCount);
+        Whitebox.setInternalState(sessionDataStore, "deleteChunkTargetLatency", deleteChunkTargetLatency);
+    }
+
+    private void addSessions(int tenantId, int expired, int active) throws SQLException {
+
+        long now = FrameworkUtils.getCurrentStandardNano();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("INSERT INTO IDN_AUTH_SESSION_STORE " +
+                     "(SESSION_ID, SESSION_TYPE, OPERATION, TIME_CREATED, TENANT_ID) VALUES (?, ?, ?, ?, ?)")) {
+            for (int i = 0; i < expired + active; i++) {
+                statement.setString(1, "session-" + tenantId + "-" + i);
+                statement.setString(2, "AppAuthFrameworkSessionContextCache");
+                statement.setString(3, "STORE");
+                // Expired sessions were created before the remember me timeout.
+                statement.setLong(4, i < expired ? now - TimeUnit.SECONDS.toNanos(REMEMBER_ME_TIMEOUT * 2) : now);
+                statement.setInt(5, tenantId);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+        }
+    }
+
+    private int countSessions(int tenantId) throws SQLException {
+
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT COUNT(*) FROM " +
+                     "IDN_AUTH_SESSION_STORE WHERE TENANT_ID = ?")) {
+            statement.setInt(1, tenantId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getInt(1);
+            }
+        }
+    }
+
+    private static Tenant createTenant(int tenantId) {
+
+        Tenant tenant = new Tenant();
+        tenant.setId(tenantId);
+        return tenant;
+    }
+
+    /**
+     * Wraps a data source, failing or delaying the session clean up statements as configured by the test.
+     */
+    private static class FaultInjector {
+
+        private final DataSource dataSource;
+        private final Map<Integer, AtomicInteger> lockWaits = new ConcurrentHashMap<>();
+        // Chunk size of the first successful delete of each tenant, keyed by the tenant id.
+        private final Map<Integer, Integer> firstChunkSizes = new ConcurrentHashMap<>();
+        private final Set<Integer> startedTenants = ConcurrentHashMap.newKeySet();
+        private final Set<Integer> failingTenants = ConcurrentHashMap.newKeySet();
+        private volatile boolean failTenantQuery;
+        private volatile long deleteDelay;
+        private volatile CyclicBarrier barrier;
+
+        private FaultInjector(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        private void reset() {
+
+            lockWaits.clear();
+            firstChunkSizes.clear();
+            startedTenants.clear();
+            failingTenants.clear();
+            failTenantQuery = false;
+            deleteDelay = 0;
+            barrier = null;
+        }
+
+        private void addLockWaits(int tenantId, int count) {
+            lockWaits.put(tenantId, new AtomicInteger(count));
+        }
+
+        private Map<Integer, Integer> getFirstChunkSizes() {
+            return firstChunkSizes;
+        }
+
+        private DataSource getDataSource() {
+
+            return proxy(DataSource.class, dataSource, new Interceptor() {
+                @Override
+                public Object invoke(Object target, Method method, Object[] args) throws Throwable {
+
+                    Object result = invokeTarget(target, method, args);
+                    if ("getConnection".equals(method.getName())) {
+                        return wrap((Connection) result);
+                    }
+                    return result;
+                }
+            });
+        }
+
+        private Connection wrap(Connection connection) {
+
+            return proxy(Connection.class, connection, new Interceptor() {
+                @Override
+                public Object invoke(Object target, Method method, Object[] args) throws Throwable {
+
+                    if (!"prepareStatement".equals(method.getName()) || args.length != 1) {
+                        return invokeTarget(target, method, args);
+                    }
+                    String sql = (String) args[0];
+                    if (sql.startsWith("SELECT DISTINCT TENANT_ID") && failTenantQuery) {
+                        throw new SQLException("Injected failure of the tenant query", "42000");
+                    }
+                    PreparedStatement statement = (PreparedStatement) invokeTarget(target, method, args);
+                    return sql.startsWith("DELETE") ? wrap(statement, sql) : statement;
+                }
+            });
+        }
+
+        private PreparedStatement wrap(PreparedStatement statement, final String sql) {
+
+            return proxy(PreparedStatement.class, statement, new Interceptor() {
+
+                private int tenantId;
+
+                @Override
+                public Object invoke(Object target, Method method, Object[] args) throws Throwable {
+
+                    if ("setInt".equals(method.getName()) && (Integer) args[0] == 2) {
+                        tenantId = (Integer) args[1];
+                    } else if ("executeUpdate".equals(method.getName())) {
+                        beforeDelete(tenantId);
+                        Object deleted = invokeTarget(target, method, args);
+                        firstChunkSizes.putIfAbsent(tenantId, getChunkSize(sql));
+                        return deleted;
+                    }
+                    return invokeTarget(target, method, args);
+                }
+            });
+        }
+
+        private void beforeDelete(int tenantId) throws Exception {
+
+            if (failingTenants.contains(tenantId)) {
+                throw new SQLException("Injected failure of tenant: " + tenantId, "42000");
+            }
+            AtomicInteger remainingLockWaits = lockWaits.get(tenantId);
+            if (remainingLockWaits != null && remainingLockWaits.getAndDecrement() > 0) {
+                throw new SQLTransactionRollbackException("Injected deadlock of tenant: " + tenantId, "40001");
+            }
+            CyclicBarrier barrier = this.barrier;
+            if (barrier != null && startedTenants.add(tenantId)) {
+                barrier.await(10, TimeUnit.SECONDS);
+            }
+            if (deleteDelay > 0) {
+                Thread.sleep(deleteDelay);
+            }
+        }
+
+        private static int getChunkSize(String sql) {
+            return Integer.parseInt(sql.substring(sql.lastIndexOf(' ') + 1));
+        }
+
+        private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        private static <T> T proxy(Class<T> type, final T target, final Interceptor interceptor) {
+
+            return type.cast(Proxy.newProxyInstance(FaultInjector.class.getClassLoader(), new Class[]{type},
+                    new InvocationHandler() {
+                        @Override
+                        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                            return interceptor.invoke(target, method, args);
+                        }
+                    }));
+        }
+    }
+
+    private interface Interceptor {
+
+        Object invoke(Object target, Method method, Object[] args) throws Throwable;
+    }
+}
@@ -0,0 +1,11 @@
+CREATE TABLE IF NOT EXISTS IDN_AUTH_SESSION_STORE (
+            SESSION_ID VARCHAR (100) NOT NULL,
+            SESSION_TYPE VARCHAR(100) NOT NULL,
+            OPERATION VARCHAR(10) NOT NULL,
+            SESSION_OBJECT BLOB,
+            TIME_CREATED BIGINT,
+            TENANT_ID INTEGER DEFAULT -1,
+            PRIMARY KEY (SESSION_ID, SESSION_TYPE, TIME_CREATED, OPERATION)
+);
+
+CREATE INDEX IF NOT EXISTS IDX_AUTH_SESSION_TENANT_TC ON IDN_AUTH_SESSION_STORE (TENANT_ID, TIME_CREATED);
@@ -19,6 +19,7 @@ import org.wso2.carbon.identity.base.IdentityException;
 import org.wso2.carbon.utils.ThriftSession;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * Interface to manipulate thrift session info in database.
@@ -36,6 +37,20 @@ public interface ThriftSessionDAO {
     void updateLastAccessTime(String sessionId, long lastAccessTime)
             throws IdentityException;
 
+    /**
+     * Updates the last access time of a batch of sessions. Sessions which no longer exist are ignored. Updates one
+     * session at a time unless overridden, so that session DAOs written before batching keep working.
+     *
+     * @param lastAccessTimes last access times by session id
+     */
+    default void updateLastAccessTimes(Map<String, Long> lastAccessTimes) throws IdentityException {
+        for (Map.Entry<String, Long> lastAccessTime : lastAccessTimes.entrySet()) {
+            if (isSessionExisting(lastAccessTime.getKey())) {
+                updateLastAccessTime(lastAccessTime.getKey(), lastAccessTime.getValue());
+            }
+        }
+    }
+
     ThriftSession getSession(String sessionId) throws IdentityException;
 
     ThriftSessionDAO getInstance();
@@ -66,6 +66,7 @@ public class ThriftAuthenticationServiceComponent {
     private ServiceRegistration thriftAuthenticationService;
     private ConfigurationContextService configurationContext;
     private TCPThriftAuthenticationService TCPThriftAuthenticationService;
+    private ThriftAuthenticatorServiceImpl thriftAuthenticatorServiceImpl;
 
     public static int readPortOffset() {
         return CarbonUtils.
@@ -102,9 +103,15 @@ public class ThriftAuthenticationServiceComponent {
             }
             //get an instance of this to register as an osgi service
 
-            ThriftAuthenticatorServiceImpl thriftAuthenticatorServiceImpl =
+            thriftAuthenticatorServiceImpl =
 
                     new ThriftAuthenticatorServiceImpl(getRealmServiceInstance(), thriftSessionDAO, thriftSessionTimeout);
+            //write last access times in batches and evict expired sessions in the background
+            thriftAuthenticatorServiceImpl.startSessionMaintenance(
+                    readLongConfig(ThriftAuthenticationConstants.LAST_ACCESS_TIME_FLUSH_INTERVAL,
+                            ThriftAuthenticationConstants.DEFAULT_LAST_ACCESS_TIME_FLUSH_INTERVAL),
+                    readLongConfig(ThriftAuthenticationConstants.SESSION_CLEANUP_INTERVAL,
+                            ThriftAuthenticationConstants.DEFAULT_SESSION_CLEANUP_INTERVAL));
             //register as an osgi service
 
             thriftAuthenticationService = compCtx.getBundleContext().registerService(
@@ -126,6 +133,9 @@ public class ThriftAuthenticationServiceComponent {
         if (TCPThriftAuthenticationService != null) {
             TCPThriftAuthenticationService.stop();
         }
+        if (thriftAuthenticatorServiceImpl != null) {
+            thriftAuthenticatorServiceImpl.stopSessionMaintenance();
+        }
         compCtx.getBundleContext().ungetService(thriftAuthenticationService.getReference());
 
     }
@@ -266,4 +276,23 @@ public class ThriftAuthenticationServiceComponent {
 
     }
 
+    private long readLongConfig(String elementName, long defaultValue) {
+
+        OMElement element = ThriftAuthenticationConfigParser.getInstance().getConfigElement(elementName);
+        if (element == null) {
+            return defaultValue;
+        }
+        try {
+            long value = Long.parseLong(element.getText().trim());
+            if (value > 0) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // fall through to the default value
+        }
+        log.error("Invalid value : " + element.getText() + " for " + elementName + ", hence using the default: " +
+                defaultValue);
+        return defaultValue;
+    }
+
 }
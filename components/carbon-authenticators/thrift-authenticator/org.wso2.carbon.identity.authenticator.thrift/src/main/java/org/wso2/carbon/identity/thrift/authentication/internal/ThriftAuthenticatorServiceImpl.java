@@ -34,10 +34,17 @@ import org.wso2.carbon.utils.ServerConstants;
 import org.wso2.carbon.utils.ThriftSession;
 import org.wso2.carbon.utils.multitenancy.MultitenantUtils;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * This is a utility class that performs authentication related functionality
@@ -52,6 +59,10 @@ public class ThriftAuthenticatorServiceImpl implements ThriftAuthenticatorServic
     private Map<String, ThriftSession> authenticatedSessions =
             new ConcurrentHashMap<String, ThriftSession>();
     private ThriftSessionDAO thriftSessionDAO;
+    // Last access times not written to the session store yet, by session id.
+    private ConcurrentMap<String, Long> pendingLastAccessTimes = new ConcurrentHashMap<String, Long>();
+    private AtomicBoolean sessionsLoaded = new AtomicBoolean(false);
+    private volatile ScheduledExecutorService sessionMaintenanceExecutor;
 
     public ThriftAuthenticatorServiceImpl(RealmService realmService, ThriftSessionDAO thriftSessionDAO, long thriftSessionTimeOut) {
         this.realmService = realmService;
@@ -67,14 +78,6 @@ public class ThriftAuthenticatorServiceImpl implements ThriftAuthenticatorServic
         sessionDAO.addSession(thriftSession);
     }
 
-    private void removeThriftSession(String thriftSessionId) throws IdentityException {
-        //remove from cache
-        authenticatedSessions.remove(thriftSessionId);
-        //remove from db
-        ThriftSessionDAO sessionDAO = this.thriftSessionDAO.getInstance();
-        sessionDAO.removeSession(thriftSessionId);
-    }
-
     public String authenticate(String userName, String password) throws AuthenticationException {
 
         if (userName == null) {
@@ -167,94 +170,180 @@ public class ThriftAuthenticatorServiceImpl implements ThriftAuthenticatorServic
         if (sessionId == null) {
             return false;
         }
-        //if cache empty, try to populate from db
-        if (authenticatedSessions.isEmpty()) {
+        //load the sessions of the session store once, further sessions are read on demand
+        if (sessionsLoaded.compareAndSet(false, true)) {
             try {
                 populateSessionsFromDB();
-            } catch (IdentityException e) {
+            } catch (Exception e) {
                 String error = "Error while populating thrift sessions from cache";
                 log.error(error, e);
+            }
+        }
+
+        //sessions in the cache are validated without going to the session store
+        ThriftSession thriftSessionInCache = authenticatedSessions.get(sessionId);
+        if (thriftSessionInCache != null && isSessionValid(thriftSessionInCache)) {
+            try {
+                //if carbon context in the thrift session is not initialized, should do that now.
+                onSuccessLogin(thriftSessionInCache);
+                updateLastAccessTime(thriftSessionInCache, System.currentTimeMillis());
+            } catch (IdentityException e) {
+                String error = "Error while updating last access time in DB";
+                log.error(error, e);
             } catch (Exception e) {
-                String error = "Error while populating thrift sessions from cache";
+                String error = "Error in calling on success admin login for the thrift session.";
                 log.error(error, e);
             }
+            return true;
         }
-        //if cache not empty, check if session id existing and valid, if so, update last access time and return it.
-        if (!authenticatedSessions.isEmpty()) {
-            ThriftSessionDAO sessionDAO = this.thriftSessionDAO.getInstance();
-            if (authenticatedSessions.containsKey(sessionId)) {
-                ThriftSession thriftSessionInCache = authenticatedSessions.get(sessionId);
-                if (isSessionValid(thriftSessionInCache)) {
-                    //update the last access time in cache and d
-                    long lastAccessTime = System.currentTimeMillis();
-                    (authenticatedSessions.get(sessionId)).setLastAccess(lastAccessTime);
-                    try {
-                        //if carbon context in the thrift session is not initialized, should do that now.
-                        onSuccessLogin(thriftSessionInCache);
-                        //put the thrift session filled with carbon context info
-                        authenticatedSessions.put(sessionId, thriftSessionInCache);
-                        sessionDAO.updateLastAccessTime(sessionId, lastAccessTime);
-                    } catch (IdentityException e) {
-                        String error = "Error while updating last access time in DB";
-                        log.error(error, e);
-                    } catch (Exception e) {
-                        String error = "Error in calling on success admin login for the thrift session.";
-                        log.error(error, e);
-                    }
+
+        //the session may have been created or accessed through another node, so check the session store
+        ThriftSessionDAO sessionDAO = this.thriftSessionDAO.getInstance();
+        try {
+            if (thriftSessionInCache != null || sessionDAO.isSessionExisting(sessionId)) {
+                ThriftSession thriftSession = sessionDAO.getSession(sessionId);
+                if (thriftSession != null && thriftSession.getSessionId() != null && isSessionValid(thriftSession)) {
+                    onSuccessLogin(thriftSession);
+                    authenticatedSessions.put(thriftSession.getSessionId(), thriftSession);
+                    updateLastAccessTime(thriftSession, System.currentTimeMillis());
                     return true;
-                } else {
-                    //if not valid in cache, check if valid in db
-                    try {
-                        ThriftSession thriftSession = sessionDAO.getSession(sessionId);
-                        if (isSessionValid(thriftSession)) {
-                            //update cache and return true
-                            thriftSession.setLastAccess(System.currentTimeMillis());
-                            onSuccessLogin(thriftSession);
-                            authenticatedSessions.put(thriftSession.getSessionId(), thriftSession);
-                            sessionDAO.updateLastAccessTime(sessionId, thriftSession.getLastAccess());
-                            return true;
-                        } else {
-                            //remove from cache and db and return false
-                            removeThriftSession(sessionId);
-                            return false;
-                        }
-                    } catch (IdentityException e) {
-                        String error = "Error while obtaining thrift session from database.";
-                        log.error(error, e);
-                    } catch (Exception e) {
-                        String error = "Error in calling on success admin login for the thrift session.";
-                        log.error(error, e);
-                    }
-                }
-            } else {
-                //if session id not found, check in db as well, if exist in db, populate cache
-                try {
+                } else if (sessionMaintenanceExecutor == null) {
+                    //no expired session eviction running, so remove from cache and db
+                    authenticatedSessions.remove(sessionId);
                     if (sessionDAO.isSessionExisting(sessionId)) {
-                        ThriftSession thriftSession = sessionDAO.getSession(sessionId);
-                        if (isSessionValid(thriftSession)) {
-                            thriftSession.setLastAccess(System.currentTimeMillis());
-                            onSuccessLogin(thriftSession);
-                            authenticatedSessions.put(thriftSession.getSessionId(), thriftSession);
-                            sessionDAO.updateLastAccessTime(sessionId, thriftSession.getLastAccess());
-                            return true;
-                        } else {
-                            sessionDAO.removeSession(sessionId);
-                            return false;
-                        }
+                        sessionDAO.removeSession(sessionId);
                     }
-                } catch (IdentityException e) {
-                    String error = "Error while obtaining thrift session from database.";
-                    log.error(error, e);
-                } catch (Exception e) {
-                    String error = "Error in calling on success admin login for the thrift session obtained from DB.";
-                    log.error(error, e);
                 }
             }
+        } catch (IdentityException e) {
+            String error = "Error while obtaining thrift session from database.";
+            log.error(error, e);
+        } catch (Exception e) {
+            String error = "Error in calling on success admin login for the thrift session obtained from DB.";
+            log.error(error, e);
         }
 
         return false;
     }
 
+    /**
+     * Starts writing last access times to the session store in batches and evicting expired sessions, instead of
+     * doing both while validating sessions.
+     *
+     * @param lastAccessTimeFlushInterval interval in milliseconds last access times are written at
+     * @param sessionCleanupInterval      interval in milliseconds expired sessions are evicted at
+     */
+    public void startSessionMaintenance(long lastAccessTimeFlushInterval, long sessionCleanupInterval) {
+
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "ThriftSessionMaintenance");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                flushLastAccessTimes();
+            }
+        }, lastAccessTimeFlushInterval, lastAccessTimeFlushInterval, TimeUnit.MILLISECONDS);
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                removeExpiredSessions();
+            }
+        }, sessionCleanupInterval, sessionCleanupInterval, TimeUnit.MILLISECONDS);
+        sessionMaintenanceExecutor = executor;
+    }
+
+    /**
+     * Stops the session maintenance, writing the pending last access times.
+     */
+    public void stopSessionMaintenance() {
+
+        ScheduledExecutorService executor = sessionMaintenanceExecutor;
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sessionMaintenanceExecutor = null;
+        flushLastAccessTimes();
+    }
+
+    private void updateLastAccessTime(ThriftSession thriftSession, long lastAccessTime) throws IdentityException {
+
+        thriftSession.setLastAccess(lastAccessTime);
+        if (sessionMaintenanceExecutor != null) {
+            pendingLastAccessTimes.put(thriftSession.getSessionId(), lastAccessTime);
+        } else {
+            this.thriftSessionDAO.getInstance().updateLastAccessTime(thriftSession.getSessionId(), lastAccessTime);
+        }
+    }
+
+    private void flushLastAccessTimes() {
+
+        if (pendingLastAccessTimes.isEmpty()) {
+            return;
+        }
+        Map<String, Long> lastAccessTimes = new HashMap<String, Long>();
+        for (Map.Entry<String, Long> entry : pendingLastAccessTimes.entrySet()) {
+            // Left pending if the session was accessed again since it was read, for the next flush to write.
+            if (pendingLastAccessTimes.remove(entry.getKey(), entry.getValue())) {
+                lastAccessTimes.put(entry.getKey(), entry.getValue());
+            }
+        }
+        try {
+            this.thriftSessionDAO.getInstance().updateLastAccessTimes(lastAccessTimes);
+            if (log.isDebugEnabled()) {
+                log.debug("Updated the last access time of " + lastAccessTimes.size() + " thrift sessions");
+            }
+        } catch (IdentityException e) {
+            log.error("Error while updating the last access time of " + lastAccessTimes.size() +
+                    " thrift sessions in DB", e);
+        } catch (RuntimeException e) {
+            log.error("Error while updating the last access time of thrift sessions", e);
+        }
+    }
+
+    private void removeExpiredSessions() {
+
+        // Write the latest access times first, for other nodes to see them.
+        flushLastAccessTimes();
+        ThriftSessionDAO sessionDAO = this.thriftSessionDAO.getInstance();
+        for (ThriftSession thriftSession : authenticatedSessions.values()) {
+            if (isSessionValid(thriftSession)) {
+                continue;
+            }
+            String sessionId = thriftSession.getSessionId();
+            try {
+                //the session may still be in use through another node
+                ThriftSession storedSession = sessionDAO.getSession(sessionId);
+                if (storedSession != null && storedSession.getSessionId() != null && isSessionValid(storedSession)) {
+                    thriftSession.setLastAccess(storedSession.getLastAccess());
+                    continue;
+                }
+                authenticatedSessions.remove(sessionId);
+                if (storedSession != null && storedSession.getSessionId() != null) {
+                    sessionDAO.removeSession(sessionId);
+                }
+                if (log.isDebugEnabled()) {
+                    log.debug("Removed expired thrift session : " + sessionId);
+                }
+            } catch (IdentityException e) {
+                log.error("Error while removing expired thrift session : " + sessionId, e);
+            } catch (RuntimeException e) {
+                log.error("Error while removing expired thrift session : " + sessionId, e);
+            }
+        }
+    }
+
     public ThriftSession getSessionInfo(String sessionId) {
         return authenticatedSessions.get(sessionId);
     }
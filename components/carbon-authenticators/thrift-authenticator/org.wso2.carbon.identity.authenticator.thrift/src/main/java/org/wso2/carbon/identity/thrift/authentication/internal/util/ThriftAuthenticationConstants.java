@@ -31,6 +31,10 @@ public class ThriftAuthenticationConstants {
     public static final String CARBON_CONFIG_PORT_OFFSET_NODE = "Ports.Offset";
     public static final String CLIENT_TIMEOUT = "ClientTimeout";
     public static final int DEFAULT_CLIENT_TIMEOUT = 30000;
+    public static final String LAST_ACCESS_TIME_FLUSH_INTERVAL = "LastAccessTimeFlushInterval";
+    public static final long DEFAULT_LAST_ACCESS_TIME_FLUSH_INTERVAL = 5000L;
+    public static final String SESSION_CLEANUP_INTERVAL = "SessionCleanupInterval";
+    public static final long DEFAULT_SESSION_CLEANUP_INTERVAL = 60000L;
 
     public static final String THRIFT_SESSION_CACHE_ID = "THRIFT_SESSION_CACHE_ID";
 
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.thrift.authentication.dao;
+
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.base.IdentityException;
+import org.wso2.carbon.utils.ThriftSession;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+
+public class ThriftSessionDAOTest {
+
+    @Test
+    public void testLastAccessTimesAreUpdatedOneByOneByDefault() throws Exception {
+
+        // Throws for sessions which do not exist, as the database session DAO does.
+        ThriftSessionDAO sessionDAO = new InMemoryThriftSessionDAO() {
+            @Override
+            public void updateLastAccessTime(String sessionId, long lastAccessTime) {
+                if (!isSessionExisting(sessionId)) {
+                    throw new IllegalStateException("Thrift session " + sessionId + " does not exist");
+                }
+                super.updateLastAccessTime(sessionId, lastAccessTime);
+            }
+        };
+        sessionDAO.addSession(createSession("session1", 1000L));
+        sessionDAO.addSession(createSession("session2", 1000L));
+
+        Map<String, Long> lastAccessTimes = new HashMap<>();
+        lastAccessTimes.put("session1", 2000L);
+        lastAccessTimes.put("session2", 3000L);
+        lastAccessTimes.put("removedSession", 4000L);
+        sessionDAO.updateLastAccessTimes(lastAccessTimes);
+
+        assertEquals(sessionDAO.getSession("session1").getLastAccess(), 2000L);
+        assertEquals(sessionDAO.getSession("session2").getLastAccess(), 3000L);
+        assertFalse(sessionDAO.isSessionExisting("removedSession"));
+    }
+
+    @Test
+    public void testNoLastAccessTimes() throws IdentityException {
+
+        ThriftSessionDAO sessionDAO = new InMemoryThriftSessionDAO();
+        sessionDAO.addSession(createSession("session1", 1000L));
+
+        sessionDAO.updateLastAccessTimes(new HashMap<String, Long>());
+        assertEquals(sessionDAO.getSession("session1").getLastAccess(), 1000L);
+    }
+
+    private ThriftSession createSession(String sessionId, long lastAccess) {
+
+        ThriftSession session = new ThriftSession();
+        session.setSessionId(sessionId);
+        session.setUserName("admin");
+        session.setCreatedAt(lastAccess);
+        session.setLastAccess(lastAccess);
+        return session;
+    }
+}
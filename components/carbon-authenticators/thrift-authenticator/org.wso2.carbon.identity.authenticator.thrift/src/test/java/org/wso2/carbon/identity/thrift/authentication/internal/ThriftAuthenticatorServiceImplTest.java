@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.thrift.authentication.internal;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.base.MultitenantConstants;
+import org.wso2.carbon.context.PrivilegedCarbonContext;
+import org.wso2.carbon.identity.thrift.authentication.dao.InMemoryThriftSessionDAO;
+import org.wso2.carbon.utils.ServerConstants;
+import org.wso2.carbon.utils.ThriftSession;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class ThriftAuthenticatorServiceImplTest {
+
+    private static final long SESSION_TIMEOUT = TimeUnit.SECONDS.toMillis(10);
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final long WAIT_TIMEOUT = TimeUnit.SECONDS.toMillis(10);
+
+    private RecordingSessionDAO sessionDAO;
+    private ThriftAuthenticatorServiceImpl authenticatorService;
+
+    @BeforeClass
+    public void setUp() {
+
+        System.setProperty("carbon.home", Paths.get(System.getProperty("user.dir"), "target").toString());
+    }
+
+    @BeforeMethod
+    public void setUpService() {
+
+        // Sessions set the tenant of the carbon context they are validated in.
+        PrivilegedCarbonContext.startTenantFlow();
+        sessionDAO = new RecordingSessionDAO();
+        authenticatorService = new ThriftAuthenticatorServiceImpl(null, sessionDAO, SESSION_TIMEOUT);
+    }
+
+    @AfterMethod
+    public void tearDownService() {
+
+        authenticatorService.stopSessionMaintenance();
+        PrivilegedCarbonContext.endTenantFlow();
+    }
+
+    @Test
+    public void testLastAccessTimeIsWrittenOnAccessWithoutMaintenance() throws Exception {
+
+        sessionDAO.addSession(createSession("session1", System.currentTimeMillis()));
+
+        assertTrue(authenticatorService.isAuthenticated("session1"));
+        assertEquals(sessionDAO.updates.get(), 1);
+        assertTrue(sessionDAO.batches.isEmpty());
+    }
+
+    @Test
+    public void testLastAccessTimesAreBufferedAndFlushedInBatch() throws Exception {
+
+        long now = System.currentTimeMillis();
+        sessionDAO.addSession(createSession("session1", now));
+        sessionDAO.addSession(createSession("session2", now));
+        authenticatorService.startSessionMaintenance(HOUR, HOUR);
+
+        assertTrue(authenticatorService.isAuthenticated("session1"));
+        assertTrue(authenticatorService.isAuthenticated("session2"));
+        assertTrue(authenticatorService.isAuthenticated("session1"));
+        assertEquals(sessionDAO.updates.get(), 0);
+        assertTrue(sessionDAO.batches.isEmpty());
+
+        // Pending last access times are written when the maintenance stops.
+        authenticatorService.stopSessionMaintenance();
+        assertEquals(sessionDAO.batches.size(), 1);
+        Map<String, Long> batch = sessionDAO.batches.get(0);
+        assertEquals(batch.size(), 2);
+        assertEquals(batch.get("session1"), Long.valueOf(authenticatorService.getSessionInfo("session1")
+                .getLastAccess()));
+        assertEquals(batch.get("session2"), Long.valueOf(authenticatorService.getSessionInfo("session2")
+                .getLastAccess()));
+        assertEquals(sessionDAO.updates.get(), 0);
+    }
+
+    @Test
+    public void testLastAccessTimesAreFlushedOnSchedule() throws Exception {
+
+        sessionDAO.addSession(createSession("session1", System.currentTimeMillis()));
+        authenticatorService.startSessionMaintenance(50, HOUR);
+
+        assertTrue(authenticatorService.isAuthenticated("session1"));
+        waitFor(new Condition() {
+            @Override
+            public boolean isMet() {
+                return !sessionDAO.batches.isEmpty();
+            }
+        });
+        assertEquals(sessionDAO.batches.get(0).keySet(), Collections.singleton("session1"));
+
+        // Nothing left to write until the session is accessed again.
+        Thread.sleep(200);
+        assertEquals(sessionDAO.batches.size(), 1);
+    }
+
+    @Test
+    public void testExpiredSessionsAreEvictedOnSchedule() throws Exception {
+
+        long now = System.currentTimeMillis();
+        sessionDAO.addSession(createSession("validSession", now));
+        sessionDAO.addSession(createSession("expiredSession", now - 2 * SESSION_TIMEOUT));
+        // Expired in this node, but accessed through another node since.
+        sessionDAO.addSession(createSession("sharedSession", now - 2 * SESSION_TIMEOUT));
+        sessionDAO.accessedElsewhere.add("sharedSession");
+
+        authenticatorService.startSessionMaintenance(HOUR, 50);
+        assertTrue(authenticatorService.isAuthenticated("validSession"));
+        assertFalse(authenticatorService.isAuthenticated("expiredSession"));
+
+        waitFor(new Condition() {
+            @Override
+            public boolean isMet() {
+                return authenticatorService.getSessionInfo("expiredSession") == null;
+            }
+        });
+        assertFalse(sessionDAO.isSessionExisting("expiredSession"));
+        assertNotNull(authenticatorService.getSessionInfo("validSession"));
+        assertTrue(sessionDAO.isSessionExisting("validSession"));
+
+        ThriftSession sharedSession = authenticatorService.getSessionInfo("sharedSession");
+        assertNotNull(sharedSession);
+        assertTrue(sharedSession.getLastAccess() >= now);
+        assertTrue(sessionDAO.isSessionExisting("sharedSession"));
+    }
+
+    private ThriftSession createSession(String sessionId, long lastAccess) {
+
+        ThriftSession session = new ThriftSession();
+        session.setSessionId(sessionId);
+        session.setUserName("admin");
+        session.setCreatedAt(lastAccess);
+        session.setLastAccess(lastAccess);
+        session.setAttribute(ServerConstants.AUTHENTICATION_SERVICE_USERNAME, "admin");
+        session.setAttribute(MultitenantConstants.TENANT_DOMAIN, MultitenantConstants.SUPER_TENANT_DOMAIN_NAME);
+        session.setAttribute(MultitenantConstants.TENANT_ID, MultitenantConstants.SUPER_TENANT_ID);
+        return session;
+    }
+
+    private void waitFor(Condition condition) throws InterruptedException {
+
+        long deadline = System.currentTimeMillis() + WAIT_TIMEOUT;
+        while (!condition.isMet()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Timed out waiting for the session maintenance");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private interface Condition {
+
+        boolean isMet();
+    }
+
+    /**
+     * Records the writes of last access times. Sessions accessed through another node are read back with the current
+     * time as their last access time.
+     */
+    private static class RecordingSessionDAO extends InMemoryThriftSessionDAO {
+
+        private final AtomicInteger updates = new AtomicInteger();
+        private final List<Map<String, Long>> batches = Collections.synchronizedList(
+                new ArrayList<Map<String, Long>>());
+        private final Set<String> accessedElsewhere = Collections.newSetFromMap(
+                new ConcurrentHashMap<String, Boolean>());
+
+        @Override
+        public void updateLastAccessTime(String sessionId, long lastAccessTime) {
+
+            updates.incrementAndGet();
+            super.updateLastAccessTime(sessionId, lastAccessTime);
+        }
+
+        @Override
+        public void updateLastAccessTimes(Map<String, Long> lastAccessTimes) {
+
+            batches.add(new HashMap<>(lastAccessTimes));
+        }
+
+        @Override
+        public ThriftSession getSession(String sessionId) {
+
+            ThriftSession session = super.getSession(sessionId);
+            if (session == null || !accessedElsewhere.contains(sessionId)) {
+                return session;
+            }
+            ThriftSession storedSession = new ThriftSession();
+            storedSession.setSessionId(session.getSessionId());
+            storedSession.setUserName(session.getUserName());
+            storedSession.setCreatedAt(session.getCreatedAt());
+            storedSession.setLastAccess(System.currentTimeMillis());
+            return storedSession;
+        }
+    }
+}
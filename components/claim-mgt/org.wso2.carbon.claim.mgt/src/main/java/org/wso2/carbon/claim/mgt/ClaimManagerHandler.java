@@ -26,6 +26,7 @@ import org.wso2.carbon.CarbonException;
 import org.wso2.carbon.claim.mgt.internal.ClaimManagementServiceComponent;
 import org.wso2.carbon.core.util.AdminServicesUtil;
 import org.wso2.carbon.core.util.AnonymousSessionUtil;
+import org.wso2.carbon.identity.claim.metadata.mgt.ClaimMetadataHandler;
 import org.wso2.carbon.identity.claim.metadata.mgt.ClaimMetadataManagementServiceImpl;
 import org.wso2.carbon.identity.claim.metadata.mgt.exception.ClaimMetadataException;
 import org.wso2.carbon.identity.claim.metadata.mgt.model.ExternalClaim;
@@ -405,10 +406,6 @@ public enum ClaimManagerHandler {
             return returnSet;
         }
 
-        ClaimMapping[] claimMappingsInOtherDialect = getAllClaimMappings(otherDialectURI,
-                                                                         tenantDomain);
-        ClaimMapping[] allClaimMappingsInCarbonDialect = getAllClaimMappings(
-                UserCoreConstants.DEFAULT_CARBON_DIALECT, tenantDomain);
         if (otherDialectURI == null) {
             String message = "Invalid argument: \'otherDialectURI\' is \'NULL\'";
             log.error(message);
@@ -419,21 +416,22 @@ public enum ClaimManagerHandler {
             log.error(message);
             throw new ClaimManagementException(message);
         }
+
+        Map<String, List<String>> fromLocalClaimURIs;
+        try {
+            fromLocalClaimURIs = ClaimMetadataHandler.getInstance().getDialectMappings(otherDialectURI,
+                    tenantDomain).getFromLocalClaimURIs();
+        } catch (ClaimMetadataException e) {
+            throw new ClaimManagementException(e.getMessage(), e);
+        }
         for (String requestedClaimURI : carbonClaimURIs) {
-            if (allClaimMappingsInCarbonDialect != null
-                && allClaimMappingsInCarbonDialect.length > 0) {
-                for (ClaimMapping claimMapping : allClaimMappingsInCarbonDialect) {
-                    if (requestedClaimURI.equals(claimMapping.getClaim().getClaimUri())) {
-                        String mappedAttr = claimMapping.getMappedAttribute();
-                        for (ClaimMapping carbonClaimMapping : claimMappingsInOtherDialect) {
-                            if (mappedAttr.equals(carbonClaimMapping.getMappedAttribute())) {
-                                returnSet.add(new org.wso2.carbon.claim.mgt.ClaimMapping(
-                                        otherDialectURI, requestedClaimURI, carbonClaimMapping
-                                        .getClaim().getClaimUri()));
-                            }
-                        }
-                    }
-                }
+            List<String> otherClaimURIs = fromLocalClaimURIs.get(requestedClaimURI);
+            if (otherClaimURIs == null) {
+                continue;
+            }
+            for (String otherClaimURI : otherClaimURIs) {
+                returnSet.add(new org.wso2.carbon.claim.mgt.ClaimMapping(otherDialectURI, requestedClaimURI,
+                        otherClaimURI));
             }
         }
         return returnSet;
@@ -574,17 +572,12 @@ public enum ClaimManagerHandler {
             tenantDomain, boolean useCarbonDialectAsKey)
             throws ClaimManagementException {
 
-        Map<String, String> returnMap = new HashMap<>();
-        Set<org.wso2.carbon.claim.mgt.ClaimMapping> mappings = getMappingsFromOtherDialectToCarbon(
-                otherDialectURI, otherClaimURIs, tenantDomain);
-        for (org.wso2.carbon.claim.mgt.ClaimMapping mapping : mappings) {
-            if (useCarbonDialectAsKey) {
-                returnMap.put(mapping.getCarbonClaimURI(), mapping.getNonCarbonClaimURI());
-            } else {
-                returnMap.put(mapping.getNonCarbonClaimURI(), mapping.getCarbonClaimURI());
-            }
+        try {
+            return ClaimMetadataHandler.getInstance().getMappingsMapFromOtherDialectToCarbon(otherDialectURI,
+                    otherClaimURIs, tenantDomain, useCarbonDialectAsKey);
+        } catch (ClaimMetadataException e) {
+            throw new ClaimManagementException(e.getMessage(), e);
         }
-        return returnMap;
     }
 
     /**
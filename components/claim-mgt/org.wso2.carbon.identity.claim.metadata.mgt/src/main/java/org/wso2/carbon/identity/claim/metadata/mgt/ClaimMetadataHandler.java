@@ -18,9 +18,12 @@ package org.wso2.carbon.identity.claim.metadata.mgt;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.claim.metadata.mgt.DialectTranslationTable.DialectMappings;
 import org.wso2.carbon.identity.claim.metadata.mgt.exception.ClaimMetadataException;
+import org.wso2.carbon.identity.claim.metadata.mgt.model.Claim;
 import org.wso2.carbon.identity.claim.metadata.mgt.model.ExternalClaim;
 import org.wso2.carbon.identity.claim.metadata.mgt.model.LocalClaim;
+import org.wso2.carbon.identity.core.util.IdentityTenantUtil;
 import org.wso2.carbon.user.core.UserCoreConstants;
 
 import java.util.HashMap;
@@ -28,6 +31,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Handles the claim conversion to one claim dialect to the other
@@ -37,6 +42,9 @@ public class ClaimMetadataHandler {
     private static final Log log = LogFactory.getLog(ClaimMetadataHandler.class);
     private static final ClaimMetadataHandler INSTANCE = new ClaimMetadataHandler();
 
+    private final ConcurrentMap<Integer, DialectTranslationTable> translationTables = new ConcurrentHashMap<>();
+    private final ClaimMetadataManagementServiceImpl claimMetadataService = new ClaimMetadataManagementServiceImpl();
+
     public static ClaimMetadataHandler getInstance() {
         return INSTANCE;
     }
@@ -62,8 +70,6 @@ public class ClaimMetadataHandler {
 
 
         try {
-            ClaimMetadataManagementServiceImpl claimMetadataService = new ClaimMetadataManagementServiceImpl();
-
             if (otherDialectURI.equals(UserCoreConstants.DEFAULT_CARBON_DIALECT) ) {
 
                 List<LocalClaim> localClaims = claimMetadataService.getLocalClaims(tenantDomain);
@@ -135,16 +141,99 @@ public class ClaimMetadataHandler {
     public Map<String, String> getMappingsMapFromOtherDialectToCarbon(String otherDialectURI, Set<String>
             otherClaimURIs, String tenantDomain, boolean useCarbonDialectAsKey) throws ClaimMetadataException {
 
+        DialectMappings mappings = getDialectMappings(otherDialectURI, tenantDomain);
+        Map<String, String> toLocalClaimURIs = mappings.getToLocalClaimURIs();
+
         Map<String, String> returnMap = new HashMap<>();
-        Set<ExternalClaim> mappings = getMappingsFromOtherDialectToCarbon(
-                otherDialectURI, otherClaimURIs, tenantDomain);
-        for (ExternalClaim externalClaim : mappings) {
+        if (otherClaimURIs == null || otherClaimURIs.isEmpty()) {
+            if (!useCarbonDialectAsKey) {
+                returnMap.putAll(toLocalClaimURIs);
+                return returnMap;
+            }
+            for (Map.Entry<String, String> entry : toLocalClaimURIs.entrySet()) {
+                returnMap.put(entry.getValue(), entry.getKey());
+            }
+            return returnMap;
+        }
+
+        for (String otherClaimURI : otherClaimURIs) {
+            String localClaimURI = toLocalClaimURIs.get(otherClaimURI);
+            if (localClaimURI == null) {
+                continue;
+            }
             if (useCarbonDialectAsKey) {
-                returnMap.put(externalClaim.getMappedLocalClaim(), externalClaim.getClaimURI());
+                returnMap.put(localClaimURI, otherClaimURI);
             } else {
-                returnMap.put(externalClaim.getClaimURI(), externalClaim.getMappedLocalClaim());
+                returnMap.put(otherClaimURI, localClaimURI);
             }
         }
         return returnMap;
     }
+
+    /**
+     * Returns the mappings between the claim URIs of a dialect and the local claim URIs, from the translation table
+     * of the tenant. The mappings of the dialect are built again, and replace the ones in the table, when the
+     * claims of the dialect have changed since they were built.
+     *
+     * @param dialectURI   Claim dialect URI
+     * @param tenantDomain Tenant domain
+     * @return Mappings of the dialect
+     * @throws ClaimMetadataException If the claims of the dialect could not be read
+     */
+    public DialectMappings getDialectMappings(String dialectURI, String tenantDomain) throws ClaimMetadataException {
+
+        if (dialectURI == null) {
+            String message = "Invalid argument: \'dialectURI\' is \'NULL\'";
+            log.error(message);
+            throw new ClaimMetadataException(message);
+        }
+
+        int tenantId = IdentityTenantUtil.getTenantId(tenantDomain);
+        if (UserCoreConstants.DEFAULT_CARBON_DIALECT.equals(dialectURI)) {
+            return getDialectMappings(tenantId, dialectURI, claimMetadataService.getLocalClaims(tenantDomain));
+        }
+        return getDialectMappings(tenantId, dialectURI, claimMetadataService.getExternalClaims(dialectURI,
+                tenantDomain));
+    }
+
+    /**
+     * Drops the translation table of a tenant, to be built again on its next use.
+     *
+     * @param tenantId Tenant ID
+     */
+    public void invalidateDialectTranslationTable(int tenantId) {
+
+        translationTables.remove(tenantId);
+        if (log.isDebugEnabled()) {
+            log.debug("Invalidated the claim dialect translation table of tenant: " + tenantId);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    DialectMappings getDialectMappings(int tenantId, String dialectURI, List<? extends Claim> claims) {
+
+        DialectTranslationTable table = translationTables.get(tenantId);
+        DialectMappings mappings = table != null ? table.getDialectMappings(dialectURI) : null;
+        if (mappings != null && mappings.isBuiltFrom(claims)) {
+            return mappings;
+        }
+
+        if (UserCoreConstants.DEFAULT_CARBON_DIALECT.equals(dialectURI)) {
+            mappings = DialectMappings.ofLocalClaims((List<LocalClaim>) claims);
+        } else {
+            mappings = DialectMappings.ofExternalClaims(dialectURI, (List<ExternalClaim>) claims);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Built the translation table of claim dialect: " + dialectURI + " in tenant: " + tenantId);
+        }
+
+        // Publish a new table with the rebuilt dialect, unless another thread replaced the table meanwhile. Readers
+        // keep using the table they got until then.
+        if (table == null) {
+            translationTables.putIfAbsent(tenantId, DialectTranslationTable.EMPTY.withDialectMappings(mappings));
+        } else {
+            translationTables.replace(tenantId, table, table.withDialectMappings(mappings));
+        }
+        return mappings;
+    }
 }
@@ -76,6 +76,7 @@ public class ClaimMetadataManagementServiceImpl implements ClaimMetadataManageme
         // Add listener
 
         this.claimDialectDAO.addClaimDialect(claimDialect, tenantId);
+        ClaimMetadataHandler.getInstance().invalidateDialectTranslationTable(tenantId);
 
         // Add listener
 
@@ -98,6 +99,7 @@ public class ClaimMetadataManagementServiceImpl implements ClaimMetadataManageme
         // Add listener
 
         this.claimDialectDAO.renameClaimDialect(oldClaimDialect, newClaimDialect, tenantId);
+        ClaimMetadataHandler.getInstance().invalidateDialectTranslationTable(tenantId);
 
         // Add listener
 
@@ -118,6 +120,7 @@ public class ClaimMetadataManagementServiceImpl implements ClaimMetadataManageme
         // Add listener
 
         this.claimDialectDAO.removeClaimDialect(claimDialect, tenantId);
+        ClaimMetadataHandler.getInstance().invalidateDialectTranslationTable(tenantId);
 
         // Add listener
 
@@ -153,6 +156,7 @@ public class ClaimMetadataManagementServiceImpl implements ClaimMetadataManageme
         // Add listener
 
         this.localClaimDAO.addLocalClaim(localClaim, tenantId);
+        ClaimMetadataHandler.getInstance().invalidateDialectTranslationTable(tenantId);
 
         // Add listener
     }
@@ -172,6 +176,7 @@ public class ClaimMetadataManagementServiceImpl implements ClaimMetadataManageme
         // Add listener
 
         this.localClaimDAO.updateLocalClaim(localClaim, tenantId);
+        ClaimMetadataHandler.getInstance().invalidateDialectTranslationTable(tenantId);
 
         // Add listener
     }
@@ -198,6 +203,7 @@ public class ClaimMetadataManagementServiceImpl implements ClaimMetadataManageme
         // Add listener
 
         this.localClaimDAO.removeLocalClaim(localClaimURI, tenantId);
+        ClaimMetadataHandler.getInstance().invalidateDialectTranslationTable(tenantId);
 
         // Add listener
     }
@@ -254,6 +260,7 @@ public class ClaimMetadataManagementServiceImpl implements ClaimMetadataManageme
         // Add listener
 
         this.externalClaimDAO.addExternalClaim(externalClaim, tenantId);
+        ClaimMetadataHandler.getInstance().invalidateDialectTranslationTable(tenantId);
 
         // Add listener
     }
@@ -287,6 +294,7 @@ public class ClaimMetadataManagementServiceImpl implements ClaimMetadataManageme
         // Add listener
 
         this.externalClaimDAO.updateExternalClaim(externalClaim, tenantId);
+        ClaimMetadataHandler.getInstance().invalidateDialectTranslationTable(tenantId);
 
         // Add listener
     }
@@ -317,6 +325,7 @@ public class ClaimMetadataManagementServiceImpl implements ClaimMetadataManageme
         // Add listener
 
         this.externalClaimDAO.removeExternalClaim(externalClaimDialectURI, externalClaimURI, tenantId);
+        ClaimMetadataHandler.getInstance().invalidateDialectTranslationTable(tenantId);
 
         // Add listener
     }
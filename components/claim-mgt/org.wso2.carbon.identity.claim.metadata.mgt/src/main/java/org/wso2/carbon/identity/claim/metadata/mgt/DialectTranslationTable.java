@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.claim.metadata.mgt;
+
+import org.wso2.carbon.identity.claim.metadata.mgt.model.Claim;
+import org.wso2.carbon.identity.claim.metadata.mgt.model.ExternalClaim;
+import org.wso2.carbon.identity.claim.metadata.mgt.model.LocalClaim;
+import org.wso2.carbon.identity.claim.metadata.mgt.util.ClaimConstants;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Translation table of the claim dialects of a tenant. For each dialect it holds a map from the claim URIs of the
+ * dialect to the local claim URIs they are mapped to, and the reverse map, so that translating a claim is a hash
+ * lookup instead of a scan over the claims of the dialect. As several claims of a dialect may be mapped to the same
+ * local claim, the reverse map holds all of them.
+ * <p>
+ * A table is immutable. A dialect whose claims changed is translated with a new table, which replaces the table of
+ * the tenant as a whole.
+ */
+public final class DialectTranslationTable {
+
+    static final DialectTranslationTable EMPTY = new DialectTranslationTable(
+            Collections.<String, DialectMappings>emptyMap());
+
+    private final Map<String, DialectMappings> dialectMappings;
+
+    private DialectTranslationTable(Map<String, DialectMappings> dialectMappings) {
+        this.dialectMappings = dialectMappings;
+    }
+
+    /**
+     * Returns the mappings of a dialect.
+     *
+     * @param dialectURI Claim dialect URI
+     * @return Mappings of the dialect, or null if the dialect is not in the table
+     */
+    public DialectMappings getDialectMappings(String dialectURI) {
+        return dialectMappings.get(dialectURI);
+    }
+
+    /**
+     * Returns a table with the given mappings in place of the current mappings of their dialect.
+     *
+     * @param mappings Mappings of a dialect
+     * @return New translation table
+     */
+    DialectTranslationTable withDialectMappings(DialectMappings mappings) {
+
+        Map<String, DialectMappings> newDialectMappings = new HashMap<>(dialectMappings);
+        newDialectMappings.put(mappings.getDialectURI(), mappings);
+        return new DialectTranslationTable(Collections.unmodifiableMap(newDialectMappings));
+    }
+
+    /**
+     * Claim URI mappings of a dialect, with the claims they were built from.
+     */
+    public static final class DialectMappings {
+
+        private final String dialectURI;
+        private final List<? extends Claim> claims;
+        private final Map<String, String> toLocalClaimURIs;
+        private final Map<String, List<String>> fromLocalClaimURIs;
+
+        private DialectMappings(String dialectURI, List<? extends Claim> claims, Map<String, String>
+                toLocalClaimURIs, Map<String, List<String>> fromLocalClaimURIs) {
+
+            this.dialectURI = dialectURI;
+            this.claims = claims;
+            this.toLocalClaimURIs = Collections.unmodifiableMap(toLocalClaimURIs);
+            this.fromLocalClaimURIs = Collections.unmodifiableMap(fromLocalClaimURIs);
+        }
+
+        /**
+         * Builds the mappings of an external dialect.
+         *
+         * @param dialectURI     External claim dialect URI
+         * @param externalClaims Claims of the dialect
+         * @return Mappings of the dialect
+         */
+        static DialectMappings ofExternalClaims(String dialectURI, List<ExternalClaim> externalClaims) {
+
+            Map<String, String> toLocalClaimURIs = new HashMap<>(externalClaims.size() * 2);
+            Map<String, List<String>> fromLocalClaimURIs = new HashMap<>(externalClaims.size() * 2);
+            for (ExternalClaim externalClaim : externalClaims) {
+                toLocalClaimURIs.put(externalClaim.getClaimURI(), externalClaim.getMappedLocalClaim());
+                List<String> claimURIs = fromLocalClaimURIs.get(externalClaim.getMappedLocalClaim());
+                if (claimURIs == null) {
+                    claimURIs = new ArrayList<>(1);
+                    fromLocalClaimURIs.put(externalClaim.getMappedLocalClaim(), claimURIs);
+                }
+                claimURIs.add(externalClaim.getClaimURI());
+            }
+            for (Map.Entry<String, List<String>> entry : fromLocalClaimURIs.entrySet()) {
+                entry.setValue(Collections.unmodifiableList(entry.getValue()));
+            }
+            return new DialectMappings(dialectURI, externalClaims, toLocalClaimURIs, fromLocalClaimURIs);
+        }
+
+        /**
+         * Builds the mappings of the local dialect, where every local claim is mapped to itself.
+         *
+         * @param localClaims Local claims
+         * @return Mappings of the local dialect
+         */
+        static DialectMappings ofLocalClaims(List<LocalClaim> localClaims) {
+
+            Map<String, String> toLocalClaimURIs = new HashMap<>(localClaims.size() * 2);
+            Map<String, List<String>> fromLocalClaimURIs = new HashMap<>(localClaims.size() * 2);
+            for (LocalClaim localClaim : localClaims) {
+                toLocalClaimURIs.put(localClaim.getClaimURI(), localClaim.getClaimURI());
+                fromLocalClaimURIs.put(localClaim.getClaimURI(), Collections.singletonList(localClaim.getClaimURI()));
+            }
+            return new DialectMappings(ClaimConstants.LOCAL_CLAIM_DIALECT_URI, localClaims, toLocalClaimURIs,
+                    fromLocalClaimURIs);
+        }
+
+        public String getDialectURI() {
+            return dialectURI;
+        }
+
+        /**
+         * @return Local claim URIs by the claim URIs of the dialect
+         */
+        public Map<String, String> getToLocalClaimURIs() {
+            return toLocalClaimURIs;
+        }
+
+        /**
+         * @return Claim URIs of the dialect by the local claim URIs they are mapped to
+         */
+        public Map<String, List<String>> getFromLocalClaimURIs() {
+            return fromLocalClaimURIs;
+        }
+
+        /**
+         * Returns whether the mappings were built from the given claims. The claim metadata DAOs return the same
+         * cached list until the claims of the dialect change, on this node or another node of the cluster.
+         *
+         * @param claims Current claims of the dialect
+         * @return True if the mappings are up to date with the claims
+         */
+        boolean isBuiltFrom(List<? extends Claim> claims) {
+            return this.claims == claims;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.carbon.identity.claim.metadata.mgt;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.claim.metadata.mgt.DialectTranslationTable.DialectMappings;
+import org.wso2.carbon.identity.claim.metadata.mgt.model.ExternalClaim;
+import org.wso2.carbon.identity.claim.metadata.mgt.model.LocalClaim;
+import org.wso2.carbon.identity.claim.metadata.mgt.util.ClaimConstants;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class DialectTranslationTableTest {
+
+    private static final int TENANT_ID = 1;
+    private static final String OIDC_DIALECT = "http://wso2.org/oidc/claim";
+    private static final int DIALECT_SIZE = 200;
+    private static final int REQUESTED_CLAIMS = 50;
+
+    private ClaimMetadataHandler claimMetadataHandler;
+
+    @BeforeMethod
+    public void setUp() {
+        claimMetadataHandler = new ClaimMetadataHandler();
+    }
+
+    @Test
+    public void testMappingsOfExternalDialect() {
+
+        DialectMappings mappings = claimMetadataHandler.getDialectMappings(TENANT_ID, OIDC_DIALECT,
+                createExternalClaims(3));
+
+        Assert.assertEquals(mappings.getDialectURI(), OIDC_DIALECT);
+        Assert.assertEquals(mappings.getToLocalClaimURIs().size(), 3);
+        Assert.assertEquals(mappings.getToLocalClaimURIs().get(externalClaimURI(1)), localClaimURI(1));
+        Assert.assertEquals(mappings.getFromLocalClaimURIs().get(localClaimURI(2)),
+                Collections.singletonList(externalClaimURI(2)));
+        Assert.assertNull(mappings.getFromLocalClaimURIs().get(localClaimURI(3)));
+    }
+
+    @Test
+    public void testClaimsMappedToSameLocalClaim() {
+
+        List<ExternalClaim> externalClaims = createExternalClaims(2);
+        externalClaims.add(new ExternalClaim(OIDC_DIALECT, "alias1", localClaimURI(1)));
+
+        DialectMappings mappings = claimMetadataHandler.getDialectMappings(TENANT_ID, OIDC_DIALECT, externalClaims);
+
+        Assert.assertEquals(mappings.getToLocalClaimURIs().get("alias1"), localClaimURI(1));
+        Assert.assertEquals(mappings.getFromLocalClaimURIs().get(localClaimURI(1)),
+                Arrays.asList(externalClaimURI(1), "alias1"));
+        Assert.assertEquals(mappings.getFromLocalClaimURIs().get(localClaimURI(0)),
+                Collections.singletonList(externalClaimURI(0)));
+    }
+
+    @Test
+    public void testMappingsOfLocalDialect() {
+
+        List<LocalClaim> localClaims = new ArrayList<>();
+        localClaims.add(new LocalClaim(localClaimURI(0)));
+        localClaims.add(new LocalClaim(localClaimURI(1)));
+
+        DialectMappings mappings = claimMetadataHandler.getDialectMappings(TENANT_ID,
+                ClaimConstants.LOCAL_CLAIM_DIALECT_URI, localClaims);
+
+        Assert.assertEquals(mappings.getToLocalClaimURIs().get(localClaimURI(0)), localClaimURI(0));
+        Assert.assertEquals(mappings.getFromLocalClaimURIs().get(localClaimURI(1)),
+                Collections.singletonList(localClaimURI(1)));
+    }
+
+    @Test
+    public void testMappingsAreRebuiltWhenClaimsChange() {
+
+        List<ExternalClaim> externalClaims = createExternalClaims(3);
+        DialectMappings mappings = claimMetadataHandler.getDialectMappings(TENANT_ID, OIDC_DIALECT, externalClaims);
+
+        // The claim metadata DAOs hand out the same cached list until the claims of the dialect change.
+        Assert.assertSame(claimMetadataHandler.getDialectMappings(TENANT_ID, OIDC_DIALECT, externalClaims), mappings);
+
+        List<ExternalClaim> changedClaims = createExternalClaims(4);
+        DialectMappings rebuiltMappings = claimMetadataHandler.getDialectMappings(TENANT_ID, OIDC_DIALECT,
+                changedClaims);
+        Assert.assertNotSame(rebuiltMappings, mappings);
+        Assert.assertEquals(rebuiltMappings.getToLocalClaimURIs().get(externalClaimURI(3)), localClaimURI(3));
+        Assert.assertSame(claimMetadataHandler.getDialectMappings(TENANT_ID, OIDC_DIALECT, changedClaims),
+                rebuiltMappings);
+    }
+
+    @Test
+    public void testInvalidateDialectTranslationTable() {
+
+        List<ExternalClaim> externalClaims = createExternalClaims(3);
+        DialectMappings mappings = claimMetadataHandler.getDialectMappings(TENANT_ID, OIDC_DIALECT, externalClaims);
+        DialectMappings otherTenantMappings = claimMetadataHandler.getDialectMappings(TENANT_ID + 1, OIDC_DIALECT,
+                externalClaims);
+
+        claimMetadataHandler.invalidateDialectTranslationTable(TENANT_ID);
+
+        Assert.assertNotSame(claimMetadataHandler.getDialectMappings(TENANT_ID, OIDC_DIALECT, externalClaims),
+                mappings);
+        Assert.assertSame(claimMetadataHandler.getDialectMappings(TENANT_ID + 1, OIDC_DIALECT, externalClaims),
+                otherTenantMappings);
+    }
+
+    @Test
+    public void testTranslationWithTableMatchesScan() {
+
+        List<ExternalClaim> externalClaims = createExternalClaims(DIALECT_SIZE);
+        List<String> requestedClaimURIs = new ArrayList<>();
+        for (int i = 0; i < DIALECT_SIZE; i += DIALECT_SIZE / REQUESTED_CLAIMS) {
+            requestedClaimURIs.add(externalClaimURI(i));
+        }
+
+        Map<String, String> translated = translateByTable(externalClaims, requestedClaimURIs);
+
+        Assert.assertEquals(translated.size(), REQUESTED_CLAIMS);
+        Assert.assertEquals(translated, translateByScan(externalClaims, requestedClaimURIs));
+    }
+
+    /**
+     * Translates the claims the way it was done before the translation table, scanning the claims of the dialect for
+     * each requested claim.
+     */
+    private static Map<String, String> translateByScan(List<ExternalClaim> externalClaims,
+                                                       List<String> requestedClaimURIs) {
+
+        Map<String, String> translated = new HashMap<>();
+        for (String requestedClaimURI : requestedClaimURIs) {
+            for (ExternalClaim externalClaim : externalClaims) {
+                if (requestedClaimURI.equals(externalClaim.getClaimURI())) {
+                    translated.put(requestedClaimURI, externalClaim.getMappedLocalClaim());
+                }
+            }
+        }
+        return translated;
+    }
+
+    private Map<String, String> translateByTable(List<ExternalClaim> externalClaims,
+                                                 List<String> requestedClaimURIs) {
+
+        Map<String, String> toLocalClaimURIs = claimMetadataHandler.getDialectMappings(TENANT_ID, OIDC_DIALECT,
+                externalClaims).getToLocalClaimURIs();
+        Map<String, String> translated = new HashMap<>();
+        for (String requestedClaimURI : requestedClaimURIs) {
+            String localClaimURI = toLocalClaimURIs.get(requestedClaimURI);
+            if (localClaimURI != null) {
+                translated.put(requestedClaimURI, localClaimURI);
+            }
+        }
+        return translated;
+    }
+
+    private static List<ExternalClaim> createExternalClaims(int count) {
+
+        List<ExternalClaim> externalClaims = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            externalClaims.add(new ExternalClaim(OIDC_DIALECT, externalClaimURI(i), localClaimURI(i)));
+        }
+        return externalClaims;
+    }
+
+    private static String externalClaimURI(int index) {
+        return "claim" + index;
+    }
+
+    private static String localClaimURI(int index) {
+        return ClaimConstants.LOCAL_CLAIM_DIALECT_URI + "/claim" + index;
+    }
+}
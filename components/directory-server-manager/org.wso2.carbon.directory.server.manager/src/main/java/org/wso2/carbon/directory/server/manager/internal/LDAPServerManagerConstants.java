@@ -50,6 +50,12 @@ public class LDAPServerManagerConstants {
     // For back-end we have to use following default values
     public static final String DEFAULT_BE_PASSWORD_REGULAR_EXPRESSION = "[\\S]{5,30}";
     public static final String DEFAULT_BE_SERVICE_NAME_REGULAR_EXPRESSION = DEFAULT_SERVICE_NAME_REGULAR_EXPRESSION;
+    // Connection pooling, paging and existence cache properties
+    public static final String CONNECTION_POOLING_ENABLED_PROPERTY = "ConnectionPoolingEnabled";
+    public static final String SERVICE_PRINCIPLE_PAGE_SIZE_PROPERTY = "ServicePrinciplePageSize";
+    public static final int DEFAULT_SERVICE_PRINCIPLE_PAGE_SIZE = 500;
+    public static final String SERVICE_EXISTENCE_CACHE_TIMEOUT_PROPERTY = "ServiceExistenceCacheTimeout";
+    public static final long DEFAULT_SERVICE_EXISTENCE_CACHE_TIMEOUT = 5000;
 
     private LDAPServerManagerConstants() {
     }
@@ -40,6 +40,11 @@ import javax.naming.directory.BasicAttributes;
 import javax.naming.directory.DirContext;
 import javax.naming.directory.SearchControls;
 import javax.naming.directory.SearchResult;
+import javax.naming.ldap.Control;
+import javax.naming.ldap.LdapContext;
+import javax.naming.ldap.PagedResultsControl;
+import javax.naming.ldap.PagedResultsResponseControl;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -66,12 +71,32 @@ public class LDAPServerStoreManager {
 
         this.realmConfiguration = realmConfig;
         try {
-            this.connectionSource = new LDAPConnectionContext(realmConfig);
+            this.connectionSource = new LDAPConnectionContext(getPooledRealmConfiguration(realmConfig));
         } catch (UserStoreException e) {
             log.error("Error occurred while instantiating LDAPConnectionContext", e);
         }
     }
 
+    /**
+     * Every operation opens and closes its own directory context, so connection pooling is enabled for the contexts
+     * of this manager unless the user store configures it explicitly.
+     */
+    private static RealmConfiguration getPooledRealmConfiguration(RealmConfiguration realmConfig) {
+
+        if (realmConfig.getUserStoreProperty(LDAPServerManagerConstants.CONNECTION_POOLING_ENABLED_PROPERTY) != null) {
+            return realmConfig;
+        }
+        try {
+            RealmConfiguration pooledRealmConfig = realmConfig.cloneRealmConfiguration();
+            pooledRealmConfig.getUserStoreProperties().put(
+                    LDAPServerManagerConstants.CONNECTION_POOLING_ENABLED_PROPERTY, Boolean.TRUE.toString());
+            return pooledRealmConfig;
+        } catch (org.wso2.carbon.user.api.UserStoreException e) {
+            log.warn("Unable to enable connection pooling for service principle operations.", e);
+            return realmConfig;
+        }
+    }
+
     protected boolean isServerNameValid(String serverName) {
 
         String serviceNamePolicyRegEx = this.realmConfiguration.getUserStoreProperty
@@ -165,9 +190,60 @@ public class LDAPServerStoreManager {
 
     }
 
+    private String getServiceUidFilter(String uid) {
+        return "(&(" + LDAPServerManagerConstants.LDAP_UID + "=" + uid + ")" + getServerPrincipleIncludeString() + ")";
+    }
+
+    private Boolean getCachedExistence(String searchBase, String filter) {
+
+        return ServicePrincipleExistenceCache.getInstance().getExistence(
+                realmConfiguration.getUserStoreProperty(LDAPConstants.CONNECTION_URL), searchBase, filter);
+    }
+
+    private void addCachedExistence(String searchBase, String filter, boolean exists) {
+
+        ServicePrincipleExistenceCache.getInstance().addExistence(
+                realmConfiguration.getUserStoreProperty(LDAPConstants.CONNECTION_URL), searchBase, filter, exists,
+                getExistenceCacheTimeout());
+    }
+
+    private void clearCachedExistence(String searchBase, String uid, String servicePrinciple) {
+
+        String connectionURL = realmConfiguration.getUserStoreProperty(LDAPConstants.CONNECTION_URL);
+        ServicePrincipleExistenceCache existenceCache = ServicePrincipleExistenceCache.getInstance();
+        if (uid != null) {
+            existenceCache.clearExistence(connectionURL, searchBase, getServiceUidFilter(uid));
+        }
+        existenceCache.clearExistence(connectionURL, searchBase, getServicePrincipleFilter(servicePrinciple));
+    }
+
+    private long getExistenceCacheTimeout() {
+
+        String timeout = realmConfiguration.getUserStoreProperty(
+                LDAPServerManagerConstants.SERVICE_EXISTENCE_CACHE_TIMEOUT_PROPERTY);
+        if (StringUtils.isNotBlank(timeout)) {
+            try {
+                return Long.parseLong(timeout.trim());
+            } catch (NumberFormatException e) {
+                log.warn("Invalid service existence cache timeout " + timeout + ". Using the default value.");
+            }
+        }
+        return LDAPServerManagerConstants.DEFAULT_SERVICE_EXISTENCE_CACHE_TIMEOUT;
+    }
+
     public boolean isExistingServiceUid(String uid)
             throws DirectoryServerManagerException {
 
+        //first search the existing user entry.
+        String searchBase = realmConfiguration.getUserStoreProperty(LDAPConstants.USER_SEARCH_BASE);
+
+        String filter = getServiceUidFilter(uid);
+
+        Boolean cachedExistence = getCachedExistence(searchBase, filter);
+        if (cachedExistence != null) {
+            return cachedExistence;
+        }
+
         DirContext dirContext;
         try {
             dirContext = this.connectionSource.getContext();
@@ -176,19 +252,15 @@ public class LDAPServerStoreManager {
             throw new DirectoryServerManagerException("Unable to retrieve directory context.", e);
         }
 
-        //first search the existing user entry.
-        String searchBase = realmConfiguration.getUserStoreProperty(LDAPConstants.USER_SEARCH_BASE);
-
-        String filter =
-                "(&(" + LDAPServerManagerConstants.LDAP_UID + "=" + uid + ")" + getServerPrincipleIncludeString() + ")";
-
         SearchControls searchControls = new SearchControls();
         searchControls.setSearchScope(SearchControls.SUBTREE_SCOPE);
         searchControls.setReturningAttributes(new String[]{LDAPServerManagerConstants.LDAP_UID});
 
         try {
             NamingEnumeration<SearchResult> namingEnumeration = dirContext.search(searchBase, filter, searchControls);
-            return namingEnumeration.hasMore();
+            boolean exists = namingEnumeration.hasMore();
+            addCachedExistence(searchBase, filter, exists);
+            return exists;
 
         } catch (NamingException e) {
             log.error("Unable to check whether service exists in directory server. UID - " + uid, e);
@@ -205,6 +277,16 @@ public class LDAPServerStoreManager {
     public boolean isExistingServicePrinciple(String servicePrinciple)
             throws DirectoryServerManagerException {
 
+        //first search the existing user entry.
+        String searchBase = realmConfiguration.getUserStoreProperty(LDAPConstants.USER_SEARCH_BASE);
+
+        String filter = getServicePrincipleFilter(servicePrinciple);
+
+        Boolean cachedExistence = getCachedExistence(searchBase, filter);
+        if (cachedExistence != null) {
+            return cachedExistence;
+        }
+
         DirContext dirContext;
         try {
             dirContext = this.connectionSource.getContext();
@@ -213,18 +295,15 @@ public class LDAPServerStoreManager {
             throw new DirectoryServerManagerException("Unable to retrieve directory context.", e);
         }
 
-        //first search the existing user entry.
-        String searchBase = realmConfiguration.getUserStoreProperty(LDAPConstants.USER_SEARCH_BASE);
-
-        String filter = getServicePrincipleFilter(servicePrinciple);
-
         SearchControls searchControls = new SearchControls();
         searchControls.setSearchScope(SearchControls.SUBTREE_SCOPE);
         searchControls.setReturningAttributes(new String[]{LDAPServerManagerConstants.LDAP_UID});
 
         try {
             NamingEnumeration<SearchResult> namingEnumeration = dirContext.search(searchBase, filter, searchControls);
-            return namingEnumeration.hasMore();
+            boolean exists = namingEnumeration.hasMore();
+            addCachedExistence(searchBase, filter, exists);
+            return exists;
 
         } catch (NamingException e) {
             String message = "Unable to search entry with search base " + searchBase + ", filter -" + filter;
@@ -254,20 +333,22 @@ public class LDAPServerStoreManager {
         }
 
         String searchBase = this.realmConfiguration.getUserStoreProperty(LDAPConstants.USER_SEARCH_BASE);
+        DirContext searchBaseContext = null;
+        String serverUid = null;
         try {
 
-            dirContext = (DirContext) dirContext.lookup(searchBase);
+            searchBaseContext = (DirContext) dirContext.lookup(searchBase);
 
             BasicAttributes basicAttributes = new BasicAttributes(true);
 
             // Put only service name as uid. i.e. if server name is like ftp/wso2.example.com
             // then add only ftp as uid
-            String serverUid = getServiceName(serverName);
+            serverUid = getServiceName(serverName);
 
             constructBasicAttributes(basicAttributes, serverUid, serverName, credentials, serverDescription,
                                      LDAPServerManagerConstants.SERVER_PRINCIPAL_ATTRIBUTE_VALUE);
 
-            dirContext.bind(LDAPServerManagerConstants.LDAP_UID + "=" + serverUid, null, basicAttributes);
+            searchBaseContext.bind(LDAPServerManagerConstants.LDAP_UID + "=" + serverUid, null, basicAttributes);
 
         } catch (NamingException e) {
             String message = "Can not access the directory context or user " +
@@ -275,11 +356,9 @@ public class LDAPServerStoreManager {
             log.error(message, e);
             throw new DirectoryServerManagerException(message, e);
         } finally {
-            try {
-                JNDIUtil.closeContext(dirContext);
-            } catch (UserStoreException e) {
-                log.error("Unable to close directory context.", e);
-            }
+            clearCachedExistence(searchBase, serverUid, serverName);
+            closeContext(searchBaseContext);
+            closeContext(dirContext);
         }
     }
 
@@ -371,47 +450,19 @@ public class LDAPServerStoreManager {
                                  LDAPServerManagerConstants.LDAP_COMMON_NAME};
         searchCtls.setReturningAttributes(returnedAtts);
         DirContext dirContext = null;
+        LdapContext pagedSearchContext = null;
         try {
             dirContext = connectionSource.getContext();
-            NamingEnumeration<SearchResult> answer = dirContext.search(searchBase, buff.toString(),
-                                                                       searchCtls);
+            pagedSearchContext = getPagedSearchContext(dirContext);
             List<ServerPrinciple> list = new ArrayList<ServerPrinciple>();
-            int i = 0;
-            while (answer.hasMoreElements() && i < maxItemLimit) {
-                SearchResult sr = answer.next();
-                if (sr.getAttributes() != null) {
-                    Attribute serverNameAttribute = sr.getAttributes()
-                            .get(LDAPServerManagerConstants.KRB5_PRINCIPAL_NAME_ATTRIBUTE);
-                    Attribute serverDescription = sr.getAttributes().get(LDAPServerManagerConstants.LDAP_COMMON_NAME);
-                    if (serverNameAttribute != null) {
-
-                        ServerPrinciple principle;
-                        String serviceName;
-                        String serverPrincipleFullName = (String) serverNameAttribute.get();
-
-                        if (serverPrincipleFullName.toLowerCase(Locale.ENGLISH)
-                                .contains(LDAPServerManagerConstants.KERBEROS_TGT)) {
-                            continue;
-                        }
-
-                        if (serverPrincipleFullName.contains("@")) {
-                            serviceName = serverPrincipleFullName.split("@")[0];
-                        } else {
-                            serviceName = serverPrincipleFullName;
-                        }
-
-                        if (serverDescription != null) {
-                            principle = new ServerPrinciple(serviceName,
-                                                            (String) serverDescription.get());
-                        } else {
-
-                            principle = new ServerPrinciple(serviceName);
-                        }
-
-                        list.add(principle);
-                        i++;
-                    }
-                }
+
+            if (pagedSearchContext == null) {
+                NamingEnumeration<SearchResult> answer = dirContext.search(searchBase, buff.toString(),
+                                                                           searchCtls);
+                addServerPrinciples(answer, list, maxItemLimit);
+            } else {
+                addPagedServerPrinciples(pagedSearchContext, searchBase, buff.toString(), searchCtls, list,
+                                         maxItemLimit, getPageSize());
             }
 
             serverNames = list.toArray(new ServerPrinciple[list.size()]);
@@ -420,18 +471,134 @@ public class LDAPServerStoreManager {
         } catch (NamingException e) {
             log.error(e.getMessage(), e);
             throw new DirectoryServerManagerException("Unable to list service principles.", e);
+        } catch (IOException e) {
+            log.error("Unable to create paged results control.", e);
+            throw new DirectoryServerManagerException("Unable to list service principles.", e);
         } catch (UserStoreException e) {
             log.error("Unable to retrieve LDAP connection context.", e);
             throw new DirectoryServerManagerException("Unable to list service principles.", e);
         } finally {
+            closeContext(pagedSearchContext);
+            closeContext(dirContext);
+        }
+        return serverNames;
+
+    }
+
+    /**
+     * Streams the principles page by page (RFC 2696). The control is not critical, so a server without paging
+     * support returns all of them in one go. When the item limit is reached before the last page, the paged search
+     * is abandoned with a page size of 0 so that the server releases the rest of the result set.
+     */
+    static void addPagedServerPrinciples(LdapContext pagedSearchContext, String searchBase, String filter,
+                                         SearchControls searchControls, List<ServerPrinciple> list,
+                                         int maxItemLimit, int pageSize) throws NamingException, IOException {
+
+        byte[] cookie = null;
+        do {
+            pagedSearchContext.setRequestControls(new Control[]{
+                    new PagedResultsControl(pageSize, cookie, Control.NONCRITICAL)});
+            NamingEnumeration<SearchResult> answer = pagedSearchContext.search(searchBase, filter, searchControls);
             try {
-                JNDIUtil.closeContext(dirContext);
-            } catch (UserStoreException e) {
-                log.error("Unable to close directory context.", e);
+                addServerPrinciples(answer, list, maxItemLimit);
+            } finally {
+                answer.close();
             }
+            cookie = getPagedResultsCookie(pagedSearchContext.getResponseControls());
+        } while (cookie != null && list.size() < maxItemLimit);
+
+        if (cookie != null) {
+            pagedSearchContext.setRequestControls(new Control[]{
+                    new PagedResultsControl(0, cookie, Control.NONCRITICAL)});
+            pagedSearchContext.search(searchBase, filter, searchControls).close();
         }
-        return serverNames;
+    }
+
+    private static void addServerPrinciples(NamingEnumeration<SearchResult> answer, List<ServerPrinciple> list,
+                                            int maxItemLimit) throws NamingException {
+
+        while (list.size() < maxItemLimit && answer.hasMoreElements()) {
+            SearchResult sr = answer.next();
+            if (sr.getAttributes() != null) {
+                Attribute serverNameAttribute = sr.getAttributes()
+                        .get(LDAPServerManagerConstants.KRB5_PRINCIPAL_NAME_ATTRIBUTE);
+                Attribute serverDescription = sr.getAttributes().get(LDAPServerManagerConstants.LDAP_COMMON_NAME);
+                if (serverNameAttribute != null) {
+
+                    ServerPrinciple principle;
+                    String serviceName;
+                    String serverPrincipleFullName = (String) serverNameAttribute.get();
+
+                    if (serverPrincipleFullName.toLowerCase(Locale.ENGLISH)
+                            .contains(LDAPServerManagerConstants.KERBEROS_TGT)) {
+                        continue;
+                    }
+
+                    if (serverPrincipleFullName.contains("@")) {
+                        serviceName = serverPrincipleFullName.split("@")[0];
+                    } else {
+                        serviceName = serverPrincipleFullName;
+                    }
+
+                    if (serverDescription != null) {
+                        principle = new ServerPrinciple(serviceName,
+                                                        (String) serverDescription.get());
+                    } else {
+
+                        principle = new ServerPrinciple(serviceName);
+                    }
+
+                    list.add(principle);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a context of the directory root to set the paged results request control on, so that the control
+     * does not stay on the pooled connection context, or null if the directory does not provide one.
+     */
+    private LdapContext getPagedSearchContext(DirContext dirContext) throws NamingException {
+
+        Object context = dirContext.lookup("");
+        if (context instanceof LdapContext) {
+            return (LdapContext) context;
+        }
+        if (context instanceof DirContext) {
+            closeContext((DirContext) context);
+        }
+        return null;
+    }
+
+    private static byte[] getPagedResultsCookie(Control[] responseControls) {
+
+        if (responseControls == null) {
+            return null;
+        }
+        for (Control control : responseControls) {
+            if (control instanceof PagedResultsResponseControl) {
+                byte[] cookie = ((PagedResultsResponseControl) control).getCookie();
+                return cookie == null || cookie.length == 0 ? null : cookie;
+            }
+        }
+        return null;
+    }
+
+    private int getPageSize() {
 
+        String pageSize = realmConfiguration.getUserStoreProperty(
+                LDAPServerManagerConstants.SERVICE_PRINCIPLE_PAGE_SIZE_PROPERTY);
+        if (StringUtils.isNotBlank(pageSize)) {
+            try {
+                int size = Integer.parseInt(pageSize.trim());
+                if (size > 0) {
+                    return size;
+                }
+            } catch (NumberFormatException e) {
+                log.warn("Invalid service principle page size " + pageSize + ". Using the default value.");
+            }
+        }
+        return LDAPServerManagerConstants.DEFAULT_SERVICE_PRINCIPLE_PAGE_SIZE;
     }
 
     private String getFullyQualifiedPrincipalName(String principleName) {
@@ -547,9 +714,12 @@ public class LDAPServerStoreManager {
                 basicAttributes.put(newPasswordAttribute);
 
                 String dnName = searchResult.getName();
-                dirContext = (DirContext) dirContext.lookup(searchBase);
-
-                dirContext.modifyAttributes(dnName, DirContext.REPLACE_ATTRIBUTE, basicAttributes);
+                DirContext searchBaseContext = (DirContext) dirContext.lookup(searchBase);
+                try {
+                    searchBaseContext.modifyAttributes(dnName, DirContext.REPLACE_ATTRIBUTE, basicAttributes);
+                } finally {
+                    closeContext(searchBaseContext);
+                }
             }
 
         } catch (NamingException e) {
@@ -675,13 +845,6 @@ public class LDAPServerStoreManager {
     public void deleteServicePrinciple(String serverName)
             throws DirectoryServerManagerException {
 
-        DirContext dirContext;
-        try {
-            dirContext = this.connectionSource.getContext();
-        } catch (UserStoreException e) {
-            throw new DirectoryServerManagerException("Unable to retrieve directory connection.", e);
-        }
-
         String searchBase = this.realmConfiguration.getUserStoreProperty(LDAPConstants.USER_SEARCH_BASE);
 
         String userId = lookupUserId(serverName);
@@ -691,23 +854,38 @@ public class LDAPServerStoreManager {
                                                       serverName);
         }
 
+        DirContext dirContext;
         try {
-            dirContext = (DirContext) dirContext.lookup(searchBase);
-            dirContext.unbind("uid=" + userId);
+            dirContext = this.connectionSource.getContext();
+        } catch (UserStoreException e) {
+            throw new DirectoryServerManagerException("Unable to retrieve directory connection.", e);
+        }
+
+        DirContext searchBaseContext = null;
+        try {
+            searchBaseContext = (DirContext) dirContext.lookup(searchBase);
+            searchBaseContext.unbind("uid=" + userId);
 
         } catch (NamingException e) {
             log.error("Could not remove service principle " + serverName, e);
             throw new DirectoryServerManagerException("Could not remove service principle " + serverName, e);
         } finally {
-            try {
-                JNDIUtil.closeContext(dirContext);
-            } catch (UserStoreException e) {
-                log.error("Unable to close directory context.", e);
-            }
+            clearCachedExistence(searchBase, userId, serverName);
+            closeContext(searchBaseContext);
+            closeContext(dirContext);
         }
 
     }
 
+    private void closeContext(DirContext dirContext) {
+
+        try {
+            JNDIUtil.closeContext(dirContext);
+        } catch (UserStoreException e) {
+            log.error("Unable to close directory context.", e);
+        }
+    }
+
     private String getRealmName() {
 
         // First check whether realm name is defined in the configuration
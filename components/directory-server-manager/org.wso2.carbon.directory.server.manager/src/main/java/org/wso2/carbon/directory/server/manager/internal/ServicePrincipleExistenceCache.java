@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.directory.server.manager.internal;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Short lived, node local cache of service uid and service principle existence checks. Adding a service principle
+ * checks the same uid and principle names several times within a few milliseconds, so the outcome of a search is
+ * kept for a few seconds. Entries of a principle are removed when this node adds, updates or deletes it.
+ */
+public class ServicePrincipleExistenceCache {
+
+    private static final int MAX_ENTRIES = 1000;
+
+    private static final ServicePrincipleExistenceCache instance = new ServicePrincipleExistenceCache();
+
+    private final Map<String, CachedExistence> existenceMap = new ConcurrentHashMap<>();
+
+    private ServicePrincipleExistenceCache() {
+    }
+
+    public static ServicePrincipleExistenceCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the cached outcome of a search.
+     *
+     * @param connectionURL Directory server the search is sent to
+     * @param searchBase    Search base
+     * @param filter        Search filter
+     * @return Whether an entry matched the filter, or null if the outcome is not cached or has expired
+     */
+    public Boolean getExistence(String connectionURL, String searchBase, String filter) {
+
+        String key = getKey(connectionURL, searchBase, filter);
+        CachedExistence cachedExistence = existenceMap.get(key);
+        if (cachedExistence == null) {
+            return null;
+        }
+        if (cachedExistence.isExpired(System.nanoTime())) {
+            existenceMap.remove(key, cachedExistence);
+            return null;
+        }
+        return cachedExistence.exists;
+    }
+
+    public void addExistence(String connectionURL, String searchBase, String filter, boolean exists,
+                             long timeoutInMillis) {
+
+        if (timeoutInMillis <= 0) {
+            return;
+        }
+        if (existenceMap.size() >= MAX_ENTRIES) {
+            removeExpiredEntries();
+        }
+        existenceMap.put(getKey(connectionURL, searchBase, filter), new CachedExistence(exists,
+                System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutInMillis)));
+    }
+
+    public void clearExistence(String connectionURL, String searchBase, String filter) {
+        existenceMap.remove(getKey(connectionURL, searchBase, filter));
+    }
+
+    private void removeExpiredEntries() {
+
+        long now = System.nanoTime();
+        for (Iterator<CachedExistence> iterator = existenceMap.values().iterator(); iterator.hasNext(); ) {
+            if (iterator.next().isExpired(now)) {
+                iterator.remove();
+            }
+        }
+        if (existenceMap.size() >= MAX_ENTRIES) {
+            existenceMap.clear();
+        }
+    }
+
+    private static String getKey(String connectionURL, String searchBase, String filter) {
+        return connectionURL + "|" + searchBase + "|" + filter;
+    }
+
+    private static final class CachedExistence {
+
+        private final boolean exists;
+        private final long expiryTime;
+
+        private CachedExistence(boolean exists, long expiryTime) {
+
+            this.exists = exists;
+            this.expiryTime = expiryTime;
+        }
+
+        private boolean isExpired(long now) {
+            return now - expiryTime >= 0;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.directory.server.manager.internal;
+
+import junit.framework.TestCase;
+import org.wso2.carbon.directory.server.manager.common.ServerPrinciple;
+
+import javax.naming.NamingEnumeration;
+import javax.naming.directory.BasicAttributes;
+import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
+import javax.naming.ldap.Control;
+import javax.naming.ldap.LdapContext;
+import javax.naming.ldap.PagedResultsResponseControl;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+public class LDAPServerStorePagedSearchTest extends TestCase {
+
+    private static final String SEARCH_BASE = "ou=Users,dc=example,dc=com";
+    private static final String FILTER = "(krb5PrincipalName=*)";
+
+    public void testAllPagesAreRead() throws Exception {
+
+        PagedDirectory directory = new PagedDirectory(2, 5);
+        List<ServerPrinciple> list = search(directory, 50, 2);
+
+        assertEquals(5, list.size());
+        assertEquals(3, directory.requests.size());
+        assertEquals(2, directory.getRequestedPageSize(2));
+    }
+
+    public void testPagedSearchIsAbandonedAtItemLimit() throws Exception {
+
+        PagedDirectory directory = new PagedDirectory(2, 10);
+        List<ServerPrinciple> list = search(directory, 3, 2);
+
+        assertEquals(3, list.size());
+        // Two pages are read, and the search is abandoned with the cookie of the second page.
+        assertEquals(3, directory.requests.size());
+        assertEquals(0, directory.getRequestedPageSize(2));
+        assertEquals("4", new String(directory.getCookie(2), StandardCharsets.UTF_8));
+    }
+
+    public void testSearchIsNotAbandonedOnLastPage() throws Exception {
+
+        PagedDirectory directory = new PagedDirectory(2, 4);
+        List<ServerPrinciple> list = search(directory, 4, 2);
+
+        assertEquals(4, list.size());
+        assertEquals(2, directory.requests.size());
+    }
+
+    private List<ServerPrinciple> search(PagedDirectory directory, int maxItemLimit, int pageSize)
+            throws Exception {
+
+        LdapContext context = (LdapContext) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{LdapContext.class}, directory);
+        List<ServerPrinciple> list = new ArrayList<ServerPrinciple>();
+        LDAPServerStoreManager.addPagedServerPrinciples(context, SEARCH_BASE, FILTER, new SearchControls(), list,
+                maxItemLimit, pageSize);
+        return list;
+    }
+
+    /**
+     * Directory holding a number of service principles, which returns them in pages of a fixed size. The cookie of
+     * a page is the offset of the next page.
+     */
+    private static class PagedDirectory implements InvocationHandler {
+
+        private final int pageSize;
+        private final int principleCount;
+        private final List<byte[]> requests = new ArrayList<byte[]>();
+        private int nextOffset;
+
+        private PagedDirectory(int pageSize, int principleCount) {
+
+            this.pageSize = pageSize;
+            this.principleCount = principleCount;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+            if ("setRequestControls".equals(method.getName())) {
+                requests.add(((Control[]) args[0])[0].getEncodedValue());
+                return null;
+            }
+            if ("search".equals(method.getName())) {
+                byte[] cookie = getCookie(requests.size() - 1);
+                int offset = cookie.length == 0 ? 0 : Integer.parseInt(new String(cookie, StandardCharsets.UTF_8));
+                List<SearchResult> page = new ArrayList<SearchResult>();
+                for (int i = offset; i < Math.min(offset + pageSize, principleCount); i++) {
+                    page.add(new SearchResult("uid=service" + i, null, new BasicAttributes(
+                            LDAPServerManagerConstants.KRB5_PRINCIPAL_NAME_ATTRIBUTE,
+                            "service" + i + "/localhost@EXAMPLE.COM")));
+                }
+                nextOffset = offset + pageSize;
+                return new PageEnumeration(page.iterator());
+            }
+            if ("getResponseControls".equals(method.getName())) {
+                byte[] cookie = nextOffset < principleCount ?
+                        String.valueOf(nextOffset).getBytes(StandardCharsets.UTF_8) : new byte[0];
+                return new Control[]{createResponseControl(cookie)};
+            }
+            throw new UnsupportedOperationException(method.getName());
+        }
+
+        /**
+         * Returns the page size of a request. The control value is a BER sequence of the page size and the cookie.
+         */
+        private int getRequestedPageSize(int request) {
+            return requests.get(request)[4];
+        }
+
+        private byte[] getCookie(int request) {
+
+            byte[] value = requests.get(request);
+            return Arrays.copyOfRange(value, 7, 7 + value[6]);
+        }
+
+        private static Control createResponseControl(byte[] cookie) throws IOException {
+
+            byte[] value = new byte[7 + cookie.length];
+            value[0] = 0x30;
+            value[1] = (byte) (5 + cookie.length);
+            value[2] = 0x02;
+            value[3] = 0x01;
+            value[4] = 0x00;
+            value[5] = 0x04;
+            value[6] = (byte) cookie.length;
+            System.arraycopy(cookie, 0, value, 7, cookie.length);
+            return new PagedResultsResponseControl(PagedResultsResponseControl.OID, false, value);
+        }
+    }
+
+    private static class PageEnumeration implements NamingEnumeration<SearchResult> {
+
+        private final Iterator<SearchResult> iterator;
+
+        private PageEnumeration(Iterator<SearchResult> iterator) {
+            this.iterator = iterator;
+        }
+
+        @Override
+        public SearchResult next() {
+            return iterator.next();
+        }
+
+        @Override
+        public boolean hasMore() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public boolean hasMoreElements() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public SearchResult nextElement() {
+            return iterator.next();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.directory.server.manager.internal;
+
+import junit.framework.TestCase;
+
+public class ServicePrincipleExistenceCacheTest extends TestCase {
+
+    private static final String SEARCH_BASE = "ou=Users,dc=example,dc=com";
+    private static final String FILTER = "(uid=ftp)";
+
+    private ServicePrincipleExistenceCache cache;
+    private String connectionURL;
+
+    public void setUp() {
+
+        this.cache = ServicePrincipleExistenceCache.getInstance();
+        // The cache is a singleton, so every test uses its own directory server.
+        this.connectionURL = "ldap://" + getName() + ":10389";
+    }
+
+    public void testCacheHit() {
+
+        cache.addExistence(connectionURL, SEARCH_BASE, FILTER, true, 60000);
+        assertEquals(Boolean.TRUE, cache.getExistence(connectionURL, SEARCH_BASE, FILTER));
+
+        cache.addExistence(connectionURL, SEARCH_BASE, "(uid=ssh)", false, 60000);
+        assertEquals(Boolean.FALSE, cache.getExistence(connectionURL, SEARCH_BASE, "(uid=ssh)"));
+    }
+
+    public void testCacheMiss() {
+
+        cache.addExistence(connectionURL, SEARCH_BASE, FILTER, true, 60000);
+        assertNull(cache.getExistence(connectionURL, SEARCH_BASE, "(uid=ssh)"));
+        assertNull(cache.getExistence(connectionURL, "ou=Groups,dc=example,dc=com", FILTER));
+        assertNull(cache.getExistence("ldap://other:10389", SEARCH_BASE, FILTER));
+    }
+
+    public void testExpiredEntry() throws InterruptedException {
+
+        cache.addExistence(connectionURL, SEARCH_BASE, FILTER, true, 1);
+        Thread.sleep(10);
+        assertNull(cache.getExistence(connectionURL, SEARCH_BASE, FILTER));
+    }
+
+    public void testDisabledTimeout() {
+
+        cache.addExistence(connectionURL, SEARCH_BASE, FILTER, true, 0);
+        assertNull(cache.getExistence(connectionURL, SEARCH_BASE, FILTER));
+
+        cache.addExistence(connectionURL, SEARCH_BASE, FILTER, true, -1);
+        assertNull(cache.getExistence(connectionURL, SEARCH_BASE, FILTER));
+    }
+
+    public void testClearExistence() {
+
+        cache.addExistence(connectionURL, SEARCH_BASE, FILTER, false, 60000);
+        cache.addExistence(connectionURL, SEARCH_BASE, "(uid=ssh)", false, 60000);
+
+        cache.clearExistence(connectionURL, SEARCH_BASE, FILTER);
+        assertNull(cache.getExistence(connectionURL, SEARCH_BASE, FILTER));
+        assertEquals(Boolean.FALSE, cache.getExistence(connectionURL, SEARCH_BASE, "(uid=ssh)"));
+    }
+}
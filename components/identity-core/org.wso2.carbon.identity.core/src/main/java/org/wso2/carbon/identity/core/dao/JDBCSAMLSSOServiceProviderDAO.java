@@ -0,0 +1,427 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.core.dao;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.base.IdentityException;
+import org.wso2.carbon.identity.core.model.SAMLSSOServiceProviderDO;
+import org.wso2.carbon.identity.core.util.IdentityDatabaseUtil;
+import org.wso2.carbon.identity.core.util.IdentityTenantUtil;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+import org.wso2.carbon.registry.core.Resource;
+import org.wso2.carbon.registry.core.ResourceImpl;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps the SAML service providers of a tenant in the identity database instead of the registry. A service provider
+ * is stored as the same properties the registry resource of {@link SAMLSSOServiceProviderDAO} has, so both stores
+ * build identical {@link SAMLSSOServiceProviderDO}s. Service providers are looked up through the
+ * {@link SAMLSSOServiceProviderCache}.
+ */
+public class JDBCSAMLSSOServiceProviderDAO {
+
+    public static final String JDBC_STORE_ENABLED = "SAMLSSOServiceProviderStore.JDBCEnabled";
+
+    private static final Log log = LogFactory.getLog(JDBCSAMLSSOServiceProviderDAO.class);
+
+    private final int tenantId;
+
+    public JDBCSAMLSSOServiceProviderDAO(int tenantId) {
+        this.tenantId = tenantId;
+    }
+
+    /**
+     * Returns whether the SAML service providers are kept in the identity database. They are kept in the registry
+     * until the existing ones are migrated with the {@link SAMLSSOServiceProviderStoreMigrator}.
+     *
+     * @return True if the JDBC store is enabled.
+     */
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(IdentityUtil.getProperty(JDBC_STORE_ENABLED));
+    }
+
+    /**
+     * Add the service provider information to the database.
+     *
+     * @param serviceProviderDO Service provider information object.
+     * @return True if addition successful, false if a service provider with the same issuer exists.
+     * @throws IdentityException Error while persisting to the database.
+     */
+    public boolean addServiceProvider(SAMLSSOServiceProviderDO serviceProviderDO) throws IdentityException {
+
+        if (serviceProviderDO == null || StringUtils.isBlank(serviceProviderDO.getIssuer())) {
+            throw new IdentityException("Issuer cannot be found in the provided arguments.");
+        }
+        return addServiceProvider(serviceProviderDO.getIssuer(), toProperties(serviceProviderDO));
+    }
+
+    /**
+     * Add a service provider stored as the given properties to the database.
+     *
+     * @param issuer     Name of the SAML issuer.
+     * @param properties Property values by the property name.
+     * @return True if addition successful, false if a service provider with the same issuer exists.
+     * @throws IdentityException Error while persisting to the database.
+     */
+    boolean addServiceProvider(String issuer, Map<String, List<String>> properties) throws IdentityException {
+
+        Connection connection = IdentityDatabaseUtil.getDBConnection();
+        try {
+            if (getServiceProviderId(connection, issuer) != -1) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Service Provider already exists with the same issuer name " + issuer);
+                }
+                return false;
+            }
+            insertServiceProvider(connection, issuer, properties);
+            connection.commit();
+            if (log.isDebugEnabled()) {
+                log.debug("Service Provider " + issuer + " is added successfully.");
+            }
+            return true;
+        } catch (SQLException e) {
+            IdentityDatabaseUtil.rollBack(connection);
+            String msg = "Error while adding Service Provider for issuer: " + issuer;
+            log.error(msg, e);
+            throw IdentityException.error(msg, e);
+        } finally {
+            SAMLSSOServiceProviderCache.getInstance().invalidate(tenantId, issuer);
+            IdentityDatabaseUtil.closeConnection(connection);
+        }
+    }
+
+    /**
+     * Upload service Provider using metadata file.
+     *
+     * @param serviceProviderDO Service provider information object.
+     * @return The uploaded service provider.
+     * @throws IdentityException If a service provider with the same issuer exists, or the upload failed.
+     */
+    public SAMLSSOServiceProviderDO uploadServiceProvider(SAMLSSOServiceProviderDO serviceProviderDO) throws
+            IdentityException {
+
+        if (serviceProviderDO == null || serviceProviderDO.getIssuer() == null) {
+            throw new IdentityException("Issuer cannot be found in the provided arguments.");
+        }
+
+        if (serviceProviderDO.getDefaultAssertionConsumerUrl() == null) {
+            throw new IdentityException("No default assertion consumer URL provided for service provider :" +
+                    serviceProviderDO.getIssuer());
+        }
+
+        if (!addServiceProvider(serviceProviderDO)) {
+            throw IdentityException.error("A Service Provider already exists.");
+        }
+        return serviceProviderDO;
+    }
+
+    /**
+     * Get all the service providers of the tenant.
+     *
+     * @return Service providers of the tenant.
+     * @throws IdentityException Error while reading the service providers.
+     */
+    public SAMLSSOServiceProviderDO[] getServiceProviders() throws IdentityException {
+
+        Connection connection = IdentityDatabaseUtil.getDBConnection();
+        PreparedStatement prepStmt = null;
+        ResultSet resultSet = null;
+        Map<String, Map<String, List<String>>> serviceProviders = new LinkedHashMap<>();
+        try {
+            prepStmt = connection.prepareStatement(SAMLSSOServiceProviderSQLQueries.GET_SERVICE_PROVIDERS);
+            prepStmt.setInt(1, tenantId);
+            resultSet = prepStmt.executeQuery();
+            while (resultSet.next()) {
+                String issuer = resultSet.getString(1);
+                Map<String, List<String>> properties = serviceProviders.get(issuer);
+                if (properties == null) {
+                    properties = new LinkedHashMap<>();
+                    serviceProviders.put(issuer, properties);
+                }
+                addProperty(resultSet, properties);
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            String msg = "Error reading Service Providers of tenant: " + tenantId + " from the database";
+            log.error(msg, e);
+            throw IdentityException.error(msg, e);
+        } finally {
+            IdentityDatabaseUtil.closeAllConnections(connection, resultSet, prepStmt);
+        }
+
+        String tenantDomain = IdentityTenantUtil.getTenantDomain(tenantId);
+        List<SAMLSSOServiceProviderDO> serviceProviderDOs = new ArrayList<>(serviceProviders.size());
+        for (Map<String, List<String>> properties : serviceProviders.values()) {
+            SAMLSSOServiceProviderDO serviceProviderDO = toServiceProviderDO(properties);
+            serviceProviderDO.setTenantDomain(tenantDomain);
+            serviceProviderDOs.add(serviceProviderDO);
+        }
+        return serviceProviderDOs.toArray(new SAMLSSOServiceProviderDO[serviceProviderDOs.size()]);
+    }
+
+    /**
+     * Remove the service provider with the given issuer.
+     *
+     * @param issuer Name of the SAML issuer.
+     * @return True if deletion success, false if there is no service provider with the issuer.
+     * @throws IdentityException Error occurred while removing the service provider from the database.
+     */
+    public boolean removeServiceProvider(String issuer) throws IdentityException {
+
+        if (issuer == null || StringUtils.isEmpty(issuer.trim())) {
+            throw new IllegalArgumentException("Trying to delete issuer \'" + issuer + "\'");
+        }
+
+        Connection connection = IdentityDatabaseUtil.getDBConnection();
+        PreparedStatement prepStmt = null;
+        try {
+            int serviceProviderId = getServiceProviderId(connection, issuer);
+            if (serviceProviderId == -1) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Service Provider " + issuer + " does not exist in tenant: " + tenantId);
+                }
+                return false;
+            }
+            prepStmt = connection.prepareStatement(
+                    SAMLSSOServiceProviderSQLQueries.REMOVE_SERVICE_PROVIDER_PROPERTIES);
+            prepStmt.setInt(1, serviceProviderId);
+            prepStmt.executeUpdate();
+            IdentityDatabaseUtil.closeStatement(prepStmt);
+
+            prepStmt = connection.prepareStatement(SAMLSSOServiceProviderSQLQueries.REMOVE_SERVICE_PROVIDER);
+            prepStmt.setInt(1, serviceProviderId);
+            prepStmt.executeUpdate();
+            connection.commit();
+            return true;
+        } catch (SQLException e) {
+            IdentityDatabaseUtil.rollBack(connection);
+            String msg = "Error removing the service provider from the database with name: " + issuer;
+            log.error(msg, e);
+            throw IdentityException.error(msg, e);
+        } finally {
+            SAMLSSOServiceProviderCache.getInstance().invalidate(tenantId, issuer);
+            IdentityDatabaseUtil.closeStatement(prepStmt);
+            IdentityDatabaseUtil.closeConnection(connection);
+        }
+    }
+
+    /**
+     * Get the service provider with the given issuer.
+     *
+     * @param issuer Name of the SAML issuer.
+     * @return Service provider, or null if there is no service provider with the issuer.
+     * @throws IdentityException Error while reading the service provider.
+     */
+    public SAMLSSOServiceProviderDO getServiceProvider(String issuer) throws IdentityException {
+
+        Map<String, List<String>> properties = getProperties(issuer);
+        if (properties == null) {
+            return null;
+        }
+        SAMLSSOServiceProviderDO serviceProviderDO = toServiceProviderDO(properties);
+        serviceProviderDO.setTenantDomain(IdentityTenantUtil.getTenantDomain(tenantId));
+        return serviceProviderDO;
+    }
+
+    public boolean isServiceProviderExists(String issuer) throws IdentityException {
+        return getProperties(issuer) != null;
+    }
+
+    /**
+     * Reads the properties of a service provider from the database, bypassing the cache.
+     *
+     * @param issuer Name of the SAML issuer.
+     * @return Properties of the service provider, or null if there is no service provider with the issuer.
+     * @throws IdentityException Error while reading the service provider.
+     */
+    Map<String, List<String>> loadProperties(String issuer) throws IdentityException {
+
+        Connection connection = IdentityDatabaseUtil.getDBConnection();
+        PreparedStatement prepStmt = null;
+        ResultSet resultSet = null;
+        try {
+            prepStmt = connection.prepareStatement(SAMLSSOServiceProviderSQLQueries.GET_SERVICE_PROVIDER);
+            prepStmt.setString(1, issuer);
+            prepStmt.setInt(2, tenantId);
+            resultSet = prepStmt.executeQuery();
+            Map<String, List<String>> properties = null;
+            while (resultSet.next()) {
+                if (properties == null) {
+                    properties = new LinkedHashMap<>();
+                }
+                addProperty(resultSet, properties);
+            }
+            connection.commit();
+            return properties;
+        } catch (SQLException e) {
+            throw IdentityException.error("Error occurred while reading the Service Provider: " + issuer +
+                    " of tenant: " + tenantId + " from the database", e);
+        } finally {
+            IdentityDatabaseUtil.closeAllConnections(connection, resultSet, prepStmt);
+        }
+    }
+
+    /**
+     * Returns the properties a service provider is stored as. Properties without a value are not stored.
+     *
+     * @param serviceProviderDO Service provider.
+     * @return Property values by the property name.
+     */
+    static Map<String, List<String>> toProperties(SAMLSSOServiceProviderDO serviceProviderDO) {
+
+        Resource resource = new ResourceImpl();
+        SAMLSSOServiceProviderDAO.populateResource(resource, serviceProviderDO);
+        return toProperties(resource);
+    }
+
+    /**
+     * Returns the properties of a registry resource of a service provider. Properties without a value are dropped.
+     *
+     * @param resource Resource of the service provider.
+     * @return Property values by the property name.
+     */
+    static Map<String, List<String>> toProperties(Resource resource) {
+
+        Map<String, List<String>> properties = new TreeMap<>();
+        for (Map.Entry<Object, Object> property : resource.getProperties().entrySet()) {
+            List<String> values = new ArrayList<>();
+            for (Object value : (List<?>) property.getValue()) {
+                if (value != null) {
+                    values.add((String) value);
+                }
+            }
+            if (!values.isEmpty()) {
+                properties.put((String) property.getKey(), values);
+            }
+        }
+        return properties;
+    }
+
+    /**
+     * Builds a service provider from the properties it is stored as.
+     *
+     * @param properties Property values by the property name.
+     * @return Service provider.
+     */
+    static SAMLSSOServiceProviderDO toServiceProviderDO(Map<String, List<String>> properties) {
+
+        Resource resource = new ResourceImpl();
+        for (Map.Entry<String, List<String>> property : properties.entrySet()) {
+            resource.setProperty(property.getKey(), new ArrayList<>(property.getValue()));
+        }
+        return SAMLSSOServiceProviderDAO.toServiceProviderDO(resource);
+    }
+
+    private Map<String, List<String>> getProperties(String issuer) throws IdentityException {
+
+        if (issuer == null) {
+            return null;
+        }
+
+        SAMLSSOServiceProviderCache cache = SAMLSSOServiceProviderCache.getInstance();
+        Map<String, List<String>> properties = cache.getProperties(tenantId, issuer);
+        if (properties != null) {
+            return properties;
+        }
+
+        long version = cache.getVersion();
+        properties = loadProperties(issuer);
+        if (properties != null) {
+            cache.put(tenantId, issuer, properties, version);
+        }
+        return properties;
+    }
+
+    private int getServiceProviderId(Connection connection, String issuer) throws SQLException {
+
+        PreparedStatement prepStmt = null;
+        ResultSet resultSet = null;
+        try {
+            prepStmt = connection.prepareStatement(SAMLSSOServiceProviderSQLQueries.GET_SERVICE_PROVIDER_ID);
+            prepStmt.setString(1, issuer);
+            prepStmt.setInt(2, tenantId);
+            resultSet = prepStmt.executeQuery();
+            if (resultSet.next()) {
+                return resultSet.getInt(1);
+            }
+            return -1;
+        } finally {
+            IdentityDatabaseUtil.closeResultSet(resultSet);
+            IdentityDatabaseUtil.closeStatement(prepStmt);
+        }
+    }
+
+    private void insertServiceProvider(Connection connection, String issuer, Map<String, List<String>> properties)
+            throws SQLException {
+
+        PreparedStatement prepStmt = null;
+        try {
+            prepStmt = connection.prepareStatement(SAMLSSOServiceProviderSQLQueries.ADD_SERVICE_PROVIDER);
+            prepStmt.setString(1, issuer);
+            prepStmt.setInt(2, tenantId);
+            prepStmt.executeUpdate();
+        } finally {
+            IdentityDatabaseUtil.closeStatement(prepStmt);
+        }
+
+        int serviceProviderId = getServiceProviderId(connection, issuer);
+        try {
+            prepStmt = connection.prepareStatement(SAMLSSOServiceProviderSQLQueries.ADD_SERVICE_PROVIDER_PROPERTY);
+            for (Map.Entry<String, List<String>> property : properties.entrySet()) {
+                List<String> values = property.getValue();
+                for (int i = 0; i < values.size(); i++) {
+                    prepStmt.setInt(1, serviceProviderId);
+                    prepStmt.setString(2, property.getKey());
+                    prepStmt.setInt(3, i);
+                    prepStmt.setString(4, values.get(i));
+                    prepStmt.addBatch();
+                }
+            }
+            prepStmt.executeBatch();
+        } finally {
+            IdentityDatabaseUtil.closeStatement(prepStmt);
+        }
+    }
+
+    private static void addProperty(ResultSet resultSet, Map<String, List<String>> properties) throws SQLException {
+
+        String name = resultSet.getString(2);
+        if (name == null) {
+            // A service provider without properties.
+            return;
+        }
+        List<String> values = properties.get(name);
+        if (values == null) {
+            values = new ArrayList<>();
+            properties.put(name, values);
+        }
+        values.add(resultSet.getString(3));
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.core.dao;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.core.cache.BaseCache;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the stored properties of the SAML service providers by their tenant and issuer, so that resolving the
+ * service provider of a SAML request does not hit the database. The cache is distributed, so an entry invalidated
+ * on one node of a cluster is invalidated on all of them.
+ */
+public class SAMLSSOServiceProviderCache extends BaseCache<SAMLSSOServiceProviderCacheKey,
+        SAMLSSOServiceProviderCacheEntry> {
+
+    private static final Log log = LogFactory.getLog(SAMLSSOServiceProviderCache.class);
+
+    private static final String CACHE_NAME = "SAMLSSOServiceProviderCache";
+
+    private static final SAMLSSOServiceProviderCache instance = new SAMLSSOServiceProviderCache();
+
+    // Bumped on every invalidation so that service providers read from the database before an invalidation on this
+    // node are not cached after it.
+    private final AtomicLong version = new AtomicLong();
+
+    private SAMLSSOServiceProviderCache() {
+        super(CACHE_NAME);
+    }
+
+    public static SAMLSSOServiceProviderCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the cached properties of a service provider.
+     *
+     * @param tenantId Tenant of the service provider
+     * @param issuer   Issuer of the service provider
+     * @return Properties of the service provider, or null if they are not cached
+     */
+    public Map<String, List<String>> getProperties(int tenantId, String issuer) {
+
+        SAMLSSOServiceProviderCacheEntry entry = getValueFromCache(new SAMLSSOServiceProviderCacheKey(issuer,
+                tenantId));
+        if (entry == null) {
+            return null;
+        }
+        return Collections.<String, List<String>>unmodifiableMap(entry.getProperties());
+    }
+
+    /**
+     * Returns the version of the cache, to be taken before reading a service provider from the database and passed
+     * to {@link #put(int, String, Map, long)} with what was read.
+     *
+     * @return Current version of the cache
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Caches the properties of a service provider, unless the cache was invalidated since they were read.
+     *
+     * @param tenantId   Tenant of the service provider
+     * @param issuer     Issuer of the service provider
+     * @param properties Properties of the service provider
+     * @param readAt     Version of the cache taken before the properties were read
+     */
+    public void put(int tenantId, String issuer, Map<String, List<String>> properties, long readAt) {
+
+        if (version.get() != readAt) {
+            return;
+        }
+        addToCache(new SAMLSSOServiceProviderCacheKey(issuer, tenantId),
+                new SAMLSSOServiceProviderCacheEntry(properties));
+    }
+
+    public void invalidate(int tenantId, String issuer) {
+
+        version.incrementAndGet();
+        clearCacheEntry(new SAMLSSOServiceProviderCacheKey(issuer, tenantId));
+        if (log.isDebugEnabled()) {
+            log.debug("Invalidated the cached SAML service provider: " + issuer + " of tenant " + tenantId);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.core.dao;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache entry of the {@link SAMLSSOServiceProviderCache}, holding the stored properties of a service provider.
+ */
+public class SAMLSSOServiceProviderCacheEntry implements Serializable {
+
+    private static final long serialVersionUID = 2916450883727004313L;
+
+    private final LinkedHashMap<String, ArrayList<String>> properties;
+
+    public SAMLSSOServiceProviderCacheEntry(Map<String, List<String>> properties) {
+
+        this.properties = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> property : properties.entrySet()) {
+            this.properties.put(property.getKey(), new ArrayList<>(property.getValue()));
+        }
+    }
+
+    /**
+     * Returns the properties of the service provider, which must not be modified.
+     *
+     * @return Property values by the property name.
+     */
+    public Map<String, ? extends List<String>> getProperties() {
+        return properties;
+    }
+}
@@ -41,6 +41,17 @@ public class SAMLSSOServiceProviderDAO extends AbstractDAO<SAMLSSOServiceProvide
     }
 
     protected SAMLSSOServiceProviderDO resourceToObject(Resource resource) {
+        return toServiceProviderDO(resource);
+    }
+
+    /**
+     * Builds a service provider from the properties of its resource. Shared with the JDBC store, which keeps the
+     * same properties in the database.
+     *
+     * @param resource Resource of the service provider.
+     * @return Service provider.
+     */
+    static SAMLSSOServiceProviderDO toServiceProviderDO(Resource resource) {
         SAMLSSOServiceProviderDO serviceProviderDO = new SAMLSSOServiceProviderDO();
         serviceProviderDO.setIssuer(resource
                 .getProperty(IdentityRegistryResources.PROP_SAML_SSO_ISSUER));
@@ -227,6 +238,18 @@ public class SAMLSSOServiceProviderDAO extends AbstractDAO<SAMLSSOServiceProvide
     private Resource createResource(SAMLSSOServiceProviderDO serviceProviderDO) throws RegistryException {
         Resource resource;
         resource = registry.newResource();
+        populateResource(resource, serviceProviderDO);
+        return resource;
+    }
+
+    /**
+     * Sets the properties of a service provider on its resource. Shared with the JDBC store, which keeps the same
+     * properties in the database.
+     *
+     * @param resource          Resource to set the properties on.
+     * @param serviceProviderDO Service provider.
+     */
+    static void populateResource(Resource resource, SAMLSSOServiceProviderDO serviceProviderDO) {
         resource.addProperty(IdentityRegistryResources.PROP_SAML_SSO_ISSUER,
                 serviceProviderDO.getIssuer());
         resource.setProperty(IdentityRegistryResources.PROP_SAML_SSO_ASSERTION_CONS_URLS,
@@ -325,7 +348,6 @@ public class SAMLSSOServiceProviderDAO extends AbstractDAO<SAMLSSOServiceProvide
         String validateSignatureInRequests = String.valueOf(serviceProviderDO.isDoValidateSignatureInRequests());
         resource.addProperty(IdentityRegistryResources.PROP_SAML_SSO_VALIDATE_SIGNATURE_IN_REQUESTS,
                 validateSignatureInRequests);
-        return resource;
     }
 
     public SAMLSSOServiceProviderDO[] getServiceProviders() throws IdentityException {
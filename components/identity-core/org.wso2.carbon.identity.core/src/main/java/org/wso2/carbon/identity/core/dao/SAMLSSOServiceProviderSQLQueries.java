@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.core.dao;
+
+/**
+ * SQL queries of the {@link JDBCSAMLSSOServiceProviderDAO}.
+ */
+public class SAMLSSOServiceProviderSQLQueries {
+
+    public static final String ADD_SERVICE_PROVIDER = "INSERT INTO IDN_SAML2_SERVICE_PROVIDER (ISSUER, TENANT_ID) " +
+            "VALUES (?, ?)";
+
+    public static final String GET_SERVICE_PROVIDER_ID = "SELECT ID FROM IDN_SAML2_SERVICE_PROVIDER " +
+            "WHERE ISSUER = ? AND TENANT_ID = ?";
+
+    public static final String ADD_SERVICE_PROVIDER_PROPERTY = "INSERT INTO IDN_SAML2_SP_PROPERTY " +
+            "(SP_ID, PROPERTY_NAME, VALUE_INDEX, PROPERTY_VALUE) VALUES (?, ?, ?, ?)";
+
+    public static final String GET_SERVICE_PROVIDER = "SELECT SP.ISSUER, PROP.PROPERTY_NAME, PROP.PROPERTY_VALUE " +
+            "FROM IDN_SAML2_SERVICE_PROVIDER SP LEFT JOIN IDN_SAML2_SP_PROPERTY PROP ON SP.ID = PROP.SP_ID " +
+            "WHERE SP.ISSUER = ? AND SP.TENANT_ID = ? ORDER BY PROP.PROPERTY_NAME, PROP.VALUE_INDEX";
+
+    public static final String GET_SERVICE_PROVIDERS = "SELECT SP.ISSUER, PROP.PROPERTY_NAME, PROP.PROPERTY_VALUE " +
+            "FROM IDN_SAML2_SERVICE_PROVIDER SP LEFT JOIN IDN_SAML2_SP_PROPERTY PROP ON SP.ID = PROP.SP_ID " +
+            "WHERE SP.TENANT_ID = ? ORDER BY SP.ISSUER, PROP.PROPERTY_NAME, PROP.VALUE_INDEX";
+
+    public static final String REMOVE_SERVICE_PROVIDER_PROPERTIES = "DELETE FROM IDN_SAML2_SP_PROPERTY " +
+            "WHERE SP_ID = ?";
+
+    public static final String REMOVE_SERVICE_PROVIDER = "DELETE FROM IDN_SAML2_SERVICE_PROVIDER WHERE ID = ?";
+
+    private SAMLSSOServiceProviderSQLQueries() {
+    }
+}
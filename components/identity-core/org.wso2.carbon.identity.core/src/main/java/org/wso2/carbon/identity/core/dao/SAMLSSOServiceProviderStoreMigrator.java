@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.core.dao;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.base.IdentityException;
+import org.wso2.carbon.identity.core.IdentityRegistryResources;
+import org.wso2.carbon.identity.core.util.IdentityTenantUtil;
+import org.wso2.carbon.registry.core.Registry;
+import org.wso2.carbon.registry.core.Resource;
+import org.wso2.carbon.registry.core.exceptions.RegistryException;
+import org.wso2.carbon.user.api.Tenant;
+import org.wso2.carbon.user.api.UserStoreException;
+import org.wso2.carbon.utils.multitenancy.MultitenantConstants;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copies the SAML service providers kept in the registry into the identity database, to be run once before the
+ * {@link JDBCSAMLSSOServiceProviderDAO} is enabled. The properties of every registry resource are copied as they
+ * are, and read back from the database and compared with the resource. Service providers which are already in the database are not copied again,
+ * so the migration can be rerun after a failure.
+ */
+public class SAMLSSOServiceProviderStoreMigrator {
+
+    private static final Log log = LogFactory.getLog(SAMLSSOServiceProviderStoreMigrator.class);
+
+    /**
+     * Migrates the service providers of all the tenants.
+     *
+     * @throws IdentityException If the service providers of a tenant could not be migrated.
+     */
+    public void migrateAllTenants() throws IdentityException {
+
+        List<Integer> tenantIds = new ArrayList<>();
+        tenantIds.add(MultitenantConstants.SUPER_TENANT_ID);
+        try {
+            for (Tenant tenant : IdentityTenantUtil.getRealmService().getTenantManager().getAllTenants()) {
+                IdentityTenantUtil.initializeRegistry(tenant.getId(), tenant.getDomain());
+                tenantIds.add(tenant.getId());
+            }
+        } catch (UserStoreException e) {
+            throw IdentityException.error("Error while listing the tenants to migrate the SAML service providers of",
+                    e);
+        }
+
+        for (int tenantId : tenantIds) {
+            try {
+                migrate(tenantId, IdentityTenantUtil.getConfigRegistry(tenantId));
+            } catch (RegistryException e) {
+                throw IdentityException.error("Error while loading the registry of tenant: " + tenantId, e);
+            }
+        }
+    }
+
+    /**
+     * Migrates the service providers of a tenant.
+     *
+     * @param tenantId Tenant to migrate.
+     * @param registry Config registry of the tenant, the service providers are read from.
+     * @return Number of service providers copied to the database.
+     * @throws IdentityException If a service provider could not be copied, or differs from its registry resource.
+     */
+    public int migrate(int tenantId, Registry registry) throws IdentityException {
+
+        List<Resource> resources = getServiceProviderResources(tenantId, registry);
+        JDBCSAMLSSOServiceProviderDAO jdbcDAO = new JDBCSAMLSSOServiceProviderDAO(tenantId);
+
+        int migrated = 0;
+        List<String> mismatchedIssuers = new ArrayList<>();
+        for (Resource resource : resources) {
+            String issuer = resource.getProperty(IdentityRegistryResources.PROP_SAML_SSO_ISSUER);
+            if (StringUtils.isBlank(issuer)) {
+                throw IdentityException.error("A Service Provider of tenant: " + tenantId + " in the registry " +
+                        "has no issuer.");
+            }
+            Map<String, List<String>> resourceProperties = JDBCSAMLSSOServiceProviderDAO.toProperties(resource);
+            if (jdbcDAO.addServiceProvider(issuer, resourceProperties)) {
+                migrated++;
+            } else if (log.isDebugEnabled()) {
+                log.debug("Service Provider: " + issuer + " of tenant: " + tenantId + " is already migrated.");
+            }
+
+            if (!resourceProperties.equals(jdbcDAO.loadProperties(issuer))) {
+                mismatchedIssuers.add(issuer);
+            }
+        }
+
+        if (!mismatchedIssuers.isEmpty()) {
+            throw IdentityException.error("Properties of the Service Providers: " + mismatchedIssuers +
+                    " of tenant: " + tenantId + " in the database differ from their registry resources.");
+        }
+        log.info("Migrated " + migrated + " of " + resources.size() + " SAML service providers of tenant: " +
+                tenantId + " to the database.");
+        return migrated;
+    }
+
+    private List<Resource> getServiceProviderResources(int tenantId, Registry registry) throws IdentityException {
+
+        List<Resource> resources = new ArrayList<>();
+        try {
+            if (registry.resourceExists(IdentityRegistryResources.SAML_SSO_SERVICE_PROVIDERS)) {
+                String[] paths = (String[]) registry.get(IdentityRegistryResources.SAML_SSO_SERVICE_PROVIDERS)
+                        .getContent();
+                if (paths != null) {
+                    for (String path : paths) {
+                        resources.add(registry.get(path));
+                    }
+                }
+            }
+        } catch (RegistryException e) {
+            throw IdentityException.error("Error reading the Service Providers of tenant: " + tenantId +
+                    " from the registry", e);
+        }
+        return resources;
+    }
+}
@@ -23,19 +23,31 @@ import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.identity.core.bean.context.MessageContext;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static java.util.Collections.sort;
 
 /**
  * HandlerManager class can be used to get the correct handlers just before execute it either
  * list or first priority one
+ * <p>
+ * Handlers can also be registered against a handler type, usually from the OSGi bind and unbind methods of the
+ * component consuming them. The handlers of a type are kept as an immutable chain, sorted by priority when a handler
+ * is added or removed, so that getting the handlers of a type neither sorts nor copies them.
  */
 public class HandlerManager {
 
     private static Log log = LogFactory.getLog(AbstractIdentityMessageHandler.class);
     private static HandlerManager handlerManager = new HandlerManager();
 
+    private final ConcurrentMap<Class<?>, HandlerChain<? extends IdentityHandler>> handlerChains =
+            new ConcurrentHashMap<>();
+    private final ConcurrentMap<Class<?>, List<? extends IdentityMessageHandler>> messageHandlerChains =
+            new ConcurrentHashMap<>();
+
     private HandlerManager(){
 
     }
@@ -185,5 +197,192 @@ public class HandlerManager {
         return identityMessageHandlerList;
     }
 
+    /**
+     * Add a handler to the chain of a handler type.
+     *
+     * @param handlerType Type the handler is registered against
+     * @param identityHandler Handler to add
+     */
+    public synchronized <T extends IdentityHandler> void addHandler(Class<T> handlerType, T identityHandler) {
+
+        List<T> identityHandlers = new ArrayList<>(getHandlerChain(handlerType).handlers);
+        identityHandlers.add(identityHandler);
+        handlerChains.put(handlerType, new HandlerChain<>(identityHandlers));
+        if (log.isDebugEnabled()) {
+            log.debug("Added handler : " + identityHandler.getName() + " to the chain of " + handlerType.getName());
+        }
+    }
+
+    /**
+     * Remove a handler from the chain of a handler type.
+     *
+     * @param handlerType Type the handler is registered against
+     * @param identityHandler Handler to remove
+     */
+    public synchronized <T extends IdentityHandler> void removeHandler(Class<T> handlerType, T identityHandler) {
+
+        List<T> identityHandlers = new ArrayList<>(getHandlerChain(handlerType).handlers);
+        if (identityHandlers.remove(identityHandler)) {
+            handlerChains.put(handlerType, new HandlerChain<>(identityHandlers));
+            if (log.isDebugEnabled()) {
+                log.debug("Removed handler : " + identityHandler.getName() + " from the chain of " +
+                        handlerType.getName());
+            }
+        }
+    }
+
+    /**
+     * Get the handlers registered against a handler type, sorted by priority. The enabled state of a handler is read
+     * when the handler is added to the chain.
+     *
+     * @param handlerType Type the handlers are registered against
+     * @param isEnableHandlersOnly
+     * @return Immutable list of handlers
+     */
+    public <T extends IdentityHandler> List<T> getHandlers(Class<T> handlerType, boolean isEnableHandlersOnly) {
+
+        HandlerChain<T> handlerChain = getHandlerChain(handlerType);
+        return isEnableHandlersOnly ? handlerChain.enabledHandlers : handlerChain.handlers;
+    }
+
+    /**
+     * Get the first priority handler registered against a handler type.
+     *
+     * @param handlerType Type the handlers are registered against
+     * @param isEnableHandlersOnly
+     * @return IdentityHandler, or null if there is none
+     */
+    public <T extends IdentityHandler> T getFirstPriorityHandler(Class<T> handlerType, boolean isEnableHandlersOnly) {
+
+        List<T> identityHandlers = getHandlers(handlerType, isEnableHandlersOnly);
+        return identityHandlers.isEmpty() ? null : identityHandlers.get(0);
+    }
+
+    /**
+     * Add a message handler to the chain of a handler type. Message handlers are sorted by their priority without a
+     * message context.
+     *
+     * @param handlerType Type the handler is registered against
+     * @param identityMessageHandler Handler to add
+     */
+    public synchronized <T extends IdentityMessageHandler> void addMessageHandler(Class<T> handlerType,
+                                                                               T identityMessageHandler) {
+
+        List<T> identityMessageHandlers = new ArrayList<>(getMessageHandlerChain(handlerType));
+        identityMessageHandlers.add(identityMessageHandler);
+        sort(identityMessageHandlers, new MessageHandlerComparator(null));
+        messageHandlerChains.put(handlerType, Collections.unmodifiableList(identityMessageHandlers));
+        if (log.isDebugEnabled()) {
+            log.debug("Added message handler : " + identityMessageHandler.getName() + " to the chain of " +
+                    handlerType.getName());
+        }
+    }
+
+    /**
+     * Remove a message handler from the chain of a handler type.
+     *
+     * @param handlerType Type the handler is registered against
+     * @param identityMessageHandler Handler to remove
+     */
+    public synchronized <T extends IdentityMessageHandler> void removeMessageHandler(Class<T> handlerType,
+                                                                                  T identityMessageHandler) {
+
+        List<T> identityMessageHandlers = new ArrayList<>(getMessageHandlerChain(handlerType));
+        if (identityMessageHandlers.remove(identityMessageHandler)) {
+            messageHandlerChains.put(handlerType, Collections.unmodifiableList(identityMessageHandlers));
+            if (log.isDebugEnabled()) {
+                log.debug("Removed message handler : " + identityMessageHandler.getName() + " from the chain of " +
+                        handlerType.getName());
+            }
+        }
+    }
+
+    /**
+     * Get the message handlers registered against a handler type, sorted by priority.
+     *
+     * @param handlerType Type the handlers are registered against
+     * @param isEnableHandlersOnly
+     * @param messageContext
+     * @return List of handlers
+     */
+    public <T1 extends IdentityMessageHandler, T2 extends MessageContext> List<T1> getMessageHandlers(
+            Class<T1> handlerType, boolean isEnableHandlersOnly, T2 messageContext) {
+
+        List<T1> identityMessageHandlers = getMessageHandlerChain(handlerType);
+        if (!isEnableHandlersOnly) {
+            return identityMessageHandlers;
+        }
+        List<T1> enabledMessageHandlers = new ArrayList<>(identityMessageHandlers.size());
+        for (T1 identityMessageHandler : identityMessageHandlers) {
+            if (identityMessageHandler.isEnabled(messageContext)) {
+                enabledMessageHandlers.add(identityMessageHandler);
+            }
+        }
+        return enabledMessageHandlers;
+    }
+
+    /**
+     * Get the first priority message handler registered against a handler type, which can handle the message.
+     *
+     * @param handlerType Type the handlers are registered against
+     * @param isEnableHandlersOnly
+     * @param messageContext
+     * @return IdentityMessageHandler, or null if there is none
+     */
+    public <T1 extends IdentityMessageHandler, T2 extends MessageContext> T1 getFirstPriorityHandler(
+            Class<T1> handlerType, boolean isEnableHandlersOnly, T2 messageContext) {
+
+        for (T1 identityMessageHandler : getMessageHandlerChain(handlerType)) {
+            if ((!isEnableHandlersOnly || identityMessageHandler.isEnabled(messageContext)) &&
+                    identityMessageHandler.canHandle(messageContext)) {
+                return identityMessageHandler;
+            }
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends IdentityHandler> HandlerChain<T> getHandlerChain(Class<T> handlerType) {
+
+        HandlerChain<T> handlerChain = (HandlerChain<T>) handlerChains.get(handlerType);
+        return handlerChain != null ? handlerChain : HandlerChain.<T>empty();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends IdentityMessageHandler> List<T> getMessageHandlerChain(Class<T> handlerType) {
+
+        List<T> identityMessageHandlers = (List<T>) messageHandlerChains.get(handlerType);
+        return identityMessageHandlers != null ? identityMessageHandlers : Collections.<T>emptyList();
+    }
+
+    /**
+     * Handlers of a type sorted by priority, with the enabled ones resolved once.
+     */
+    private static final class HandlerChain<T extends IdentityHandler> {
 
+        private static final HandlerChain<IdentityHandler> EMPTY =
+                new HandlerChain<>(Collections.<IdentityHandler>emptyList());
+
+        private final List<T> handlers;
+        private final List<T> enabledHandlers;
+
+        private HandlerChain(List<T> identityHandlers) {
+
+            List<T> sortedHandlers = new ArrayList<>(identityHandlers);
+            sort(sortedHandlers, new HandlerComparator());
+            List<T> sortedEnabledHandlers = new ArrayList<>();
+            for (T identityHandler : sortedHandlers) {
+                if (identityHandler.isEnabled()) {
+                    sortedEnabledHandlers.add(identityHandler);
+                }
+            }
+            this.handlers = Collections.unmodifiableList(sortedHandlers);
+            this.enabledHandlers = Collections.unmodifiableList(sortedEnabledHandlers);
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T extends IdentityHandler> HandlerChain<T> empty() {
+            return (HandlerChain<T>) EMPTY;
+        }
+    }
 }
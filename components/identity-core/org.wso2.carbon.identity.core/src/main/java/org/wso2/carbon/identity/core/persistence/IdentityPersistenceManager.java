@@ -17,7 +17,9 @@
 */
 package org.wso2.carbon.identity.core.persistence;
 
+import org.wso2.carbon.context.CarbonContext;
 import org.wso2.carbon.identity.base.IdentityException;
+import org.wso2.carbon.identity.core.dao.JDBCSAMLSSOServiceProviderDAO;
 import org.wso2.carbon.identity.core.dao.OpenIDAdminDAO;
 import org.wso2.carbon.identity.core.dao.OpenIDUserDAO;
 import org.wso2.carbon.identity.core.dao.ParameterDAO;
@@ -29,6 +31,7 @@ import org.wso2.carbon.identity.core.model.ParameterDO;
 import org.wso2.carbon.identity.core.model.SAMLSSOServiceProviderDO;
 import org.wso2.carbon.identity.core.model.XMPPSettingsDO;
 import org.wso2.carbon.registry.core.Registry;
+import org.wso2.carbon.registry.core.session.UserRegistry;
 import org.wso2.carbon.user.core.UserRealm;
 
 public class IdentityPersistenceManager {
@@ -235,6 +238,9 @@ public class IdentityPersistenceManager {
      */
     public boolean addServiceProvider(Registry registry, SAMLSSOServiceProviderDO serviceProviderDO)
             throws IdentityException {
+        if (JDBCSAMLSSOServiceProviderDAO.isEnabled()) {
+            return new JDBCSAMLSSOServiceProviderDAO(getTenantId(registry)).addServiceProvider(serviceProviderDO);
+        }
         SAMLSSOServiceProviderDAO serviceProviderDAO = new SAMLSSOServiceProviderDAO(registry);
         return serviceProviderDAO.addServiceProvider(serviceProviderDO);
     }
@@ -246,6 +252,10 @@ public class IdentityPersistenceManager {
      * @throws IdentityException
      */
     public SAMLSSOServiceProviderDO uploadServiceProvider(Registry registry, SAMLSSOServiceProviderDO samlssoServiceProviderDO) throws IdentityException {
+        if (JDBCSAMLSSOServiceProviderDAO.isEnabled()) {
+            return new JDBCSAMLSSOServiceProviderDAO(getTenantId(registry)).uploadServiceProvider(
+                    samlssoServiceProviderDO);
+        }
         SAMLSSOServiceProviderDAO serviceProviderDAO = new SAMLSSOServiceProviderDAO(registry);
         return serviceProviderDAO.uploadServiceProvider(samlssoServiceProviderDO);
     }
@@ -258,26 +268,49 @@ public class IdentityPersistenceManager {
      */
     public SAMLSSOServiceProviderDO[] getServiceProviders(Registry registry)
             throws IdentityException {
+        if (JDBCSAMLSSOServiceProviderDAO.isEnabled()) {
+            return new JDBCSAMLSSOServiceProviderDAO(getTenantId(registry)).getServiceProviders();
+        }
         SAMLSSOServiceProviderDAO serviceProviderDOA = new SAMLSSOServiceProviderDAO(registry);
         return serviceProviderDOA.getServiceProviders();
     }
 
     public boolean removeServiceProvider(Registry registry, String issuer) throws IdentityException {
+        if (JDBCSAMLSSOServiceProviderDAO.isEnabled()) {
+            return new JDBCSAMLSSOServiceProviderDAO(getTenantId(registry)).removeServiceProvider(issuer);
+        }
         SAMLSSOServiceProviderDAO serviceProviderDAO = new SAMLSSOServiceProviderDAO(registry);
         return serviceProviderDAO.removeServiceProvider(issuer);
     }
 
     public SAMLSSOServiceProviderDO getServiceProvider(Registry registry, String issuer)
             throws IdentityException {
+        if (JDBCSAMLSSOServiceProviderDAO.isEnabled()) {
+            return new JDBCSAMLSSOServiceProviderDAO(getTenantId(registry)).getServiceProvider(issuer);
+        }
         SAMLSSOServiceProviderDAO serviceProviderDAO = new SAMLSSOServiceProviderDAO(registry);
         return serviceProviderDAO.getServiceProvider(issuer);
     }
 
     public boolean isServiceProviderExists(Registry registry, String issuer) throws IdentityException {
+        if (JDBCSAMLSSOServiceProviderDAO.isEnabled()) {
+            return new JDBCSAMLSSOServiceProviderDAO(getTenantId(registry)).isServiceProviderExists(issuer);
+        }
         SAMLSSOServiceProviderDAO serviceProviderDAO = new SAMLSSOServiceProviderDAO(registry);
         return serviceProviderDAO.isServiceProviderExists(issuer);
     }
 
+    /**
+     * Returns the tenant of the registry the SAML service providers are managed through, which is the tenant they
+     * are kept for in the JDBC store.
+     */
+    private int getTenantId(Registry registry) {
+        if (registry instanceof UserRegistry) {
+            return ((UserRegistry) registry).getTenantId();
+        }
+        return CarbonContext.getThreadLocalCarbonContext().getTenantId();
+    }
+
     public void createOrUpdateOpenIDAdmin(Registry registry, OpenIDAdminDO opAdmin)
             throws IdentityException {
         OpenIDAdminDAO opDAO = new OpenIDAdminDAO(registry);
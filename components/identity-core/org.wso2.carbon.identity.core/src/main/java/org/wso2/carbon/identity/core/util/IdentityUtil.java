@@ -72,6 +72,7 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.SignatureException;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -106,8 +107,10 @@ public class IdentityUtil {
     private static final String ENABLE_SELF_SIGN_UP_ENDPOINT = "EnableSelfSignUpEndpoint";
     private static Log log = LogFactory.getLog(IdentityUtil.class);
     private static Map<String, Object> configuration = new HashMap<>();
-    private static Map<IdentityEventListenerConfigKey, IdentityEventListenerConfig> eventListenerConfiguration = new
-            HashMap<>();
+    // Event listener configurations by listener type and then by listener name, so that a lookup does not create a
+    // key. Rebuilt as a whole when the configuration is populated.
+    private static Map<String, Map<String, IdentityEventListenerConfig>> eventListenerConfiguration =
+            Collections.emptyMap();
     private static Map<IdentityCacheConfigKey, IdentityCacheConfig> identityCacheConfigurationHolder = new HashMap<>();
     private static Map<String, IdentityCookieConfig> identityCookiesConfigurationHolder = new HashMap<>();
     private static Document importerDoc = null;
@@ -167,9 +170,11 @@ public class IdentityUtil {
     }
 
     public static IdentityEventListenerConfig readEventListenerProperty(String type, String name) {
-        IdentityEventListenerConfigKey identityEventListenerConfigKey = new IdentityEventListenerConfigKey(type, name);
-        IdentityEventListenerConfig identityEventListenerConfig = eventListenerConfiguration.get(identityEventListenerConfigKey);
-        return identityEventListenerConfig;
+        Map<String, IdentityEventListenerConfig> eventListenerConfigsOfType = eventListenerConfiguration.get(type);
+        if (eventListenerConfigsOfType == null) {
+            return null;
+        }
+        return eventListenerConfigsOfType.get(name);
     }
 
     /**
@@ -202,11 +207,29 @@ public class IdentityUtil {
 
     public static void populateProperties() {
         configuration = IdentityConfigParser.getInstance().getConfiguration();
-        eventListenerConfiguration = IdentityConfigParser.getInstance().getEventListenerConfiguration();
+        eventListenerConfiguration = groupEventListenerConfiguration(IdentityConfigParser.getInstance()
+                .getEventListenerConfiguration());
         identityCacheConfigurationHolder = IdentityConfigParser.getInstance().getIdentityCacheConfigurationHolder();
         identityCookiesConfigurationHolder = IdentityConfigParser.getIdentityCookieConfigurationHolder();
     }
 
+    private static Map<String, Map<String, IdentityEventListenerConfig>> groupEventListenerConfiguration(
+            Map<IdentityEventListenerConfigKey, IdentityEventListenerConfig> eventListenerConfigs) {
+
+        Map<String, Map<String, IdentityEventListenerConfig>> groupedConfigs = new HashMap<>();
+        for (Map.Entry<IdentityEventListenerConfigKey, IdentityEventListenerConfig> entry :
+                eventListenerConfigs.entrySet()) {
+            Map<String, IdentityEventListenerConfig> eventListenerConfigsOfType =
+                    groupedConfigs.get(entry.getKey().getType());
+            if (eventListenerConfigsOfType == null) {
+                eventListenerConfigsOfType = new HashMap<>();
+                groupedConfigs.put(entry.getKey().getType(), eventListenerConfigsOfType);
+            }
+            eventListenerConfigsOfType.put(entry.getKey().getName(), entry.getValue());
+        }
+        return groupedConfigs;
+    }
+
     public static String getPPIDDisplayValue(String value) throws Exception {
         if (log.isDebugEnabled()) {
             log.debug("Generating display value of PPID : " + value);
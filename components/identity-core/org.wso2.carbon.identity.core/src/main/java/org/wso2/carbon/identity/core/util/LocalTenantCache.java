@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.core.util;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Node local cache of values loaded per tenant and key. Values are dropped when they are invalidated on this node, and
+ * expire after a timeout so that changes made on other nodes of a cluster are picked up.
+ * <p>
+ * Every invalidation bumps the version of the cache. A value loaded while the cache was invalidated is returned to
+ * its caller but not kept, so that a value read before a change is never served from the cache after it.
+ *
+ * @param <K> Key of a value within a tenant
+ * @param <V> Cached value, which must not be modified once loaded
+ */
+public class LocalTenantCache<K, V> {
+
+    private static final Log log = LogFactory.getLog(LocalTenantCache.class);
+
+    private final String name;
+    private final long timeoutInMillis;
+    private final ConcurrentMap<Integer, ConcurrentMap<K, CacheEntry<V>>> entries = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * @param name             Name of the cache, used in logs
+     * @param timeoutInSeconds Seconds a value is cached for. Values are not cached if not positive.
+     */
+    public LocalTenantCache(String name, long timeoutInSeconds) {
+
+        this.name = name;
+        this.timeoutInMillis = TimeUnit.SECONDS.toMillis(timeoutInSeconds);
+    }
+
+    /**
+     * Loads a value which is not cached, or has expired.
+     *
+     * @param <V> Loaded value
+     * @param <E> Exception thrown if the value could not be loaded
+     */
+    public interface Loader<V, E extends Exception> {
+
+        /**
+         * @return Loaded value, or null if there is none. Null is not cached.
+         */
+        V load() throws E;
+    }
+
+    /**
+     * Returns the cached value of a key.
+     *
+     * @param tenantId Tenant of the key
+     * @param key      Key of the value
+     * @return Cached value, or null if it is not cached or has expired
+     */
+    public V get(int tenantId, K key) {
+
+        ConcurrentMap<K, CacheEntry<V>> tenantEntries = entries.get(tenantId);
+        if (tenantEntries == null) {
+            return null;
+        }
+        CacheEntry<V> entry = tenantEntries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiryTime < System.currentTimeMillis()) {
+            tenantEntries.remove(key, entry);
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * Returns the cached value of a key, loading and caching it if it is not cached.
+     *
+     * @param tenantId Tenant of the key
+     * @param key      Key of the value
+     * @param loader   Loads the value if it is not cached
+     * @return Value of the key, or null if the loader found none
+     * @throws E If the value could not be loaded
+     */
+    public <E extends Exception> V get(int tenantId, K key, Loader<V, E> loader) throws E {
+
+        V value = get(tenantId, key);
+        if (value != null) {
+            return value;
+        }
+
+        long readAt = version.get();
+        value = loader.load();
+        if (value != null) {
+            put(tenantId, key, value, readAt);
+        }
+        return value;
+    }
+
+    public void invalidate(int tenantId, K key) {
+
+        version.incrementAndGet();
+        ConcurrentMap<K, CacheEntry<V>> tenantEntries = entries.get(tenantId);
+        if (tenantEntries != null) {
+            tenantEntries.remove(key);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Invalidated " + key + " of tenant: " + tenantId + " in cache: " + name);
+        }
+    }
+
+    public void invalidate(int tenantId) {
+
+        version.incrementAndGet();
+        entries.remove(tenantId);
+        if (log.isDebugEnabled()) {
+            log.debug("Invalidated the entries of tenant: " + tenantId + " in cache: " + name);
+        }
+    }
+
+    public void invalidateAll() {
+
+        version.incrementAndGet();
+        entries.clear();
+        if (log.isDebugEnabled()) {
+            log.debug("Invalidated the entries of all tenants in cache: " + name);
+        }
+    }
+
+    /**
+     * Reads the timeout of a cache from identity.xml.
+     *
+     * @param property       Property holding the timeout in seconds
+     * @param defaultTimeout Timeout in seconds if the property is not set or invalid
+     * @return Timeout in seconds
+     */
+    public static long getCacheTimeout(String property, long defaultTimeout) {
+
+        String cacheTimeoutValue = IdentityUtil.getProperty(property);
+        if (StringUtils.isNotBlank(cacheTimeoutValue)) {
+            try {
+                return Long.parseLong(cacheTimeoutValue.trim());
+            } catch (NumberFormatException e) {
+                log.warn("Invalid value: " + cacheTimeoutValue + " for " + property + ". Using the default value: "
+                        + defaultTimeout);
+            }
+        }
+        return defaultTimeout;
+    }
+
+    private void put(int tenantId, K key, V value, long readAt) {
+
+        if (timeoutInMillis <= 0 || version.get() != readAt) {
+            return;
+        }
+        ConcurrentMap<K, CacheEntry<V>> tenantEntries = entries.get(tenantId);
+        if (tenantEntries == null) {
+            ConcurrentMap<K, CacheEntry<V>> newTenantEntries = new ConcurrentHashMap<>();
+            tenantEntries = entries.putIfAbsent(tenantId, newTenantEntries);
+            if (tenantEntries == null) {
+                tenantEntries = newTenantEntries;
+            }
+        }
+        CacheEntry<V> entry = new CacheEntry<>(value, System.currentTimeMillis() + timeoutInMillis);
+        tenantEntries.put(key, entry);
+        // An invalidation between the version check above and the put may have missed the entry.
+        if (version.get() != readAt) {
+            tenantEntries.remove(key, entry);
+        }
+    }
+
+    private static class CacheEntry<V> {
+
+        private final V value;
+        private final long expiryTime;
+
+        private CacheEntry(V value, long expiryTime) {
+
+            this.value = value;
+            this.expiryTime = expiryTime;
+        }
+    }
+}
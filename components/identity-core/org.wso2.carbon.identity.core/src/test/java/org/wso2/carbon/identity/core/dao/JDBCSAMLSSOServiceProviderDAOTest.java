@@ -0,0 +1,350 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.core.dao;
+
+import org.apache.commons.codec.binary.Base64;
+import org.h2.jdbcx.JdbcDataSource;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.reflect.Whitebox;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.base.IdentityException;
+import org.wso2.carbon.identity.core.IdentityRegistryResources;
+import org.wso2.carbon.identity.core.model.SAMLSSOServiceProviderDO;
+import org.wso2.carbon.identity.core.persistence.JDBCPersistenceManager;
+import org.wso2.carbon.identity.core.util.IdentityTenantUtil;
+import org.wso2.carbon.registry.core.CollectionImpl;
+import org.wso2.carbon.registry.core.Resource;
+import org.wso2.carbon.registry.core.ResourceImpl;
+import org.wso2.carbon.registry.core.session.UserRegistry;
+import org.wso2.carbon.user.core.service.RealmService;
+import org.wso2.carbon.user.core.tenant.TenantManager;
+
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class JDBCSAMLSSOServiceProviderDAOTest {
+
+    private static final String DB_SCRIPT = "saml-service-provider-store.sql";
+    private static final String TENANT_DOMAIN = "saml.com";
+    private static final int TENANT_ID = 3;
+    private static final int LOOKUP_TENANT_ID = 4;
+    private static final int SERVICE_PROVIDER_COUNT = 1000;
+
+    private Connection keepAliveConnection;
+    private Object previousPersistenceManager;
+    private RealmService previousRealmService;
+    private SAMLSSOServiceProviderCache previousCache;
+    private SAMLSSOServiceProviderCache cache;
+    // Stands in for the distributed cache, which needs a running server.
+    private final Map<SAMLSSOServiceProviderCacheKey, SAMLSSOServiceProviderCacheEntry> cacheEntries =
+            new ConcurrentHashMap<>();
+
+    @BeforeClass
+    public void setUp() throws Exception {
+
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:JDBCSAMLSSOServiceProviderDAOTest");
+        // The in-memory database lives as long as a connection to it is open.
+        keepAliveConnection = dataSource.getConnection();
+        try (Statement statement = keepAliveConnection.createStatement()) {
+            statement.executeUpdate("RUNSCRIPT FROM '" + Paths.get(getClass().getResource("/dbScripts/" +
+                    DB_SCRIPT).toURI()).toString() + "'");
+        }
+
+        JDBCPersistenceManager persistenceManager = Whitebox.newInstance(JDBCPersistenceManager.class);
+        Whitebox.setInternalState(persistenceManager, "dataSource", dataSource);
+        previousPersistenceManager = Whitebox.getInternalState(JDBCPersistenceManager.class, "instance");
+        Whitebox.setInternalState(JDBCPersistenceManager.class, "instance", persistenceManager);
+
+        RealmService realmService = mock(RealmService.class);
+        TenantManager tenantManager = mock(TenantManager.class);
+        when(tenantManager.getDomain(anyInt())).thenReturn(TENANT_DOMAIN);
+        when(realmService.getTenantManager()).thenReturn(tenantManager);
+        previousRealmService = IdentityTenantUtil.getRealmService();
+        IdentityTenantUtil.setRealmService(realmService);
+
+        previousCache = SAMLSSOServiceProviderCache.getInstance();
+        cache = spy(previousCache);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+
+                cacheEntries.put((SAMLSSOServiceProviderCacheKey) invocation.getArguments()[0],
+                        (SAMLSSOServiceProviderCacheEntry) invocation.getArguments()[1]);
+                return null;
+            }
+        }).when(cache).addToCache(any(SAMLSSOServiceProviderCacheKey.class),
+                any(SAMLSSOServiceProviderCacheEntry.class));
+        doAnswer(new Answer<SAMLSSOServiceProviderCacheEntry>() {
+            @Override
+            public SAMLSSOServiceProviderCacheEntry answer(InvocationOnMock invocation) {
+                return cacheEntries.get(invocation.getArguments()[0]);
+            }
+        }).when(cache).getValueFromCache(any(SAMLSSOServiceProviderCacheKey.class));
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+
+                cacheEntries.remove(invocation.getArguments()[0]);
+                return null;
+            }
+        }).when(cache).clearCacheEntry(any(SAMLSSOServiceProviderCacheKey.class));
+        Whitebox.setInternalState(SAMLSSOServiceProviderCache.class, "instance", cache);
+    }
+
+    @AfterClass
+    public void tearDown() throws Exception {
+
+        Whitebox.setInternalState(JDBCPersistenceManager.class, "instance", previousPersistenceManager);
+        IdentityTenantUtil.setRealmService(previousRealmService);
+        Whitebox.setInternalState(SAMLSSOServiceProviderCache.class, "instance", previousCache);
+        keepAliveConnection.close();
+    }
+
+    @BeforeMethod
+    public void clearCache() {
+        cacheEntries.clear();
+    }
+
+    @Test
+    public void testAddGetAndRemoveServiceProvider() throws Exception {
+
+        JDBCSAMLSSOServiceProviderDAO dao = new JDBCSAMLSSOServiceProviderDAO(1);
+        SAMLSSOServiceProviderDO serviceProvider = createServiceProvider("travelocity.com");
+
+        assertFalse(dao.isServiceProviderExists("travelocity.com"));
+        assertTrue(dao.addServiceProvider(serviceProvider));
+        assertFalse(dao.addServiceProvider(serviceProvider));
+        assertTrue(dao.isServiceProviderExists("travelocity.com"));
+        assertFalse(new JDBCSAMLSSOServiceProviderDAO(2).isServiceProviderExists("travelocity.com"));
+
+        SAMLSSOServiceProviderDO storedServiceProvider = dao.getServiceProvider("travelocity.com");
+        assertEquals(JDBCSAMLSSOServiceProviderDAO.toProperties(storedServiceProvider),
+                JDBCSAMLSSOServiceProviderDAO.toProperties(serviceProvider));
+        assertEquals(storedServiceProvider.getAssertionConsumerUrlList(),
+                serviceProvider.getAssertionConsumerUrlList());
+        assertEquals(storedServiceProvider.getRequestedAudiencesList(), serviceProvider.getRequestedAudiencesList());
+        assertEquals(storedServiceProvider.getTenantDomain(), TENANT_DOMAIN);
+
+        SAMLSSOServiceProviderCacheKey cacheKey = new SAMLSSOServiceProviderCacheKey("travelocity.com", 1);
+        assertTrue(cacheEntries.containsKey(cacheKey));
+        assertTrue(dao.removeServiceProvider("travelocity.com"));
+        // Removing the service provider clears it from the cache of all nodes.
+        assertFalse(cacheEntries.containsKey(cacheKey));
+        assertFalse(dao.removeServiceProvider("travelocity.com"));
+        assertNull(dao.getServiceProvider("travelocity.com"));
+    }
+
+    @Test
+    public void testGetServiceProvidersSetsTenantDomain() throws Exception {
+
+        JDBCSAMLSSOServiceProviderDAO dao = new JDBCSAMLSSOServiceProviderDAO(7);
+        dao.addServiceProvider(createServiceProvider("budget.com"));
+        dao.addServiceProvider(createServiceProvider("alamo.com"));
+
+        SAMLSSOServiceProviderDO[] serviceProviders = dao.getServiceProviders();
+        assertEquals(serviceProviders.length, 2);
+        for (SAMLSSOServiceProviderDO serviceProvider : serviceProviders) {
+            assertEquals(serviceProvider.getTenantDomain(), TENANT_DOMAIN);
+        }
+    }
+
+    @Test
+    public void testCacheIsNotFilledWithInvalidatedServiceProvider() throws Exception {
+
+        JDBCSAMLSSOServiceProviderDAO dao = new JDBCSAMLSSOServiceProviderDAO(8);
+        dao.addServiceProvider(createServiceProvider("sixt.com"));
+
+        long version = cache.getVersion();
+        Map<String, List<String>> properties = dao.loadProperties("sixt.com");
+        dao.removeServiceProvider("sixt.com");
+        cache.put(8, "sixt.com", properties, version);
+
+        assertNull(cache.getProperties(8, "sixt.com"));
+        assertNull(dao.getServiceProvider("sixt.com"));
+    }
+
+    @Test
+    public void testCachedServiceProviderIsNotShared() throws Exception {
+
+        JDBCSAMLSSOServiceProviderDAO dao = new JDBCSAMLSSOServiceProviderDAO(5);
+        dao.addServiceProvider(createServiceProvider("avis.com"));
+
+        SAMLSSOServiceProviderDO serviceProvider = dao.getServiceProvider("avis.com");
+        serviceProvider.setCertAlias("changed");
+        serviceProvider.getAssertionConsumerUrlList().set(0, "https://changed.com");
+
+        SAMLSSOServiceProviderDO cachedServiceProvider = dao.getServiceProvider("avis.com");
+        assertEquals(cachedServiceProvider.getCertAlias(), "wso2carbon");
+        assertEquals(cachedServiceProvider.getAssertionConsumerUrlList().get(0), "https://avis.com/acs");
+    }
+
+    @Test(expectedExceptions = IdentityException.class)
+    public void testUploadExistingServiceProvider() throws Exception {
+
+        JDBCSAMLSSOServiceProviderDAO dao = new JDBCSAMLSSOServiceProviderDAO(6);
+        assertNotNull(dao.uploadServiceProvider(createServiceProvider("hertz.com")));
+        dao.uploadServiceProvider(createServiceProvider("hertz.com"));
+    }
+
+    @Test
+    public void testMigrateFromRegistry() throws Exception {
+
+        Map<String, Resource> resources = new HashMap<>();
+        for (int i = 0; i < 20; i++) {
+            addResource(resources, createServiceProvider("sp" + i + ".com"));
+        }
+        UserRegistry registry = createRegistry(TENANT_ID, resources);
+
+        // A property the service provider model does not know of is copied as it is.
+        Resource legacyResource = resources.get(getPath("sp0.com"));
+        legacyResource.setProperty("legacyProperty", "legacyValue");
+
+        SAMLSSOServiceProviderStoreMigrator migrator = new SAMLSSOServiceProviderStoreMigrator();
+        assertEquals(migrator.migrate(TENANT_ID, registry), 20);
+        // Service providers already in the database are verified, but not copied again.
+        assertEquals(migrator.migrate(TENANT_ID, registry), 0);
+
+        SAMLSSOServiceProviderDAO registryDAO = new SAMLSSOServiceProviderDAO(registry);
+        JDBCSAMLSSOServiceProviderDAO jdbcDAO = new JDBCSAMLSSOServiceProviderDAO(TENANT_ID);
+        assertEquals(jdbcDAO.getServiceProviders().length, 20);
+        for (int i = 0; i < 20; i++) {
+            assertEquals(JDBCSAMLSSOServiceProviderDAO.toProperties(jdbcDAO.getServiceProvider("sp" + i + ".com")),
+                    JDBCSAMLSSOServiceProviderDAO.toProperties(registryDAO.getServiceProvider("sp" + i + ".com")));
+            assertEquals(jdbcDAO.loadProperties("sp" + i + ".com"),
+                    JDBCSAMLSSOServiceProviderDAO.toProperties(resources.get(getPath("sp" + i + ".com"))));
+        }
+        assertEquals(jdbcDAO.loadProperties("sp0.com").get("legacyProperty"), Arrays.asList("legacyValue"));
+    }
+
+    @Test
+    public void testCachedLookupDoesNotReadDatabase() throws Exception {
+
+        Map<String, Resource> resources = new HashMap<>();
+        for (int i = 0; i < SERVICE_PROVIDER_COUNT; i++) {
+            addResource(resources, createServiceProvider("issuer-" + i));
+        }
+        UserRegistry registry = createRegistry(LOOKUP_TENANT_ID, resources);
+        assertEquals(new SAMLSSOServiceProviderStoreMigrator().migrate(LOOKUP_TENANT_ID, registry),
+                SERVICE_PROVIDER_COUNT);
+
+        // Spied to count the lookups that reach the database.
+        JDBCSAMLSSOServiceProviderDAO jdbcDAO = spy(new JDBCSAMLSSOServiceProviderDAO(LOOKUP_TENANT_ID));
+
+        for (int i = 0; i < SERVICE_PROVIDER_COUNT; i++) {
+            assertNotNull(jdbcDAO.getServiceProvider("issuer-" + i));
+        }
+        verify(jdbcDAO, times(SERVICE_PROVIDER_COUNT)).loadProperties(anyString());
+
+        for (int i = 0; i < SERVICE_PROVIDER_COUNT; i++) {
+            assertNotNull(jdbcDAO.getServiceProvider("issuer-" + i));
+        }
+        // The cached lookups do not read the database again.
+        verify(jdbcDAO, times(SERVICE_PROVIDER_COUNT)).loadProperties(anyString());
+    }
+
+    private static SAMLSSOServiceProviderDO createServiceProvider(String issuer) {
+
+        SAMLSSOServiceProviderDO serviceProvider = new SAMLSSOServiceProviderDO();
+        serviceProvider.setIssuer(issuer);
+        serviceProvider.setAssertionConsumerUrls(Arrays.asList("https://" + issuer + "/acs",
+                "https://" + issuer + "/acs2"));
+        serviceProvider.setDefaultAssertionConsumerUrl("https://" + issuer + "/acs");
+        serviceProvider.setCertAlias("wso2carbon");
+        serviceProvider.setNameIDFormat("urn:oasis:names:tc:SAML:1.1:nameid-format:emailAddress");
+        serviceProvider.setDoSingleLogout(true);
+        serviceProvider.setSloResponseURL("https://" + issuer + "/slo");
+        serviceProvider.setDoSignResponse(true);
+        serviceProvider.setAttributeConsumingServiceIndex("1223160755");
+        serviceProvider.setRequestedAudiences(Arrays.asList("https://audience1.com", "https://audience2.com"));
+        serviceProvider.setIdPInitSSOEnabled(true);
+        serviceProvider.setIdPInitSLOEnabled(true);
+        serviceProvider.setIdpInitSLOReturnToURLs(Arrays.asList("https://" + issuer + "/logout"));
+        return serviceProvider;
+    }
+
+    private static void addResource(Map<String, Resource> resources, SAMLSSOServiceProviderDO serviceProvider) {
+
+        Resource resource = new ResourceImpl();
+        SAMLSSOServiceProviderDAO.populateResource(resource, serviceProvider);
+        resources.put(getPath(serviceProvider.getIssuer()), resource);
+    }
+
+    private static String getPath(String issuer) {
+        return IdentityRegistryResources.SAML_SSO_SERVICE_PROVIDERS +
+                new String(Base64.encodeBase64(issuer.getBytes())).replace("=", "");
+    }
+
+    /**
+     * Creates a registry of the given tenant holding the given service provider resources in memory.
+     */
+    private static UserRegistry createRegistry(int tenantId, final Map<String, Resource> resources)
+            throws Exception {
+
+        final CollectionImpl collection = new CollectionImpl();
+        collection.setContent(resources.keySet().toArray(new String[resources.size()]));
+
+        UserRegistry registry = mock(UserRegistry.class);
+        when(registry.getTenantId()).thenReturn(tenantId);
+        when(registry.resourceExists(anyString())).thenAnswer(new Answer<Boolean>() {
+            @Override
+            public Boolean answer(InvocationOnMock invocation) {
+
+                String path = (String) invocation.getArguments()[0];
+                return IdentityRegistryResources.SAML_SSO_SERVICE_PROVIDERS.equals(path) ||
+                        resources.containsKey(path);
+            }
+        });
+        when(registry.get(anyString())).thenAnswer(new Answer<Resource>() {
+            @Override
+            public Resource answer(InvocationOnMock invocation) {
+
+                String path = (String) invocation.getArguments()[0];
+                return IdentityRegistryResources.SAML_SSO_SERVICE_PROVIDERS.equals(path) ? collection :
+                        resources.get(path);
+            }
+        });
+        return registry;
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ *  Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.wso2.carbon.identity.core.handler;
+
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.core.bean.context.MessageContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class HandlerManagerTest {
+
+    private HandlerManager handlerManager = HandlerManager.getInstance();
+
+    @Test
+    public void testGetHandlersSortedByPriority() {
+
+        TestHandler third = new TestHandler("third", 30, true);
+        TestHandler first = new TestHandler("first", 10, true);
+        TestHandler disabled = new TestHandler("disabled", 15, false);
+        TestHandler second = new TestHandler("second", 20, true);
+        for (TestHandler handler : new TestHandler[]{third, first, disabled, second}) {
+            handlerManager.addHandler(SortedHandler.class, handler);
+        }
+
+        assertEquals(handlerManager.getHandlers(SortedHandler.class, false).toString(),
+                "[first, disabled, second, third]");
+        assertEquals(handlerManager.getHandlers(SortedHandler.class, true).toString(), "[first, second, third]");
+        assertSame(handlerManager.getFirstPriorityHandler(SortedHandler.class, true), first);
+
+        handlerManager.removeHandler(SortedHandler.class, first);
+        assertEquals(handlerManager.getHandlers(SortedHandler.class, true).toString(), "[second, third]");
+        assertSame(handlerManager.getFirstPriorityHandler(SortedHandler.class, false), disabled);
+        assertSame(handlerManager.getFirstPriorityHandler(SortedHandler.class, true), second);
+    }
+
+    @Test
+    public void testGetHandlersOfUnknownType() {
+
+        assertTrue(handlerManager.getHandlers(UnknownHandler.class, true).isEmpty());
+        assertNull(handlerManager.getFirstPriorityHandler(UnknownHandler.class, true));
+        assertNull(handlerManager.getFirstPriorityHandler(UnknownMessageHandler.class, true, new TestMessageContext(
+                "any")));
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testHandlerChainIsImmutable() {
+
+        handlerManager.addHandler(ImmutableHandler.class, new TestHandler("handler", 10, true));
+        List<ImmutableHandler> handlers = handlerManager.getHandlers(ImmutableHandler.class, false);
+        handlers.add(new TestHandler("other", 20, true));
+    }
+
+    @Test
+    public void testGetFirstPriorityMessageHandler() {
+
+        TestMessageHandler fallback = new TestMessageHandler("fallback", 100, true, null);
+        TestMessageHandler disabled = new TestMessageHandler("disabled", 5, false, "saml");
+        TestMessageHandler saml = new TestMessageHandler("saml", 10, true, "saml");
+        TestMessageHandler oauth = new TestMessageHandler("oauth", 20, true, "oauth");
+        for (TestMessageHandler handler : new TestMessageHandler[]{fallback, disabled, saml, oauth}) {
+            handlerManager.addMessageHandler(ProtocolHandler.class, handler);
+        }
+
+        assertSame(handlerManager.getFirstPriorityHandler(ProtocolHandler.class, true, new TestMessageContext("saml")),
+                saml);
+        assertSame(handlerManager.getFirstPriorityHandler(ProtocolHandler.class, false, new TestMessageContext(
+                "saml")), disabled);
+        assertSame(handlerManager.getFirstPriorityHandler(ProtocolHandler.class, true, new TestMessageContext(
+                "oauth")), oauth);
+        assertSame(handlerManager.getFirstPriorityHandler(ProtocolHandler.class, true, new TestMessageContext(
+                "openid")), fallback);
+        assertEquals(handlerManager.getMessageHandlers(ProtocolHandler.class, true, new TestMessageContext("saml"))
+                .toString(), "[saml, oauth, fallback]");
+
+        handlerManager.removeMessageHandler(ProtocolHandler.class, saml);
+        assertSame(handlerManager.getFirstPriorityHandler(ProtocolHandler.class, true, new TestMessageContext("saml")),
+                fallback);
+    }
+
+    @Test
+    public void testConcurrentRegistrationAndInvocation() throws Exception {
+
+        final TestHandler first = new TestHandler("first", 10, true);
+        final TestHandler last = new TestHandler("last", 1000, true);
+        handlerManager.addHandler(ConcurrentHandler.class, first);
+        handlerManager.addHandler(ConcurrentHandler.class, last);
+
+        final AtomicBoolean registering = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        try {
+            List<Future<Integer>> invokers = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                invokers.add(executor.submit(() -> {
+                    int invocations = 0;
+                    do {
+                        List<ConcurrentHandler> handlers = handlerManager.getHandlers(ConcurrentHandler.class,
+                                true);
+                        // Every chain seen by an invocation is complete and sorted, whatever is being registered.
+                        assertSame(handlers.get(0), first);
+                        assertSame(handlers.get(handlers.size() - 1), last);
+                        for (int j = 1; j < handlers.size(); j++) {
+                            assertTrue(handlers.get(j - 1).getPriority() <= handlers.get(j).getPriority());
+                        }
+                        assertSame(handlerManager.getFirstPriorityHandler(ConcurrentHandler.class, true), first);
+                        invocations++;
+                    } while (registering.get());
+                    return invocations;
+                }));
+            }
+            Future<?> registrar = executor.submit(() -> {
+                try {
+                    for (int i = 0; i < 2000; i++) {
+                        TestHandler handler = new TestHandler("handler-" + i, 11 + i % 900, i % 3 != 0);
+                        handlerManager.addHandler(ConcurrentHandler.class, handler);
+                        if (i % 2 == 0) {
+                            handlerManager.removeHandler(ConcurrentHandler.class, handler);
+                        }
+                    }
+                } finally {
+                    registering.set(false);
+                }
+            });
+
+            registrar.get(1, TimeUnit.MINUTES);
+            for (Future<Integer> invoker : invokers) {
+                assertTrue(invoker.get(1, TimeUnit.MINUTES) > 0);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        // Half of the added handlers were removed again, and a third of the remaining ones are disabled.
+        assertEquals(handlerManager.getHandlers(ConcurrentHandler.class, false).size(), 1002);
+        assertEquals(handlerManager.getHandlers(ConcurrentHandler.class, true).size(), 669);
+    }
+
+    @Test
+    public void testHandlerChainIsSortedOnce() {
+
+        List<TestHandler> handlers = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            TestHandler handler = new TestHandler("handler-" + i, (i * 7) % 20, i % 4 != 0);
+            handlers.add(handler);
+            handlerManager.addHandler(ChainedHandler.class, handler);
+        }
+        List<ChainedHandler> enabledHandlers = handlerManager.getHandlers(ChainedHandler.class, true);
+        assertEquals(enabledHandlers, handlerManager.sortHandlers(new ArrayList<>(handlers), true));
+        assertEquals(enabledHandlers.size(), 15);
+
+        // The chain is sorted when a handler is added, so the same list is returned until the next change.
+        assertSame(handlerManager.getHandlers(ChainedHandler.class, true), enabledHandlers);
+        assertSame(handlerManager.getHandlers(ChainedHandler.class, false),
+                handlerManager.getHandlers(ChainedHandler.class, false));
+    }
+
+    private interface SortedHandler extends IdentityHandler {
+    }
+
+    private interface UnknownHandler extends IdentityHandler {
+    }
+
+    private interface ImmutableHandler extends IdentityHandler {
+    }
+
+    private interface ConcurrentHandler extends IdentityHandler {
+    }
+
+    private interface ChainedHandler extends IdentityHandler {
+    }
+
+    private interface ProtocolHandler extends IdentityMessageHandler {
+    }
+
+    private interface UnknownMessageHandler extends IdentityMessageHandler {
+    }
+
+    private static class TestHandler implements SortedHandler, ImmutableHandler, ConcurrentHandler,
+            ChainedHandler {
+
+        private final String name;
+        private final int priority;
+        private final boolean enabled;
+
+        private TestHandler(String name, int priority, boolean enabled) {
+
+            this.name = name;
+            this.priority = priority;
+            this.enabled = enabled;
+        }
+
+        @Override
+        public void init(InitConfig initConfig) {
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        @Override
+        public int getPriority() {
+            return priority;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private static class TestMessageHandler implements ProtocolHandler {
+
+        private final String name;
+        private final int priority;
+        private final boolean enabled;
+        private final String protocol;
+
+        private TestMessageHandler(String name, int priority, boolean enabled, String protocol) {
+
+            this.name = name;
+            this.priority = priority;
+            this.enabled = enabled;
+            this.protocol = protocol;
+        }
+
+        @Override
+        public void init(InitConfig initConfig) {
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public boolean isEnabled(MessageContext messageContext) {
+            return enabled;
+        }
+
+        @Override
+        public int getPriority(MessageContext messageContext) {
+            return priority;
+        }
+
+        @Override
+        public boolean canHandle(MessageContext messageContext) {
+            return protocol == null || protocol.equals(messageContext.getParameter("protocol"));
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private static class TestMessageContext extends MessageContext<String, String> {
+
+        private static final long serialVersionUID = 4318702719324622893L;
+
+        private TestMessageContext(String protocol) {
+            addParameter("protocol", protocol);
+        }
+    }
+}
@@ -206,8 +206,10 @@ public class IdentityUtilTest {
 
         IdentityEventListenerConfigKey key = new IdentityEventListenerConfigKey("ListenerType", "ListenerName");
         IdentityEventListenerConfig config = new IdentityEventListenerConfig("true", 0, key, new Properties());
-        Map<IdentityEventListenerConfigKey, IdentityEventListenerConfig> mockedMap = new HashMap<>();
-        mockedMap.put(key, config);
+        Map<String, IdentityEventListenerConfig> mockedListenerMap = new HashMap<>();
+        mockedListenerMap.put("ListenerName", config);
+        Map<String, Map<String, IdentityEventListenerConfig>> mockedMap = new HashMap<>();
+        mockedMap.put("ListenerType", mockedListenerMap);
         Whitebox.setInternalState(IdentityUtil.class, "eventListenerConfiguration", mockedMap);
 
         IdentityEventListenerConfig configResponse = IdentityUtil.readEventListenerProperty("ListenerType", "ListenerName");
@@ -293,8 +295,10 @@ public class IdentityUtilTest {
         IdentityUtil.populateProperties();
         assertEquals(Whitebox.getField(IdentityUtil.class, "configuration").get(IdentityUtil.class), mockConfig,
                 "Configuration is not set properly during config population");
-        assertEquals(Whitebox.getField(IdentityUtil.class, "eventListenerConfiguration").get(IdentityUtil.class),
-                mockedEventListenerConfig, "eventListenerConfiguration is not set properly during config population");
+        assertEquals(IdentityUtil.readEventListenerProperty("type", "name"), mockedEventListenerConfig.get(configKey),
+                "eventListenerConfiguration is not set properly during config population");
+        assertNull(IdentityUtil.readEventListenerProperty("type", "otherName"),
+                "eventListenerConfiguration is not set properly during config population");
         assertEquals(IdentityUtil.getIdentityCookiesConfigurationHolder(), mockedCookieConfig,
                 "cookieConfiguration is not set properly during config population");
         assertEquals(Whitebox.getField(IdentityUtil.class, "identityCacheConfigurationHolder").get(IdentityUtil
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.core.util;
+
+import org.testng.annotations.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+public class LocalTenantCacheTest {
+
+    @Test
+    public void testLoadedValueIsCached() throws Exception {
+
+        LocalTenantCache<String, String> cache = new LocalTenantCache<>("test", 300);
+        CountingLoader loader = new CountingLoader("value");
+
+        assertEquals(cache.get(1, "key", loader), "value");
+        assertEquals(cache.get(1, "key", loader), "value");
+        assertEquals(loader.loads.get(), 1);
+        assertNull(cache.get(2, "key"));
+    }
+
+    @Test
+    public void testNullIsNotCached() throws Exception {
+
+        LocalTenantCache<String, String> cache = new LocalTenantCache<>("test", 300);
+        CountingLoader loader = new CountingLoader(null);
+
+        assertNull(cache.get(1, "key", loader));
+        assertNull(cache.get(1, "key", loader));
+        assertEquals(loader.loads.get(), 2);
+    }
+
+    @Test
+    public void testValuesExpire() throws Exception {
+
+        LocalTenantCache<String, String> cache = new LocalTenantCache<>("test", 0);
+        CountingLoader loader = new CountingLoader("value");
+
+        assertEquals(cache.get(1, "key", loader), "value");
+        assertNull(cache.get(1, "key"));
+        assertEquals(cache.get(1, "key", loader), "value");
+        assertEquals(loader.loads.get(), 2);
+    }
+
+    @Test
+    public void testInvalidation() throws Exception {
+
+        LocalTenantCache<String, String> cache = new LocalTenantCache<>("test", 300);
+        CountingLoader loader = new CountingLoader("value");
+        cache.get(1, "key1", loader);
+        cache.get(1, "key2", loader);
+        cache.get(2, "key1", loader);
+
+        cache.invalidate(1, "key1");
+        assertNull(cache.get(1, "key1"));
+        assertEquals(cache.get(1, "key2"), "value");
+
+        cache.invalidate(1);
+        assertNull(cache.get(1, "key2"));
+        assertEquals(cache.get(2, "key1"), "value");
+
+        cache.invalidateAll();
+        assertNull(cache.get(2, "key1"));
+    }
+
+    @Test
+    public void testValueLoadedDuringInvalidationIsNotCached() throws Exception {
+
+        final LocalTenantCache<String, String> cache = new LocalTenantCache<>("test", 300);
+
+        String value = cache.get(1, "key", new LocalTenantCache.Loader<String, RuntimeException>() {
+            @Override
+            public String load() {
+                // The value is read, and then changed and invalidated by another thread before it is cached.
+                cache.invalidate(1);
+                return "stale";
+            }
+        });
+
+        assertEquals(value, "stale");
+        assertNull(cache.get(1, "key"));
+    }
+
+    private static class CountingLoader implements LocalTenantCache.Loader<String, RuntimeException> {
+
+        private final String value;
+        private final AtomicInteger loads = new AtomicInteger();
+
+        private CountingLoader(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public String load() {
+
+            loads.incrementAndGet();
+            return value;
+        }
+    }
+}
@@ -18,38 +18,81 @@
 
 package org.wso2.carbon.identity.event;
 
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.event.bean.EventQueueStatistics;
 import org.wso2.carbon.identity.event.bean.IdentityEventMessageContext;
+import org.wso2.carbon.identity.event.bean.ModuleConfiguration;
 import org.wso2.carbon.identity.event.event.Event;
 import org.wso2.carbon.identity.event.handler.AbstractEventHandler;
+import org.wso2.carbon.identity.core.util.IdentityTenantUtil;
 import org.wso2.carbon.identity.event.internal.IdentityEventServiceDataHolder;
+import org.wso2.carbon.user.api.UserStoreException;
+import org.wso2.carbon.user.core.UserCoreConstants;
+import org.wso2.carbon.user.core.UserRealm;
+import org.wso2.carbon.user.core.UserStoreManager;
+import org.wso2.carbon.user.core.service.RealmService;
+import org.wso2.carbon.utils.CarbonUtils;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.BlockingDeque;
-import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
- * This has a queue inside. All publishers add events to this queue and this event distribution task is responsible
- * for distributing these events to Notification sending modules
+ * Distributes async events to the handlers subscribed to them. Each handler has a bounded queue of its own, drained
+ * on a shared thread pool in the order of handler priority, so that a slow handler fills up its own queue instead of
+ * delaying the events of other handlers. What happens to events published to a full queue is decided by the overflow
+ * policy of the handler.
+ * <p>
+ * When the event journal is enabled, queued events are also written to a local journal and events which were not
+ * handled before the node went down are queued again once their handlers are registered, with their user store
+ * manager looked up again.
  */
-public class EventDistributionTask implements Runnable {
+public class EventDistributionTask {
 
     private static final Log log = LogFactory.getLog(EventDistributionTask.class);
 
-    /**
-     * Queue used to add events by publishers.
-     */
-    private BlockingDeque<Event> eventQueue;
+    private static final int DEFAULT_QUEUE_SIZE = 10000;
+    private static final long DEFAULT_OFFER_TIMEOUT = 1000;
+    private static final int DEFAULT_BATCH_SIZE = 1;
+
+    private static final String QUEUE_SIZE = "size";
+    private static final String OVERFLOW_POLICY = "overflowPolicy";
+    private static final String OFFER_TIMEOUT = "offerTimeout";
+    private static final String BATCH_SIZE = "batchSize";
+    private static final String MAX_CONCURRENCY = "maxConcurrency";
+
+    private static final String JOURNAL_ENABLE = "enable";
+    private static final String JOURNAL_DIRECTORY = "directory";
+    private static final String JOURNAL_SEGMENT_SIZE = "segmentSize";
+    private static final String JOURNAL_FLUSH_INTERVAL = "flushInterval";
+    private static final String JOURNAL_RECOVERED_EVENT_TIMEOUT = "recoveredEventTimeout";
+    private static final int DEFAULT_JOURNAL_SEGMENT_SIZE = 64 * 1024 * 1024;
+    private static final int DEFAULT_JOURNAL_FLUSH_INTERVAL = 100;
+    private static final int DEFAULT_JOURNAL_RECOVERED_EVENT_TIMEOUT = 10 * 60 * 1000;
+
     /**
      * Registered message sending modules.
      */
     private List<AbstractEventHandler> notificationSendingModules;
     /**
-     * Condition to break event distribution task
+     * Async event queue of each handler, created when the first async event of the handler is published.
+     */
+    private final ConcurrentMap<AbstractEventHandler, HandlerEventQueue> handlerQueues = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor threadPool;
+    /**
+     * Local journal of queued events, null if not enabled.
      */
-    private volatile boolean running;
+    private final EventJournal journal;
 
     /**
      * Overridden constructor to initiate notification sending modules and thread pool size
@@ -59,51 +102,271 @@ public class EventDistributionTask implements Runnable {
      */
     public EventDistributionTask(List<AbstractEventHandler> notificationSendingModules, int threadPoolSize) {
         this.notificationSendingModules = notificationSendingModules;
-        this.eventQueue = new LinkedBlockingDeque<Event>();
-        IdentityEventServiceDataHolder.getInstance().setThreadPool(Executors.newFixedThreadPool(threadPoolSize));
+        // Drain tasks are comparable by the priority of their handlers. They are run with execute() so that they are
+        // queued as they are.
+        this.threadPool = new ThreadPoolExecutor(threadPoolSize, threadPoolSize, 0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<Runnable>());
+        IdentityEventServiceDataHolder.getInstance().setThreadPool(threadPool);
+
+        this.journal = openJournal();
+        if (journal != null) {
+            for (AbstractEventHandler handler : new ArrayList<>(notificationSendingModules)) {
+                replayJournaledEvents(handler);
+            }
+        }
+    }
+
+    /**
+     * Queues an async event to be handled by the given handler.
+     *
+     * @param handler Handler subscribed to the event
+     * @param event   Event to be handled
+     */
+    public void addEventToQueue(AbstractEventHandler handler, Event event) {
+
+        if (!handler.isEnabled(new IdentityEventMessageContext(event))) {
+            return;
+        }
+        getHandlerQueue(handler, event).add(event);
     }
 
+    /**
+     * Queues the events recovered from the event journal for the given handler. Called when a handler is registered,
+     * as handlers can be registered after the dispatcher is created.
+     *
+     * @param handler Registered handler
+     */
+    public void replayJournaledEvents(AbstractEventHandler handler) {
+
+        if (journal == null) {
+            return;
+        }
+        List<EventJournal.JournaledEvent> handlerEvents = journal.takeRecoveredEvents(handler.getName());
+        if (handlerEvents.isEmpty()) {
+            return;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Replaying " + handlerEvents.size() + " journaled events of handler " + handler.getName());
+        }
+        for (EventJournal.JournaledEvent journaledEvent : handlerEvents) {
+            if (!restoreUserStoreManager(journaledEvent)) {
+                journal.acknowledge(journaledEvent.getId());
+                continue;
+            }
+            getHandlerQueue(handler, journaledEvent.getEvent()).add(journaledEvent.getEvent(),
+                    journaledEvent.getId());
+        }
+    }
+
+    /**
+     * Queues an event to be handled by all the registered handlers that are subscribed to it.
+     *
+     * @param publisherEvent Event to be handled
+     * @deprecated Use {@link #addEventToQueue(AbstractEventHandler, Event)} to queue an event for the handler it is
+     * published to.
+     */
+    @Deprecated
     public void addEventToQueue(Event publisherEvent) {
-        this.eventQueue.add(publisherEvent);
+
+        IdentityEventMessageContext eventContext = new IdentityEventMessageContext(publisherEvent);
+        for (AbstractEventHandler module : notificationSendingModules) {
+            if (module.canHandle(eventContext)) {
+                addEventToQueue(module, publisherEvent);
+            }
+        }
     }
 
-    @Override
-    public void run() {
-        running = true;
-        // Run forever until stop the bundle. Will stop in eventQueue.take()
-        while (running) {
+    /**
+     * Returns the statistics of the async event queue of each handler that has received async events.
+     *
+     * @return Statistics keyed by handler name
+     */
+    public Map<String, EventQueueStatistics> getQueueStatistics() {
+
+        Map<String, EventQueueStatistics> statistics = new HashMap<>();
+        for (HandlerEventQueue handlerQueue : new ArrayList<>(handlerQueues.values())) {
+            EventQueueStatistics queueStatistics = handlerQueue.getStatistics();
+            statistics.put(queueStatistics.getHandlerName(), queueStatistics);
+        }
+        return statistics;
+    }
+
+    /**
+     * Stops the thread pool and closes the event journal. Events still queued are handled again from the journal
+     * when the node comes up.
+     */
+    public void shutdown() {
+
+        threadPool.shutdown();
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    private HandlerEventQueue getHandlerQueue(AbstractEventHandler handler, Event event) {
+
+        HandlerEventQueue handlerQueue = handlerQueues.get(handler);
+        if (handlerQueue == null) {
+            HandlerEventQueue newHandlerQueue = createHandlerQueue(handler, event);
+            handlerQueue = handlerQueues.putIfAbsent(handler, newHandlerQueue);
+            if (handlerQueue == null) {
+                handlerQueue = newHandlerQueue;
+            }
+        }
+        return handlerQueue;
+    }
+
+    private HandlerEventQueue createHandlerQueue(AbstractEventHandler handler, Event event) {
+
+        int queueSize = getIntProperty(handler, QUEUE_SIZE, DEFAULT_QUEUE_SIZE);
+        EventQueueOverflowPolicy overflowPolicy = EventQueueOverflowPolicy.fromString(
+                getProperty(handler, OVERFLOW_POLICY), EventQueueOverflowPolicy.CALLER_RUNS);
+        long offerTimeout = getIntProperty(handler, OFFER_TIMEOUT, (int) DEFAULT_OFFER_TIMEOUT);
+        int batchSize = getIntProperty(handler, BATCH_SIZE, DEFAULT_BATCH_SIZE);
+        // By default a handler can use up to half of the pool, leaving the rest to other handlers.
+        int maxConcurrency = Math.min(getIntProperty(handler, MAX_CONCURRENCY,
+                Math.max(1, threadPool.getMaximumPoolSize() / 2)), threadPool.getMaximumPoolSize());
+        int priority = handler.getPriority(new IdentityEventMessageContext(event));
+
+        if (log.isDebugEnabled()) {
+            log.debug("Creating async event queue of handler " + handler.getName() + " with size: " + queueSize +
+                    ", overflow policy: " + overflowPolicy + ", batch size: " + batchSize + ", max concurrency: " +
+                    maxConcurrency);
+        }
+        return new HandlerEventQueue(handler, priority, queueSize, overflowPolicy, offerTimeout, batchSize,
+                maxConcurrency, threadPool, journal);
+    }
+
+    /**
+     * Looks up the user store manager a journaled event was published with, which is not journaled itself.
+     *
+     * @param journaledEvent Recovered event
+     * @return False if the event had a user store manager that could not be looked up
+     */
+    private boolean restoreUserStoreManager(EventJournal.JournaledEvent journaledEvent) {
+
+        String userStoreDomain = journaledEvent.getUserStoreDomain();
+        if (userStoreDomain == null) {
+            return true;
+        }
+        Event event = journaledEvent.getEvent();
+        UserStoreManager userStoreManager = null;
+        RealmService realmService = IdentityTenantUtil.getRealmService();
+        if (realmService != null) {
             try {
-                final Event event = eventQueue.take();
-                IdentityEventMessageContext eventContext = new IdentityEventMessageContext(event);
-                for (final AbstractEventHandler module : notificationSendingModules) {
-                    // If the module is subscribed to the event, module will be executed.
-                    if (module.isEnabled(eventContext)) {
-                        // Create a runnable and submit to the thread pool for sending message.
-                        Runnable msgSender = new Runnable() {
-                            @Override
-                            public void run() {
-                                if (log.isDebugEnabled()) {
-                                    log.debug("Executing " + module.getName() + " on event" + event.
-                                            getEventName());
-                                }
-                                try {
-                                    module.handleEvent(event);
-                                } catch (IdentityEventException e) {
-                                    log.error("Error while invoking notification sending module " + module.
-                                            getName(), e);
-                                }
-                            }
-                        };
-                        IdentityEventServiceDataHolder.getInstance().getThreadPool().submit(msgSender);
+                UserRealm userRealm = (UserRealm) realmService.getTenantUserRealm(journaledEvent.getTenantId());
+                if (userRealm != null) {
+                    userStoreManager = userRealm.getUserStoreManager();
+                    if (userStoreManager != null &&
+                            !UserCoreConstants.PRIMARY_DEFAULT_DOMAIN_NAME.equalsIgnoreCase(userStoreDomain)) {
+                        userStoreManager = userStoreManager.getSecondaryUserStoreManager(userStoreDomain);
                     }
                 }
-            } catch (InterruptedException e) {
-                log.error("Error while picking up event from event queue", e);
+            } catch (UserStoreException e) {
+                log.error("Error while looking up user store " + userStoreDomain + " of tenant " +
+                        journaledEvent.getTenantId() + " for journaled event " + event.getEventName(), e);
             }
         }
+        if (userStoreManager == null) {
+            log.error("Journaled event " + event.getEventName() + " of handler " + journaledEvent.getHandlerName() +
+                    " is discarded as user store " + userStoreDomain + " of tenant " + journaledEvent.getTenantId() +
+                    " cannot be found.");
+            return false;
+        }
+        event.getEventProperties().put(IdentityEventConstants.EventProperty.USER_STORE_MANAGER, userStoreManager);
+        return true;
     }
 
-    public void shutdown() {
-        this.running = false;
+    private EventJournal openJournal() {
+
+        IdentityEventConfigBuilder configBuilder;
+        try {
+            configBuilder = IdentityEventConfigBuilder.getInstance();
+        } catch (IdentityEventException e) {
+            log.error("Error while reading the event journal configuration. Async events are not journaled.", e);
+            return null;
+        }
+        if (!Boolean.parseBoolean(configBuilder.getEventJournalProperty(JOURNAL_ENABLE))) {
+            return null;
+        }
+
+        String directoryPath = configBuilder.getEventJournalProperty(JOURNAL_DIRECTORY);
+        File directory;
+        if (StringUtils.isBlank(directoryPath)) {
+            directory = new File(CarbonUtils.getCarbonHome(), "repository" + File.separator + "data" + File.separator +
+                    "identity-event-journal");
+        } else {
+            directory = new File(directoryPath.trim());
+        }
+        int segmentSize = parsePositiveInt(configBuilder.getEventJournalProperty(JOURNAL_SEGMENT_SIZE),
+                DEFAULT_JOURNAL_SEGMENT_SIZE);
+        int flushInterval = parsePositiveInt(configBuilder.getEventJournalProperty(JOURNAL_FLUSH_INTERVAL),
+                DEFAULT_JOURNAL_FLUSH_INTERVAL);
+        int recoveredEventTimeout = parsePositiveInt(configBuilder.getEventJournalProperty(
+                JOURNAL_RECOVERED_EVENT_TIMEOUT), DEFAULT_JOURNAL_RECOVERED_EVENT_TIMEOUT);
+        try {
+            return new EventJournal(directory, segmentSize, flushInterval, recoveredEventTimeout);
+        } catch (IOException e) {
+            log.error("Error while opening the event journal at " + directory.getAbsolutePath() + ". Async events " +
+                    "are not journaled.", e);
+            return null;
+        }
+    }
+
+    private static int parsePositiveInt(String value, int defaultValue) {
+
+        if (StringUtils.isNotBlank(value)) {
+            try {
+                int intValue = Integer.parseInt(value.trim());
+                if (intValue > 0) {
+                    return intValue;
+                }
+            } catch (NumberFormatException e) {
+                // Falls back to the default below.
+            }
+            log.warn("Invalid value " + value + " configured for an event journal property. Using the default " +
+                    "value " + defaultValue);
+        }
+        return defaultValue;
+    }
+
+    private int getIntProperty(AbstractEventHandler handler, String propertyName, int defaultValue) {
+
+        String value = getProperty(handler, propertyName);
+        if (StringUtils.isNotBlank(value)) {
+            try {
+                int intValue = Integer.parseInt(value.trim());
+                if (intValue > 0) {
+                    return intValue;
+                }
+            } catch (NumberFormatException e) {
+                // Falls back to the default below.
+            }
+            log.warn("Invalid value " + value + " configured for the async event queue property " + propertyName +
+                    " of handler " + handler.getName() + ". Using the default value " + defaultValue);
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Reads a property of the async event queue of the handler, falling back to the default of all handlers.
+     */
+    private String getProperty(AbstractEventHandler handler, String propertyName) {
+
+        try {
+            IdentityEventConfigBuilder configBuilder = IdentityEventConfigBuilder.getInstance();
+            ModuleConfiguration moduleConfiguration = configBuilder.getModuleConfigurations(handler.getName());
+            if (moduleConfiguration != null && moduleConfiguration.getModuleProperties() != null) {
+                String value = moduleConfiguration.getModuleProperties().getProperty(handler.getName() + ".async." +
+                        propertyName);
+                if (value != null) {
+                    return value;
+                }
+            }
+            return configBuilder.getHandlerQueueProperty(propertyName);
+        } catch (IdentityEventException e) {
+            log.error("Error while reading the async event queue configuration of handler " + handler.getName(), e);
+            return null;
+        }
     }
 }
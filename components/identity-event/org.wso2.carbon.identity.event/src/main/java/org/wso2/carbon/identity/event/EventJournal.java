@@ -0,0 +1,560 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.event;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.event.event.Event;
+import org.wso2.carbon.user.core.UserStoreException;
+import org.wso2.carbon.user.core.UserStoreManager;
+import org.wso2.carbon.user.core.util.UserCoreUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only local journal of async events, which makes queued events survive a restart of the node. Events are
+ * appended to memory mapped segment files before they are queued, and an acknowledgement is appended once the handler
+ * is done with them. Events that are not acknowledged when the node goes down are recovered when the journal is
+ * opened again, so delivery is at least once.
+ * <p>
+ * Each record is written as its length, a CRC32 of its content, its type and its content. A zero length marks the end
+ * of the records of a segment and a record with a wrong checksum is treated the same, as it is one that was being
+ * written when the node went down. The memory mapped segment is forced to the disk every flush interval instead of on
+ * every record, so events appended within the last flush interval can be lost if the operating system goes down.
+ * <p>
+ * Properties of an event that are not serializable are not journaled. The user store manager of an event is journaled
+ * as its domain and tenant, so that it can be looked up again when the event is replayed. Recovered events are kept
+ * until the handler they were queued for is registered, and are discarded if it is not registered within the recovered
+ * event timeout, so that they do not keep their segments from being deleted.
+ */
+class EventJournal {
+
+    private static final Log log = LogFactory.getLog(EventJournal.class);
+
+    /**
+     * Id returned for events that are not written to the journal.
+     */
+    static final long NOT_JOURNALED = -1;
+
+    private static final String SEGMENT_FILE_SUFFIX = ".journal";
+    private static final byte EVENT_RECORD = 1;
+    private static final byte ACK_RECORD = 2;
+    private static final int RECORD_HEADER_LENGTH = 4 + 4;
+    private static final int ACK_RECORD_LENGTH = 1 + 8;
+
+    private final File directory;
+    private final int segmentSize;
+    private final Object lock = new Object();
+    private final ScheduledExecutorService flusher;
+
+    /**
+     * Number of events not acknowledged yet in each segment that has not been deleted.
+     */
+    private final TreeMap<Integer, Integer> pendingEventCounts = new TreeMap<>();
+    /**
+     * Recovered events keyed by the name of the handler they were queued for, until they are taken for the handler.
+     */
+    private final Map<String, List<JournaledEvent>> recoveredEvents = new LinkedHashMap<>();
+
+    private int segmentNumber;
+    private FileChannel segmentChannel;
+    private MappedByteBuffer segmentBuffer;
+    private boolean dirty;
+    private boolean closed;
+
+    /**
+     * Opens the journal in the given directory, recovering the events which were not acknowledged when it was last
+     * closed.
+     *
+     * @param directory             Directory of the segment files
+     * @param segmentSize           Size of a segment file in bytes
+     * @param flushInterval         Milliseconds between forcing appended records to the disk
+     * @param recoveredEventTimeout Milliseconds after which recovered events not taken for their handler are
+     *                              discarded
+     * @throws IOException If the directory or the segment files cannot be read or created
+     */
+    EventJournal(File directory, int segmentSize, long flushInterval, final long recoveredEventTimeout)
+            throws IOException {
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create the event journal directory " + directory.getAbsolutePath());
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        for (JournaledEvent recoveredEvent : recover()) {
+            List<JournaledEvent> handlerEvents = recoveredEvents.get(recoveredEvent.getHandlerName());
+            if (handlerEvents == null) {
+                handlerEvents = new ArrayList<>();
+                recoveredEvents.put(recoveredEvent.getHandlerName(), handlerEvents);
+            }
+            handlerEvents.add(recoveredEvent);
+        }
+        openSegment(segmentNumber + 1);
+
+        flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "IdentityEventJournalFlusher");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        flusher.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        if (!recoveredEvents.isEmpty()) {
+            flusher.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    discardRecoveredEvents(recoveredEventTimeout);
+                }
+            }, recoveredEventTimeout, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Returns the events of the given handler which were not acknowledged when the journal was last closed, in the
+     * order they were appended. They are returned only once and must be acknowledged with their ids once handled.
+     *
+     * @param handlerName Name of the handler
+     * @return Recovered events of the handler
+     */
+    List<JournaledEvent> takeRecoveredEvents(String handlerName) {
+
+        synchronized (lock) {
+            List<JournaledEvent> handlerEvents = recoveredEvents.remove(handlerName);
+            return handlerEvents != null ? handlerEvents : new ArrayList<JournaledEvent>();
+        }
+    }
+
+    /**
+     * Appends an event queued for a handler.
+     *
+     * @param handlerName Name of the handler
+     * @param event       Queued event
+     * @return Id to acknowledge the event with, {@link #NOT_JOURNALED} if the event could not be journaled
+     */
+    long append(String handlerName, Event event) {
+
+        byte[] content = serialize(handlerName, event);
+        if (content == null) {
+            return NOT_JOURNALED;
+        }
+        if (RECORD_HEADER_LENGTH + content.length > segmentSize) {
+            log.warn("Event " + event.getEventName() + " of handler " + handlerName + " is larger than the event " +
+                    "journal segment size and is not journaled.");
+            return NOT_JOURNALED;
+        }
+        synchronized (lock) {
+            if (closed) {
+                return NOT_JOURNALED;
+            }
+            try {
+                long id = write(content);
+                Integer pendingEvents = pendingEventCounts.get(segmentNumber);
+                pendingEventCounts.put(segmentNumber, pendingEvents == null ? 1 : pendingEvents + 1);
+                return id;
+            } catch (IOException e) {
+                log.error("Error while journaling event " + event.getEventName() + " of handler " + handlerName, e);
+                return NOT_JOURNALED;
+            }
+        }
+    }
+
+    /**
+     * Records that a handler is done with an event. Segments older than the current one are deleted once all their
+     * events are acknowledged.
+     *
+     * @param id Id the event was appended with
+     */
+    void acknowledge(long id) {
+
+        if (id == NOT_JOURNALED) {
+            return;
+        }
+        byte[] content = ByteBuffer.allocate(ACK_RECORD_LENGTH).put(ACK_RECORD).putLong(id).array();
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            try {
+                write(content);
+            } catch (IOException e) {
+                log.error("Error while journaling the acknowledgement of event " + id, e);
+                return;
+            }
+            int eventSegment = (int) (id >>> 32);
+            Integer pendingEvents = pendingEventCounts.get(eventSegment);
+            if (pendingEvents != null) {
+                pendingEventCounts.put(eventSegment, pendingEvents - 1);
+            }
+            deleteAcknowledgedSegments();
+        }
+    }
+
+    /**
+     * Forces the records appended since the last flush to the disk.
+     */
+    void flush() {
+
+        MappedByteBuffer buffer;
+        synchronized (lock) {
+            if (!dirty || closed) {
+                return;
+            }
+            dirty = false;
+            buffer = segmentBuffer;
+        }
+        buffer.force();
+    }
+
+    void close() {
+
+        flusher.shutdown();
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            segmentBuffer.force();
+            closed = true;
+            closeQuietly(segmentChannel);
+        }
+    }
+
+    /**
+     * Acknowledges the recovered events that were not taken for their handler, as the handler was not registered
+     * again.
+     */
+    private void discardRecoveredEvents(long recoveredEventTimeout) {
+
+        Map<String, List<JournaledEvent>> discardedEvents;
+        synchronized (lock) {
+            discardedEvents = new LinkedHashMap<>(recoveredEvents);
+            recoveredEvents.clear();
+        }
+        for (Map.Entry<String, List<JournaledEvent>> handlerEvents : discardedEvents.entrySet()) {
+            log.warn("Discarding " + handlerEvents.getValue().size() + " journaled events of handler " +
+                    handlerEvents.getKey() + " as the handler was not registered within " + recoveredEventTimeout +
+                    " ms of recovering them.");
+            for (JournaledEvent event : handlerEvents.getValue()) {
+                acknowledge(event.getId());
+            }
+        }
+    }
+
+    /**
+     * Writes a record to the current segment, moving to a new segment if it does not fit.
+     *
+     * @return Id of the record, made of the segment number and the position in the segment
+     */
+    private long write(byte[] content) throws IOException {
+
+        if (segmentBuffer.remaining() < RECORD_HEADER_LENGTH + content.length) {
+            segmentBuffer.force();
+            closeQuietly(segmentChannel);
+            openSegment(segmentNumber + 1);
+        }
+        int position = segmentBuffer.position();
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        segmentBuffer.position(position + 4);
+        segmentBuffer.putInt((int) crc.getValue());
+        segmentBuffer.put(content);
+        // The length is written last so that a record being written is never read as a complete one.
+        segmentBuffer.putInt(position, content.length);
+        dirty = true;
+        return ((long) segmentNumber << 32) | position;
+    }
+
+    private void openSegment(int number) throws IOException {
+
+        RandomAccessFile segmentFile = new RandomAccessFile(getSegmentFile(number), "rw");
+        segmentChannel = segmentFile.getChannel();
+        segmentBuffer = segmentChannel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        segmentNumber = number;
+        pendingEventCounts.put(number, 0);
+    }
+
+    private void deleteAcknowledgedSegments() {
+
+        // Segments are deleted oldest first, as the acknowledgements of the events of a segment can be in the
+        // segments after it.
+        while (!pendingEventCounts.isEmpty()) {
+            Map.Entry<Integer, Integer> oldest = pendingEventCounts.firstEntry();
+            if (oldest.getKey() == segmentNumber || oldest.getValue() > 0) {
+                return;
+            }
+            File segmentFile = getSegmentFile(oldest.getKey());
+            if (segmentFile.exists() && !segmentFile.delete()) {
+                // Retried with the next acknowledgement.
+                if (log.isDebugEnabled()) {
+                    log.debug("Could not delete event journal segment " + segmentFile.getAbsolutePath());
+                }
+                return;
+            }
+            pendingEventCounts.remove(oldest.getKey());
+        }
+    }
+
+    private List<JournaledEvent> recover() throws IOException {
+
+        Map<Long, JournaledEvent> pendingEvents = new LinkedHashMap<>();
+        for (int number : getSegmentNumbers()) {
+            ByteBuffer buffer = read(getSegmentFile(number));
+            pendingEventCounts.put(number, 0);
+            segmentNumber = number;
+            while (buffer.remaining() >= RECORD_HEADER_LENGTH) {
+                int position = buffer.position();
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                if (length <= 0 || length > buffer.remaining()) {
+                    break;
+                }
+                byte[] content = new byte[length];
+                buffer.get(content);
+                CRC32 crc = new CRC32();
+                crc.update(content);
+                if ((int) crc.getValue() != checksum) {
+                    log.warn("Ignoring the partially written end of event journal segment " + number);
+                    break;
+                }
+                long id = ((long) number << 32) | position;
+                if (content[0] == EVENT_RECORD) {
+                    JournaledEvent event = deserialize(id, content);
+                    if (event != null) {
+                        pendingEvents.put(id, event);
+                    }
+                } else if (content[0] == ACK_RECORD) {
+                    pendingEvents.remove(ByteBuffer.wrap(content, 1, 8).getLong());
+                }
+            }
+        }
+
+        for (long id : pendingEvents.keySet()) {
+            int eventSegment = (int) (id >>> 32);
+            pendingEventCounts.put(eventSegment, pendingEventCounts.get(eventSegment) + 1);
+        }
+        // No segment is current until a new one is opened, so every fully acknowledged segment can be deleted.
+        int lastSegment = segmentNumber;
+        segmentNumber = -1;
+        deleteAcknowledgedSegments();
+        segmentNumber = lastSegment;
+
+        if (!pendingEvents.isEmpty()) {
+            log.info("Recovered " + pendingEvents.size() + " unacknowledged events from the event journal at " +
+                    directory.getAbsolutePath());
+        }
+        return new ArrayList<>(pendingEvents.values());
+    }
+
+    private int[] getSegmentNumbers() {
+
+        String[] fileNames = directory.list(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(SEGMENT_FILE_SUFFIX);
+            }
+        });
+        List<Integer> numbers = new ArrayList<>();
+        if (fileNames != null) {
+            for (String fileName : fileNames) {
+                try {
+                    numbers.add(Integer.parseInt(fileName.substring(0, fileName.length() -
+                            SEGMENT_FILE_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    log.warn("Ignoring unknown file " + fileName + " in the event journal directory.");
+                }
+            }
+        }
+        int[] sortedNumbers = new int[numbers.size()];
+        for (int i = 0; i < sortedNumbers.length; i++) {
+            sortedNumbers[i] = numbers.get(i);
+        }
+        Arrays.sort(sortedNumbers);
+        return sortedNumbers;
+    }
+
+    private File getSegmentFile(int number) {
+        return new File(directory, String.format("%010d", number) + SEGMENT_FILE_SUFFIX);
+    }
+
+    private static ByteBuffer read(File file) throws IOException {
+
+        try (RandomAccessFile segmentFile = new RandomAccessFile(file, "r")) {
+            FileChannel channel = segmentFile.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Read until the whole segment is in the buffer.
+            }
+            buffer.flip();
+            return buffer;
+        }
+    }
+
+    private static byte[] serialize(String handlerName, Event event) {
+
+        HashMap<String, Object> properties = new HashMap<>();
+        String userStoreDomain = null;
+        int tenantId = 0;
+        if (event.getEventProperties() != null) {
+            for (Map.Entry<String, Object> property : event.getEventProperties().entrySet()) {
+                Object value = property.getValue();
+                if (IdentityEventConstants.EventProperty.USER_STORE_MANAGER.equals(property.getKey()) &&
+                        value instanceof UserStoreManager) {
+                    UserStoreManager userStoreManager = (UserStoreManager) value;
+                    try {
+                        tenantId = userStoreManager.getTenantId();
+                    } catch (UserStoreException e) {
+                        if (log.isDebugEnabled()) {
+                            log.debug("Event " + event.getEventName() + " of handler " + handlerName + " is not " +
+                                    "journaled as the tenant of its user store manager cannot be read.", e);
+                        }
+                        return null;
+                    }
+                    userStoreDomain = UserCoreUtil.getDomainName(userStoreManager.getRealmConfiguration());
+                } else if (value == null || value instanceof Serializable) {
+                    properties.put(property.getKey(), value);
+                } else if (log.isDebugEnabled()) {
+                    log.debug("Property " + property.getKey() + " of event " + event.getEventName() + " of handler " +
+                            handlerName + " is not serializable and is not journaled.");
+                }
+            }
+        }
+
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        content.write(EVENT_RECORD);
+        try (ObjectOutputStream outputStream = new ObjectOutputStream(content)) {
+            outputStream.writeUTF(handlerName);
+            outputStream.writeUTF(event.getEventName());
+            outputStream.writeObject(properties);
+            outputStream.writeObject(userStoreDomain);
+            outputStream.writeInt(tenantId);
+        } catch (IOException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Event " + event.getEventName() + " of handler " + handlerName + " is not journaled as " +
+                        "its properties cannot be serialized.", e);
+            }
+            return null;
+        }
+        return content.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static JournaledEvent deserialize(long id, byte[] content) {
+
+        try (ObjectInputStream inputStream = new ObjectInputStream(new ByteArrayInputStream(content, 1,
+                content.length - 1))) {
+            String handlerName = inputStream.readUTF();
+            String eventName = inputStream.readUTF();
+            Map<String, Object> properties = (Map<String, Object>) inputStream.readObject();
+            String userStoreDomain = (String) inputStream.readObject();
+            int tenantId = inputStream.readInt();
+            return new JournaledEvent(id, handlerName, new Event(eventName, properties), userStoreDomain, tenantId);
+        } catch (IOException | ClassNotFoundException e) {
+            log.error("Error while recovering event " + id + " from the event journal. The event is skipped.", e);
+            return null;
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.error("Error while closing event journal segment", e);
+        }
+    }
+
+    /**
+     * Event recovered from the journal, with the handler it was queued for.
+     */
+    static final class JournaledEvent {
+
+        private final long id;
+        private final String handlerName;
+        private final Event event;
+        private final String userStoreDomain;
+        private final int tenantId;
+
+        private JournaledEvent(long id, String handlerName, Event event, String userStoreDomain, int tenantId) {
+
+            this.id = id;
+            this.handlerName = handlerName;
+            this.event = event;
+            this.userStoreDomain = userStoreDomain;
+            this.tenantId = tenantId;
+        }
+
+        long getId() {
+            return id;
+        }
+
+        String getHandlerName() {
+            return handlerName;
+        }
+
+        Event getEvent() {
+            return event;
+        }
+
+        /**
+         * Returns the domain of the user store manager the event was published with, which is not journaled itself.
+         *
+         * @return User store domain, null if the event had no user store manager
+         */
+        String getUserStoreDomain() {
+            return userStoreDomain;
+        }
+
+        /**
+         * Returns the tenant of the user store manager the event was published with.
+         *
+         * @return Tenant id, only meaningful if the event had a user store manager
+         */
+        int getTenantId() {
+            return tenantId;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.event;
+
+/**
+ * What to do with an async event when the queue of its handler is full.
+ */
+public enum EventQueueOverflowPolicy {
+
+    /**
+     * Handle the event in the publishing thread, which slows publishers down to the pace of the handler.
+     */
+    CALLER_RUNS,
+    /**
+     * Wait for the configured offer timeout for space in the queue, and drop the event if there is none.
+     */
+    BLOCK,
+    /**
+     * Drop the event being published.
+     */
+    DROP_NEWEST,
+    /**
+     * Drop the oldest queued event to make space for the event being published.
+     */
+    DROP_OLDEST;
+
+    public static EventQueueOverflowPolicy fromString(String policy, EventQueueOverflowPolicy defaultPolicy) {
+
+        if (policy == null) {
+            return defaultPolicy;
+        }
+        for (EventQueueOverflowPolicy value : values()) {
+            if (value.name().equalsIgnoreCase(policy.trim())) {
+                return value;
+            }
+        }
+        return defaultPolicy;
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.event;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.event.bean.EventQueueStatistics;
+import org.wso2.carbon.identity.event.event.Event;
+import org.wso2.carbon.identity.event.handler.AbstractEventHandler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded queue of the async events of a single handler. Queued events are handled by drain tasks run on the shared
+ * event thread pool, each of which handles one batch and then reschedules itself, so that a handler never holds more
+ * than its maximum concurrency of pool threads and handlers with queued events take turns on the pool.
+ * <p>
+ * When an event journal is given, events are appended to it before they are queued and acknowledged once they are
+ * handled, dropped or failed, so that events still queued when the node goes down are handled after it comes up.
+ */
+class HandlerEventQueue {
+
+    private static final Log log = LogFactory.getLog(HandlerEventQueue.class);
+
+    // Orders drain tasks of the same priority in the order they were scheduled.
+    private static final AtomicLong drainSequence = new AtomicLong();
+
+    private final AbstractEventHandler handler;
+    private final int priority;
+    private final BlockingQueue<QueuedEvent> queue;
+    private final int capacity;
+    private final EventQueueOverflowPolicy overflowPolicy;
+    private final long offerTimeout;
+    private final int batchSize;
+    private final int maxConcurrency;
+    private final Executor executor;
+    private final EventJournal journal;
+
+    private final AtomicInteger activeDrains = new AtomicInteger();
+    private final AtomicLong enqueuedEvents = new AtomicLong();
+    private final AtomicLong handledEvents = new AtomicLong();
+    private final AtomicLong failedEvents = new AtomicLong();
+    private final AtomicLong droppedEvents = new AtomicLong();
+    private final AtomicLong callerRunEvents = new AtomicLong();
+    private final AtomicLong maxLag = new AtomicLong();
+    private volatile long lastLag;
+
+    HandlerEventQueue(AbstractEventHandler handler, int priority, int capacity, EventQueueOverflowPolicy overflowPolicy,
+                      long offerTimeout, int batchSize, int maxConcurrency, Executor executor, EventJournal journal) {
+
+        this.handler = handler;
+        this.priority = priority;
+        this.capacity = capacity;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.overflowPolicy = overflowPolicy;
+        this.offerTimeout = offerTimeout;
+        this.batchSize = batchSize;
+        this.maxConcurrency = maxConcurrency;
+        this.executor = executor;
+        this.journal = journal;
+    }
+
+    void add(Event event) {
+
+        long journalId = journal != null ? journal.append(handler.getName(), event) : EventJournal.NOT_JOURNALED;
+        add(event, journalId);
+    }
+
+    /**
+     * Queues an event which is already in the event journal, such as one recovered from it.
+     *
+     * @param event     Event to be handled
+     * @param journalId Id to acknowledge the event with once handled
+     */
+    void add(Event event, long journalId) {
+
+        QueuedEvent queuedEvent = new QueuedEvent(event, journalId);
+        boolean queued = queue.offer(queuedEvent);
+        if (!queued) {
+            switch (overflowPolicy) {
+                case CALLER_RUNS:
+                    callerRunEvents.incrementAndGet();
+                    handle(Collections.singletonList(queuedEvent));
+                    return;
+                case BLOCK:
+                    try {
+                        queued = queue.offer(queuedEvent, offerTimeout, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    break;
+                case DROP_OLDEST:
+                    while (!queued) {
+                        QueuedEvent oldest = queue.poll();
+                        if (oldest != null) {
+                            drop(oldest);
+                        }
+                        queued = queue.offer(queuedEvent);
+                    }
+                    break;
+                default:
+                    break;
+            }
+            if (!queued) {
+                drop(queuedEvent);
+                return;
+            }
+        }
+        enqueuedEvents.incrementAndGet();
+        scheduleDrain();
+    }
+
+    EventQueueStatistics getStatistics() {
+
+        return new EventQueueStatistics(handler.getName(), queue.size(), capacity, enqueuedEvents.get(),
+                handledEvents.get(), failedEvents.get(), droppedEvents.get(), callerRunEvents.get(), lastLag,
+                maxLag.get());
+    }
+
+    private void scheduleDrain() {
+
+        while (!queue.isEmpty()) {
+            int active = activeDrains.get();
+            if (active >= maxConcurrency) {
+                return;
+            }
+            if (activeDrains.compareAndSet(active, active + 1)) {
+                try {
+                    executor.execute(new DrainTask());
+                } catch (RejectedExecutionException e) {
+                    activeDrains.decrementAndGet();
+                    log.warn("Event thread pool rejected the events of handler " + handler.getName() +
+                            ". Queued events: " + queue.size());
+                }
+                return;
+            }
+        }
+    }
+
+    private void handle(List<QueuedEvent> queuedEvents) {
+
+        List<Event> events = new ArrayList<>(queuedEvents.size());
+        for (QueuedEvent queuedEvent : queuedEvents) {
+            if (log.isDebugEnabled()) {
+                log.debug("Executing " + handler.getName() + " on event" + queuedEvent.event.getEventName());
+            }
+            events.add(queuedEvent.event);
+        }
+        try {
+            if (events.size() == 1) {
+                handler.handleEvent(events.get(0));
+            } else {
+                handler.handleEvents(events);
+            }
+        } catch (IdentityEventException | RuntimeException e) {
+            failedEvents.addAndGet(events.size());
+            log.error("Error while invoking notification sending module " + handler.getName(), e);
+        } finally {
+            handledEvents.addAndGet(events.size());
+            // Failed events are acknowledged as well, as they are not retried while the node is up either.
+            for (QueuedEvent queuedEvent : queuedEvents) {
+                acknowledge(queuedEvent);
+            }
+        }
+    }
+
+    private void drop(QueuedEvent queuedEvent) {
+
+        if (droppedEvents.incrementAndGet() == 1) {
+            log.warn("Event queue of handler " + handler.getName() + " is full. Events are being dropped as per " +
+                    "the " + overflowPolicy + " policy.");
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Dropped event " + queuedEvent.event.getEventName() + " of handler " + handler.getName());
+        }
+        acknowledge(queuedEvent);
+    }
+
+    private void acknowledge(QueuedEvent queuedEvent) {
+
+        if (journal != null) {
+            journal.acknowledge(queuedEvent.journalId);
+        }
+    }
+
+    private static final class QueuedEvent {
+
+        private final Event event;
+        private final long journalId;
+        private final long queuedTime = System.currentTimeMillis();
+
+        private QueuedEvent(Event event, long journalId) {
+
+            this.event = event;
+            this.journalId = journalId;
+        }
+    }
+
+    /**
+     * Handles one batch of queued events. Drain tasks are ordered by the priority of their handlers when the pool is
+     * saturated.
+     */
+    final class DrainTask implements Runnable, Comparable<DrainTask> {
+
+        private final long sequence = drainSequence.incrementAndGet();
+
+        @Override
+        public void run() {
+
+            try {
+                List<QueuedEvent> batch = new ArrayList<>(batchSize);
+                long now = System.currentTimeMillis();
+                QueuedEvent queuedEvent;
+                while (batch.size() < batchSize && (queuedEvent = queue.poll()) != null) {
+                    long lag = now - queuedEvent.queuedTime;
+                    lastLag = lag;
+                    long currentMaxLag;
+                    while (lag > (currentMaxLag = maxLag.get()) && !maxLag.compareAndSet(currentMaxLag, lag)) {
+                        // Retry until the maximum is at least this lag.
+                    }
+                    batch.add(queuedEvent);
+                }
+                if (!batch.isEmpty()) {
+                    handle(batch);
+                }
+            } finally {
+                activeDrains.decrementAndGet();
+                scheduleDrain();
+            }
+        }
+
+        @Override
+        public int compareTo(DrainTask other) {
+
+            int priorityOrder = Integer.compare(priority, other.getPriority());
+            return priorityOrder != 0 ? priorityOrder : Long.compare(sequence, other.sequence);
+        }
+
+        private int getPriority() {
+            return priority;
+        }
+    }
+}
@@ -61,6 +61,17 @@ public class IdentityEventConfigBuilder {
      * Thread pool size for message sending task
      */
     private String threadPoolSize;
+    /**
+     * Defaults of the async event queues of handlers
+     */
+    private Properties handlerQueueProperties;
+    /**
+     * Configuration of the local journal of async events
+     */
+    private Properties eventJournalProperties;
+
+    private static final String HANDLER_QUEUE_PROPERTY_PREFIX = "handlerQueue.";
+    private static final String EVENT_JOURNAL_PROPERTY_PREFIX = "eventJournal.";
 
     private static IdentityEventConfigBuilder notificationMgtConfigBuilder = new IdentityEventConfigBuilder();
 
@@ -77,6 +88,10 @@ public class IdentityEventConfigBuilder {
         }
 
         setThreadPoolSize();
+        handlerQueueProperties = IdentityEventUtils.getPropertiesWithPrefix(HANDLER_QUEUE_PROPERTY_PREFIX,
+                notificationMgtConfigProperties);
+        eventJournalProperties = IdentityEventUtils.getPropertiesWithPrefix(EVENT_JOURNAL_PROPERTY_PREFIX,
+                notificationMgtConfigProperties);
         resolveSecrets();
         moduleConfiguration = new HashMap<>();
         build();
@@ -221,6 +236,27 @@ public class IdentityEventConfigBuilder {
         return threadPoolSize;
     }
 
+    /**
+     * Returns a default of the async event queues of handlers, which handlers can override with the same property
+     * prefixed with their module name and ".async". eg handlerQueue.size and emailSend.async.size
+     *
+     * @param propertyName Name of the property without the prefix. eg size
+     * @return Configured value, null if not configured
+     */
+    public String getHandlerQueueProperty(String propertyName) {
+        return handlerQueueProperties.getProperty(HANDLER_QUEUE_PROPERTY_PREFIX + propertyName);
+    }
+
+    /**
+     * Returns a property of the local journal of async events.
+     *
+     * @param propertyName Name of the property without the prefix. eg enable
+     * @return Configured value, null if not configured
+     */
+    public String getEventJournalProperty(String propertyName) {
+        return eventJournalProperties.getProperty(EVENT_JOURNAL_PROPERTY_PREFIX + propertyName);
+    }
+
     /**
      * There can be sensitive information like passwords in configuration file. If they are encrypted using secure
      * vault, this method will resolve them and replace with original values.
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.event.bean;
+
+/**
+ * Snapshot of the async event queue of a handler. Counts are accumulated from the time the queue was created.
+ */
+public class EventQueueStatistics {
+
+    private final String handlerName;
+    private final int queueDepth;
+    private final int queueCapacity;
+    private final long enqueuedEvents;
+    private final long handledEvents;
+    private final long failedEvents;
+    private final long droppedEvents;
+    private final long callerRunEvents;
+    private final long lastLag;
+    private final long maxLag;
+
+    public EventQueueStatistics(String handlerName, int queueDepth, int queueCapacity, long enqueuedEvents,
+                                long handledEvents, long failedEvents, long droppedEvents, long callerRunEvents,
+                                long lastLag, long maxLag) {
+
+        this.handlerName = handlerName;
+        this.queueDepth = queueDepth;
+        this.queueCapacity = queueCapacity;
+        this.enqueuedEvents = enqueuedEvents;
+        this.handledEvents = handledEvents;
+        this.failedEvents = failedEvents;
+        this.droppedEvents = droppedEvents;
+        this.callerRunEvents = callerRunEvents;
+        this.lastLag = lastLag;
+        this.maxLag = maxLag;
+    }
+
+    public String getHandlerName() {
+        return handlerName;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public long getEnqueuedEvents() {
+        return enqueuedEvents;
+    }
+
+    /**
+     * Number of events handled from the queue, including the ones whose handling failed.
+     */
+    public long getHandledEvents() {
+        return handledEvents;
+    }
+
+    public long getFailedEvents() {
+        return failedEvents;
+    }
+
+    public long getDroppedEvents() {
+        return droppedEvents;
+    }
+
+    /**
+     * Number of events handled by the publishing thread since the queue was full.
+     */
+    public long getCallerRunEvents() {
+        return callerRunEvents;
+    }
+
+    /**
+     * Milliseconds the most recently dequeued event waited in the queue.
+     */
+    public long getLastLag() {
+        return lastLag;
+    }
+
+    public long getMaxLag() {
+        return maxLag;
+    }
+
+    @Override
+    public String toString() {
+        return handlerName + " [depth: " + queueDepth + "/" + queueCapacity + ", enqueued: " + enqueuedEvents +
+                ", handled: " + handledEvents + ", failed: " + failedEvents + ", dropped: " + droppedEvents +
+                ", caller runs: " + callerRunEvents + ", last lag: " + lastLag + "ms, max lag: " + maxLag + "ms]";
+    }
+}
@@ -86,6 +86,20 @@ public abstract class AbstractEventHandler extends AbstractIdentityMessageHandle
 
     public abstract void handleEvent(Event event) throws IdentityEventException;
 
+    /**
+     * Handles a batch of async events. Batches of more than one event are only delivered to handlers configured with
+     * an async batch size greater than one, which can override this to handle the batch at once.
+     *
+     * @param events Events in the order they were published
+     * @throws IdentityEventException
+     */
+    public void handleEvents(List<Event> events) throws IdentityEventException {
+
+        for (Event event : events) {
+            handleEvent(event);
+        }
+    }
+
     @Override
     public void init(InitConfig configuration) throws IdentityRuntimeException {
         if (configuration instanceof ModuleConfiguration) {
@@ -89,6 +89,10 @@ public class IdentityEventServiceComponent {
 
 
     protected void deactivate(ComponentContext context) {
+        IdentityEventService eventService = IdentityEventServiceDataHolder.getInstance().getEventMgtService();
+        if (eventService instanceof IdentityEventServiceImpl) {
+            ((IdentityEventServiceImpl) eventService).shutdown();
+        }
         if (log.isDebugEnabled()) {
             log.debug("Identity Management bundle is de-activated");
         }
@@ -101,6 +105,11 @@ public class IdentityEventServiceComponent {
 
         MessageHandlerComparator messageHandlerComparator = new MessageHandlerComparator(null);
         Collections.sort(eventHandlerList, messageHandlerComparator);
+
+        IdentityEventService eventService = IdentityEventServiceDataHolder.getInstance().getEventMgtService();
+        if (eventService instanceof IdentityEventServiceImpl) {
+            ((IdentityEventServiceImpl) eventService).replayJournaledEvents(eventHandler);
+        }
     }
 
     protected void unRegisterEventHandler(AbstractEventHandler eventHandler) {
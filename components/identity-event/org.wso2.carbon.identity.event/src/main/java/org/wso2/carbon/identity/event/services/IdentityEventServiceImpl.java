@@ -23,12 +23,14 @@ import org.apache.commons.logging.LogFactory;
 
 import org.wso2.carbon.identity.event.EventDistributionTask;
 import org.wso2.carbon.identity.event.IdentityEventException;
+import org.wso2.carbon.identity.event.bean.EventQueueStatistics;
 import org.wso2.carbon.identity.event.bean.IdentityEventMessageContext;
 import org.wso2.carbon.identity.event.event.Event;
 import org.wso2.carbon.identity.event.handler.AbstractEventHandler;
 import org.wso2.carbon.identity.event.internal.IdentityEventServiceComponent;
 
 import java.util.List;
+import java.util.Map;
 
 public class IdentityEventServiceImpl implements IdentityEventService {
 
@@ -36,12 +38,12 @@ public class IdentityEventServiceImpl implements IdentityEventService {
     private EventDistributionTask eventDistributionTask;
 
     public IdentityEventServiceImpl(List<AbstractEventHandler> handlerList, int threadPoolSize) {
-        this.eventDistributionTask = new EventDistributionTask(handlerList, threadPoolSize);
         if (log.isDebugEnabled()) {
             log.debug("Starting event distribution task from Notification Management component");
         }
-        new Thread(eventDistributionTask).start();
+        this.eventDistributionTask = new EventDistributionTask(handlerList, threadPoolSize);
     }
+
     @Override
     public void handleEvent(Event event) throws IdentityEventException {
 
@@ -51,11 +53,33 @@ public class IdentityEventServiceImpl implements IdentityEventService {
 
             if (handler.canHandle(eventContext)) {
                 if (handler.isAssociationAsync(event.getEventName())) {
-                    eventDistributionTask.addEventToQueue(event);
+                    eventDistributionTask.addEventToQueue(handler, event);
                 } else {
                     handler.handleEvent(event);
                 }
             }
         }
     }
+
+    /**
+     * Returns the statistics of the async event queue of each handler that has received async events.
+     *
+     * @return Statistics keyed by handler name
+     */
+    public Map<String, EventQueueStatistics> getAsyncEventQueueStatistics() {
+        return eventDistributionTask.getQueueStatistics();
+    }
+
+    /**
+     * Queues the async events of a newly registered handler which were recovered from the event journal.
+     *
+     * @param handler Registered handler
+     */
+    public void replayJournaledEvents(AbstractEventHandler handler) {
+        eventDistributionTask.replayJournaledEvents(handler);
+    }
+
+    public void shutdown() {
+        eventDistributionTask.shutdown();
+    }
 }
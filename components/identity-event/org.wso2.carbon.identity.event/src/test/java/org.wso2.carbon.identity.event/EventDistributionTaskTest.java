@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.event;
+
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.core.bean.context.MessageContext;
+import org.wso2.carbon.identity.event.bean.EventQueueStatistics;
+import org.wso2.carbon.identity.event.event.Event;
+import org.wso2.carbon.identity.event.handler.AbstractEventHandler;
+import org.wso2.carbon.identity.testutil.IdentityBaseTest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class EventDistributionTaskTest extends IdentityBaseTest {
+
+    private static final String TEST_EVENT = "TEST_EVENT";
+
+    @BeforeClass
+    public void setUp() {
+
+        String home = IdentityEventConfigBuilder.class.getResource("/").getFile();
+        String config = IdentityEventConfigBuilder.class.getResource("/").getFile();
+        System.setProperty("carbon.home", home);
+        System.setProperty("carbon.config.dir.path", config);
+    }
+
+    @Test
+    public void testEventIsHandledOnlyByGivenHandler() throws Exception {
+
+        RecordingTestHandler targetHandler = new RecordingTestHandler(1);
+        RecordingTestHandler otherHandler = new RecordingTestHandler(1);
+        EventDistributionTask distributionTask = new EventDistributionTask(
+                Arrays.<AbstractEventHandler>asList(targetHandler, otherHandler), 2);
+        try {
+            Event event = new Event(TEST_EVENT);
+            distributionTask.addEventToQueue(targetHandler, event);
+
+            assertTrue(targetHandler.handled.await(5, TimeUnit.SECONDS));
+            assertEquals(targetHandler.batches, Collections.singletonList(Collections.singletonList(event)));
+            assertTrue(otherHandler.batches.isEmpty());
+        } finally {
+            distributionTask.shutdown();
+        }
+    }
+
+    @Test
+    public void testFullQueueDropsEventsAndDeliversBatches() throws Exception {
+
+        BlockingTestHandler handler = new BlockingTestHandler(2);
+        EventDistributionTask distributionTask = new EventDistributionTask(
+                Collections.<AbstractEventHandler>singletonList(handler), 2);
+        try {
+            Event first = new Event(TEST_EVENT);
+            distributionTask.addEventToQueue(handler, first);
+            assertTrue(handler.entered.await(5, TimeUnit.SECONDS));
+
+            // The handler is busy with the first event and has a queue of two.
+            Event second = new Event(TEST_EVENT);
+            Event third = new Event(TEST_EVENT);
+            distributionTask.addEventToQueue(handler, second);
+            distributionTask.addEventToQueue(handler, third);
+            distributionTask.addEventToQueue(handler, new Event(TEST_EVENT));
+
+            EventQueueStatistics statistics = distributionTask.getQueueStatistics().get(handler.getName());
+            assertEquals(statistics.getQueueDepth(), 2);
+            assertEquals(statistics.getDroppedEvents(), 1);
+
+            handler.release.countDown();
+            assertTrue(handler.handled.await(5, TimeUnit.SECONDS));
+            assertEquals(handler.batches, Arrays.asList(Collections.singletonList(first), Arrays.asList(second,
+                    third)));
+            assertEquals(distributionTask.getQueueStatistics().get(handler.getName()).getEnqueuedEvents(), 3);
+        } finally {
+            distributionTask.shutdown();
+        }
+    }
+
+    private static class RecordingTestHandler extends AbstractEventHandler {
+
+        final List<List<Event>> batches = new CopyOnWriteArrayList<>();
+        final CountDownLatch handled;
+
+        RecordingTestHandler(int expectedBatches) {
+            this.handled = new CountDownLatch(expectedBatches);
+        }
+
+        @Override
+        public void handleEvent(Event event) throws IdentityEventException {
+            handleEvents(Collections.singletonList(event));
+        }
+
+        @Override
+        public void handleEvents(List<Event> events) throws IdentityEventException {
+            batches.add(new ArrayList<>(events));
+            handled.countDown();
+        }
+
+        @Override
+        public boolean isEnabled(MessageContext messageContext) {
+            return true;
+        }
+
+        @Override
+        public int getPriority(MessageContext messageContext) {
+            return 50;
+        }
+    }
+
+    private static class BlockingTestHandler extends RecordingTestHandler {
+
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        BlockingTestHandler(int expectedBatches) {
+            super(expectedBatches);
+        }
+
+        @Override
+        public void handleEvents(List<Event> events) throws IdentityEventException {
+
+            entered.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            super.handleEvents(events);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.event;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.event.event.Event;
+import org.wso2.carbon.identity.testutil.IdentityBaseTest;
+import org.wso2.carbon.user.api.RealmConfiguration;
+import org.wso2.carbon.user.core.UserCoreConstants;
+import org.wso2.carbon.user.core.UserStoreManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class EventJournalTest extends IdentityBaseTest {
+
+    private static final String HANDLER_NAME = "emailSend";
+
+    private File journalDirectory;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        journalDirectory = Files.createTempDirectory("identity-event-journal").toFile();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+
+        File[] files = journalDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        journalDirectory.delete();
+    }
+
+    @Test
+    public void testUnacknowledgedEventsAreRecovered() throws IOException {
+
+        EventJournal journal = new EventJournal(journalDirectory, 4096, 1000, 60000);
+        long handledId = journal.append(HANDLER_NAME, createEvent("handled"));
+        journal.append(HANDLER_NAME, createEvent("queued"));
+        journal.acknowledge(handledId);
+        journal.close();
+
+        EventJournal reopenedJournal = new EventJournal(journalDirectory, 4096, 1000, 60000);
+        try {
+            assertTrue(reopenedJournal.takeRecoveredEvents("otherHandler").isEmpty());
+            List<EventJournal.JournaledEvent> recoveredEvents = reopenedJournal.takeRecoveredEvents(HANDLER_NAME);
+            assertEquals(recoveredEvents.size(), 1);
+            assertEquals(recoveredEvents.get(0).getHandlerName(), HANDLER_NAME);
+            assertEquals(recoveredEvents.get(0).getEvent().getEventName(), "TRIGGER_NOTIFICATION");
+            assertEquals(recoveredEvents.get(0).getEvent().getEventProperties().get("user-name"), "queued");
+            assertNull(recoveredEvents.get(0).getUserStoreDomain());
+            assertTrue(reopenedJournal.takeRecoveredEvents(HANDLER_NAME).isEmpty());
+        } finally {
+            reopenedJournal.close();
+        }
+    }
+
+    @Test
+    public void testAcknowledgedSegmentsAreDeleted() throws IOException {
+
+        EventJournal journal = new EventJournal(journalDirectory, 1024, 1000, 60000);
+        try {
+            long firstId = journal.append(HANDLER_NAME, createEvent("first"));
+            while (countSegments() < 3) {
+                journal.acknowledge(journal.append(HANDLER_NAME, createEvent("next")));
+            }
+            // The first segment is kept until its remaining event is acknowledged.
+            assertEquals(countSegments(), 3);
+            journal.acknowledge(firstId);
+            assertEquals(countSegments(), 1);
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    public void testUnserializablePropertiesAreNotJournaled() throws Exception {
+
+        RealmConfiguration realmConfiguration = mock(RealmConfiguration.class);
+        when(realmConfiguration.getUserStoreProperty(UserCoreConstants.RealmConfig.PROPERTY_DOMAIN_NAME))
+                .thenReturn("SECONDARY");
+        UserStoreManager userStoreManager = mock(UserStoreManager.class);
+        when(userStoreManager.getRealmConfiguration()).thenReturn(realmConfiguration);
+        when(userStoreManager.getTenantId()).thenReturn(3);
+
+        EventJournal journal = new EventJournal(journalDirectory, 4096, 1000, 60000);
+        Event event = createEvent("user");
+        event.getEventProperties().put("userStoreManager", userStoreManager);
+        event.getEventProperties().put("context", new Object());
+        assertNotEquals(journal.append(HANDLER_NAME, event), EventJournal.NOT_JOURNALED);
+        journal.close();
+
+        EventJournal reopenedJournal = new EventJournal(journalDirectory, 4096, 1000, 60000);
+        try {
+            List<EventJournal.JournaledEvent> recoveredEvents = reopenedJournal.takeRecoveredEvents(HANDLER_NAME);
+            assertEquals(recoveredEvents.size(), 1);
+            Map<String, Object> properties = recoveredEvents.get(0).getEvent().getEventProperties();
+            assertEquals(properties.get("user-name"), "user");
+            assertFalse(properties.containsKey("userStoreManager"));
+            assertFalse(properties.containsKey("context"));
+            // The user store manager is looked up again by its domain and tenant when the event is replayed.
+            assertEquals(recoveredEvents.get(0).getUserStoreDomain(), "SECONDARY");
+            assertEquals(recoveredEvents.get(0).getTenantId(), 3);
+        } finally {
+            reopenedJournal.close();
+        }
+    }
+
+    @Test
+    public void testEventsOfUnregisteredHandlersAreDiscarded() throws Exception {
+
+        EventJournal journal = new EventJournal(journalDirectory, 4096, 1000, 60000);
+        journal.append(HANDLER_NAME, createEvent("queued"));
+        journal.close();
+
+        EventJournal reopenedJournal = new EventJournal(journalDirectory, 4096, 1000, 100);
+        try {
+            // The segment of the recovered event is deleted once the event is discarded, leaving the current one.
+            long deadline = System.currentTimeMillis() + 10000;
+            while (countSegments() > 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertEquals(countSegments(), 1);
+            assertTrue(reopenedJournal.takeRecoveredEvents(HANDLER_NAME).isEmpty());
+        } finally {
+            reopenedJournal.close();
+        }
+
+        EventJournal journalAfterDiscard = new EventJournal(journalDirectory, 4096, 1000, 60000);
+        try {
+            assertTrue(journalAfterDiscard.takeRecoveredEvents(HANDLER_NAME).isEmpty());
+        } finally {
+            journalAfterDiscard.close();
+        }
+    }
+
+    private int countSegments() {
+        return journalDirectory.list().length;
+    }
+
+    private static Event createEvent(String userName) {
+
+        Event event = new Event("TRIGGER_NOTIFICATION");
+        event.addEventProperty("user-name", userName);
+        event.addEventProperty("tenant-domain", "carbon.super");
+        return event;
+    }
+}
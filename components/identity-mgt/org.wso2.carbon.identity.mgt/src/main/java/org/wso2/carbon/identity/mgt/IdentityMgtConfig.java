@@ -78,6 +78,11 @@ public class IdentityMgtConfig {
     private int notificationExpireTime;
     private int notificationSendingThreadPoolSize;
     private int notificationSendingTimeout;
+    private int notificationSendingBatchSize = 50;
+    private int notificationSendingRateLimit;
+    private int notificationSendingRetryCount = 2;
+    private int notificationSendingRetryInterval = 1000;
+    private int notificationSendingTransportPoolSize = 10;
     private boolean authPolicyAccountLockCheck;
     private boolean authPolicyAccountDisableCheck;
     private boolean authPolicyAccountExistCheck;
@@ -387,6 +392,41 @@ public class IdentityMgtConfig {
                 notificationSendingTimeout = Integer.parseInt(tempNotificationSendingTimeout);
             }
 
+            String tempNotificationSendingBatchSize = properties
+                    .getProperty(IdentityMgtConstants.PropertyConfig.NOTIFICATION_SENDING_BATCH_SIZE);
+
+            if (NumberUtils.isDigits(tempNotificationSendingBatchSize)) {
+                notificationSendingBatchSize = Math.max(1, Integer.parseInt(tempNotificationSendingBatchSize));
+            }
+
+            String tempNotificationSendingRateLimit = properties
+                    .getProperty(IdentityMgtConstants.PropertyConfig.NOTIFICATION_SENDING_RATE_LIMIT);
+
+            if (NumberUtils.isDigits(tempNotificationSendingRateLimit)) {
+                notificationSendingRateLimit = Integer.parseInt(tempNotificationSendingRateLimit);
+            }
+
+            String tempNotificationSendingRetryCount = properties
+                    .getProperty(IdentityMgtConstants.PropertyConfig.NOTIFICATION_SENDING_RETRY_COUNT);
+
+            if (NumberUtils.isDigits(tempNotificationSendingRetryCount)) {
+                notificationSendingRetryCount = Integer.parseInt(tempNotificationSendingRetryCount);
+            }
+
+            String tempNotificationSendingRetryInterval = properties
+                    .getProperty(IdentityMgtConstants.PropertyConfig.NOTIFICATION_SENDING_RETRY_INTERVAL);
+
+            if (NumberUtils.isDigits(tempNotificationSendingRetryInterval)) {
+                notificationSendingRetryInterval = Integer.parseInt(tempNotificationSendingRetryInterval);
+            }
+
+            String tempNotificationSendingTransportPoolSize = properties
+                    .getProperty(IdentityMgtConstants.PropertyConfig.NOTIFICATION_SENDING_TRANSPORT_POOL_SIZE);
+
+            if (NumberUtils.isDigits(tempNotificationSendingTransportPoolSize)) {
+                notificationSendingTransportPoolSize = Integer.parseInt(tempNotificationSendingTransportPoolSize);
+            }
+
             int i = 1;
             while (true) {
                 String module = properties.
@@ -588,6 +628,35 @@ public class IdentityMgtConfig {
         return notificationSendingTimeout;
     }
 
+    /**
+     * @return Maximum number of queued emails a sending thread sends in one go
+     */
+    public int getNotificationSendingBatchSize() {
+        return notificationSendingBatchSize;
+    }
+
+    /**
+     * @return Maximum number of emails sent per second, 0 if not limited
+     */
+    public int getNotificationSendingRateLimit() {
+        return notificationSendingRateLimit;
+    }
+
+    public int getNotificationSendingRetryCount() {
+        return notificationSendingRetryCount;
+    }
+
+    /**
+     * @return Milliseconds to wait before retrying to send an email, doubled on each retry
+     */
+    public int getNotificationSendingRetryInterval() {
+        return notificationSendingRetryInterval;
+    }
+
+    public int getNotificationSendingTransportPoolSize() {
+        return notificationSendingTransportPoolSize;
+    }
+
     public boolean isListenerEnable() {
         return listenerEnable;
     }
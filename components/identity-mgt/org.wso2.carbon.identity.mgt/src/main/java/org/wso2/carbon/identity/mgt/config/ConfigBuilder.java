@@ -36,26 +36,43 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Iterator;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This Singleton is used to load and save tenant specific configurations.
+ * <p>
+ * The email configuration of each tenant is read from the registry once and cached as a read only snapshot, which is
+ * dropped when the configuration of the tenant is saved on this node, and expires so that configurations saved on
+ * other nodes of a cluster are picked up. When a snapshot is missing, concurrent callers wait for a single registry
+ * read.
  */
 public class ConfigBuilder {
 
     private static final String EMAIL_TEMPLATE_PATH = "identity/config/emailTemplate";
+    private static final long CONFIG_CACHE_TIMEOUT = TimeUnit.MINUTES.toMillis(5);
     private static final Log log = LogFactory.getLog(ConfigBuilder.class);
-    private static ConfigBuilder instance = null;
-    private ConfigManager cm = null;
+    private static final ConfigBuilder instance = new ConfigBuilder();
+
+    private final ConfigReader reader;
+    private final ConfigWriter writer;
+    private final ConcurrentMap<Integer, CachedConfig> emailConfigs = new ConcurrentHashMap<>();
 
     private ConfigBuilder() {
-        cm = new ConfigManagerImpl();
+        this(new RegistryConfigReader(), new RegistryConfigWriter());
     }
 
-    public static ConfigBuilder getInstance() {
-        if (instance == null) {
-            instance = new ConfigBuilder();
-        }
+    ConfigBuilder(ConfigReader reader, ConfigWriter writer) {
+        this.reader = reader;
+        this.writer = writer;
+    }
 
+    public static ConfigBuilder getInstance() {
         return instance;
     }
 
@@ -65,7 +82,7 @@ public class ConfigBuilder {
      * @param configType
      * @param stype
      * @param tenantId
-     * @return
+     * @return Configuration of the tenant, which must not be modified
      * @throws Exception
      */
     public Config loadConfiguration(ConfigType configType, StorageType stype, int tenantId) throws IdentityMgtConfigException {
@@ -73,16 +90,9 @@ public class ConfigBuilder {
 
         switch (stype) {
             case REGISTRY:
-                cm.setReader(new RegistryConfigReader());
-
                 switch (configType) {
                     case EMAIL:
-                        cm.setConfig(new EmailNotificationConfig());
-                        cm.setResourcePath(EMAIL_TEMPLATE_PATH);
-                        config = cm.loadConfig(tenantId);
-                        if (config == null) {
-                            config = loadEmailConfigFile();
-                        }
+                        config = getEmailConfig(tenantId);
                         break;
                     case CREDENTIALMGT:
                         break;
@@ -113,11 +123,18 @@ public class ConfigBuilder {
 
         switch (stype) {
             case REGISTRY:
-                cm.setWriter(new RegistryConfigWriter());
                 if (config instanceof EmailNotificationConfig) {
-                    cm.setConfig(new EmailNotificationConfig());
+                    ConfigManager cm = new ConfigManagerImpl();
+                    cm.setWriter(writer);
                     cm.setResourcePath(EMAIL_TEMPLATE_PATH);
-                    cm.saveConfig(config, tenantId);
+                    try {
+                        cm.saveConfig(config, tenantId);
+                    } finally {
+                        emailConfigs.remove(tenantId);
+                        if (log.isDebugEnabled()) {
+                            log.debug("Invalidated the cached email configuration of tenant: " + tenantId);
+                        }
+                    }
                 } else {
                     throw new IdentityMgtConfigException("Configuration type not supported");
                 }
@@ -132,6 +149,61 @@ public class ConfigBuilder {
         }
     }
 
+    private Config getEmailConfig(final int tenantId) throws IdentityMgtConfigException {
+
+        while (true) {
+            CachedConfig cachedConfig = emailConfigs.get(tenantId);
+            if (cachedConfig == null || cachedConfig.isExpired()) {
+                CachedConfig newCachedConfig = new CachedConfig(new FutureTask<>(new Callable<Config>() {
+                    @Override
+                    public Config call() throws IdentityMgtConfigException {
+                        return readEmailConfig(tenantId);
+                    }
+                }));
+                boolean published = cachedConfig == null ?
+                        emailConfigs.putIfAbsent(tenantId, newCachedConfig) == null :
+                        emailConfigs.replace(tenantId, cachedConfig, newCachedConfig);
+                if (!published) {
+                    // Another thread started loading the configuration, wait for it instead.
+                    continue;
+                }
+                cachedConfig = newCachedConfig;
+                cachedConfig.config.run();
+            }
+
+            try {
+                return cachedConfig.config.get();
+            } catch (ExecutionException e) {
+                emailConfigs.remove(tenantId, cachedConfig);
+                if (e.getCause() instanceof IdentityMgtConfigException) {
+                    throw (IdentityMgtConfigException) e.getCause();
+                }
+                throw new IdentityMgtConfigException("Error while loading the email configuration of tenant: " +
+                        tenantId, e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IdentityMgtConfigException("Interrupted while loading the email configuration of tenant: " +
+                        tenantId, e);
+            }
+        }
+    }
+
+    private Config readEmailConfig(int tenantId) throws IdentityMgtConfigException {
+
+        ConfigManager cm = new ConfigManagerImpl();
+        cm.setReader(reader);
+        cm.setConfig(new EmailNotificationConfig());
+        cm.setResourcePath(EMAIL_TEMPLATE_PATH);
+        Config config = cm.loadConfig(tenantId);
+        if (config == null) {
+            config = loadEmailConfigFile();
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Loaded the email configuration of tenant: " + tenantId);
+        }
+        return new ReadOnlyConfig(config.getProperties());
+    }
+
     public Config loadEmailConfigFile() {
 
         String confXml = CarbonUtils.getCarbonConfigDirPath() + File.separator
@@ -204,4 +276,57 @@ public class ConfigBuilder {
         }
         return emailTemplate.toString();
     }
+
+    private static class CachedConfig {
+
+        private final FutureTask<Config> config;
+        private final long expiryTime;
+
+        private CachedConfig(FutureTask<Config> config) {
+
+            this.config = config;
+            this.expiryTime = System.currentTimeMillis() + CONFIG_CACHE_TIMEOUT;
+        }
+
+        private boolean isExpired() {
+            return config.isDone() && expiryTime < System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Configuration shared by all the callers loading the configuration of a tenant.
+     */
+    private static class ReadOnlyConfig implements Config {
+
+        private final Properties properties;
+
+        private ReadOnlyConfig(Properties properties) {
+
+            this.properties = new Properties();
+            this.properties.putAll(properties);
+        }
+
+        @Override
+        public String getProperty(String key) {
+            return properties.getProperty(key);
+        }
+
+        @Override
+        public void setProperty(String key, String value) {
+            throw new UnsupportedOperationException("Cached configuration can not be modified");
+        }
+
+        @Override
+        public Properties getProperties() {
+
+            Properties copy = new Properties();
+            copy.putAll(properties);
+            return copy;
+        }
+
+        @Override
+        public void setProperties(Properties props) {
+            throw new UnsupportedOperationException("Cached configuration can not be modified");
+        }
+    }
 }
@@ -185,6 +185,16 @@ public class IdentityMgtConstants {
 
         public static final String  NOTIFICATION_SENDING_TIMEOUT = "Notification.Sending.Timeout";
 
+        public static final String NOTIFICATION_SENDING_BATCH_SIZE = "Notification.Sending.Batch.Size";
+
+        public static final String NOTIFICATION_SENDING_RATE_LIMIT = "Notification.Sending.Rate.Limit";
+
+        public static final String NOTIFICATION_SENDING_RETRY_COUNT = "Notification.Sending.Retry.Count";
+
+        public static final String NOTIFICATION_SENDING_RETRY_INTERVAL = "Notification.Sending.Retry.Interval";
+
+        public static final String NOTIFICATION_SENDING_TRANSPORT_POOL_SIZE = "Notification.Sending.Transport.Pool.Size";
+
         public static final String PASSWORD_POLICY_EXTENSIONS = "Password.policy.extensions";
 
         public static final String PASSWORD_LENGTH_MIN = "Password.policy.min.length";
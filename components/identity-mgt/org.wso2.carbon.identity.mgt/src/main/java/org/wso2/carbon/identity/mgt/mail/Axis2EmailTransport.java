@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.mgt.mail;
+
+import org.apache.axiom.om.OMAbstractFactory;
+import org.apache.axiom.om.OMElement;
+import org.apache.axis2.AxisFault;
+import org.apache.axis2.Constants;
+import org.apache.axis2.addressing.EndpointReference;
+import org.apache.axis2.client.Options;
+import org.apache.axis2.client.ServiceClient;
+import org.apache.axis2.context.ConfigurationContext;
+import org.apache.axis2.context.MessageContext;
+import org.apache.axis2.transport.base.BaseConstants;
+import org.apache.axis2.transport.mail.MailConstants;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.core.CarbonConfigurationContextFactory;
+import org.wso2.carbon.identity.mgt.IdentityMgtServiceException;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Sends emails through the Axis2 mail transport. Service clients are reused across emails instead of being created
+ * for each of them, keeping up to the pool size of idle clients.
+ */
+public class Axis2EmailTransport implements EmailTransport {
+
+    private static final Log log = LogFactory.getLog(Axis2EmailTransport.class);
+    private static final String SEND_MAIL_PROPERTY = "mailto:";
+
+    private final BlockingQueue<ServiceClient> idleServiceClients;
+
+    public Axis2EmailTransport(int poolSize) {
+        this.idleServiceClients = new ArrayBlockingQueue<>(Math.max(1, poolSize));
+    }
+
+    @Override
+    public void send(Notification notification) throws IdentityMgtServiceException {
+
+        Map<String, String> headerMap = new HashMap<String, String>();
+        headerMap.put(MailConstants.MAIL_HEADER_SUBJECT, notification.getSubject());
+
+        OMElement payload = OMAbstractFactory.getOMFactory().createOMElement(
+                BaseConstants.DEFAULT_TEXT_WRAPPER, null);
+        StringBuilder contents = new StringBuilder();
+        contents.append(notification.getBody())
+                .append(System.getProperty("line.separator"))
+                .append(System.getProperty("line.separator"))
+                .append(notification.getFooter());
+        payload.setText(contents.toString());
+
+        Options options = new Options();
+        options.setProperty(Constants.Configuration.ENABLE_REST, Constants.VALUE_TRUE);
+        options.setProperty(MessageContext.TRANSPORT_HEADERS, headerMap);
+        options.setProperty(MailConstants.TRANSPORT_MAIL_FORMAT,
+                MailConstants.TRANSPORT_FORMAT_TEXT);
+        options.setTo(new EndpointReference(SEND_MAIL_PROPERTY + notification.getSendTo()));
+
+        ServiceClient serviceClient = null;
+        try {
+            serviceClient = borrowServiceClient();
+            serviceClient.setOptions(options);
+            serviceClient.fireAndForget(payload);
+            serviceClient.cleanupTransport();
+            releaseServiceClient(serviceClient);
+        } catch (AxisFault axisFault) {
+            // A client that failed is not reused, in case its transport is left in a broken state.
+            discardServiceClient(serviceClient);
+            throw new IdentityMgtServiceException("Failed Sending Email to " + notification.getSendTo(), axisFault);
+        }
+    }
+
+    private ServiceClient borrowServiceClient() throws AxisFault {
+
+        ServiceClient serviceClient = idleServiceClients.poll();
+        if (serviceClient != null) {
+            return serviceClient;
+        }
+        ConfigurationContext configContext = CarbonConfigurationContextFactory.getConfigurationContext();
+        if (configContext != null) {
+            return new ServiceClient(configContext, null);
+        }
+        return new ServiceClient();
+    }
+
+    private void releaseServiceClient(ServiceClient serviceClient) {
+
+        if (!idleServiceClients.offer(serviceClient)) {
+            discardServiceClient(serviceClient);
+        }
+    }
+
+    private void discardServiceClient(ServiceClient serviceClient) {
+
+        if (serviceClient == null) {
+            return;
+        }
+        try {
+            serviceClient.cleanup();
+        } catch (AxisFault axisFault) {
+            if (log.isDebugEnabled()) {
+                log.debug("Error while cleaning up email service client", axisFault);
+            }
+        }
+    }
+}
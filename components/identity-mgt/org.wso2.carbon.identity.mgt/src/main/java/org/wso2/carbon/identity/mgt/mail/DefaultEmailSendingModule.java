@@ -18,36 +18,58 @@
 
 package org.wso2.carbon.identity.mgt.mail;
 
-import org.apache.axiom.om.OMAbstractFactory;
-import org.apache.axiom.om.OMElement;
-import org.apache.axis2.AxisFault;
-import org.apache.axis2.Constants;
-import org.apache.axis2.addressing.EndpointReference;
-import org.apache.axis2.client.Options;
-import org.apache.axis2.client.ServiceClient;
-import org.apache.axis2.context.ConfigurationContext;
-import org.apache.axis2.context.MessageContext;
-import org.apache.axis2.transport.base.BaseConstants;
-import org.apache.axis2.transport.mail.MailConstants;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.context.PrivilegedCarbonContext;
-import org.wso2.carbon.core.CarbonConfigurationContextFactory;
+import org.wso2.carbon.identity.mgt.IdentityMgtConfig;
+import org.wso2.carbon.identity.mgt.IdentityMgtServiceException;
+import org.wso2.carbon.identity.mgt.NotificationSender;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingDeque;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Default email sending implementation
+ * Default email sending implementation. Each run sends a batch of queued emails through a transport that reuses its
+ * connections, keeping to the configured rate limit. An email that fails is queued again once its retry interval has
+ * passed and sent by a new run, so that retries do not hold up the rest of the batch.
  */
 public class DefaultEmailSendingModule extends AbstractEmailSendingModule {
 
     public static final String CONF_STRING = "confirmation";
-    private static final String SEND_MAIL_PROPERTY = "mailto:";
+    private static final int DEFAULT_BATCH_SIZE = 50;
+    private static final int DEFAULT_RETRY_COUNT = 2;
+    private static final int DEFAULT_RETRY_INTERVAL = 1000;
+    private static final int DEFAULT_TRANSPORT_POOL_SIZE = 10;
     private static Log log = LogFactory.getLog(DefaultEmailSendingModule.class);
-    private BlockingQueue<Notification> notificationQueue = new LinkedBlockingDeque<Notification>();
+    // Only waits out retry intervals. Emails are sent by the notification sending threads.
+    private static final ScheduledExecutorService retryScheduler = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+
+                    Thread thread = new Thread(runnable, "EmailRetryScheduler");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+    private BlockingQueue<QueuedNotification> notificationQueue = new LinkedBlockingDeque<QueuedNotification>();
+    private final EmailSendingStatistics statistics = new EmailSendingStatistics();
+    private volatile EmailTransport emailTransport;
+    private volatile EmailRateLimiter rateLimiter;
+    private volatile boolean rateLimiterInitialized;
+    private volatile Executor retryExecutor;
+    // Read from the configuration unless set on the module.
+    private volatile int batchSize = -1;
+    private volatile int retryCount = -1;
+    private volatile long retryInterval = -1;
 
     /**
      * Replace the {user-parameters} in the config file with the respective
@@ -72,65 +94,205 @@ public class DefaultEmailSendingModule extends AbstractEmailSendingModule {
     @Override
     public void sendEmail() {
 
-        Map<String, String> headerMap = new HashMap<String, String>();
+        IdentityMgtConfig config = IdentityMgtConfig.getInstance();
+        int maxBatchSize = getBatchSize(config);
+        List<QueuedNotification> batch = new ArrayList<QueuedNotification>(maxBatchSize);
+        // Emails queued by earlier submissions may have been sent by an earlier run already.
+        notificationQueue.drainTo(batch, maxBatchSize);
+        if (batch.isEmpty()) {
+            return;
+        }
+        statistics.recordBatch();
+        for (int i = 0; i < batch.size(); i++) {
+            if (!send(batch.get(i), config)) {
+                // Interrupted. The rest are left for the next run.
+                notificationQueue.addAll(batch.subList(i + 1, batch.size()));
+                return;
+            }
+        }
+    }
+
+    /**
+     * Sends an email in the tenant flow of its user. If the transport fails, the email is queued again to be retried
+     * after an interval which doubles on each retry, and the run goes on with the rest of its batch.
+     *
+     * @return false if interrupted while waiting to send
+     */
+    private boolean send(QueuedNotification queuedNotification, IdentityMgtConfig config) {
 
+        Notification notification = queuedNotification.notification;
         try {
-            Notification notification = notificationQueue.take();
-            if (notification == null) {
-                throw new IllegalStateException("Notification not set. " +
-                        "Please set the notification before sending messages");
-            }
             PrivilegedCarbonContext.startTenantFlow();
-            if (notificationData != null) {
-                String tenantDomain = notificationData.getDomainName();
+            if (queuedNotification.tenantDomain != null) {
                 PrivilegedCarbonContext carbonContext = PrivilegedCarbonContext.getThreadLocalCarbonContext();
-                carbonContext.setTenantDomain(tenantDomain, true);
+                carbonContext.setTenantDomain(queuedNotification.tenantDomain, true);
             } else {
                 if (log.isDebugEnabled()) {
                     log.debug("notification data not found. Tenant might not be loaded correctly");
                 }
             }
 
-            headerMap.put(MailConstants.MAIL_HEADER_SUBJECT, notification.getSubject());
-
-            OMElement payload = OMAbstractFactory.getOMFactory().createOMElement(
-                    BaseConstants.DEFAULT_TEXT_WRAPPER, null);
-            StringBuilder contents = new StringBuilder();
-            contents.append(notification.getBody())
-                    .append(System.getProperty("line.separator"))
-                    .append(System.getProperty("line.separator"))
-                    .append(notification.getFooter());
-            payload.setText(contents.toString());
-            ServiceClient serviceClient;
-            ConfigurationContext configContext = CarbonConfigurationContextFactory
-                    .getConfigurationContext();
-            if (configContext != null) {
-                serviceClient = new ServiceClient(configContext, null);
-            } else {
-                serviceClient = new ServiceClient();
+            EmailRateLimiter emailRateLimiter = getRateLimiter(config);
+            if (emailRateLimiter != null) {
+                statistics.recordRateLimited(emailRateLimiter.acquire());
             }
-            Options options = new Options();
-            options.setProperty(Constants.Configuration.ENABLE_REST, Constants.VALUE_TRUE);
-            options.setProperty(MessageContext.TRANSPORT_HEADERS, headerMap);
-            options.setProperty(MailConstants.TRANSPORT_MAIL_FORMAT,
-                    MailConstants.TRANSPORT_FORMAT_TEXT);
-            options.setTo(new EndpointReference(SEND_MAIL_PROPERTY + notification.getSendTo()));
-            serviceClient.setOptions(options);
             log.info("Sending an email notification to " + notification.getSendTo());
-            serviceClient.fireAndForget(payload);
-            
+            long startTime = System.currentTimeMillis();
+            getEmailTransport(config).send(notification);
+            statistics.recordSent(System.currentTimeMillis() - startTime);
+
             if (log.isDebugEnabled()) {
                 log.debug("Email content : " + notification.getBody());
             }
             log.info("Email notification has been sent to " + notification.getSendTo());
-        } catch (AxisFault axisFault) {
-            log.error("Failed Sending Email", axisFault);
+            return true;
+        } catch (IdentityMgtServiceException e) {
+            if (queuedNotification.attempts >= getRetryCount(config)) {
+                statistics.recordFailed();
+                log.error("Failed Sending Email", e);
+                return true;
+            }
+            long delay = getRetryInterval(config) << queuedNotification.attempts;
+            queuedNotification.attempts++;
+            statistics.recordRetry();
+            log.warn("Failed sending email to " + notification.getSendTo() + ". Retrying in " + delay + "ms", e);
+            scheduleRetry(queuedNotification, delay);
+            return true;
         } catch (InterruptedException e) {
-            log.error("Interrupted while waiting until an element becomes available in the notification queue.", e);
+            Thread.currentThread().interrupt();
+            // Left queued for a later run.
+            notificationQueue.add(queuedNotification);
+            log.error("Interrupted while sending the email notification to " + notification.getSendTo(), e);
+            return false;
         } finally {
             PrivilegedCarbonContext.endTenantFlow();
         }
+    }
+
+    private void scheduleRetry(final QueuedNotification queuedNotification, long delay) {
+
+        retryScheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+
+                notificationQueue.add(queuedNotification);
+                Executor executor = retryExecutor;
+                if (executor != null) {
+                    executor.execute(DefaultEmailSendingModule.this);
+                } else {
+                    new NotificationSender().sendNotification(DefaultEmailSendingModule.this);
+                }
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return Counts of the emails sent by this module
+     */
+    public EmailSendingStatistics getSendingStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Sets the transport to send emails through, instead of the default Axis2 mail transport.
+     *
+     * @param emailTransport Email transport
+     */
+    public void setEmailTransport(EmailTransport emailTransport) {
+        this.emailTransport = emailTransport;
+    }
+
+    /**
+     * Sets where the run retrying a failed email is submitted, instead of the notification sending thread pool.
+     *
+     * @param retryExecutor Executor of retry runs
+     */
+    void setRetryExecutor(Executor retryExecutor) {
+        this.retryExecutor = retryExecutor;
+    }
 
+    /**
+     * Sets the maximum number of queued emails a run sends, instead of the configured batch size.
+     *
+     * @param batchSize Maximum number of emails sent by a run
+     */
+    void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Sets how failed emails are retried, instead of the configured retry count and interval.
+     *
+     * @param retryCount    Number of times a failed email is retried
+     * @param retryInterval Milliseconds to wait before the first retry, doubled on each retry
+     */
+    void setRetries(int retryCount, long retryInterval) {
+
+        this.retryCount = retryCount;
+        this.retryInterval = retryInterval;
+    }
+
+    /**
+     * Sets the rate limit of this module, instead of the configured one.
+     *
+     * @param rateLimiter Rate limiter, or null for no limit
+     */
+    void setRateLimiter(EmailRateLimiter rateLimiter) {
+
+        this.rateLimiter = rateLimiter;
+        rateLimiterInitialized = true;
+    }
+
+    private EmailTransport getEmailTransport(IdentityMgtConfig config) {
+
+        if (emailTransport == null) {
+            synchronized (this) {
+                if (emailTransport == null) {
+                    emailTransport = new Axis2EmailTransport(config != null ?
+                            config.getNotificationSendingTransportPoolSize() : DEFAULT_TRANSPORT_POOL_SIZE);
+                }
+            }
+        }
+        return emailTransport;
+    }
+
+    private int getBatchSize(IdentityMgtConfig config) {
+
+        if (batchSize > 0) {
+            return batchSize;
+        }
+        return config != null ? config.getNotificationSendingBatchSize() : DEFAULT_BATCH_SIZE;
+    }
+
+    private int getRetryCount(IdentityMgtConfig config) {
+
+        if (retryCount >= 0) {
+            return retryCount;
+        }
+        return config != null ? config.getNotificationSendingRetryCount() : DEFAULT_RETRY_COUNT;
+    }
+
+    private long getRetryInterval(IdentityMgtConfig config) {
+
+        if (retryInterval >= 0) {
+            return retryInterval;
+        }
+        return config != null ? config.getNotificationSendingRetryInterval() : DEFAULT_RETRY_INTERVAL;
+    }
+
+    private EmailRateLimiter getRateLimiter(IdentityMgtConfig config) {
+
+        if (!rateLimiterInitialized) {
+            synchronized (this) {
+                if (!rateLimiterInitialized) {
+                    if (config != null && config.getNotificationSendingRateLimit() > 0) {
+                        rateLimiter = new EmailRateLimiter(config.getNotificationSendingRateLimit());
+                    }
+                    rateLimiterInitialized = true;
+                }
+            }
+        }
+        return rateLimiter;
     }
 
     public String getRequestMessage(EmailConfig emailConfig) {
@@ -157,12 +319,37 @@ public class DefaultEmailSendingModule extends AbstractEmailSendingModule {
 
     @Override
     public Notification getNotification() {
-        return notificationQueue.peek();
+
+        QueuedNotification queuedNotification = notificationQueue.peek();
+        return queuedNotification != null ? queuedNotification.notification : null;
     }
 
+    /**
+     * Queues an email for the tenant of the notification data set on the module.
+     */
     @Override
     public void setNotification(Notification notification) {
-        notificationQueue.add(notification);
+
+        if (notification == null) {
+            throw new IllegalStateException("Notification not set. " +
+                    "Please set the notification before sending messages");
+        }
+        String tenantDomain = notificationData != null ? notificationData.getDomainName() : null;
+        notificationQueue.add(new QueuedNotification(notification, tenantDomain));
+    }
+
+    private static final class QueuedNotification {
+
+        private final Notification notification;
+        private final String tenantDomain;
+        // Only updated by the run sending the email.
+        private volatile int attempts;
+
+        private QueuedNotification(Notification notification, String tenantDomain) {
+
+            this.notification = notification;
+            this.tenantDomain = tenantDomain;
+        }
     }
 
 }
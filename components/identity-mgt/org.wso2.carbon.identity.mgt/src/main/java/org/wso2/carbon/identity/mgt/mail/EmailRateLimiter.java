@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.mgt.mail;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spaces out emails sent by all sending threads so that no more than the configured number are sent per second.
+ */
+public class EmailRateLimiter {
+
+    private final long interval;
+    private long nextSendTime;
+
+    /**
+     * @param emailsPerSecond Maximum number of emails to send per second
+     */
+    public EmailRateLimiter(int emailsPerSecond) {
+        this.interval = TimeUnit.SECONDS.toNanos(1) / emailsPerSecond;
+    }
+
+    /**
+     * Waits until the next email can be sent.
+     *
+     * @return Milliseconds waited
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public long acquire() throws InterruptedException {
+
+        long sendTime;
+        synchronized (this) {
+            long now = System.nanoTime();
+            sendTime = Math.max(now, nextSendTime);
+            nextSendTime = sendTime + interval;
+        }
+        long wait = sendTime - System.nanoTime();
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+            return TimeUnit.NANOSECONDS.toMillis(wait);
+        }
+        return 0;
+    }
+}
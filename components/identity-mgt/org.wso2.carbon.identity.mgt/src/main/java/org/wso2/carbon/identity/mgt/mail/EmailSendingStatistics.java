@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.mgt.mail;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts of the emails sent by an email sending module since it was created.
+ */
+public class EmailSendingStatistics {
+
+    private final long startTime = System.currentTimeMillis();
+    private final AtomicLong sentEmails = new AtomicLong();
+    private final AtomicLong failedEmails = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong sendingTime = new AtomicLong();
+    private final AtomicLong rateLimitedTime = new AtomicLong();
+
+    void recordSent(long timeTaken) {
+
+        sentEmails.incrementAndGet();
+        sendingTime.addAndGet(timeTaken);
+    }
+
+    void recordFailed() {
+        failedEmails.incrementAndGet();
+    }
+
+    void recordRetry() {
+        retries.incrementAndGet();
+    }
+
+    void recordBatch() {
+        batches.incrementAndGet();
+    }
+
+    void recordRateLimited(long timeWaited) {
+        rateLimitedTime.addAndGet(timeWaited);
+    }
+
+    public long getSentEmails() {
+        return sentEmails.get();
+    }
+
+    /**
+     * Number of emails that could not be sent after all retries.
+     */
+    public long getFailedEmails() {
+        return failedEmails.get();
+    }
+
+    public long getRetries() {
+        return retries.get();
+    }
+
+    public long getBatches() {
+        return batches.get();
+    }
+
+    /**
+     * Average milliseconds taken by the transport to send an email.
+     */
+    public double getAverageSendingTime() {
+
+        long sent = sentEmails.get();
+        return sent == 0 ? 0 : (double) sendingTime.get() / sent;
+    }
+
+    /**
+     * Total milliseconds sending threads waited for the rate limit.
+     */
+    public long getRateLimitedTime() {
+        return rateLimitedTime.get();
+    }
+
+    /**
+     * Average number of emails sent per second since the module was created.
+     */
+    public double getThroughput() {
+
+        long elapsed = System.currentTimeMillis() - startTime;
+        return elapsed <= 0 ? 0 : sentEmails.get() * 1000.0 / elapsed;
+    }
+
+    @Override
+    public String toString() {
+        return "sent: " + getSentEmails() + ", failed: " + getFailedEmails() + ", retries: " + getRetries() +
+                ", batches: " + getBatches() + ", average sending time: " + getAverageSendingTime() + "ms" +
+                ", rate limited time: " + getRateLimitedTime() + "ms, throughput: " + getThroughput() + "/s";
+    }
+}
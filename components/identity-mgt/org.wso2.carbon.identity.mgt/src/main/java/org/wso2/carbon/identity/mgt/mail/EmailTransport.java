@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.mgt.mail;
+
+import org.wso2.carbon.identity.mgt.IdentityMgtServiceException;
+
+/**
+ * Delivers email notifications for {@link DefaultEmailSendingModule}. Set a different implementation on the module to
+ * send through another channel, or to a local stub in tests.
+ */
+public interface EmailTransport {
+
+    /**
+     * Sends an email. Called in the tenant flow of the user the email is sent to.
+     *
+     * @param notification Email to send
+     * @throws IdentityMgtServiceException If the email could not be sent. Sending is retried as configured.
+     */
+    void send(Notification notification) throws IdentityMgtServiceException;
+}
@@ -21,46 +21,41 @@ package org.wso2.carbon.identity.mgt.mail;
 import org.wso2.carbon.identity.mgt.IdentityMgtServiceException;
 
 import java.io.UnsupportedEncodingException;
-import java.net.URLEncoder;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class NotificationBuilder {
 
+    /**
+     * Upper limit of cached templates, above which the cache is cleared. Templates are cached by their content, so a
+     * template changed by a tenant is compiled again and the old one ages out with the next clear.
+     */
+    private static final int MAX_CACHED_TEMPLATES = 1000;
+
+    private static final ConcurrentMap<String, NotificationTemplate> compiledTemplates = new ConcurrentHashMap<>();
+
     private NotificationBuilder() {
     }
 
     public static Notification createNotification(String notificationType, String template, NotificationData data)
             throws IdentityMgtServiceException {
 
-        String subject = null;
-        String body = null;
-        String footer = null;
         Notification notificatoin = null;
 
         if ("EMAIL".equals(notificationType)) {
-            String[] contents = template.split("\\|");
-
-            if (contents.length > 3) {
-                throw new IdentityMgtServiceException("Contents must be 3 or less");
-            }
-
-            subject = contents[0];
-            body = contents[1];
-            footer = contents[2];
+            NotificationTemplate notificationTemplate = getTemplate(template);
 
 //			Replace all the tags in the NotificationData.
             Map<String, String> tagsData = data.getTagsData();
+            notificatoin = new EmailNotification();
             try {
-                subject = replaceTags(tagsData, subject);
-                body = replaceTags(tagsData, body);
-                footer = replaceTags(tagsData, footer);
+                notificatoin.setSubject(notificationTemplate.buildSubject(tagsData));
+                notificatoin.setBody(notificationTemplate.buildBody(tagsData));
+                notificatoin.setFooter(notificationTemplate.buildFooter(tagsData));
             } catch (UnsupportedEncodingException e) {
                 throw new IdentityMgtServiceException("Unsupported encoding while creating notification", e);
             }
-            notificatoin = new EmailNotification();
-            notificatoin.setSubject(subject);
-            notificatoin.setBody(body);
-            notificatoin.setFooter(footer);
             notificatoin.setSendFrom(data.getSendFrom());
             notificatoin.setSendTo(data.getSendTo());
 
@@ -68,21 +63,16 @@ public class NotificationBuilder {
         return notificatoin;
     }
 
-    private static String replaceTags(Map<String, String> tagsData, String content)
-            throws UnsupportedEncodingException {
-        for (Map.Entry<String, String> entry : tagsData.entrySet()) {
+    private static NotificationTemplate getTemplate(String template) throws IdentityMgtServiceException {
 
-            String data = entry.getValue();
-            String key = entry.getKey();
-            if (data != null) {
-                content = content.replaceAll("\\{url:" + key + "\\}",
-                        URLEncoder.encode(tagsData.get(key), "UTF-8"));
-                content = content.replaceAll("\\{" + key + "\\}", tagsData.get(key));
-            } else {
-                content = content.replaceAll("\\{url:" + key + "\\}", "");
-                content = content.replaceAll("\\{" + key + "\\}", "");
+        NotificationTemplate notificationTemplate = compiledTemplates.get(template);
+        if (notificationTemplate == null) {
+            notificationTemplate = NotificationTemplate.compile(template);
+            if (compiledTemplates.size() >= MAX_CACHED_TEMPLATES) {
+                compiledTemplates.clear();
             }
+            compiledTemplates.put(template, notificationTemplate);
         }
-        return content;
+        return notificationTemplate;
     }
 }
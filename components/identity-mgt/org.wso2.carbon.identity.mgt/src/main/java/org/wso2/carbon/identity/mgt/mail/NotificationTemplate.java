@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.mgt.mail;
+
+import org.wso2.carbon.identity.mgt.IdentityMgtServiceException;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Email template of the form subject|body|footer, split into its literal text and {tag} and {url:tag} placeholders
+ * once so that notifications can be built from it without scanning the template for every tag. A placeholder of a tag
+ * missing from the tag data is left as it is, and one of a tag with a null value is removed.
+ */
+public class NotificationTemplate {
+
+    private static final String URL_PLACEHOLDER_PREFIX = "url:";
+
+    private final List<Segment> subject;
+    private final List<Segment> body;
+    private final List<Segment> footer;
+
+    private NotificationTemplate(List<Segment> subject, List<Segment> body, List<Segment> footer) {
+
+        this.subject = subject;
+        this.body = body;
+        this.footer = footer;
+    }
+
+    /**
+     * Parses an email template.
+     *
+     * @param template Template of the form subject|body|footer
+     * @return Parsed template
+     * @throws IdentityMgtServiceException If the template has more than 3 parts
+     */
+    public static NotificationTemplate compile(String template) throws IdentityMgtServiceException {
+
+        String[] contents = template.split("\\|", -1);
+        if (contents.length > 3) {
+            throw new IdentityMgtServiceException("Contents must be 3 or less");
+        }
+        return new NotificationTemplate(parse(contents[0]), parse(contents.length > 1 ? contents[1] : ""),
+                parse(contents.length > 2 ? contents[2] : ""));
+    }
+
+    public String buildSubject(Map<String, String> tagsData) throws UnsupportedEncodingException {
+        return build(subject, tagsData);
+    }
+
+    public String buildBody(Map<String, String> tagsData) throws UnsupportedEncodingException {
+        return build(body, tagsData);
+    }
+
+    public String buildFooter(Map<String, String> tagsData) throws UnsupportedEncodingException {
+        return build(footer, tagsData);
+    }
+
+    private static List<Segment> parse(String content) {
+
+        List<Segment> segments = new ArrayList<>();
+        int position = 0;
+        while (position < content.length()) {
+            int start = content.indexOf('{', position);
+            int end = start < 0 ? -1 : content.indexOf('}', start + 1);
+            if (end < 0) {
+                segments.add(new Segment(content.substring(position), null, false));
+                break;
+            }
+            // The placeholder is the innermost braces, eg. {b} in {a{b}.
+            start = content.lastIndexOf('{', end);
+            if (start > position) {
+                segments.add(new Segment(content.substring(position, start), null, false));
+            }
+            String tag = content.substring(start + 1, end);
+            if (tag.startsWith(URL_PLACEHOLDER_PREFIX)) {
+                segments.add(new Segment(content.substring(start, end + 1),
+                        tag.substring(URL_PLACEHOLDER_PREFIX.length()), true));
+            } else {
+                segments.add(new Segment(content.substring(start, end + 1), tag, false));
+            }
+            position = end + 1;
+        }
+        return segments;
+    }
+
+    private static String build(List<Segment> segments, Map<String, String> tagsData)
+            throws UnsupportedEncodingException {
+
+        StringBuilder content = new StringBuilder();
+        for (Segment segment : segments) {
+            if (segment.tag == null || !tagsData.containsKey(segment.tag)) {
+                content.append(segment.text);
+                continue;
+            }
+            String value = tagsData.get(segment.tag);
+            if (value != null) {
+                content.append(segment.urlEncoded ? URLEncoder.encode(value, "UTF-8") : value);
+            }
+        }
+        return content.toString();
+    }
+
+    /**
+     * Literal text, or a placeholder with the text to keep when its tag has no data.
+     */
+    private static final class Segment {
+
+        private final String text;
+        private final String tag;
+        private final boolean urlEncoded;
+
+        private Segment(String text, String tag, boolean urlEncoded) {
+
+            this.text = text;
+            this.tag = tag;
+            this.urlEncoded = urlEncoded;
+        }
+    }
+}
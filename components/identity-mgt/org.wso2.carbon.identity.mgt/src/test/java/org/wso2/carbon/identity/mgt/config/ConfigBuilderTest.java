@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.mgt.config;
+
+import junit.framework.TestCase;
+import org.wso2.carbon.identity.mgt.IdentityMgtConfigException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ConfigBuilderTest extends TestCase {
+
+    private static final int TENANTS = 100;
+    private static final int THREADS = 32;
+
+    private CountingConfigReader reader;
+    private ConfigBuilder configBuilder;
+
+    @Override
+    protected void setUp() {
+
+        reader = new CountingConfigReader();
+        configBuilder = new ConfigBuilder(reader, new ConfigWriter() {
+            @Override
+            public void write(int tenantId, Properties props, String resourcePath) {
+                reader.templates.put(tenantId, props.getProperty("otp"));
+            }
+        });
+    }
+
+    public void testConcurrentLoadsReadEachTenantOnce() throws Exception {
+
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Callable<List<String>>> loaders = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            final int offset = i;
+            loaders.add(new Callable<List<String>>() {
+                @Override
+                public List<String> call() throws Exception {
+
+                    start.await();
+                    List<String> mismatches = new ArrayList<>();
+                    for (int j = 0; j < TENANTS; j++) {
+                        // Threads walk the tenants from different offsets, so that every tenant is missed by
+                        // several threads at once.
+                        int tenantId = (j + offset) % TENANTS;
+                        Config config = configBuilder.loadConfiguration(ConfigType.EMAIL, StorageType.REGISTRY,
+                                tenantId);
+                        if (!template(tenantId).equals(config.getProperty("otp"))) {
+                            mismatches.add("tenant: " + tenantId + " got: " + config.getProperty("otp"));
+                        }
+                    }
+                    return mismatches;
+                }
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<List<String>>> results = new ArrayList<>();
+            for (Callable<List<String>> loader : loaders) {
+                results.add(executor.submit(loader));
+            }
+            start.countDown();
+            for (Future<List<String>> result : results) {
+                assertEquals(Collections.<String>emptyList(), result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(TENANTS, reader.reads.size());
+        for (int tenantId = 0; tenantId < TENANTS; tenantId++) {
+            assertEquals("Registry reads of tenant: " + tenantId, 1, reader.reads.get(tenantId).get());
+        }
+    }
+
+    public void testSaveInvalidatesTenantConfig() throws Exception {
+
+        assertEquals(template(1), configBuilder.loadConfiguration(ConfigType.EMAIL, StorageType.REGISTRY, 1)
+                .getProperty("otp"));
+        assertEquals(template(2), configBuilder.loadConfiguration(ConfigType.EMAIL, StorageType.REGISTRY, 2)
+                .getProperty("otp"));
+
+        EmailNotificationConfig emailConfig = new EmailNotificationConfig();
+        emailConfig.setProperty("otp", "updated");
+        configBuilder.saveConfiguration(StorageType.REGISTRY, 1, emailConfig);
+
+        assertEquals("updated", configBuilder.loadConfiguration(ConfigType.EMAIL, StorageType.REGISTRY, 1)
+                .getProperty("otp"));
+        assertEquals(template(2), configBuilder.loadConfiguration(ConfigType.EMAIL, StorageType.REGISTRY, 2)
+                .getProperty("otp"));
+        assertEquals(2, reader.reads.get(1).get());
+        assertEquals(1, reader.reads.get(2).get());
+    }
+
+    public void testFailedLoadIsRetried() throws Exception {
+
+        reader.failing = true;
+        try {
+            configBuilder.loadConfiguration(ConfigType.EMAIL, StorageType.REGISTRY, 1);
+            fail("Registry read failure was not reported");
+        } catch (IdentityMgtConfigException e) {
+            assertEquals("Registry not available", e.getMessage());
+        }
+
+        reader.failing = false;
+        assertEquals(template(1), configBuilder.loadConfiguration(ConfigType.EMAIL, StorageType.REGISTRY, 1)
+                .getProperty("otp"));
+    }
+
+    public void testCachedConfigIsReadOnly() throws Exception {
+
+        Config config = configBuilder.loadConfiguration(ConfigType.EMAIL, StorageType.REGISTRY, 1);
+        try {
+            config.setProperty("otp", "modified");
+            fail("Cached configuration was modified");
+        } catch (UnsupportedOperationException e) {
+            // Expected.
+        }
+        config.getProperties().setProperty("otp", "modified");
+
+        assertEquals(template(1), configBuilder.loadConfiguration(ConfigType.EMAIL, StorageType.REGISTRY, 1)
+                .getProperty("otp"));
+    }
+
+    private static String template(int tenantId) {
+        return "One time password of tenant " + tenantId + "|{otp-password}|";
+    }
+
+    /**
+     * Stands for the registry, with a separate email template for each tenant. Counts the reads of each tenant.
+     */
+    private static class CountingConfigReader implements ConfigReader {
+
+        private final ConcurrentMap<Integer, AtomicInteger> reads = new ConcurrentHashMap<>();
+        private final ConcurrentMap<Integer, String> templates = new ConcurrentHashMap<>();
+        private volatile boolean failing;
+
+        @Override
+        public Properties read(int tenantId, String resourcePath) throws IdentityMgtConfigException {
+
+            if (failing) {
+                throw new IdentityMgtConfigException("Registry not available");
+            }
+            AtomicInteger tenantReads = reads.get(tenantId);
+            if (tenantReads == null) {
+                reads.putIfAbsent(tenantId, new AtomicInteger());
+                tenantReads = reads.get(tenantId);
+            }
+            tenantReads.incrementAndGet();
+            try {
+                // Stands for the registry round trip, during which other threads miss the same tenant.
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            Properties props = new Properties();
+            String template = templates.get(tenantId);
+            props.setProperty("otp", template != null ? template : template(tenantId));
+            return props;
+        }
+    }
+}
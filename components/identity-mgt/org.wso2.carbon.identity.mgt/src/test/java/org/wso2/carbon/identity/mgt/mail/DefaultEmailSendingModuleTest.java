@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.mgt.mail;
+
+import junit.framework.TestCase;
+import org.wso2.carbon.identity.mgt.IdentityMgtServiceException;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DefaultEmailSendingModuleTest extends TestCase {
+
+    private static final long TIMEOUT = TimeUnit.SECONDS.toMillis(10);
+
+    private StubEmailTransport transport;
+    private ExecutorService retryExecutor;
+    private DefaultEmailSendingModule module;
+
+    @Override
+    protected void setUp() {
+
+        System.setProperty("carbon.home", Paths.get(System.getProperty("user.dir"), "target").toString());
+        transport = new StubEmailTransport();
+        retryExecutor = Executors.newSingleThreadExecutor();
+        module = new DefaultEmailSendingModule();
+        module.setEmailTransport(transport);
+        module.setRetryExecutor(retryExecutor);
+        module.setRateLimiter(null);
+    }
+
+    @Override
+    protected void tearDown() {
+        retryExecutor.shutdownNow();
+    }
+
+    public void testFailedEmailIsRetried() throws Exception {
+
+        module.setRetries(2, 10);
+        transport.failures.put("alice@wso2.com", new AtomicInteger(2));
+
+        queue("alice@wso2.com");
+        module.sendEmail();
+        waitFor(new Condition() {
+            @Override
+            public boolean isMet() {
+                return module.getSendingStatistics().getSentEmails() == 1;
+            }
+        });
+
+        assertEquals(3, transport.getAttempts("alice@wso2.com"));
+        EmailSendingStatistics statistics = module.getSendingStatistics();
+        assertEquals(2, statistics.getRetries());
+        assertEquals(0, statistics.getFailedEmails());
+    }
+
+    public void testEmailFailsAfterRetryCount() throws Exception {
+
+        module.setRetries(2, 10);
+        transport.failures.put("alice@wso2.com", new AtomicInteger(Integer.MAX_VALUE));
+
+        queue("alice@wso2.com");
+        module.sendEmail();
+        waitFor(new Condition() {
+            @Override
+            public boolean isMet() {
+                return module.getSendingStatistics().getFailedEmails() == 1;
+            }
+        });
+
+        assertEquals(3, transport.getAttempts("alice@wso2.com"));
+        EmailSendingStatistics statistics = module.getSendingStatistics();
+        assertEquals(2, statistics.getRetries());
+        assertEquals(0, statistics.getSentEmails());
+    }
+
+    public void testRetryDoesNotHoldUpOtherEmails() throws Exception {
+
+        // Long enough for the second email to be sent well before the first is retried.
+        module.setRetries(1, TimeUnit.SECONDS.toMillis(2));
+        transport.failures.put("alice@wso2.com", new AtomicInteger(1));
+
+        queue("alice@wso2.com");
+        queue("bob@wso2.com");
+        // The first email of the batch fails and is queued for a retry instead of the run waiting for it.
+        module.sendEmail();
+
+        assertEquals(Collections.singletonList("bob@wso2.com"), transport.getSent());
+        assertEquals(1, module.getSendingStatistics().getBatches());
+        waitFor(new Condition() {
+            @Override
+            public boolean isMet() {
+                return module.getSendingStatistics().getSentEmails() == 2;
+            }
+        });
+        assertEquals(2, transport.getAttempts("alice@wso2.com"));
+        assertEquals(1, module.getSendingStatistics().getRetries());
+    }
+
+    public void testBatchSize() {
+
+        module.setBatchSize(2);
+        for (int i = 0; i < 5; i++) {
+            queue("user" + i + "@wso2.com");
+        }
+
+        module.sendEmail();
+        assertEquals(2, transport.getSent().size());
+        module.sendEmail();
+        module.sendEmail();
+        assertEquals(5, transport.getSent().size());
+        assertEquals(3, module.getSendingStatistics().getBatches());
+
+        // A run submitted for an email already sent by an earlier batch has nothing to send.
+        module.sendEmail();
+        assertEquals(3, module.getSendingStatistics().getBatches());
+    }
+
+    public void testRateLimit() throws Exception {
+
+        // One email every 50ms.
+        module.setRateLimiter(new EmailRateLimiter(20));
+        for (int i = 0; i < 5; i++) {
+            queue("user" + i + "@wso2.com");
+        }
+        for (int i = 0; i < 5; i++) {
+            module.sendEmail();
+        }
+
+        EmailSendingStatistics statistics = module.getSendingStatistics();
+        assertEquals(5, statistics.getSentEmails());
+        // The first email is sent at once and the other four wait for close to 50ms each.
+        assertTrue("Rate limited time: " + statistics.getRateLimitedTime(), statistics.getRateLimitedTime() >= 150);
+    }
+
+    public void testRunWithoutQueuedEmail() {
+
+        module.sendEmail();
+
+        assertEquals(0, transport.getSent().size());
+        assertEquals(0, module.getSendingStatistics().getSentEmails());
+    }
+
+    private void queue(String sendTo) {
+
+        Notification notification = new EmailNotification();
+        notification.setSendTo(sendTo);
+        notification.setSubject("Subject");
+        notification.setBody("Body");
+        module.setNotification(notification);
+    }
+
+    private void waitFor(Condition condition) throws InterruptedException {
+
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (!condition.isMet()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Timed out waiting for the emails to be sent. Statistics: " + module.getSendingStatistics());
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private interface Condition {
+
+        boolean isMet();
+    }
+
+    /**
+     * Records the emails sent, failing the given number of attempts to send to each recipient.
+     */
+    private static class StubEmailTransport implements EmailTransport {
+
+        private final ConcurrentMap<String, AtomicInteger> failures = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, AtomicInteger> attempts = new ConcurrentHashMap<>();
+        private final List<String> sent = Collections.synchronizedList(new ArrayList<String>());
+
+        @Override
+        public void send(Notification notification) throws IdentityMgtServiceException {
+
+            String sendTo = notification.getSendTo();
+            attempts.putIfAbsent(sendTo, new AtomicInteger());
+            attempts.get(sendTo).incrementAndGet();
+            AtomicInteger remainingFailures = failures.get(sendTo);
+            if (remainingFailures != null && remainingFailures.getAndDecrement() > 0) {
+                throw new IdentityMgtServiceException("Mail server not available");
+            }
+            sent.add(sendTo);
+        }
+
+        private int getAttempts(String sendTo) {
+
+            AtomicInteger count = attempts.get(sendTo);
+            return count != null ? count.get() : 0;
+        }
+
+        private List<String> getSent() {
+
+            synchronized (sent) {
+                return new ArrayList<>(sent);
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.mgt.mail;
+
+import junit.framework.TestCase;
+import org.wso2.carbon.identity.mgt.IdentityMgtServiceException;
+
+public class NotificationBuilderTest extends TestCase {
+
+    private static final String TEMPLATE = "Password Reset {user-name}|Hi {first-name},\n" +
+            "https://localhost:9443/reset?code={url:confirmation-code} {unknown}|Regards {tenant-domain}";
+
+    public void testTagsAreReplaced() throws IdentityMgtServiceException {
+
+        NotificationData data = new NotificationData();
+        data.setSendTo("admin@wso2.com");
+        data.setTagData("user-name", "admin");
+        data.setTagData("first-name", "$1 {user-name}");
+        data.setTagData("confirmation-code", "a b&c");
+        data.setTagData("tenant-domain", null);
+
+        Notification notification = NotificationBuilder.createNotification("EMAIL", TEMPLATE, data);
+
+        assertEquals("Password Reset admin", notification.getSubject());
+        assertEquals("Hi $1 {user-name},\nhttps://localhost:9443/reset?code=a+b%26c {unknown}",
+                notification.getBody());
+        assertEquals("Regards ", notification.getFooter());
+        assertEquals("admin@wso2.com", notification.getSendTo());
+    }
+
+    public void testCachedTemplateIsBuiltWithNewData() throws IdentityMgtServiceException {
+
+        NotificationData first = new NotificationData();
+        first.setTagData("user-name", "alice");
+        NotificationData second = new NotificationData();
+        second.setTagData("user-name", "bob");
+
+        assertEquals("Password Reset alice",
+                NotificationBuilder.createNotification("EMAIL", TEMPLATE, first).getSubject());
+        assertEquals("Password Reset bob",
+                NotificationBuilder.createNotification("EMAIL", TEMPLATE, second).getSubject());
+    }
+
+    public void testTemplateWithoutFooter() throws IdentityMgtServiceException {
+
+        Notification notification = NotificationBuilder.createNotification("EMAIL", "Subject|Body|",
+                new NotificationData());
+
+        assertEquals("Body", notification.getBody());
+        assertEquals("", notification.getFooter());
+    }
+
+    public void testTemplateWithTooManyParts() {
+
+        try {
+            NotificationBuilder.createNotification("EMAIL", "a|b|c|d", new NotificationData());
+            fail("Template with more than 3 parts was accepted");
+        } catch (IdentityMgtServiceException e) {
+            assertEquals("Contents must be 3 or less", e.getMessage());
+        }
+    }
+}
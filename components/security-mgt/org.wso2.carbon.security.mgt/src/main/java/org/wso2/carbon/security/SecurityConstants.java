@@ -115,6 +115,10 @@ public class SecurityConstants {
     public static final String PROPERTY_LABEL = "property";
     public static final String NAME_LABEL = "name";
 
+    // identity.xml properties of the certificate path validation result cache
+    public static final String CERT_PATH_VALIDATION_CACHE_TIMEOUT = "CertPathValidation.CacheTimeout";
+    public static final String CERT_PATH_VALIDATION_CACHE_CAPACITY = "CertPathValidation.CacheCapacity";
+
     private SecurityConstants(){}
 
 }
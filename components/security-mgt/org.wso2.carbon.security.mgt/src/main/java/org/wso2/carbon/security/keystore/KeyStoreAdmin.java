@@ -40,6 +40,7 @@ import org.wso2.carbon.security.keystore.service.CertDataDetail;
 import org.wso2.carbon.security.keystore.service.KeyStoreData;
 import org.wso2.carbon.security.keystore.service.PaginatedCertData;
 import org.wso2.carbon.security.keystore.service.PaginatedKeyStoreData;
+import org.wso2.carbon.security.util.KeyStoreIndex;
 import org.wso2.carbon.security.util.KeyStoreMgtUtil;
 import org.wso2.carbon.utils.CarbonUtils;
 
@@ -314,6 +315,7 @@ public class KeyStoreAdmin {
                         " is already in use and can't be deleted");
             }
             registry.delete(path);
+            KeyStoreIndex.invalidate(tenantId, keyStoreName);
         } catch (RegistryException e) {
             String msg = "Error when deleting a keyStore";
             log.error(msg, e);
@@ -351,6 +353,7 @@ public class KeyStoreAdmin {
             ks.setCertificateEntry(fileName, cert);
 
             keyMan.updateKeyStore(keyStoreName, ks);
+            KeyStoreIndex.invalidate(tenantId, keyStoreName);
 
         } catch (SecurityConfigException e) {
             throw e;
@@ -393,6 +396,7 @@ public class KeyStoreAdmin {
             ks.setCertificateEntry(alias, cert);
 
             keyMan.updateKeyStore(keyStoreName, ks);
+            KeyStoreIndex.invalidate(tenantId, keyStoreName);
 
             return alias;
 
@@ -421,6 +425,7 @@ public class KeyStoreAdmin {
 
             ks.deleteEntry(alias);
             keyMan.updateKeyStore(keyStoreName, ks);
+            KeyStoreIndex.invalidate(tenantId, keyStoreName);
         } catch (SecurityConfigException e) {
             throw e;
         } catch (Exception e) {
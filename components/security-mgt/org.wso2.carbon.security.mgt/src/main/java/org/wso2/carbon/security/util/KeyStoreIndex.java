@@ -0,0 +1,336 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.security.util;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.commons.lang.StringUtils;
+import org.apache.ws.security.WSSecurityException;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+import org.wso2.carbon.security.SecurityConstants;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.PKIXParameters;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookup tables from the certificates of a key store to their aliases, by SHA-1 thumbprint, subject key identifier,
+ * issuer and serial number and subject DN, so that {@link ServerCrypto} does not walk the key store for every
+ * message. Indexes are shared by all the ServerCrypto instances of a tenant and built again when the key store is
+ * reloaded, when its size changes or when it is invalidated after being modified by the key store admin.
+ * <p>
+ * An index also holds the PKIX parameters with the trust anchors of its key store and the outcomes of the certificate
+ * paths recently validated against them, which go away with the index when the key store changes.
+ */
+public class KeyStoreIndex {
+
+    private static final Log log = LogFactory.getLog(KeyStoreIndex.class);
+    private static final ConcurrentMap<String, KeyStoreIndex> indexes = new ConcurrentHashMap<>();
+    private static final int DEFAULT_CERT_PATH_CACHE_TIMEOUT = 300;
+    private static final int DEFAULT_CERT_PATH_CACHE_CAPACITY = 1000;
+
+    private final KeyStore keyStore;
+    private final int size;
+    private final Map<ByteBuffer, String> thumbprintAliases = new HashMap<>();
+    private final Map<ByteBuffer, String> skiAliases = new HashMap<>();
+    private final Map<List<Object>, String> issuerSerialAliases = new HashMap<>();
+    private final Map<List<String>, List<String>> subjectDNAliases = new HashMap<>();
+    private final ConcurrentMap<ByteBuffer, CertPathResult> certPathResults = new ConcurrentHashMap<>();
+    private final long certPathCacheTimeout;
+    private final int certPathCacheCapacity;
+    private volatile PKIXParameters trustParameters;
+
+    private KeyStoreIndex(KeyStore keyStore) throws KeyStoreException {
+
+        this.keyStore = keyStore;
+        this.size = keyStore.size();
+        this.certPathCacheTimeout = TimeUnit.SECONDS.toNanos(getIntProperty(
+                SecurityConstants.CERT_PATH_VALIDATION_CACHE_TIMEOUT, DEFAULT_CERT_PATH_CACHE_TIMEOUT));
+        this.certPathCacheCapacity = getIntProperty(SecurityConstants.CERT_PATH_VALIDATION_CACHE_CAPACITY,
+                DEFAULT_CERT_PATH_CACHE_CAPACITY);
+
+        MessageDigest sha;
+        try {
+            sha = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new KeyStoreException("SHA-1 message digest is not available", e);
+        }
+
+        for (Enumeration<String> aliases = keyStore.aliases(); aliases.hasMoreElements(); ) {
+            String alias = aliases.nextElement();
+            X509Certificate cert = getCertificate(keyStore, alias);
+            if (cert == null) {
+                continue;
+            }
+
+            try {
+                putIfAbsent(thumbprintAliases, ByteBuffer.wrap(sha.digest(cert.getEncoded())), alias);
+            } catch (CertificateEncodingException e) {
+                log.warn("Error while encoding the certificate of alias : " + alias, e);
+            }
+            try {
+                putIfAbsent(skiAliases, ByteBuffer.wrap(ServerCrypto.getSKIBytes(cert)), alias);
+            } catch (WSSecurityException e) {
+                if (log.isDebugEnabled()) {
+                    log.debug("No subject key identifier for the certificate of alias : " + alias, e);
+                }
+            }
+            putIfAbsent(issuerSerialAliases, getIssuerSerialKey(cert.getIssuerDN().getName(),
+                    cert.getSerialNumber()), alias);
+
+            List<String> subjectRDN = ServerCrypto.splitAndTrim(cert.getSubjectDN().getName());
+            List<String> subjectAliases = subjectDNAliases.get(subjectRDN);
+            if (subjectAliases == null) {
+                subjectAliases = new ArrayList<>(1);
+                subjectDNAliases.put(subjectRDN, subjectAliases);
+            }
+            subjectAliases.add(alias);
+        }
+    }
+
+    /**
+     * Returns the index of a key store, building it if the key store is not indexed yet or has changed.
+     *
+     * @param tenantId     tenant the key store belongs to
+     * @param keyStoreName name of the key store
+     * @param keyStore     the key store as currently loaded
+     * @return index of the key store
+     * @throws KeyStoreException if the key store could not be read
+     */
+    public static KeyStoreIndex getIndex(int tenantId, String keyStoreName, KeyStore keyStore)
+            throws KeyStoreException {
+
+        String key = getKey(tenantId, keyStoreName);
+        KeyStoreIndex index = indexes.get(key);
+        if (index != null && index.keyStore == keyStore && index.size == keyStore.size()) {
+            return index;
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Indexing the certificates of key store : " + keyStoreName + " of tenant : " + tenantId);
+        }
+        index = new KeyStoreIndex(keyStore);
+        indexes.put(key, index);
+        return index;
+    }
+
+    /**
+     * Removes the index of a key store. To be called once the key store is modified.
+     *
+     * @param tenantId     tenant the key store belongs to
+     * @param keyStoreName name of the key store
+     */
+    public static void invalidate(int tenantId, String keyStoreName) {
+        indexes.remove(getKey(tenantId, keyStoreName));
+    }
+
+    public String getAliasForThumbprint(byte[] thumbprint) {
+        return thumbprintAliases.get(ByteBuffer.wrap(thumbprint));
+    }
+
+    public String getAliasForSKI(byte[] skiBytes) {
+        return skiAliases.get(ByteBuffer.wrap(skiBytes));
+    }
+
+    public String getAliasForIssuerSerial(String issuer, BigInteger serialNumber) {
+        return issuerSerialAliases.get(getIssuerSerialKey(issuer, serialNumber));
+    }
+
+    public List<String> getAliasesForSubjectDN(String subjectDN) {
+
+        List<String> aliases = subjectDNAliases.get(ServerCrypto.splitAndTrim(subjectDN));
+        if (aliases == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(aliases);
+    }
+
+    /**
+     * Returns the PKIX parameters trusting the certificates of the key store, with revocation checking disabled.
+     *
+     * @return a copy of the parameters, built from the key store once
+     * @throws KeyStoreException                  if the key store could not be read
+     * @throws InvalidAlgorithmParameterException if the key store has no trusted certificates
+     */
+    public PKIXParameters getPKIXParameters() throws KeyStoreException, InvalidAlgorithmParameterException {
+
+        PKIXParameters parameters = trustParameters;
+        if (parameters == null) {
+            parameters = new PKIXParameters(keyStore);
+            parameters.setRevocationEnabled(false);
+            trustParameters = parameters;
+        }
+        return (PKIXParameters) parameters.clone();
+    }
+
+    /**
+     * Returns the outcome of validating a certificate path against this key store, if validated recently.
+     *
+     * @param fingerprint fingerprint of the certificate path
+     * @return the outcome, null if not cached
+     */
+    public CertPathResult getCertPathResult(byte[] fingerprint) {
+
+        ByteBuffer key = ByteBuffer.wrap(fingerprint);
+        CertPathResult result = certPathResults.get(key);
+        if (result != null && result.isExpired(System.nanoTime())) {
+            certPathResults.remove(key, result);
+            return null;
+        }
+        return result;
+    }
+
+    /**
+     * Caches the outcome of validating a certificate path against this key store. A valid outcome is not kept past the
+     * expiry of the first certificate of the path to expire, after which the path is no longer valid.
+     *
+     * @param fingerprint    fingerprint of the certificate path
+     * @param certs          certificates of the path
+     * @param valid          whether the path is valid
+     * @param failureMessage why the path is not valid
+     */
+    public void addCertPathResult(byte[] fingerprint, Certificate[] certs, boolean valid, String failureMessage) {
+
+        if (certPathCacheTimeout <= 0 || certPathCacheCapacity <= 0) {
+            return;
+        }
+        long timeout = certPathCacheTimeout;
+        if (valid) {
+            long validity = TimeUnit.MILLISECONDS.toNanos(getNotAfter(certs) - System.currentTimeMillis());
+            if (validity <= 0) {
+                return;
+            }
+            timeout = Math.min(timeout, validity);
+        }
+        long now = System.nanoTime();
+        if (certPathResults.size() >= certPathCacheCapacity) {
+            for (Iterator<CertPathResult> results = certPathResults.values().iterator(); results.hasNext(); ) {
+                if (results.next().isExpired(now)) {
+                    results.remove();
+                }
+            }
+            if (certPathResults.size() >= certPathCacheCapacity) {
+                certPathResults.clear();
+            }
+        }
+        certPathResults.put(ByteBuffer.wrap(fingerprint), new CertPathResult(valid, failureMessage,
+                now + timeout));
+    }
+
+    /**
+     * @return the earliest expiry time of the X.509 certificates, in milliseconds
+     */
+    private static long getNotAfter(Certificate[] certs) {
+
+        long notAfter = Long.MAX_VALUE;
+        for (Certificate cert : certs) {
+            if (cert instanceof X509Certificate) {
+                notAfter = Math.min(notAfter, ((X509Certificate) cert).getNotAfter().getTime());
+            }
+        }
+        return notAfter;
+    }
+
+    private static X509Certificate getCertificate(KeyStore keyStore, String alias) throws KeyStoreException {
+
+        Certificate[] certs = keyStore.getCertificateChain(alias);
+        Certificate cert = certs != null && certs.length > 0 ? certs[0] : keyStore.getCertificate(alias);
+        if (cert instanceof X509Certificate) {
+            return (X509Certificate) cert;
+        }
+        return null;
+    }
+
+    private static List<Object> getIssuerSerialKey(String issuer, BigInteger serialNumber) {
+        return Arrays.<Object>asList(serialNumber, ServerCrypto.splitAndTrim(issuer));
+    }
+
+    private static <K> void putIfAbsent(Map<K, String> aliases, K key, String alias) {
+
+        if (!aliases.containsKey(key)) {
+            aliases.put(key, alias);
+        }
+    }
+
+    private static String getKey(int tenantId, String keyStoreName) {
+        return tenantId + ":" + keyStoreName;
+    }
+
+    private static int getIntProperty(String propertyName, int defaultValue) {
+
+        String value = IdentityUtil.getProperty(propertyName);
+        if (StringUtils.isNotBlank(value)) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                log.warn("Invalid value " + value + " configured for " + propertyName + ". Using the default value "
+                        + defaultValue);
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Outcome of validating a certificate path.
+     */
+    public static final class CertPathResult {
+
+        private final boolean valid;
+        private final String failureMessage;
+        private final long expiryTime;
+
+        private CertPathResult(boolean valid, String failureMessage, long expiryTime) {
+
+            this.valid = valid;
+            this.failureMessage = failureMessage;
+            this.expiryTime = expiryTime;
+        }
+
+        public boolean isValid() {
+            return valid;
+        }
+
+        public String getFailureMessage() {
+            return failureMessage;
+        }
+
+        private boolean isExpired(long now) {
+            return now - expiryTime >= 0;
+        }
+    }
+}
@@ -36,6 +36,7 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.Key;
@@ -57,12 +58,13 @@ import java.security.cert.PKIXParameters;
 import java.security.cert.X509Certificate;
 import java.security.interfaces.RSAPublicKey;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Properties;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * ServerCrypto implementation to support a collection of keystores holding different trusted certs
@@ -81,12 +83,22 @@ public class ServerCrypto implements Crypto {
     public static final String PROP_ID_TENANT_ID = "org.wso2.stratos.tenant.id";
     public static final String PROP_ID_XKMS_SERVICE_URL = "org.wso2.carbon.security.crypto.xkms.url";
     private static final String SKI_OID = "2.5.29.14";
+    private static final String CACERTS = "cacerts";
+    // Tenant the JDK cacerts are indexed under, as they are shared by all the tenants.
+    private static final int CACERTS_TENANT_ID = -1;
     private static Log log = LogFactory.getLog(ServerCrypto.class);
     private static CertificateFactory certFact = null;
+    // JDK cacerts by password, loaded once.
+    private static final ConcurrentMap<String, KeyStore> jdkCacerts = new ConcurrentHashMap<>();
     private Properties properties = null;
+    private int tenantId;
     private KeyStore keystore = null;
+    private String keystoreName = null;
     private KeyStore cacerts = null;
+    private int cacertsTenantId = CACERTS_TENANT_ID;
+    private String cacertsName = CACERTS;
     private List<KeyStore> trustStores = new ArrayList<>();
+    private List<String> trustStoreNames = new ArrayList<>();
     private Registry registry = null;
     private Boolean useXkms;
 
@@ -99,8 +111,6 @@ public class ServerCrypto implements Crypto {
             boolean isSetDoomFalse = false;
         try {
 
-            int tenantId;
-
             String tenantIdString = (String) prop.get(PROP_ID_TENANT_ID);
 
             if (tenantIdString == null || tenantIdString.trim().length() == 0) {
@@ -130,6 +140,7 @@ public class ServerCrypto implements Crypto {
             String ksId = this.properties.getProperty(PROP_ID_PRIVATE_STORE);
             if (ksId != null) {
                 this.keystore = keyMan.getKeyStore(ksId);
+                this.keystoreName = ksId;
             }
 
             // Get other keystores if available
@@ -137,10 +148,12 @@ public class ServerCrypto implements Crypto {
             if (trustStoreIds != null && trustStoreIds.trim().length() != 0) {
                 String[] ids = trustStoreIds.trim().split(",");
                 this.trustStores = new ArrayList(ids.length);
+                this.trustStoreNames = new ArrayList<>(ids.length);
                 for (int i = 0; i < ids.length; i++) {
                     String id = ids[i];
                     KeyStore tstks = keyMan.getKeyStore(id);
                     this.trustStores.add(i, tstks);
+                    this.trustStoreNames.add(i, id);
                 }
             }
         } catch (Exception e) {
@@ -151,24 +164,42 @@ public class ServerCrypto implements Crypto {
         /**
          * Load cacerts
          */
-        String cacertsPath = System.getProperty("java.home") + "/lib/security/cacerts";
-        InputStream cacertsIs = new FileInputStream(cacertsPath);
+        String cacertsPasswd = properties.getProperty(PROP_ID_CACERT_PASS, "changeit");
         try {
-            String cacertsPasswd = properties.getProperty(PROP_ID_CACERT_PASS, "changeit");
-            cacerts = KeyStore.getInstance(KeyStore.getDefaultType());
-            cacerts.load(cacertsIs, cacertsPasswd.toCharArray());
-
+            cacerts = getJDKCacerts(cacertsPasswd);
         } catch (GeneralSecurityException e) {
             log.warn("Unable load to cacerts from the JDK.", e);
             if (CollectionUtils.isNotEmpty(trustStores)) {
                 cacerts = this.trustStores.get(0);
+                cacertsTenantId = tenantId;
+                cacertsName = trustStoreNames.get(0);
             } else {
                 throw new CredentialException(3, "secError00", e);
             }
+        }
+
+    }
+
+    /**
+     * Returns the cacerts of the JDK, read from the disk only by the first ServerCrypto using the password.
+     */
+    private static KeyStore getJDKCacerts(String cacertsPasswd) throws GeneralSecurityException, IOException {
+
+        KeyStore jdkCacertsStore = jdkCacerts.get(cacertsPasswd);
+        if (jdkCacertsStore != null) {
+            return jdkCacertsStore;
+        }
+
+        String cacertsPath = System.getProperty("java.home") + "/lib/security/cacerts";
+        InputStream cacertsIs = new FileInputStream(cacertsPath);
+        try {
+            jdkCacertsStore = KeyStore.getInstance(KeyStore.getDefaultType());
+            jdkCacertsStore.load(cacertsIs, cacertsPasswd.toCharArray());
         } finally {
             cacertsIs.close();
         }
-
+        KeyStore existing = jdkCacerts.putIfAbsent(cacertsPasswd, jdkCacertsStore);
+        return existing != null ? existing : jdkCacertsStore;
     }
 
     @Override
@@ -332,72 +363,33 @@ public class ServerCrypto implements Crypto {
      * @see org.apache.ws.security.components.crypto.Crypto#getAliasForX509Cert(java.security.cert.Certificate)
      */
     public String getAliasForX509Cert(Certificate cert) throws WSSecurityException {
-        try {
-            String alias = null;
 
-            if (this.keystore != null) {
-                alias = keystore.getCertificateAlias(cert);
-
-                // Use brute force search
-                if (alias == null) {
-                    alias = findAliasForCert(this.keystore, cert);
-                }
-            }
-
-            // Check the trust stores
-            if (alias == null && this.trustStores != null) {
-                for (Iterator trustStoreIter = this.trustStores.iterator(); trustStoreIter
-                        .hasNext(); ) {
-                    KeyStore store = (KeyStore) trustStoreIter.next();
-                    alias = store.getCertificateAlias(cert);
-                    if (alias != null) {
-                        break;
-                    }
-                }
-            }
-
-            // Use brute force search on the trust stores
-            if (alias == null && this.trustStores != null) {
-                for (Iterator trustStoreIter = this.trustStores.iterator(); trustStoreIter
-                        .hasNext(); ) {
-                    KeyStore store = (KeyStore) trustStoreIter.next();
-                    alias = this.findAliasForCert(store, cert);
-                    if (alias != null) {
-                        break;
-                    }
-                }
-            }
+        byte[] thumb;
+        try {
+            thumb = getThumbprint(cert);
+        } catch (CertificateEncodingException e) {
+            throw new WSSecurityException(WSSecurityException.SECURITY_TOKEN_UNAVAILABLE, "encodeError");
+        }
 
-            if (alias == null && this.cacerts != null) {
-                alias = cacerts.getCertificateAlias(cert);
+        String alias = null;
 
-                // Use brute force search
-                if (alias == null) {
-                    alias = findAliasForCert(this.cacerts, cert);
-                }
-            }
+        if (this.keystore != null) {
+            alias = getIndex(this.tenantId, this.keystoreName, this.keystore).getAliasForThumbprint(thumb);
+        }
 
-            if (alias != null) {
-                return alias;
+        // Check the trust stores
+        if (alias == null && this.trustStores != null) {
+            for (int i = 0; i < this.trustStores.size() && alias == null; i++) {
+                alias = getIndex(this.tenantId, this.trustStoreNames.get(i), this.trustStores.get(i))
+                        .getAliasForThumbprint(thumb);
             }
-
-        } catch (KeyStoreException e) {
-            throw new WSSecurityException(WSSecurityException.FAILURE, "keystore");
         }
 
-        return null;
-    }
-
-    private String findAliasForCert(KeyStore ks, Certificate cert) throws KeyStoreException {
-        Enumeration e = ks.aliases();
-        while (e.hasMoreElements()) {
-            String alias = (String) e.nextElement();
-            X509Certificate cert2 = (X509Certificate) ks.getCertificate(alias);
-            if (cert2.equals(cert)) {
-                return alias;
-            }
+        if (alias == null && this.cacerts != null) {
+            alias = getIndex(this.cacertsTenantId, this.cacertsName, this.cacerts).getAliasForThumbprint(thumb);
         }
-        return null;
+
+        return alias;
     }
 
     @Override
@@ -427,16 +419,14 @@ public class ServerCrypto implements Crypto {
      */
     public String getAliasForX509Cert(String issuer, BigInteger serialNumber)
             throws WSSecurityException {
-        String alias = getAliasForX509Cert(issuer, serialNumber, true, this.keystore);
-        if (alias == null) {
-            Iterator<KeyStore> ite = this.trustStores.iterator();
-            while (ite.hasNext()) {
-                KeyStore ks = ite.next();
-                alias = getAliasForX509Cert(issuer, serialNumber, true, ks);
-                if (alias != null) {
-                    break;
-                }
-            }
+        String alias = null;
+        if (this.keystore != null) {
+            alias = getIndex(this.tenantId, this.keystoreName, this.keystore)
+                    .getAliasForIssuerSerial(issuer, serialNumber);
+        }
+        for (int i = 0; i < this.trustStores.size() && alias == null; i++) {
+            alias = getIndex(this.tenantId, this.trustStoreNames.get(i), this.trustStores.get(i))
+                    .getAliasForIssuerSerial(issuer, serialNumber);
         }
         return alias;
     }
@@ -446,30 +436,10 @@ public class ServerCrypto implements Crypto {
      * @see org.apache.ws.security.components.crypto.Crypto#getAliasForX509Cert(byte[])
      */
     public String getAliasForX509Cert(byte[] skiBytes) throws WSSecurityException {
-        try {
-
-            Certificate cert;
-            for (Enumeration e = keystore.aliases(); e.hasMoreElements(); ) {
-                String alias = (String) e.nextElement();
-                Certificate[] certs = this.getCertificates(alias);
-                if (certs == null || certs.length == 0) {
-                    return null;
-                } else {
-                    cert = certs[0];
-                }
-                byte[] data = getSKIBytesFromCert((X509Certificate) cert);
-                if (data.length != skiBytes.length) {
-                    continue;
-                }
-                if (Arrays.equals(data, skiBytes)) {
-                    return alias;
-                }
-            }
-
-        } catch (KeyStoreException e) {
-            throw new WSSecurityException(WSSecurityException.FAILURE, "keystore");
+        if (this.keystore == null) {
+            return null;
         }
-        return null;
+        return getIndex(this.tenantId, this.keystoreName, this.keystore).getAliasForSKI(skiBytes);
     }
 
     @Override
@@ -485,6 +455,10 @@ public class ServerCrypto implements Crypto {
      * @see org.apache.ws.security.components.crypto.Crypto#getSKIBytesFromCert(java.security.cert.X509Certificate)
      */
     public byte[] getSKIBytesFromCert(X509Certificate cert) throws WSSecurityException {
+        return getSKIBytes(cert);
+    }
+
+    static byte[] getSKIBytes(X509Certificate cert) throws WSSecurityException {
         /*
          * Gets the DER-encoded OCTET string for the extension value (extnValue)
          * identified by the passed-in oid String. The oid string is represented
@@ -530,39 +504,10 @@ public class ServerCrypto implements Crypto {
      * @see org.apache.ws.security.components.crypto.Crypto#getAliasForX509CertThumb(byte[])
      */
     public String getAliasForX509CertThumb(byte[] thumb) throws WSSecurityException {
-        Certificate cert;
-        MessageDigest sha;
-        try {
-            sha = MessageDigest.getInstance("SHA-1");
-        } catch (NoSuchAlgorithmException e1) {
-            throw new WSSecurityException(0, "noSHA1availabe");
+        if (this.keystore == null) {
+            return null;
         }
-        try {
-            for (Enumeration e = keystore.aliases(); e.hasMoreElements(); ) {
-                String alias = (String) e.nextElement();
-                Certificate[] certs = this.getCertificates(alias);
-                if (certs == null || certs.length == 0) {
-                    return null;
-                } else {
-                    cert = certs[0];
-                }
-                sha.reset();
-                try {
-                    sha.update(cert.getEncoded());
-                } catch (CertificateEncodingException e1) {
-                    throw new WSSecurityException(WSSecurityException.SECURITY_TOKEN_UNAVAILABLE,
-                            "encodeError");
-                }
-                byte[] data = sha.digest();
-
-                if (Arrays.equals(data, thumb)) {
-                    return alias;
-                }
-            }
-        } catch (KeyStoreException e) {
-            throw new WSSecurityException(WSSecurityException.FAILURE, "keystore");
-        }
-        return null;
+        return getIndex(this.tenantId, this.keystoreName, this.keystore).getAliasForThumbprint(thumb);
     }
 
     @Override
@@ -605,17 +550,18 @@ public class ServerCrypto implements Crypto {
 
         boolean result;
 
-        result = this.validateCertPath(this.keystore, certs);
+        byte[] fingerprint = getCertPathFingerprint(certs);
 
-        if (!result) {
-            Iterator trustStoreIter = this.trustStores.iterator();
-            while (!result) {
-                result = this.validateCertPath((KeyStore) trustStoreIter.next(), certs);
-            }
+        result = this.validateCertPath(this.tenantId, this.keystoreName, this.keystore, certs, fingerprint);
+
+        for (int i = 0; !result && i < this.trustStores.size(); i++) {
+            result = this.validateCertPath(this.tenantId, this.trustStoreNames.get(i), this.trustStores.get(i),
+                    certs, fingerprint);
         }
 
         if (!result && cacerts != null) {
-            result = this.validateCertPath(this.cacerts, certs);
+            result = this.validateCertPath(this.cacertsTenantId, this.cacertsName, this.cacerts, certs,
+                    fingerprint);
         }
 
         return result;
@@ -626,44 +572,31 @@ public class ServerCrypto implements Crypto {
      * @see org.apache.ws.security.components.crypto.Crypto#getAliasesForDN(java.lang.String)
      */
     public String[] getAliasesForDN(String subjectDN) throws WSSecurityException {
+        if (this.keystore == null) {
+            return new String[0];
+        }
+        List<String> aliases = getIndex(this.tenantId, this.keystoreName, this.keystore)
+                .getAliasesForSubjectDN(subjectDN);
+        return aliases.toArray(new String[aliases.size()]);
+    }
 
-        // Store the aliases found
-        List aliases = new Vector();
-        Certificate cert;
-
-        // The DN to search the keystore for
-        Vector subjectRDN = splitAndTrim(subjectDN);
-
-        // Look at every certificate in the keystore
+    private KeyStoreIndex getIndex(int storeTenantId, String keyStoreName, KeyStore ks)
+            throws WSSecurityException {
         try {
-            for (Enumeration e = keystore.aliases(); e.hasMoreElements(); ) {
-                String alias = (String) e.nextElement();
-
-                Certificate[] certs = this.getCertificates(alias);
-                if (certs == null || certs.length == 0) {
-                    return new String[0];
-                } else {
-                    cert = certs[0];
-                }
-
-                Vector foundRDN = splitAndTrim(((X509Certificate) cert).getSubjectDN()
-                        .getName());
-
-                if (subjectRDN.equals(foundRDN)) {
-                    aliases.add(alias);
-                }
-            }
+            return KeyStoreIndex.getIndex(storeTenantId, keyStoreName, ks);
         } catch (KeyStoreException e) {
             throw new WSSecurityException(WSSecurityException.FAILURE, "keystore");
         }
+    }
 
-        // Convert the vector into an array
-        String[] result = new String[aliases.size()];
-        for (int i = 0; i < aliases.size(); i++) {
-            result[i] = (String) aliases.get(i);
+    private byte[] getThumbprint(Certificate cert) throws WSSecurityException, CertificateEncodingException {
+        MessageDigest sha;
+        try {
+            sha = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e1) {
+            throw new WSSecurityException(0, "noSHA1availabe");
         }
-        return result;
-
+        return sha.digest(cert.getEncoded());
     }
 
     private String getAliasForX509Cert(String issuer, BigInteger serialNumber,
@@ -697,7 +630,7 @@ public class ServerCrypto implements Crypto {
         return null;
     }
 
-    private Vector splitAndTrim(String inString) {
+    static Vector splitAndTrim(String inString) {
         X509NameTokenizer nmTokens = new X509NameTokenizer(inString);
         Vector vr = new Vector();
 
@@ -708,7 +641,18 @@ public class ServerCrypto implements Crypto {
         return vr;
     }
 
-    private boolean validateCertPath(KeyStore ks, Certificate[] certs) throws WSSecurityException {
+    private boolean validateCertPath(int storeTenantId, String keyStoreName, KeyStore ks, Certificate[] certs,
+                                     byte[] fingerprint) throws WSSecurityException {
+
+        KeyStoreIndex index = getIndex(storeTenantId, keyStoreName, ks);
+        KeyStoreIndex.CertPathResult cachedResult = index.getCertPathResult(fingerprint);
+        if (cachedResult != null) {
+            if (!cachedResult.isValid()) {
+                throw new WSSecurityException(WSSecurityException.FAILURE, "certpath",
+                        new Object[]{cachedResult.getFailureMessage()});
+            }
+            return true;
+        }
 
         try {
 
@@ -717,10 +661,7 @@ public class ServerCrypto implements Crypto {
             CertPath path = this.getCertificateFactory().generateCertPath(certList);
 
             // Use the certificates in the keystore as TrustAnchors
-            PKIXParameters param = new PKIXParameters(ks);
-
-            // Do not check a revocation list
-            param.setRevocationEnabled(false);
+            PKIXParameters param = index.getPKIXParameters();
 
             // Verify the trust path using the above settings
             String provider = properties
@@ -732,11 +673,39 @@ public class ServerCrypto implements Crypto {
                 certPathValidator = CertPathValidator.getInstance("PKIX", provider);
             }
             certPathValidator.validate(path, param);
+        } catch (CertPathValidatorException | InvalidAlgorithmParameterException ex) {
+            // Outcomes of the trust anchors of the key store, which do not change until the key store does.
+            index.addCertPathResult(fingerprint, certs, false, ex.getMessage());
+            throw new WSSecurityException(WSSecurityException.FAILURE, "certpath",
+                    new Object[]{ex.getMessage()}, ex);
         } catch (NoSuchProviderException | NoSuchAlgorithmException | CertificateException |
-                InvalidAlgorithmParameterException | CertPathValidatorException | KeyStoreException ex) {
+                KeyStoreException ex) {
             throw new WSSecurityException(WSSecurityException.FAILURE, "certpath",
                     new Object[]{ex.getMessage()}, ex);
         }
+        index.addCertPathResult(fingerprint, certs, true, null);
         return true;
     }
+
+    /**
+     * SHA-256 over the encoded certificates of a path. A collision resistant digest is used since a cached outcome
+     * is trusted in place of validating the path.
+     */
+    private byte[] getCertPathFingerprint(Certificate[] certs) throws WSSecurityException {
+
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            for (Certificate cert : certs) {
+                byte[] encoded = cert.getEncoded();
+                sha.update(ByteBuffer.allocate(4).putInt(encoded.length).array());
+                sha.update(encoded);
+            }
+            return sha.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new WSSecurityException(WSSecurityException.FAILURE, "certpath",
+                    new Object[]{e.getMessage()}, e);
+        } catch (CertificateEncodingException e) {
+            throw new WSSecurityException(WSSecurityException.SECURITY_TOKEN_UNAVAILABLE, "encodeError");
+        }
+    }
 }
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.security.keystore;
+
+import org.apache.axiom.om.util.Base64;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.testng.IObjectFactory;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.ObjectFactory;
+import org.testng.annotations.Test;
+import org.wso2.carbon.core.util.KeyStoreManager;
+import org.wso2.carbon.security.util.KeyStoreIndex;
+
+import java.io.InputStream;
+import java.nio.file.Paths;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.when;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.powermock.api.mockito.PowerMockito.spy;
+import static org.powermock.api.mockito.PowerMockito.verifyStatic;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+@PrepareForTest({KeyStoreManager.class, KeyStoreIndex.class})
+public class KeyStoreAdminTest {
+
+    private static final int TENANT_ID = 1;
+    private static final String KEY_STORE_NAME = "truststore.jks";
+
+    private X509Certificate alice;
+    private X509Certificate bob;
+    private KeyStore keyStore;
+    private KeyStoreAdmin keyStoreAdmin;
+
+    @ObjectFactory
+    public IObjectFactory getObjectFactory() {
+        return new org.powermock.modules.testng.PowerMockObjectFactory();
+    }
+
+    @BeforeClass
+    public void setUp() throws Exception {
+
+        System.setProperty("carbon.home", Paths.get(System.getProperty("user.dir"), "target").toString());
+        alice = readCertificate("alice.pem");
+        bob = readCertificate("bob.pem");
+    }
+
+    @BeforeMethod
+    public void setUpMocks() throws Exception {
+
+        keyStore = KeyStore.getInstance("JKS");
+        keyStore.load(null, null);
+        keyStore.setCertificateEntry("alice", alice);
+
+        KeyStoreIndex.invalidate(TENANT_ID, KEY_STORE_NAME);
+        KeyStoreManager keyStoreManager = mock(KeyStoreManager.class);
+        when(keyStoreManager.getKeyStore(anyString())).thenReturn(keyStore);
+        mockStatic(KeyStoreManager.class);
+        when(KeyStoreManager.getInstance(anyInt())).thenReturn(keyStoreManager);
+        // Spied so that the key store is indexed as usual, while the invalidations are recorded.
+        spy(KeyStoreIndex.class);
+
+        keyStoreAdmin = new KeyStoreAdmin(TENANT_ID, null);
+    }
+
+    @Test
+    public void testIndexIsInvalidatedOnImport() throws Exception {
+
+        KeyStoreIndex index = KeyStoreIndex.getIndex(TENANT_ID, KEY_STORE_NAME, keyStore);
+        assertNull(index.getAliasForThumbprint(getThumbprint(bob)));
+
+        String alias = keyStoreAdmin.importCertToStore(Base64.encode(bob.getEncoded()), KEY_STORE_NAME);
+
+        verifyStatic(times(1));
+        KeyStoreIndex.invalidate(TENANT_ID, KEY_STORE_NAME);
+        KeyStoreIndex importedIndex = KeyStoreIndex.getIndex(TENANT_ID, KEY_STORE_NAME, keyStore);
+        assertNotSame(importedIndex, index);
+        assertEquals(importedIndex.getAliasForThumbprint(getThumbprint(bob)), alias);
+    }
+
+    @Test
+    public void testIndexIsInvalidatedOnImportWithFileName() throws Exception {
+
+        KeyStoreIndex index = KeyStoreIndex.getIndex(TENANT_ID, KEY_STORE_NAME, keyStore);
+
+        keyStoreAdmin.importCertToStore("bob.pem", Base64.encode(bob.getEncoded()), KEY_STORE_NAME);
+
+        verifyStatic(times(1));
+        KeyStoreIndex.invalidate(TENANT_ID, KEY_STORE_NAME);
+        KeyStoreIndex importedIndex = KeyStoreIndex.getIndex(TENANT_ID, KEY_STORE_NAME, keyStore);
+        assertNotSame(importedIndex, index);
+        assertEquals(importedIndex.getAliasForThumbprint(getThumbprint(bob)), "bob.pem");
+    }
+
+    @Test
+    public void testIndexIsNotInvalidatedOnImportOfExistingCertificate() throws Exception {
+
+        KeyStoreIndex index = KeyStoreIndex.getIndex(TENANT_ID, KEY_STORE_NAME, keyStore);
+
+        assertNull(keyStoreAdmin.importCertToStore(Base64.encode(alice.getEncoded()), KEY_STORE_NAME));
+
+        verifyStatic(times(0));
+        KeyStoreIndex.invalidate(TENANT_ID, KEY_STORE_NAME);
+        assertSame(KeyStoreIndex.getIndex(TENANT_ID, KEY_STORE_NAME, keyStore), index);
+    }
+
+    @Test
+    public void testIndexIsInvalidatedOnRemove() throws Exception {
+
+        KeyStoreIndex index = KeyStoreIndex.getIndex(TENANT_ID, KEY_STORE_NAME, keyStore);
+        assertEquals(index.getAliasForThumbprint(getThumbprint(alice)), "alice");
+
+        keyStoreAdmin.removeCertFromStore("alice", KEY_STORE_NAME);
+
+        verifyStatic(times(1));
+        KeyStoreIndex.invalidate(TENANT_ID, KEY_STORE_NAME);
+        KeyStoreIndex removedIndex = KeyStoreIndex.getIndex(TENANT_ID, KEY_STORE_NAME, keyStore);
+        assertNotSame(removedIndex, index);
+        assertNull(removedIndex.getAliasForThumbprint(getThumbprint(alice)));
+    }
+
+    @Test
+    public void testIndexIsNotInvalidatedOnRemoveOfMissingCertificate() throws Exception {
+
+        KeyStoreIndex index = KeyStoreIndex.getIndex(TENANT_ID, KEY_STORE_NAME, keyStore);
+
+        keyStoreAdmin.removeCertFromStore("bob", KEY_STORE_NAME);
+
+        verifyStatic(times(0));
+        KeyStoreIndex.invalidate(TENANT_ID, KEY_STORE_NAME);
+        assertSame(KeyStoreIndex.getIndex(TENANT_ID, KEY_STORE_NAME, keyStore), index);
+    }
+
+    @Test
+    public void testCertPathResultsAreDroppedOnImportAndRemove() throws Exception {
+
+        byte[] fingerprint = new byte[]{1, 2, 3};
+        KeyStoreIndex.getIndex(TENANT_ID, KEY_STORE_NAME, keyStore)
+                .addCertPathResult(fingerprint, new Certificate[]{bob}, false, "No trust anchor");
+
+        keyStoreAdmin.importCertToStore(Base64.encode(bob.getEncoded()), KEY_STORE_NAME);
+        KeyStoreIndex importedIndex = KeyStoreIndex.getIndex(TENANT_ID, KEY_STORE_NAME, keyStore);
+        assertNull(importedIndex.getCertPathResult(fingerprint));
+
+        importedIndex.addCertPathResult(fingerprint, new Certificate[]{bob}, true, null);
+        keyStoreAdmin.removeCertFromStore(bob.getSubjectDN().getName(), KEY_STORE_NAME);
+        assertNull(KeyStoreIndex.getIndex(TENANT_ID, KEY_STORE_NAME, keyStore).getCertPathResult(fingerprint));
+    }
+
+    private static X509Certificate readCertificate(String fileName) throws Exception {
+
+        try (InputStream in = KeyStoreAdminTest.class.getResourceAsStream("/certs/" + fileName)) {
+            return (X509Certificate) CertificateFactory.getInstance("X.509").generateCertificate(in);
+        }
+    }
+
+    private static byte[] getThumbprint(X509Certificate cert) throws Exception {
+        return MessageDigest.getInstance("SHA-1").digest(cert.getEncoded());
+    }
+}
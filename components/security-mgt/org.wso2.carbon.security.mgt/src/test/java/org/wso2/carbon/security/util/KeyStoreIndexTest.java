@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.security.util;
+
+import org.powermock.reflect.Whitebox;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+import org.wso2.carbon.security.SecurityConstants;
+
+import java.io.InputStream;
+import java.nio.file.Paths;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class KeyStoreIndexTest {
+
+    private static final int TENANT_ID = 1;
+    private static final String KEY_STORE_NAME = "truststore.jks";
+    private static final byte[] FINGERPRINT = new byte[]{1, 2, 3};
+
+    private X509Certificate alice;
+    private X509Certificate bob;
+    private KeyStore keyStore;
+
+    @BeforeClass
+    public void setUp() throws Exception {
+
+        System.setProperty("carbon.home", Paths.get(System.getProperty("user.dir"), "target").toString());
+        alice = readCertificate("alice.pem");
+        bob = readCertificate("bob.pem");
+    }
+
+    @BeforeMethod
+    public void setUpKeyStore() throws Exception {
+
+        KeyStoreIndex.invalidate(TENANT_ID, KEY_STORE_NAME);
+        keyStore = KeyStore.getInstance("JKS");
+        keyStore.load(null, null);
+        keyStore.setCertificateEntry("alice", alice);
+        keyStore.setCertificateEntry("bob", bob);
+    }
+
+    @Test
+    public void testLookupByThumbprint() throws Exception {
+
+        KeyStoreIndex index = KeyStoreIndex.getIndex(TENANT_ID, KEY_STORE_NAME, keyStore);
+
+        assertEquals(index.getAliasForThumbprint(getThumbprint(alice)), "alice");
+        assertEquals(index.getAliasForThumbprint(getThumbprint(bob)), "bob");
+        assertNull(index.getAliasForThumbprint(new byte[20]));
+    }
+
+    @Test
+    public void testLookupBySKI() throws Exception {
+
+        KeyStoreIndex index = KeyStoreIndex.getIndex(TENANT_ID, KEY_STORE_NAME, keyStore);
+
+        assertEquals(index.getAliasForSKI(ServerCrypto.getSKIBytes(alice)), "alice");
+        assertEquals(index.getAliasForSKI(ServerCrypto.getSKIBytes(bob)), "bob");
+        assertNull(index.getAliasForSKI(new byte[20]));
+    }
+
+    @Test
+    public void testLookupByIssuerSerial() throws Exception {
+
+        KeyStoreIndex index = KeyStoreIndex.getIndex(TENANT_ID, KEY_STORE_NAME, keyStore);
+
+        assertEquals(index.getAliasForIssuerSerial(alice.getIssuerDN().getName(), alice.getSerialNumber()), "alice");
+        // Issuers are compared by their trimmed RDNs.
+        assertEquals(index.getAliasForIssuerSerial("CN=bob,O=WSO2,  L=Colombo,C=LK", bob.getSerialNumber()), "bob");
+        assertNull(index.getAliasForIssuerSerial(alice.getIssuerDN().getName(), bob.getSerialNumber()));
+    }
+
+    @Test
+    public void testLookupBySubjectDN() throws Exception {
+
+        keyStore.setCertificateEntry("alice2", alice);
+        KeyStoreIndex index = KeyStoreIndex.getIndex(TENANT_ID, KEY_STORE_NAME, keyStore);
+
+        assertEquals(index.getAliasesForSubjectDN("CN=alice, O=WSO2, L=Colombo, C=LK").size(), 2);
+        assertEquals(index.getAliasesForSubjectDN("CN=bob,O=WSO2,L=Colombo,C=LK"), Collections.singletonList("bob"));
+        assertEquals(index.getAliasesForSubjectDN("CN=carol, O=WSO2, L=Colombo, C=LK").size(), 0);
+    }
+
+    @Test
+    public void testIndexIsReusedUntilKeyStoreChanges() throws Exception {
+
+        KeyStoreIndex index = KeyStoreIndex.getIndex(TENANT_ID, KEY_STORE_NAME, keyStore);
+        assertSame(KeyStoreIndex.getIndex(TENANT_ID, KEY_STORE_NAME, keyStore), index);
+
+        // Indexed separately for each tenant.
+        assertNotSame(KeyStoreIndex.getIndex(TENANT_ID + 1, KEY_STORE_NAME, keyStore), index);
+        KeyStoreIndex.invalidate(TENANT_ID + 1, KEY_STORE_NAME);
+
+        keyStore.deleteEntry("bob");
+        KeyStoreIndex changedIndex = KeyStoreIndex.getIndex(TENANT_ID, KEY_STORE_NAME, keyStore);
+        assertNotSame(changedIndex, index);
+        assertNull(changedIndex.getAliasForThumbprint(getThumbprint(bob)));
+    }
+
+    @Test
+    public void testIndexIsRebuiltForReloadedKeyStore() throws Exception {
+
+        KeyStoreIndex index = KeyStoreIndex.getIndex(TENANT_ID, KEY_STORE_NAME, keyStore);
+
+        KeyStore reloaded = KeyStore.getInstance("JKS");
+        reloaded.load(null, null);
+        reloaded.setCertificateEntry("alice", alice);
+        reloaded.setCertificateEntry("bob2", bob);
+        KeyStoreIndex reloadedIndex = KeyStoreIndex.getIndex(TENANT_ID, KEY_STORE_NAME, reloaded);
+        assertNotSame(reloadedIndex, index);
+        assertEquals(reloadedIndex.getAliasForThumbprint(getThumbprint(bob)), "bob2");
+    }
+
+    @Test
+    public void testInvalidatedIndexIsRebuilt() throws Exception {
+
+        KeyStoreIndex index = KeyStoreIndex.getIndex(TENANT_ID, KEY_STORE_NAME, keyStore);
+
+        // Modified in place without changing its size, as the key store admin may.
+        keyStore.deleteEntry("bob");
+        keyStore.setCertificateEntry("bob2", bob);
+        assertSame(KeyStoreIndex.getIndex(TENANT_ID, KEY_STORE_NAME, keyStore), index);
+
+        KeyStoreIndex.invalidate(TENANT_ID, KEY_STORE_NAME);
+        KeyStoreIndex rebuiltIndex = KeyStoreIndex.getIndex(TENANT_ID, KEY_STORE_NAME, keyStore);
+        assertNotSame(rebuiltIndex, index);
+        assertEquals(rebuiltIndex.getAliasForThumbprint(getThumbprint(bob)), "bob2");
+        assertEquals(rebuiltIndex.getAliasesForSubjectDN(bob.getSubjectDN().getName()), Arrays.asList("bob2"));
+    }
+
+    @Test
+    public void testCertPathResultIsCached() throws Exception {
+
+        KeyStoreIndex index = KeyStoreIndex.getIndex(TENANT_ID, KEY_STORE_NAME, keyStore);
+        assertNull(index.getCertPathResult(FINGERPRINT));
+
+        index.addCertPathResult(FINGERPRINT, new Certificate[]{alice}, true, null);
+        index.addCertPathResult(new byte[]{4}, new Certificate[]{bob}, false, "Path does not chain with any of the " +
+                "trust anchors");
+
+        assertTrue(index.getCertPathResult(FINGERPRINT).isValid());
+        KeyStoreIndex.CertPathResult invalidResult = index.getCertPathResult(new byte[]{4});
+        assertFalse(invalidResult.isValid());
+        assertEquals(invalidResult.getFailureMessage(), "Path does not chain with any of the trust anchors");
+        assertNull(index.getCertPathResult(new byte[]{5}));
+    }
+
+    @Test
+    public void testValidResultExpiresWithCertificate() throws Exception {
+
+        KeyStoreIndex index = KeyStoreIndex.getIndex(TENANT_ID, KEY_STORE_NAME, keyStore);
+
+        index.addCertPathResult(FINGERPRINT, new Certificate[]{alice, expiringCertificate(200)}, true, null);
+        assertNotNull(index.getCertPathResult(FINGERPRINT));
+
+        Thread.sleep(400);
+        assertNull(index.getCertPathResult(FINGERPRINT));
+    }
+
+    @Test
+    public void testValidResultOfExpiredCertificateIsNotCached() throws Exception {
+
+        KeyStoreIndex index = KeyStoreIndex.getIndex(TENANT_ID, KEY_STORE_NAME, keyStore);
+
+        index.addCertPathResult(FINGERPRINT, new Certificate[]{expiringCertificate(-1000), alice}, true, null);
+        assertNull(index.getCertPathResult(FINGERPRINT));
+
+        // The path stays invalid once a certificate has expired.
+        index.addCertPathResult(FINGERPRINT, new Certificate[]{expiringCertificate(-1000), alice}, false,
+                "Certificate expired");
+        assertFalse(index.getCertPathResult(FINGERPRINT).isValid());
+    }
+
+    @Test
+    public void testCertPathResultsAreDroppedWithIndex() throws Exception {
+
+        KeyStoreIndex index = KeyStoreIndex.getIndex(TENANT_ID, KEY_STORE_NAME, keyStore);
+        index.addCertPathResult(FINGERPRINT, new Certificate[]{alice}, true, null);
+
+        // A trust anchor removed from the key store no longer validates the path.
+        keyStore.deleteEntry("alice");
+        assertNull(KeyStoreIndex.getIndex(TENANT_ID, KEY_STORE_NAME, keyStore).getCertPathResult(FINGERPRINT));
+
+        index = KeyStoreIndex.getIndex(TENANT_ID, KEY_STORE_NAME, keyStore);
+        index.addCertPathResult(FINGERPRINT, new Certificate[]{alice}, true, null);
+        KeyStoreIndex.invalidate(TENANT_ID, KEY_STORE_NAME);
+        assertNull(KeyStoreIndex.getIndex(TENANT_ID, KEY_STORE_NAME, keyStore).getCertPathResult(FINGERPRINT));
+    }
+
+    @Test
+    public void testCertPathResultCacheCapacity() throws Exception {
+
+        KeyStoreIndex index = getIndexWithProperty(SecurityConstants.CERT_PATH_VALIDATION_CACHE_CAPACITY, "2");
+
+        index.addCertPathResult(new byte[]{1}, new Certificate[]{alice}, true, null);
+        index.addCertPathResult(new byte[]{2}, new Certificate[]{alice}, true, null);
+        assertNotNull(index.getCertPathResult(new byte[]{1}));
+
+        // None of the results have expired, so they are all dropped to make room.
+        index.addCertPathResult(new byte[]{3}, new Certificate[]{alice}, true, null);
+        assertNull(index.getCertPathResult(new byte[]{1}));
+        assertNull(index.getCertPathResult(new byte[]{2}));
+        assertNotNull(index.getCertPathResult(new byte[]{3}));
+    }
+
+    @Test
+    public void testCertPathResultsAreNotCachedWhenDisabled() throws Exception {
+
+        KeyStoreIndex index = getIndexWithProperty(SecurityConstants.CERT_PATH_VALIDATION_CACHE_TIMEOUT, "0");
+
+        index.addCertPathResult(FINGERPRINT, new Certificate[]{alice}, true, null);
+        assertNull(index.getCertPathResult(FINGERPRINT));
+    }
+
+    /**
+     * Indexes the key store with a property set in identity.xml.
+     */
+    private KeyStoreIndex getIndexWithProperty(String propertyName, String value) throws Exception {
+
+        Map<String, Object> configuration = new HashMap<>();
+        configuration.put(propertyName, value);
+        Map<String, Object> originalConfiguration = Whitebox.getInternalState(IdentityUtil.class, "configuration");
+        Whitebox.setInternalState(IdentityUtil.class, "configuration", configuration);
+        try {
+            return KeyStoreIndex.getIndex(TENANT_ID, KEY_STORE_NAME, keyStore);
+        } finally {
+            Whitebox.setInternalState(IdentityUtil.class, "configuration", originalConfiguration);
+        }
+    }
+
+    /**
+     * @param validity milliseconds from now the certificate expires in, negative if already expired
+     */
+    private static X509Certificate expiringCertificate(long validity) {
+
+        X509Certificate cert = mock(X509Certificate.class);
+        when(cert.getNotAfter()).thenReturn(new Date(System.currentTimeMillis() + validity));
+        return cert;
+    }
+
+    private static X509Certificate readCertificate(String fileName) throws Exception {
+
+        try (InputStream in = KeyStoreIndexTest.class.getResourceAsStream("/certs/" + fileName)) {
+            return (X509Certificate) CertificateFactory.getInstance("X.509").generateCertificate(in);
+        }
+    }
+
+    private static byte[] getThumbprint(X509Certificate cert) throws Exception {
+        return MessageDigest.getInstance("SHA-1").digest(cert.getEncoded());
+    }
+}
@@ -43,5 +43,8 @@ public class UserMgtConstants {
 
     public static final String APPLICATION_DOMAIN = "Application";
 
+    public static final String BULK_IMPORT_WORKER_COUNT = "UserBulkImport.WorkerCount";
+    public static final String BULK_IMPORT_BATCH_SIZE = "UserBulkImport.BatchSize";
+
     //component xml constants
 }
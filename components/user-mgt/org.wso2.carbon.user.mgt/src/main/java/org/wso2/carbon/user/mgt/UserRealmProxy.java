@@ -28,9 +28,6 @@ import org.wso2.carbon.context.CarbonContext;
 import org.wso2.carbon.identity.core.util.IdentityUtil;
 import org.wso2.carbon.registry.api.Registry;
 import org.wso2.carbon.registry.api.RegistryException;
-import org.wso2.carbon.registry.api.Resource;
-import org.wso2.carbon.registry.core.Collection;
-import org.wso2.carbon.registry.core.RegistryConstants;
 import org.wso2.carbon.user.api.Claim;
 import org.wso2.carbon.user.api.ClaimMapping;
 import org.wso2.carbon.user.api.RealmConfiguration;
@@ -43,6 +40,9 @@ import org.wso2.carbon.user.core.UserStoreManager;
 import org.wso2.carbon.user.core.common.AbstractUserStoreManager;
 import org.wso2.carbon.user.core.util.UserCoreUtil;
 import org.wso2.carbon.user.mgt.bulkimport.BulkImportConfig;
+import org.wso2.carbon.user.mgt.bulkimport.BulkImportFile;
+import org.wso2.carbon.user.mgt.bulkimport.BulkImportStatus;
+import org.wso2.carbon.user.mgt.bulkimport.BulkImportStatusRegistry;
 import org.wso2.carbon.user.mgt.bulkimport.CSVUserBulkImport;
 import org.wso2.carbon.user.mgt.bulkimport.ExcelUserBulkImport;
 import org.wso2.carbon.user.mgt.common.ClaimValue;
@@ -53,9 +53,11 @@ import org.wso2.carbon.user.mgt.common.UserRealmInfo;
 import org.wso2.carbon.user.mgt.common.UserStoreInfo;
 import org.wso2.carbon.user.mgt.internal.UserMgtDSComponent;
 import org.wso2.carbon.user.mgt.permission.ManagementPermissionUtil;
+import org.wso2.carbon.user.mgt.permission.UIPermissionTreeCache;
 import org.wso2.carbon.utils.multitenancy.MultitenantConstants;
 import org.wso2.carbon.utils.multitenancy.MultitenantUtils;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -71,9 +73,6 @@ public class UserRealmProxy {
 
     private static final Log log = LogFactory.getLog(UserRealmProxy.class);
 
-    private static final String APPLICATIONS_PATH = RegistryConstants.PATH_SEPARATOR
-            + CarbonConstants.UI_PERMISSION_NAME + RegistryConstants.PATH_SEPARATOR
-            + "applications";
     private static final String DISAPLAY_NAME_CLAIM = "http://wso2.org/claims/displayName";
     public static final String FALSE = "false";
     public static final String PERMISSION = "/permission";
@@ -1958,54 +1957,13 @@ public class UserRealmProxy {
     public UIPermissionNode getAllUIPermissions(int tenantId)
             throws UserAdminException {
 
-        UIPermissionNode nodeRoot;
-        Collection regRoot;
-        Collection parent = null;
-        Registry tenentRegistry = null;
-
         try {
-            Registry registry = UserMgtDSComponent.getRegistryService().getGovernanceSystemRegistry();
-            if (tenantId == MultitenantConstants.SUPER_TENANT_ID) {
-                if (CarbonContext.getThreadLocalCarbonContext().getTenantId() != MultitenantConstants.SUPER_TENANT_ID) {
-                    log.error("Illegal access attempt");
-                    throw new UserStoreException("Illegal access attempt");
-                }
-                regRoot = (Collection) registry.get(UserMgtConstants.UI_PERMISSION_ROOT);
-                String displayName = regRoot.getProperty(UserMgtConstants.DISPLAY_NAME);
-                nodeRoot = new UIPermissionNode(UserMgtConstants.UI_PERMISSION_ROOT, displayName);
-            } else {
-
-                regRoot = (Collection) registry.get(UserMgtConstants.UI_ADMIN_PERMISSION_ROOT);
-
-                tenentRegistry = UserMgtDSComponent.getRegistryService().getGovernanceSystemRegistry(tenantId);
-                Collection appRoot;
-
-                if (tenentRegistry.resourceExists(APPLICATIONS_PATH)) {
-                    appRoot = (Collection) tenentRegistry.get(APPLICATIONS_PATH);
-                    parent = (Collection) tenentRegistry.newCollection();
-                    parent.setProperty(UserMgtConstants.DISPLAY_NAME, "All Permissions");
-                    parent.setChildren(new String[]{regRoot.getPath(), appRoot.getPath()});
-                }
-
-                String displayName = null;
-
-                if (parent != null) {
-                    displayName = parent.getProperty(UserMgtConstants.DISPLAY_NAME);
-                } else {
-                    displayName = regRoot.getProperty(UserMgtConstants.DISPLAY_NAME);
-                }
-
-                nodeRoot = new UIPermissionNode(UserMgtConstants.UI_ADMIN_PERMISSION_ROOT,
-                        displayName);
+            if (tenantId == MultitenantConstants.SUPER_TENANT_ID &&
+                    CarbonContext.getThreadLocalCarbonContext().getTenantId() != MultitenantConstants.SUPER_TENANT_ID) {
+                log.error("Illegal access attempt");
+                throw new UserStoreException("Illegal access attempt");
             }
-
-            if (parent != null) {
-                buildUIPermissionNode(parent, nodeRoot, registry, tenentRegistry, null, null, null);
-            } else {
-                buildUIPermissionNode(regRoot, nodeRoot, registry, tenentRegistry, null, null, null);
-            }
-
-            return nodeRoot;
+            return UIPermissionTreeCache.getInstance().getPermissionTree(tenantId).toUIPermissionNode();
         } catch (UserStoreException e) {
             // previously logged so logging not needed
             throw new UserAdminException(e.getMessage(), e);
@@ -2017,52 +1975,10 @@ public class UserRealmProxy {
 
     public UIPermissionNode getRolePermissions(String roleName, int tenantId)
             throws UserAdminException {
-        UIPermissionNode nodeRoot;
-        Collection regRoot;
-        Collection parent = null;
-        Registry tenentRegistry = null;
 
         try {
-            Registry registry = UserMgtDSComponent.getRegistryService().getGovernanceSystemRegistry();
-            if (tenantId == MultitenantConstants.SUPER_TENANT_ID) {
-                regRoot = (Collection) registry.get(UserMgtConstants.UI_PERMISSION_ROOT);
-                String displayName = regRoot.getProperty(UserMgtConstants.DISPLAY_NAME);
-                nodeRoot = new UIPermissionNode(UserMgtConstants.UI_PERMISSION_ROOT, displayName);
-            } else {
-
-                regRoot = (Collection) registry.get(UserMgtConstants.UI_ADMIN_PERMISSION_ROOT);
-
-                tenentRegistry = UserMgtDSComponent.getRegistryService().getGovernanceSystemRegistry(tenantId);
-                Collection appRoot;
-
-                if (tenentRegistry.resourceExists(APPLICATIONS_PATH)) {
-                    appRoot = (Collection) tenentRegistry.get(APPLICATIONS_PATH);
-                    parent = (Collection) tenentRegistry.newCollection();
-                    parent.setProperty(UserMgtConstants.DISPLAY_NAME, "All Permissions");
-                    parent.setChildren(new String[]{regRoot.getPath(), appRoot.getPath()});
-                }
-
-                String displayName = null;
-
-                if (parent != null) {
-                    displayName = parent.getProperty(UserMgtConstants.DISPLAY_NAME);
-                } else {
-                    displayName = regRoot.getProperty(UserMgtConstants.DISPLAY_NAME);
-                }
-
-                nodeRoot = new UIPermissionNode(UserMgtConstants.UI_ADMIN_PERMISSION_ROOT,
-                        displayName);
-            }
-
-            if (parent != null) {
-                buildUIPermissionNode(parent, nodeRoot, registry, tenentRegistry,
-                        realm.getAuthorizationManager(), roleName, null);
-            } else {
-                buildUIPermissionNode(regRoot, nodeRoot, registry, tenentRegistry,
-                        realm.getAuthorizationManager(), roleName, null);
-            }
-
-            return nodeRoot;
+            return UIPermissionTreeCache.getInstance().getPermissionTree(tenantId)
+                    .toUIPermissionNode(realm.getAuthorizationManager(), roleName);
         } catch (UserStoreException e) {
             // previously logged so logging not needed
             throw new UserAdminException(e.getMessage(), e);
@@ -2113,34 +2029,89 @@ public class UserRealmProxy {
 
     public void bulkImportUsers(String userStoreDomain, String fileName, InputStream inStream, String defaultPassword)
             throws UserAdminException {
+        BulkImportFile importFile;
         try {
-            BulkImportConfig config = new BulkImportConfig(inStream, fileName);
+            importFile = BulkImportFile.copyOf(inStream);
+        } catch (IOException e) {
+            throw new UserAdminException("Error while reading the bulk import file " + fileName, e);
+        }
+
+        try {
+            BulkImportConfig config = new BulkImportConfig(importFile.openStream(), fileName);
+            config.setFile(importFile.getPath());
             if (defaultPassword != null && defaultPassword.trim().length() > 0) {
                 config.setDefaultPassword(defaultPassword.trim());
             }
             if (StringUtils.isNotEmpty(userStoreDomain)) {
                 config.setUserStoreDomain(userStoreDomain);
             }
+            String workerCount = IdentityUtil.getProperty(UserMgtConstants.BULK_IMPORT_WORKER_COUNT);
+            if (StringUtils.isNotBlank(workerCount)) {
+                config.setWorkerCount(Integer.parseInt(workerCount.trim()));
+            }
+            String batchSize = IdentityUtil.getProperty(UserMgtConstants.BULK_IMPORT_BATCH_SIZE);
+            if (StringUtils.isNotBlank(batchSize)) {
+                config.setBatchSize(Integer.parseInt(batchSize.trim()));
+            }
 
             UserStoreManager userStore = this.realm.getUserStoreManager();
             userStore = userStore.getSecondaryUserStoreManager(userStoreDomain);
 
-            if (fileName.endsWith("csv")) {
-                CSVUserBulkImport csvAdder = new CSVUserBulkImport(config);
-                csvAdder.addUserList(userStore);
-            } else if (fileName.endsWith("xls") || fileName.endsWith("xlsx")) {
-                ExcelUserBulkImport excelAdder = new ExcelUserBulkImport(config);
-                excelAdder.addUserList(userStore);
-            } else {
-                throw new UserAdminException("Unsupported format");
+            BulkImportStatus status = new BulkImportStatus(fileName, userStoreDomain, importFile.getSize(),
+                    importFile.getDigest());
+            BulkImportStatus previous = BulkImportStatusRegistry.getInstance().register(getTenantId(), status);
+            if (previous != null && previous.isResumableBy(status)) {
+                // Rows up to the checkpoint of the failed run of the same content were already handled, so do not
+                // import them again.
+                config.setResumeFromRow(previous.getCheckpoint());
+                if (log.isDebugEnabled()) {
+                    log.debug("Resuming bulk import of " + fileName + " from row " + previous.getCheckpoint());
+                }
+            }
+
+            try {
+                if (fileName.endsWith("csv")) {
+                    CSVUserBulkImport csvAdder = new CSVUserBulkImport(config);
+                    csvAdder.addUserList(userStore, status);
+                } else if (fileName.endsWith("xls") || fileName.endsWith("xlsx")) {
+                    ExcelUserBulkImport excelAdder = new ExcelUserBulkImport(config);
+                    excelAdder.addUserList(userStore, status);
+                } else {
+                    throw new UserAdminException("Unsupported format");
+                }
+            } finally {
+                if (status.getState() == BulkImportStatus.State.RUNNING) {
+                    status.finish(BulkImportStatus.State.FAILED);
+                }
             }
         } catch (UserStoreException e) {
             // previously logged so logging not needed
             throw new UserAdminException(e.getMessage(), e);
+        } catch (NumberFormatException e) {
+            throw new UserAdminException("Invalid bulk import configuration : " + e.getMessage(), e);
+        } catch (IOException e) {
+            throw new UserAdminException("Error while reading the bulk import file " + fileName, e);
+        } finally {
+            try {
+                importFile.close();
+            } catch (IOException e) {
+                log.warn("Unable to delete the temporary bulk import file of " + fileName, e);
+            }
         }
 
     }
 
+    /**
+     * Returns the progress of the latest bulk import of the given file into the given user store domain of the
+     * current tenant, or null if no such import has been run on this node.
+     */
+    public BulkImportStatus getBulkImportStatus(String userStoreDomain, String fileName) {
+        return BulkImportStatusRegistry.getInstance().getStatus(getTenantId(), userStoreDomain, fileName);
+    }
+
+    private int getTenantId() {
+        return CarbonContext.getThreadLocalCarbonContext().getTenantId();
+    }
 
     public void changePasswordByUser(String userName, String oldPassword, String newPassword)
             throws UserAdminException {
@@ -2172,98 +2143,6 @@ public class UserRealmProxy {
         }
     }
 
-    private void buildUIPermissionNode(Collection parent, UIPermissionNode parentNode,
-                                       Registry registry, Registry tenantRegistry, AuthorizationManager authMan,
-                                       String roleName, String userName)
-            throws RegistryException, UserStoreException {
-
-        boolean isSelected = false;
-        if (roleName != null) {
-            isSelected = authMan.isRoleAuthorized(roleName, parentNode.getResourcePath(),
-                    UserMgtConstants.EXECUTE_ACTION);
-        } else if (userName != null) {
-            isSelected = authMan.isUserAuthorized(userName, parentNode.getResourcePath(),
-                    UserMgtConstants.EXECUTE_ACTION);
-        }
-        if (isSelected) {
-            buildUIPermissionNodeAllSelected(parent, parentNode, registry, tenantRegistry);
-            parentNode.setSelected(true);
-        } else {
-            buildUIPermissionNodeNotAllSelected(parent, parentNode, registry, tenantRegistry,
-                    authMan, roleName, userName);
-        }
-    }
-
-    private void buildUIPermissionNodeAllSelected(Collection parent, UIPermissionNode parentNode,
-                                                  Registry registry, Registry tenantRegistry) throws RegistryException,
-            UserStoreException {
-
-        String[] children = parent.getChildren();
-        UIPermissionNode[] childNodes = new UIPermissionNode[children.length];
-        for (int i = 0; i < children.length; i++) {
-            String child = children[i];
-            Resource resource = null;
-
-            if (registry.resourceExists(child)) {
-                resource = registry.get(child);
-            } else if (tenantRegistry != null) {
-                resource = tenantRegistry.get(child);
-            } else {
-                throw new RegistryException("Permission resource not found in the registry.");
-            }
-
-            childNodes[i] = getUIPermissionNode(resource, true);
-            if (resource instanceof Collection) {
-                buildUIPermissionNodeAllSelected((Collection) resource, childNodes[i], registry,
-                        tenantRegistry);
-            }
-        }
-        parentNode.setNodeList(childNodes);
-    }
-
-    private void buildUIPermissionNodeNotAllSelected(Collection parent, UIPermissionNode parentNode,
-                                                     Registry registry, Registry tenantRegistry,
-                                                     AuthorizationManager authMan, String roleName, String userName)
-            throws RegistryException, UserStoreException {
-
-        String[] children = parent.getChildren();
-        UIPermissionNode[] childNodes = new UIPermissionNode[children.length];
-
-        for (int i = 0; i < children.length; i++) {
-            String child = children[i];
-            Resource resource = null;
-
-            if (tenantRegistry != null && child.startsWith("/permission/applications")) {
-                resource = tenantRegistry.get(child);
-            } else if (registry.resourceExists(child)) {
-                resource = registry.get(child);
-            } else {
-                throw new RegistryException("Permission resource not found in the registry.");
-            }
-
-            boolean isSelected = false;
-            if (roleName != null) {
-                isSelected = authMan.isRoleAuthorized(roleName, child,
-                        UserMgtConstants.EXECUTE_ACTION);
-            } else if (userName != null) {
-                isSelected = authMan.isUserAuthorized(userName, child,
-                        UserMgtConstants.EXECUTE_ACTION);
-            }
-            childNodes[i] = getUIPermissionNode(resource, isSelected);
-            if (resource instanceof Collection) {
-                buildUIPermissionNodeNotAllSelected((Collection) resource, childNodes[i],
-                        registry, tenantRegistry, authMan, roleName, userName);
-            }
-        }
-        parentNode.setNodeList(childNodes);
-    }
-
-    private UIPermissionNode getUIPermissionNode(Resource resource,
-                                                 boolean isSelected) throws RegistryException {
-        String displayName = resource.getProperty(UserMgtConstants.DISPLAY_NAME);
-        return new UIPermissionNode(resource.getPath(), displayName, isSelected);
-    }
-
     /**
      * Gets logged in user of the server
      *
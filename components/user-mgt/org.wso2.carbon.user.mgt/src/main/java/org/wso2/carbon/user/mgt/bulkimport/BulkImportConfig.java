@@ -19,13 +19,21 @@
 package org.wso2.carbon.user.mgt.bulkimport;
 
 import java.io.InputStream;
+import java.nio.file.Path;
 
 public class BulkImportConfig {
 
+    public static final int DEFAULT_WORKER_COUNT = 4;
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
     private InputStream inStream;
+    private Path file;
     private String userStoreDomain;
     private String fileName;
     private String defaultPassword;
+    private int workerCount = DEFAULT_WORKER_COUNT;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int resumeFromRow;
 
     public BulkImportConfig(InputStream inStream, String fileName) {
         this.inStream = inStream;
@@ -63,4 +71,44 @@ public class BulkImportConfig {
     public void setInStream(InputStream inStream) {
         this.inStream = inStream;
     }
+
+    /**
+     * File the input stream was opened from, if the upload is already on disk. Readers that need random access to
+     * the content, such as the XLSX reader, read it from this file instead of copying the stream to disk again.
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    public void setFile(Path file) {
+        this.file = file;
+    }
+
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    public void setWorkerCount(int workerCount) {
+        this.workerCount = workerCount;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Rows up to and including this (1-based, header excluded) row number are skipped. Used to resume an import
+     * from the checkpoint of a previous, incomplete run.
+     */
+    public int getResumeFromRow() {
+        return resumeFromRow;
+    }
+
+    public void setResumeFromRow(int resumeFromRow) {
+        this.resumeFromRow = resumeFromRow;
+    }
 }
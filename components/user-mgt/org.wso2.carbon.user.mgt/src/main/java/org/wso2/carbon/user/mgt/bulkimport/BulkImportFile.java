@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2018 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.wso2.carbon.user.mgt.bulkimport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * Uploaded bulk import file, spooled to a temporary file so that its size and digest are known before the import
+ * starts. An import is only resumed from the checkpoint of a failed import of the same content.
+ */
+public class BulkImportFile implements Closeable {
+
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    private final Path path;
+    private final long size;
+    private final String digest;
+
+    private BulkImportFile(Path path, long size, String digest) {
+        this.path = path;
+        this.size = size;
+        this.digest = digest;
+    }
+
+    /**
+     * Copies the given stream to a temporary file, and closes it.
+     */
+    public static BulkImportFile copyOf(InputStream inStream) throws IOException {
+        MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(DIGEST_ALGORITHM + " is not supported by the JVM", e);
+        }
+
+        // Created readable by the owner only, since the file may hold user passwords.
+        Path path = Files.createTempFile("user-bulk-import", null);
+        try (InputStream digestStream = new DigestInputStream(inStream, messageDigest)) {
+            long size = Files.copy(digestStream, path, StandardCopyOption.REPLACE_EXISTING);
+            return new BulkImportFile(path, size, Base64.getEncoder().encodeToString(messageDigest.digest()));
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public String getDigest() {
+        return digest;
+    }
+
+    /**
+     * Path of the temporary file, for readers that need random access to the content.
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    public InputStream openStream() throws IOException {
+        return Files.newInputStream(path);
+    }
+
+    /**
+     * Deletes the temporary file.
+     */
+    @Override
+    public void close() throws IOException {
+        Files.deleteIfExists(path);
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2018 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.wso2.carbon.user.mgt.bulkimport;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Progress of a single bulk user import. Counters are updated concurrently by the import workers and can be read
+ * at any time while the import is running.
+ */
+public class BulkImportStatus {
+
+    /**
+     * An import is COMPLETED once every row has been read and processed, even if some of the rows could not be
+     * added. It is FAILED if it stopped before reading the whole file, in which case it can be resumed.
+     */
+    public enum State {
+        RUNNING, COMPLETED, FAILED
+    }
+
+    private static final int MAX_ROW_ERRORS = 1000;
+
+    private final String fileName;
+    private final String userStoreDomain;
+    private final long contentSize;
+    private final String contentDigest;
+    private final long startTime;
+    private volatile long endTime;
+    private volatile State state = State.RUNNING;
+    private volatile int checkpoint;
+    private volatile String lastError = "UNKNOWN";
+
+    private final AtomicInteger readCount = new AtomicInteger();
+    private final AtomicInteger successCount = new AtomicInteger();
+    private final AtomicInteger failCount = new AtomicInteger();
+    private final AtomicInteger duplicateCount = new AtomicInteger();
+    private final LinkedList<String> rowErrors = new LinkedList<String>();
+
+    public BulkImportStatus(String fileName, String userStoreDomain) {
+        this(fileName, userStoreDomain, -1, null);
+    }
+
+    /**
+     * @param contentSize   Size of the imported file in bytes
+     * @param contentDigest Digest of the imported file, see {@link BulkImportFile#getDigest()}
+     */
+    public BulkImportStatus(String fileName, String userStoreDomain, long contentSize, String contentDigest) {
+        this.fileName = fileName;
+        this.userStoreDomain = userStoreDomain;
+        this.contentSize = contentSize;
+        this.contentDigest = contentDigest;
+        this.startTime = System.currentTimeMillis();
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public String getUserStoreDomain() {
+        return userStoreDomain;
+    }
+
+    public long getContentSize() {
+        return contentSize;
+    }
+
+    public String getContentDigest() {
+        return contentDigest;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public long getEndTime() {
+        return endTime;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Returns the highest row number up to which every row has been processed. An import that did not complete can
+     * be resumed from this row with {@link BulkImportConfig#setResumeFromRow(int)}.
+     */
+    public int getCheckpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * Returns whether the given import can be resumed from the checkpoint of this import, which is the case if this
+     * import failed and the given import is of the same content. A corrected file uploaded again under the same name
+     * is imported from the first row.
+     */
+    public boolean isResumableBy(BulkImportStatus status) {
+        return state == State.FAILED && contentDigest != null && contentSize == status.contentSize
+                && contentDigest.equals(status.contentDigest);
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public int getReadCount() {
+        return readCount.get();
+    }
+
+    public int getSuccessCount() {
+        return successCount.get();
+    }
+
+    public int getFailCount() {
+        return failCount.get();
+    }
+
+    public int getDuplicateCount() {
+        return duplicateCount.get();
+    }
+
+    /**
+     * Returns the most recent per row errors, in the form "row &lt;n&gt; - &lt;username&gt; : &lt;error&gt;".
+     */
+    public List<String> getRowErrors() {
+        synchronized (rowErrors) {
+            return new ArrayList<String>(rowErrors);
+        }
+    }
+
+    void rowRead() {
+        readCount.incrementAndGet();
+    }
+
+    void rowSucceeded() {
+        successCount.incrementAndGet();
+    }
+
+    void rowDuplicated(int rowNumber, String userName) {
+        duplicateCount.incrementAndGet();
+        addRowError(rowNumber, userName, "Duplicate user");
+    }
+
+    void rowFailed(int rowNumber, String userName, String error) {
+        failCount.incrementAndGet();
+        lastError = error;
+        addRowError(rowNumber, userName, error);
+    }
+
+    void setCheckpoint(int checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    void finish(State state) {
+        this.endTime = System.currentTimeMillis();
+        this.state = state;
+    }
+
+    private void addRowError(int rowNumber, String userName, String error) {
+        synchronized (rowErrors) {
+            if (rowErrors.size() >= MAX_ROW_ERRORS) {
+                rowErrors.removeFirst();
+            }
+            rowErrors.add("row " + rowNumber + " - " + userName + " : " + error);
+        }
+    }
+}
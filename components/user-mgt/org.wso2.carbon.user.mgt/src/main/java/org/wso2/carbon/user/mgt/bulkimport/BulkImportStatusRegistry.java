@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2018 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.wso2.carbon.user.mgt.bulkimport;
+
+import org.wso2.carbon.user.mgt.common.UserAdminException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the status of the latest bulk import of each file, per tenant and user store domain, so that progress can
+ * be queried while an import is running and an incomplete import can be resumed from its checkpoint. Finished
+ * imports are dropped after a retention period, and the oldest finished imports once the registry is full.
+ */
+public class BulkImportStatusRegistry {
+
+    private static final long DEFAULT_RETENTION = TimeUnit.HOURS.toMillis(24);
+    private static final int DEFAULT_CAPACITY = 1000;
+
+    private static final BulkImportStatusRegistry instance =
+            new BulkImportStatusRegistry(DEFAULT_RETENTION, DEFAULT_CAPACITY);
+
+    private final ConcurrentMap<String, BulkImportStatus> statuses = new ConcurrentHashMap<String, BulkImportStatus>();
+    private final long retentionInMillis;
+    private final int capacity;
+
+    BulkImportStatusRegistry(long retentionInMillis, int capacity) {
+        this.retentionInMillis = retentionInMillis;
+        this.capacity = capacity;
+    }
+
+    public static BulkImportStatusRegistry getInstance() {
+        return instance;
+    }
+
+    public BulkImportStatus getStatus(int tenantId, String userStoreDomain, String fileName) {
+        BulkImportStatus status = statuses.get(getKey(tenantId, userStoreDomain, fileName));
+        if (status != null && isExpired(status, System.currentTimeMillis())) {
+            return null;
+        }
+        return status;
+    }
+
+    /**
+     * Registers a new import of the given file. Fails if an import of the same file is already running.
+     *
+     * @return the status of the previous import of the same file, or null if there was none
+     */
+    public BulkImportStatus register(int tenantId, BulkImportStatus status) throws UserAdminException {
+        evictFinished();
+        String key = getKey(tenantId, status.getUserStoreDomain(), status.getFileName());
+        while (true) {
+            BulkImportStatus previous = statuses.putIfAbsent(key, status);
+            if (previous == null) {
+                return null;
+            }
+            if (previous.getState() == BulkImportStatus.State.RUNNING) {
+                throw new UserAdminException("An import of " + status.getFileName() + " is already running");
+            }
+            if (statuses.replace(key, previous, status)) {
+                return isExpired(previous, System.currentTimeMillis()) ? null : previous;
+            }
+        }
+    }
+
+    /**
+     * Drops the finished imports older than the retention period and, if the registry is still over its capacity,
+     * the finished imports which ended first. Running imports are never dropped.
+     */
+    private void evictFinished() {
+        long now = System.currentTimeMillis();
+        List<Map.Entry<String, BulkImportStatus>> finished = new ArrayList<Map.Entry<String, BulkImportStatus>>();
+        for (Map.Entry<String, BulkImportStatus> entry : statuses.entrySet()) {
+            if (isExpired(entry.getValue(), now)) {
+                statuses.remove(entry.getKey(), entry.getValue());
+            } else if (entry.getValue().getState() != BulkImportStatus.State.RUNNING) {
+                finished.add(entry);
+            }
+        }
+
+        int excess = statuses.size() - capacity + 1;
+        if (excess <= 0) {
+            return;
+        }
+        Collections.sort(finished, new Comparator<Map.Entry<String, BulkImportStatus>>() {
+            @Override
+            public int compare(Map.Entry<String, BulkImportStatus> o1, Map.Entry<String, BulkImportStatus> o2) {
+                return Long.compare(o1.getValue().getEndTime(), o2.getValue().getEndTime());
+            }
+        });
+        for (int i = 0; i < excess && i < finished.size(); i++) {
+            statuses.remove(finished.get(i).getKey(), finished.get(i).getValue());
+        }
+    }
+
+    private boolean isExpired(BulkImportStatus status, long now) {
+        return status.getState() != BulkImportStatus.State.RUNNING && status.getEndTime() + retentionInMillis < now;
+    }
+
+    private String getKey(int tenantId, String userStoreDomain, String fileName) {
+        return tenantId + ":" + userStoreDomain + ":" + fileName;
+    }
+}
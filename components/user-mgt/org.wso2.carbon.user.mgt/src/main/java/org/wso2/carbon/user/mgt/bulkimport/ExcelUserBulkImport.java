@@ -21,19 +21,33 @@ package org.wso2.carbon.user.mgt.bulkimport;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
 import org.apache.poi.poifs.filesystem.POIFSFileSystem;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.wso2.carbon.identity.core.util.IdentityIOStreamUtils;
-import org.wso2.carbon.CarbonConstants;
 import org.wso2.carbon.user.core.UserStoreManager;
-import org.wso2.carbon.user.core.util.UserCoreUtil;
 import org.wso2.carbon.user.mgt.common.UserAdminException;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
 
+import java.io.File;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import javax.xml.XMLConstants;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
 
 public class ExcelUserBulkImport {
 
@@ -47,66 +61,94 @@ public class ExcelUserBulkImport {
     }
 
     public void addUserList(UserStoreManager userStore) throws UserAdminException {
-        try {
-            Workbook wb = this.createWorkbook();
-            Sheet sheet = wb.getSheet(wb.getSheetName(0));
-            String domain = config.getUserStoreDomain();
+        addUserList(userStore, new BulkImportStatus(config.getFileName(), config.getUserStoreDomain()));
+    }
 
-            if (sheet == null || sheet.getLastRowNum() == -1) {
-                throw new UserAdminException("The first sheet is empty");
-            }
-            int limit = sheet.getLastRowNum();
-            boolean isDuplicate = false;
-            boolean fail = false;
-            boolean success = false;
-            String lastError = "UNKNOWN";
-            for (int i = 1; i < limit + 1; i++) {
-                Row row = sheet.getRow(i);
-                Cell cell = row.getCell(0);
-                String userName = cell.getStringCellValue();
-
-                int index;
-                index = userName.indexOf(CarbonConstants.DOMAIN_SEPARATOR);
-                if (index > 0) {
-                    String domainFreeName = userName.substring(index + 1);
-                    userName = UserCoreUtil.addDomainToName(domainFreeName, domain);
-                } else {
-                    userName = UserCoreUtil.addDomainToName(userName, domain);
-                }
-
-                if (userName != null && userName.trim().length() > 0) {
-                    try {
-                        if (!userStore.isExistingUser(userName)) {
-                            userStore.addUser(userName, null, null, null, null, true);
-                            success = true;
-                        } else {
-                            isDuplicate = true;
-                        }
-                    } catch (Exception e) {
-                        if (log.isDebugEnabled()) {
-                            log.debug(e);
-                        }
-                        lastError = e.getMessage();
-                        fail = true;
-                    }
-                }
+    /**
+     * Feeds the first column of the first sheet into a {@link UserBulkImportEngine}, reporting progress through
+     * the given status. XLSX files are read with the SAX based event API so that the sheet is never materialized
+     * in memory; the binary XLS format is still read through a {@link Workbook}.
+     */
+    public void addUserList(UserStoreManager userStore, BulkImportStatus status) throws UserAdminException {
+        UserBulkImportEngine engine = new UserBulkImportEngine(config, userStore, status);
+        try {
+            if (config.getFileName().endsWith(".xlsx")) {
+                streamWorkbook(engine);
+            } else {
+                readWorkbook(engine);
             }
+        } catch (UserAdminException e) {
+            engine.abort();
+            throw e;
+        } catch (RuntimeException e) {
+            engine.abort();
+            log.error("Bulk import failed: " + e.getMessage(), e);
+            throw new UserAdminException("Bulk import failed: " + e.getMessage(), e);
+        }
+        engine.finish();
+    }
 
-            if (fail && success) {
-                throw new UserAdminException("Error occurs while importing user names. " +
-                        "Some user names were successfully imported. Some were not. Last error was : " + lastError);
+    private void readWorkbook(UserBulkImportEngine engine) throws UserAdminException {
+        Workbook wb = this.createWorkbook();
+        Sheet sheet = wb.getSheet(wb.getSheetName(0));
+
+        if (sheet == null || sheet.getLastRowNum() == -1) {
+            throw new UserAdminException("The first sheet is empty");
+        }
+        int limit = sheet.getLastRowNum();
+        for (int i = 1; i < limit + 1; i++) {
+            Row row = sheet.getRow(i);
+            if (row == null || row.getCell(0) == null) {
+                continue;
             }
+            Cell cell = row.getCell(0);
+            engine.addRow(i, new String[]{cell.getStringCellValue()});
+        }
+    }
 
-            if (fail && !success) {
-                throw new UserAdminException("Error occurs while importing user names. " +
-                        "All user names were not imported. Last error was : " + lastError);
+    private void streamWorkbook(final UserBulkImportEngine engine) throws UserAdminException {
+        File spoolFile = null;
+        OPCPackage pkg = null;
+        InputStream sheetStream = null;
+        try {
+            // OPCPackage keeps the whole zip in memory when opened from a stream, so it is read from a file. The
+            // upload is only spooled to disk here when it is not there already.
+            File file;
+            if (config.getFile() != null) {
+                file = config.getFile().toFile();
+            } else {
+                spoolFile = File.createTempFile("user-bulk-import", ".xlsx");
+                Files.copy(config.getInStream(), spoolFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                file = spoolFile;
             }
-            if (isDuplicate) {
-                throw new UserAdminException("Detected duplicate user names. " +
-                        "Failed to import duplicate users. Non-duplicate user names were successfully imported.");
+            pkg = OPCPackage.open(file.getPath(), PackageAccess.READ);
+
+            XSSFReader xssfReader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            Iterator<InputStream> sheets = xssfReader.getSheetsData();
+            if (!sheets.hasNext()) {
+                throw new UserAdminException("The first sheet is empty");
             }
+            sheetStream = sheets.next();
+
+            XMLReader parser = createParser();
+            parser.setContentHandler(new XSSFSheetXMLHandler(xssfReader.getStylesTable(), strings,
+                    new FirstColumnHandler(engine), false));
+            parser.parse(new InputSource(sheetStream));
         } catch (UserAdminException e) {
             throw e;
+        } catch (Exception e) {
+            log.error("Bulk import failed: " + e.getMessage(), e);
+            throw new UserAdminException("Bulk import failed: " + e.getMessage(), e);
+        } finally {
+            IdentityIOStreamUtils.closeInputStream(sheetStream);
+            IdentityIOStreamUtils.closeInputStream(config.getInStream());
+            if (pkg != null) {
+                pkg.revert();
+            }
+            if (spoolFile != null && !spoolFile.delete()) {
+                log.warn("Unable to delete temporary bulk import file " + spoolFile.getPath());
+            }
         }
     }
 
@@ -122,12 +164,60 @@ public class ExcelUserBulkImport {
                 wb = new HSSFWorkbook(fs);
             }
         } catch (Exception e) {
-            log.error("Bulk import failed" + e.getMessage(), e);
-            throw new UserAdminException("Bulk import failed" + e.getMessage(), e);
+            log.error("Bulk import failed: " + e.getMessage(), e);
+            throw new UserAdminException("Bulk import failed: " + e.getMessage(), e);
         } finally {
             IdentityIOStreamUtils.closeInputStream(ins);
         }
         return wb;
     }
 
+    private XMLReader createParser() throws ParserConfigurationException, SAXException {
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+        factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+        factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+        factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+        return factory.newSAXParser().getXMLReader();
+    }
+
+    /**
+     * Pushes the value of the first column of every row, except the header row, to the import engine.
+     */
+    private static class FirstColumnHandler implements XSSFSheetXMLHandler.SheetContentsHandler {
+
+        private final UserBulkImportEngine engine;
+        private int rowNumber;
+        private String userName;
+
+        private FirstColumnHandler(UserBulkImportEngine engine) {
+            this.engine = engine;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            this.rowNumber = rowNum;
+            this.userName = null;
+        }
+
+        @Override
+        public void endRow() {
+            if (rowNumber > 0 && userName != null) {
+                engine.addRow(rowNumber, new String[]{userName});
+            }
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue) {
+            if (cellReference != null && new CellReference(cellReference).getCol() == 0) {
+                userName = formattedValue;
+            }
+        }
+
+        @Override
+        public void headerFooter(String text, boolean isHeader, String tagName) {
+            // Headers and footers do not carry user data.
+        }
+    }
 }
@@ -0,0 +1,292 @@
+/*
+ * Copyright (c) 2018 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.wso2.carbon.user.mgt.bulkimport;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.CarbonConstants;
+import org.wso2.carbon.context.PrivilegedCarbonContext;
+import org.wso2.carbon.user.core.UserStoreException;
+import org.wso2.carbon.user.core.UserStoreManager;
+import org.wso2.carbon.user.core.util.UserCoreUtil;
+import org.wso2.carbon.user.mgt.common.UserAdminException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adds the rows read by a bulk import reader to a user store. Rows are pushed one at a time, grouped into batches
+ * and processed on a bounded worker pool, so that the reader only holds a few batches in memory at any point. When
+ * all workers are busy and the queue is full the reading thread processes the batch itself, which throttles the
+ * reader to the speed of the user store.
+ */
+public class UserBulkImportEngine {
+
+    private static final Log log = LogFactory.getLog(UserBulkImportEngine.class);
+
+    private final BulkImportConfig config;
+    private final UserStoreManager userStore;
+    private final BulkImportStatus status;
+    private final ThreadPoolExecutor executor;
+
+    private final String tenantDomain;
+    private final int tenantId;
+    private final String username;
+
+    private final Set<String> seenUsers = ConcurrentHashMap.newKeySet();
+    private final ConcurrentSkipListSet<Integer> batchesInFlight = new ConcurrentSkipListSet<Integer>();
+    private List<Row> batch;
+    private int lastQueuedRow;
+
+    public UserBulkImportEngine(BulkImportConfig config, UserStoreManager userStore, BulkImportStatus status) {
+        this.config = config;
+        this.userStore = userStore;
+        this.status = status;
+        this.lastQueuedRow = config.getResumeFromRow();
+        this.status.setCheckpoint(lastQueuedRow);
+
+        int workerCount = Math.max(1, config.getWorkerCount());
+        this.executor = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(workerCount * 2), new ThreadPoolExecutor.CallerRunsPolicy());
+
+        PrivilegedCarbonContext carbonContext = PrivilegedCarbonContext.getThreadLocalCarbonContext();
+        this.tenantDomain = carbonContext.getTenantDomain();
+        this.tenantId = carbonContext.getTenantId();
+        this.username = carbonContext.getUsername();
+        this.batch = new ArrayList<Row>(Math.max(1, config.getBatchSize()));
+    }
+
+    public BulkImportStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * Queues a row for import. Rows must be added by a single thread, in increasing row number order.
+     *
+     * @param rowNumber 1-based row number, excluding the header row
+     * @param line      user name followed by the optional password and claim columns
+     */
+    public void addRow(int rowNumber, String[] line) {
+        if (rowNumber <= config.getResumeFromRow() || line == null || line.length == 0) {
+            return;
+        }
+        status.rowRead();
+        batch.add(new Row(rowNumber, line));
+        if (batch.size() >= Math.max(1, config.getBatchSize())) {
+            submitBatch();
+        }
+    }
+
+    /**
+     * Waits for all queued rows to be processed and reports the outcome of the import.
+     *
+     * @throws UserAdminException if some of the rows were not imported
+     */
+    public void finish() throws UserAdminException {
+        try {
+            if (!batch.isEmpty()) {
+                submitBatch();
+            }
+            executor.shutdown();
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Waiting for bulk import of " + status.getFileName() + " to complete. Imported "
+                            + status.getSuccessCount() + " of " + status.getReadCount() + " users so far.");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abort();
+            throw new UserAdminException("Interrupted while importing users", e);
+        }
+
+        log.info("Success count: " + status.getSuccessCount() + ", Fail count: " + status.getFailCount()
+                + ", Duplicate count: " + status.getDuplicateCount());
+
+        boolean fail = status.getFailCount() > 0;
+        boolean success = status.getSuccessCount() > 0;
+        status.finish(BulkImportStatus.State.COMPLETED);
+
+        if (fail && success) {
+            throw new UserAdminException("Error occurs while importing user names. " +
+                    "Success count: " + status.getSuccessCount() + ", Fail count: " + status.getFailCount() +
+                    ", Duplicate count: " + status.getDuplicateCount() + ". Last error was : " +
+                    status.getLastError());
+        }
+        if (fail) {
+            throw new UserAdminException("Error occurs while importing user names. " +
+                    "All user names were not imported. Last error was : " + status.getLastError());
+        }
+        if (status.getDuplicateCount() > 0) {
+            throw new UserAdminException("Detected " + status.getDuplicateCount() + " duplicate user names. " +
+                    "Failed to import duplicate users. Non-duplicate user names were successfully imported.");
+        }
+    }
+
+    /**
+     * Stops the import after reading failed. Rows that are already queued are still processed so that the
+     * checkpoint stays accurate.
+     */
+    public void abort() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        status.finish(BulkImportStatus.State.FAILED);
+    }
+
+    private void submitBatch() {
+        final List<Row> rows = batch;
+        final int firstRow = rows.get(0).rowNumber;
+        batch = new ArrayList<Row>(rows.size());
+
+        batchesInFlight.add(firstRow);
+        synchronized (this) {
+            lastQueuedRow = rows.get(rows.size() - 1).rowNumber;
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    PrivilegedCarbonContext.startTenantFlow();
+                    PrivilegedCarbonContext carbonContext = PrivilegedCarbonContext.getThreadLocalCarbonContext();
+                    carbonContext.setTenantDomain(tenantDomain);
+                    carbonContext.setTenantId(tenantId);
+                    carbonContext.setUsername(username);
+                    for (Row row : rows) {
+                        importRow(row);
+                    }
+                } finally {
+                    PrivilegedCarbonContext.endTenantFlow();
+                    batchesInFlight.remove(firstRow);
+                    updateCheckpoint();
+                }
+            }
+        });
+    }
+
+    private synchronized void updateCheckpoint() {
+        Integer oldestInFlight = batchesInFlight.isEmpty() ? null : batchesInFlight.first();
+        int checkpoint = oldestInFlight == null ? lastQueuedRow : oldestInFlight - 1;
+        if (checkpoint > status.getCheckpoint()) {
+            status.setCheckpoint(checkpoint);
+        }
+    }
+
+    private void importRow(Row row) {
+        String userName = row.line[0];
+        if (userName == null || userName.trim().length() == 0) {
+            return;
+        }
+
+        String domain = config.getUserStoreDomain();
+        int index = userName.indexOf(CarbonConstants.DOMAIN_SEPARATOR);
+        if (index > 0) {
+            userName = UserCoreUtil.addDomainToName(userName.substring(index + 1), domain);
+        } else {
+            userName = UserCoreUtil.addDomainToName(userName, domain);
+        }
+
+        try {
+            // Duplicates within the file are caught here without a user store round trip.
+            if (!seenUsers.add(userName) || userStore.isExistingUser(userName)) {
+                status.rowDuplicated(row.rowNumber, userName);
+                log.error("User import unsuccessful - Username : " + userName + " - Error: Duplicate user");
+                return;
+            }
+            if (row.line.length == 1) {
+                userStore.addUser(userName, null, null, null, null, true);
+            } else {
+                addUserWithClaims(userName, row.line);
+            }
+            status.rowSucceeded();
+            if (log.isDebugEnabled()) {
+                log.debug("User import successful - Username : " + userName);
+            }
+        } catch (UserStoreException | UserAdminException e) {
+            if (log.isDebugEnabled()) {
+                log.debug(e);
+            }
+            // The user was not added, so a later row of the same user, or the row fixed in a resumed import, is
+            // not reported as a duplicate.
+            seenUsers.remove(userName);
+            status.rowFailed(row.rowNumber, userName, e.getMessage());
+            log.error("User import unsuccessful - Username : " + userName + " - Error: " + e.getMessage());
+        } catch (RuntimeException e) {
+            seenUsers.remove(userName);
+            status.rowFailed(row.rowNumber, userName, e.getMessage());
+            log.error("User import unsuccessful - Username : " + userName, e);
+        }
+    }
+
+    private void addUserWithClaims(String username, String[] line) throws UserStoreException, UserAdminException {
+        String roleString = null;
+        String[] roles = null;
+        String password = line[1];
+        Map<String, String> claims = new HashMap<String, String>();
+        for (int i = 2; i < line.length; i++) {
+            if (line[i] != null && !line[i].isEmpty()) {
+                String[] claimStrings = line[i].split("=");
+                if (claimStrings.length != 2) {
+                    throw new UserAdminException("Claims and values are not in correct format");
+                } else {
+                    String claimURI = claimStrings[0];
+                    String claimValue = claimStrings[1];
+                    if (claimURI.contains("role")) {
+                        roleString = claimValue;
+                    } else {
+                        if (!claimURI.isEmpty()) {
+                            // Not trimming the claim values as we should not restrict the claim values not to have
+                            // leading or trailing whitespaces.
+                            claims.put(claimURI.trim(), claimValue);
+                        }
+                    }
+                }
+
+            }
+        }
+
+        if (roleString != null && !roleString.isEmpty()) {
+            roles = roleString.split(":");
+        }
+
+        userStore.addUser(username, password, roles, claims, null, true);
+    }
+
+    private static class Row {
+
+        private final int rowNumber;
+        private final String[] line;
+
+        private Row(int rowNumber, String[] line) {
+            this.rowNumber = rowNumber;
+            this.line = line;
+        }
+    }
+}
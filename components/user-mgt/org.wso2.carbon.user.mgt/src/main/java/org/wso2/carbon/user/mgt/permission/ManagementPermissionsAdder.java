@@ -106,6 +106,8 @@ public class ManagementPermissionsAdder implements BundleListener {
                 resource.setProperty(UserMgtConstants.DISPLAY_NAME, uiPermission.getDisplayName());
                 registry.put(uiPermission.getResourceId(), resource);
             }
+            // Management permissions of the super tenant are part of the permission tree of every tenant.
+            UIPermissionTreeCache.getInstance().invalidateAll();
         }
     }
 
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2018 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.wso2.carbon.user.mgt.permission;
+
+import org.wso2.carbon.user.core.AuthorizationManager;
+import org.wso2.carbon.user.core.UserStoreException;
+import org.wso2.carbon.user.mgt.UserMgtConstants;
+import org.wso2.carbon.user.mgt.common.UIPermissionNode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable snapshot of the UI permission resources of a tenant. A snapshot is shared by all callers and is turned
+ * into a fresh {@link UIPermissionNode} tree on every read, so the returned nodes can be modified freely.
+ */
+public final class UIPermissionTree {
+
+    private final String resourcePath;
+    private final String displayName;
+    private final List<UIPermissionTree> children;
+
+    public UIPermissionTree(String resourcePath, String displayName, List<UIPermissionTree> children) {
+        this.resourcePath = resourcePath;
+        this.displayName = displayName;
+        this.children = Collections.unmodifiableList(new ArrayList<UIPermissionTree>(children));
+    }
+
+    public String getResourcePath() {
+        return resourcePath;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public List<UIPermissionTree> getChildren() {
+        return children;
+    }
+
+    /**
+     * Copies the tree with no node selected.
+     */
+    public UIPermissionNode toUIPermissionNode() {
+        UIPermissionNode node = new UIPermissionNode(resourcePath, displayName, false);
+        UIPermissionNode[] childNodes = new UIPermissionNode[children.size()];
+        for (int i = 0; i < childNodes.length; i++) {
+            childNodes[i] = children.get(i).toUIPermissionNode();
+        }
+        node.setNodeList(childNodes);
+        return node;
+    }
+
+    /**
+     * Copies the tree, selecting the nodes the given role is authorized for. Permissions are hierarchical, so once a
+     * node is selected its descendants are selected without consulting the authorization manager.
+     */
+    public UIPermissionNode toUIPermissionNode(AuthorizationManager authMan, String roleName)
+            throws UserStoreException {
+        return copy(authMan, roleName, false);
+    }
+
+    private UIPermissionNode copy(AuthorizationManager authMan, String roleName, boolean parentSelected)
+            throws UserStoreException {
+        boolean isSelected = parentSelected ||
+                authMan.isRoleAuthorized(roleName, resourcePath, UserMgtConstants.EXECUTE_ACTION);
+        UIPermissionNode node = new UIPermissionNode(resourcePath, displayName, isSelected);
+        UIPermissionNode[] childNodes = new UIPermissionNode[children.size()];
+        for (int i = 0; i < childNodes.length; i++) {
+            childNodes[i] = children.get(i).copy(authMan, roleName, isSelected);
+        }
+        node.setNodeList(childNodes);
+        return node;
+    }
+}
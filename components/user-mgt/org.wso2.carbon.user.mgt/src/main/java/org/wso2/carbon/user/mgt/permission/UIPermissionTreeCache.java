@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2018 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.wso2.carbon.user.mgt.permission;
+
+import org.wso2.carbon.CarbonConstants;
+import org.wso2.carbon.identity.core.util.LocalTenantCache;
+import org.wso2.carbon.registry.api.Registry;
+import org.wso2.carbon.registry.api.RegistryException;
+import org.wso2.carbon.registry.api.Resource;
+import org.wso2.carbon.registry.core.Collection;
+import org.wso2.carbon.registry.core.RegistryConstants;
+import org.wso2.carbon.user.mgt.UserMgtConstants;
+import org.wso2.carbon.user.mgt.internal.UserMgtDSComponent;
+import org.wso2.carbon.utils.multitenancy.MultitenantConstants;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Caches the UI permission tree of each tenant, so that the permission collections are read from the registry once
+ * instead of on every permission listing. The tree of a tenant has to be invalidated whenever its application
+ * permissions change, and the trees of all tenants whenever the management permissions of the super tenant change,
+ * since every tenant tree includes them. Changes made on other nodes of a cluster are picked up once the trees
+ * expire.
+ */
+public class UIPermissionTreeCache {
+
+    public static final String CACHE_TIMEOUT = "UIPermissionTree.CacheTimeout";
+
+    private static final long DEFAULT_CACHE_TIMEOUT = 300;
+    private static final String APPLICATIONS_PATH = RegistryConstants.PATH_SEPARATOR
+            + CarbonConstants.UI_PERMISSION_NAME + RegistryConstants.PATH_SEPARATOR
+            + "applications";
+    // A tenant has a single tree.
+    private static final String PERMISSION_TREE = "permissionTree";
+    private static final UIPermissionTreeCache instance = new UIPermissionTreeCache(
+            LocalTenantCache.getCacheTimeout(CACHE_TIMEOUT, DEFAULT_CACHE_TIMEOUT));
+
+    private final LocalTenantCache<String, UIPermissionTree> trees;
+
+    UIPermissionTreeCache(long timeoutInSeconds) {
+        trees = new LocalTenantCache<String, UIPermissionTree>("UIPermissionTrees", timeoutInSeconds);
+    }
+
+    public static UIPermissionTreeCache getInstance() {
+        return instance;
+    }
+
+    public UIPermissionTree getPermissionTree(final int tenantId) throws RegistryException {
+        return trees.get(tenantId, PERMISSION_TREE, new LocalTenantCache.Loader<UIPermissionTree, RegistryException>() {
+            @Override
+            public UIPermissionTree load() throws RegistryException {
+                return buildPermissionTree(tenantId);
+            }
+        });
+    }
+
+    public void invalidate(int tenantId) {
+        trees.invalidate(tenantId);
+    }
+
+    public void invalidateAll() {
+        trees.invalidateAll();
+    }
+
+    UIPermissionTree buildPermissionTree(int tenantId) throws RegistryException {
+        Registry registry = UserMgtDSComponent.getRegistryService().getGovernanceSystemRegistry();
+        if (tenantId == MultitenantConstants.SUPER_TENANT_ID) {
+            Collection regRoot = (Collection) registry.get(UserMgtConstants.UI_PERMISSION_ROOT);
+            return new UIPermissionTree(UserMgtConstants.UI_PERMISSION_ROOT,
+                    regRoot.getProperty(UserMgtConstants.DISPLAY_NAME), buildChildren(regRoot, registry, null));
+        }
+
+        Collection regRoot = (Collection) registry.get(UserMgtConstants.UI_ADMIN_PERMISSION_ROOT);
+        Registry tenantRegistry = UserMgtDSComponent.getRegistryService().getGovernanceSystemRegistry(tenantId);
+        if (tenantRegistry.resourceExists(APPLICATIONS_PATH)) {
+            Collection appRoot = (Collection) tenantRegistry.get(APPLICATIONS_PATH);
+            Collection parent = (Collection) tenantRegistry.newCollection();
+            parent.setChildren(new String[]{regRoot.getPath(), appRoot.getPath()});
+            return new UIPermissionTree(UserMgtConstants.UI_ADMIN_PERMISSION_ROOT, "All Permissions",
+                    buildChildren(parent, registry, tenantRegistry));
+        }
+        return new UIPermissionTree(UserMgtConstants.UI_ADMIN_PERMISSION_ROOT,
+                regRoot.getProperty(UserMgtConstants.DISPLAY_NAME), buildChildren(regRoot, registry, tenantRegistry));
+    }
+
+    private List<UIPermissionTree> buildChildren(Collection parent, Registry registry, Registry tenantRegistry)
+            throws RegistryException {
+
+        String[] children = parent.getChildren();
+        List<UIPermissionTree> childNodes = new ArrayList<UIPermissionTree>(children.length);
+        for (String child : children) {
+            Resource resource;
+            if (tenantRegistry != null && child.startsWith(APPLICATIONS_PATH)) {
+                resource = tenantRegistry.get(child);
+            } else if (registry.resourceExists(child)) {
+                resource = registry.get(child);
+            } else {
+                throw new RegistryException("Permission resource not found in the registry.");
+            }
+
+            List<UIPermissionTree> grandChildren = new ArrayList<UIPermissionTree>();
+            if (resource instanceof Collection) {
+                grandChildren = buildChildren((Collection) resource, registry, tenantRegistry);
+            }
+            childNodes.add(new UIPermissionTree(resource.getPath(),
+                    resource.getProperty(UserMgtConstants.DISPLAY_NAME), grandChildren));
+        }
+        return childNodes;
+    }
+}
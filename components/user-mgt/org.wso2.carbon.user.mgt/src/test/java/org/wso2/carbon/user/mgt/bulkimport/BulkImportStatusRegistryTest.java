@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2018 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.wso2.carbon.user.mgt.bulkimport;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.user.mgt.common.UserAdminException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+public class BulkImportStatusRegistryTest {
+
+    private static final int TENANT_ID = -1234;
+    private static final String DOMAIN = "PRIMARY";
+    private static final String FILE_NAME = "users.csv";
+
+    @Test
+    public void testFailedImportOfSameContentIsResumed() throws Exception {
+        BulkImportStatusRegistry registry = new BulkImportStatusRegistry(TimeUnit.HOURS.toMillis(1), 10);
+        String content = "UserName,Password\nuser1,Password1\nuser2,Password1\n";
+
+        BulkImportStatus failed = register(registry, content);
+        failed.setCheckpoint(1);
+        failed.finish(BulkImportStatus.State.FAILED);
+
+        BulkImportStatus retry = statusOf(content);
+        BulkImportStatus previous = registry.register(TENANT_ID, retry);
+        Assert.assertSame(previous, failed);
+        Assert.assertTrue(previous.isResumableBy(retry));
+    }
+
+    @Test
+    public void testCorrectedFileIsNotResumed() throws Exception {
+        BulkImportStatusRegistry registry = new BulkImportStatusRegistry(TimeUnit.HOURS.toMillis(1), 10);
+
+        BulkImportStatus failed = register(registry, "UserName,Password\nuser1,Password1\nus er2,Password1\n");
+        failed.setCheckpoint(1);
+        failed.finish(BulkImportStatus.State.FAILED);
+
+        BulkImportStatus corrected = statusOf("UserName,Password\nuser1,Password1\nuser2,Password1\n");
+        BulkImportStatus previous = registry.register(TENANT_ID, corrected);
+        Assert.assertSame(previous, failed);
+        Assert.assertFalse(previous.isResumableBy(corrected));
+    }
+
+    @Test
+    public void testCompletedImportIsNotResumed() throws Exception {
+        BulkImportStatusRegistry registry = new BulkImportStatusRegistry(TimeUnit.HOURS.toMillis(1), 10);
+        String content = "UserName,Password\nuser1,Password1\n";
+
+        BulkImportStatus completed = register(registry, content);
+        completed.finish(BulkImportStatus.State.COMPLETED);
+
+        BulkImportStatus next = statusOf(content);
+        Assert.assertFalse(registry.register(TENANT_ID, next).isResumableBy(next));
+    }
+
+    @Test(expectedExceptions = UserAdminException.class)
+    public void testConcurrentImportOfSameFileIsRejected() throws Exception {
+        BulkImportStatusRegistry registry = new BulkImportStatusRegistry(TimeUnit.HOURS.toMillis(1), 10);
+        register(registry, "UserName\nuser1\n");
+        register(registry, "UserName\nuser2\n");
+    }
+
+    @Test
+    public void testFinishedImportsAreDroppedAfterRetention() throws Exception {
+        BulkImportStatusRegistry registry = new BulkImportStatusRegistry(0, 10);
+
+        BulkImportStatus failed = register(registry, "UserName\nuser1\n");
+        failed.finish(BulkImportStatus.State.FAILED);
+        Thread.sleep(5);
+
+        Assert.assertNull(registry.getStatus(TENANT_ID, DOMAIN, FILE_NAME));
+        Assert.assertNull(registry.register(TENANT_ID, statusOf("UserName\nuser1\n")));
+    }
+
+    @Test
+    public void testOldestFinishedImportsAreDroppedWhenFull() throws Exception {
+        BulkImportStatusRegistry registry = new BulkImportStatusRegistry(TimeUnit.HOURS.toMillis(1), 3);
+
+        BulkImportStatus running = new BulkImportStatus("running.csv", DOMAIN);
+        registry.register(TENANT_ID, running);
+        for (int i = 0; i < 2; i++) {
+            BulkImportStatus status = new BulkImportStatus("file" + i + ".csv", DOMAIN);
+            registry.register(TENANT_ID, status);
+            status.finish(BulkImportStatus.State.COMPLETED);
+            Thread.sleep(5);
+        }
+        registry.register(TENANT_ID, new BulkImportStatus("file2.csv", DOMAIN));
+
+        Assert.assertNull(registry.getStatus(TENANT_ID, DOMAIN, "file0.csv"));
+        Assert.assertNotNull(registry.getStatus(TENANT_ID, DOMAIN, "file1.csv"));
+        Assert.assertNotNull(registry.getStatus(TENANT_ID, DOMAIN, "file2.csv"));
+        Assert.assertSame(registry.getStatus(TENANT_ID, DOMAIN, "running.csv"), running);
+    }
+
+    private BulkImportStatus register(BulkImportStatusRegistry registry, String content) throws Exception {
+        BulkImportStatus status = statusOf(content);
+        registry.register(TENANT_ID, status);
+        return status;
+    }
+
+    private BulkImportStatus statusOf(String content) throws IOException {
+        try (BulkImportFile file = BulkImportFile.copyOf(
+                new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)))) {
+            return new BulkImportStatus(FILE_NAME, DOMAIN, file.getSize(), file.getDigest());
+        }
+    }
+}
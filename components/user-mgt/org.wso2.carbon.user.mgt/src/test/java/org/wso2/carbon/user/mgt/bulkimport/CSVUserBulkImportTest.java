@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.user.mgt.bulkimport;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.context.PrivilegedCarbonContext;
+import org.wso2.carbon.user.core.UserStoreManager;
+import org.wso2.carbon.user.mgt.common.UserAdminException;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CSVUserBulkImportTest {
+
+    private static final String CSV_HEADER = "UserName,Password,Claims\n";
+
+    private UserStoreManager userStoreManager;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        System.setProperty("carbon.home", Paths.get(System.getProperty("user.dir"), "target").toString());
+        PrivilegedCarbonContext.startTenantFlow();
+        PrivilegedCarbonContext.getThreadLocalCarbonContext().setTenantDomain("carbon.super");
+        PrivilegedCarbonContext.getThreadLocalCarbonContext().setUsername("admin");
+        userStoreManager = mock(UserStoreManager.class);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        PrivilegedCarbonContext.endTenantFlow();
+    }
+
+    @Test
+    public void testAddUserList() throws Exception {
+        StringBuilder csv = new StringBuilder(CSV_HEADER);
+        for (int i = 1; i <= 50; i++) {
+            csv.append("user").append(i).append(",Password1,http://wso2.org/claims/givenname=user").append(i)
+                    .append('\n');
+        }
+        BulkImportStatus status = runImport(csv.toString(), 0);
+
+        verify(userStoreManager, times(50)).addUser(anyString(), eq("Password1"), any(String[].class), anyMap(),
+                any(String.class), eq(true));
+        Assert.assertEquals(status.getState(), BulkImportStatus.State.COMPLETED);
+        Assert.assertEquals(status.getReadCount(), 50);
+        Assert.assertEquals(status.getSuccessCount(), 50);
+        Assert.assertEquals(status.getCheckpoint(), 50);
+    }
+
+    @Test
+    public void testDuplicateUsersAreReportedPerRow() throws Exception {
+        when(userStoreManager.isExistingUser("existing")).thenReturn(true);
+        String csv = CSV_HEADER + "existing\nuser1\nuser1\nuser2\n";
+
+        BulkImportStatus status = new BulkImportStatus("users.csv", "PRIMARY");
+        try {
+            newImporter(csv, 0).addUserList(userStoreManager, status);
+            Assert.fail("Duplicate users were not reported");
+        } catch (UserAdminException e) {
+            Assert.assertTrue(e.getMessage().startsWith("Detected 2 duplicate user names"));
+        }
+
+        verify(userStoreManager, times(2)).addUser(anyString(), any(), any(String[].class), anyMap(),
+                any(String.class), eq(true));
+        Assert.assertEquals(status.getSuccessCount(), 2);
+        Assert.assertEquals(status.getDuplicateCount(), 2);
+        Assert.assertEquals(status.getRowErrors().size(), 2);
+    }
+
+    @Test
+    public void testFailedUserIsNotReportedAsDuplicate() throws Exception {
+        // Both rows are in the same batch, so they are imported in order. The claims of the first row are invalid.
+        String csv = CSV_HEADER + "user1,Password1,givenname\nuser1,Password1\n";
+
+        BulkImportStatus status = new BulkImportStatus("users.csv", "PRIMARY");
+        try {
+            newImporter(csv, 0).addUserList(userStoreManager, status);
+            Assert.fail("Failed row was not reported");
+        } catch (UserAdminException e) {
+            Assert.assertTrue(e.getMessage().contains("Fail count: 1"));
+        }
+
+        verify(userStoreManager, times(1)).addUser(anyString(), eq("Password1"), any(String[].class), anyMap(),
+                any(String.class), eq(true));
+        Assert.assertEquals(status.getSuccessCount(), 1);
+        Assert.assertEquals(status.getFailCount(), 1);
+        Assert.assertEquals(status.getDuplicateCount(), 0);
+    }
+
+    @Test
+    public void testResumeFromCheckpoint() throws Exception {
+        String csv = CSV_HEADER + "user1\nuser2\nuser3\nuser4\n";
+        BulkImportStatus status = runImport(csv, 2);
+
+        verify(userStoreManager, never()).addUser(eq("user1"), any(), any(String[].class), anyMap(),
+                any(String.class), eq(true));
+        verify(userStoreManager, never()).addUser(eq("user2"), any(), any(String[].class), anyMap(),
+                any(String.class), eq(true));
+        Assert.assertEquals(status.getSuccessCount(), 2);
+        Assert.assertEquals(status.getCheckpoint(), 4);
+    }
+
+    private BulkImportStatus runImport(String csv, int resumeFromRow) throws UserAdminException {
+        BulkImportStatus status = new BulkImportStatus("users.csv", "PRIMARY");
+        newImporter(csv, resumeFromRow).addUserList(userStoreManager, status);
+        return status;
+    }
+
+    private CSVUserBulkImport newImporter(String csv, int resumeFromRow) {
+        BulkImportConfig config = new BulkImportConfig(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)),
+                "users.csv");
+        config.setUserStoreDomain("PRIMARY");
+        config.setWorkerCount(4);
+        config.setBatchSize(3);
+        config.setResumeFromRow(resumeFromRow);
+        return new CSVUserBulkImport(config);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2018 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.wso2.carbon.user.mgt.permission;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+
+public class UIPermissionTreeCacheTest {
+
+    @Test
+    public void testTreeIsBuiltOncePerTenant() throws Exception {
+        CountingTreeCache cache = new CountingTreeCache(300);
+
+        UIPermissionTree tree = cache.getPermissionTree(1);
+        Assert.assertSame(cache.getPermissionTree(1), tree);
+        Assert.assertNotSame(cache.getPermissionTree(2), tree);
+        Assert.assertEquals(cache.builds, 2);
+    }
+
+    @Test
+    public void testInvalidatedTreeIsRebuilt() throws Exception {
+        CountingTreeCache cache = new CountingTreeCache(300);
+        UIPermissionTree tree1 = cache.getPermissionTree(1);
+        UIPermissionTree tree2 = cache.getPermissionTree(2);
+
+        cache.invalidate(1);
+        Assert.assertNotSame(cache.getPermissionTree(1), tree1);
+        Assert.assertSame(cache.getPermissionTree(2), tree2);
+
+        cache.invalidateAll();
+        Assert.assertNotSame(cache.getPermissionTree(2), tree2);
+        Assert.assertEquals(cache.builds, 4);
+    }
+
+    @Test
+    public void testTreeIsRebuiltAfterTimeout() throws Exception {
+        CountingTreeCache cache = new CountingTreeCache(0);
+
+        cache.getPermissionTree(1);
+        cache.getPermissionTree(1);
+        Assert.assertEquals(cache.builds, 2);
+    }
+
+    @Test
+    public void testTreeBuiltDuringInvalidationIsNotCached() throws Exception {
+        CountingTreeCache cache = new CountingTreeCache(300) {
+            @Override
+            UIPermissionTree buildPermissionTree(int tenantId) {
+                UIPermissionTree tree = super.buildPermissionTree(tenantId);
+                // The permissions are read, and then changed and invalidated by another thread before the tree is
+                // cached.
+                if (builds == 1) {
+                    invalidate(tenantId);
+                }
+                return tree;
+            }
+        };
+
+        UIPermissionTree stale = cache.getPermissionTree(1);
+        Assert.assertNotSame(cache.getPermissionTree(1), stale);
+        Assert.assertEquals(cache.builds, 2);
+    }
+
+    /**
+     * Builds an empty tree instead of reading the registry, and counts the builds.
+     */
+    private static class CountingTreeCache extends UIPermissionTreeCache {
+
+        int builds;
+
+        private CountingTreeCache(long timeoutInSeconds) {
+            super(timeoutInSeconds);
+        }
+
+        @Override
+        UIPermissionTree buildPermissionTree(int tenantId) {
+            builds++;
+            return new UIPermissionTree("/permission/", "Permissions " + tenantId,
+                    Collections.<UIPermissionTree>emptyList());
+        }
+    }
+}
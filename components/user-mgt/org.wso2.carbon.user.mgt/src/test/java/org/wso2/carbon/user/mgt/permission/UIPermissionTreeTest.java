@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.user.mgt.permission;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.user.core.AuthorizationManager;
+import org.wso2.carbon.user.mgt.UserMgtConstants;
+import org.wso2.carbon.user.mgt.common.UIPermissionNode;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class UIPermissionTreeTest {
+
+    private static final String ROOT = "/permission/admin/";
+    private static final String MANAGE = "/permission/admin/manage";
+    private static final String MANAGE_ADD = "/permission/admin/manage/add";
+    private static final String LOGIN = "/permission/admin/login";
+
+    @Test
+    public void testToUIPermissionNodeReturnsIndependentCopies() {
+        UIPermissionTree tree = getSampleTree();
+
+        UIPermissionNode first = tree.toUIPermissionNode();
+        first.getNodeList()[0].setSelected(true);
+        first.setNodeList(new UIPermissionNode[0]);
+
+        UIPermissionNode second = tree.toUIPermissionNode();
+        Assert.assertEquals(second.getNodeList().length, 2);
+        Assert.assertFalse(second.getNodeList()[0].isSelected());
+        Assert.assertEquals(second.getNodeList()[0].getNodeList()[0].getResourcePath(), MANAGE_ADD);
+    }
+
+    @Test
+    public void testRoleOverlaySelectsAuthorizedSubtrees() throws Exception {
+        AuthorizationManager authMan = mock(AuthorizationManager.class);
+        when(authMan.isRoleAuthorized("role1", MANAGE, UserMgtConstants.EXECUTE_ACTION)).thenReturn(true);
+
+        UIPermissionNode root = getSampleTree().toUIPermissionNode(authMan, "role1");
+
+        Assert.assertFalse(root.isSelected());
+        UIPermissionNode manage = root.getNodeList()[0];
+        Assert.assertTrue(manage.isSelected());
+        Assert.assertTrue(manage.getNodeList()[0].isSelected());
+        Assert.assertFalse(root.getNodeList()[1].isSelected());
+        // Descendants of a selected node are selected without another authorization check.
+        verify(authMan, never()).isRoleAuthorized(anyString(), eq(MANAGE_ADD), anyString());
+    }
+
+    private UIPermissionTree getSampleTree() {
+        UIPermissionTree add = new UIPermissionTree(MANAGE_ADD, "Add", Collections.<UIPermissionTree>emptyList());
+        UIPermissionTree manage = new UIPermissionTree(MANAGE, "Manage", Collections.singletonList(add));
+        UIPermissionTree login = new UIPermissionTree(LOGIN, "Login", Collections.<UIPermissionTree>emptyList());
+        return new UIPermissionTree(ROOT, "Admin Permissions", Arrays.asList(manage, login));
+    }
+}
@@ -22,6 +22,10 @@ import org.wso2.carbon.identity.user.store.count.exception.UserStoreCounterExcep
 import java.util.Map;
 import org.wso2.carbon.user.api.RealmConfiguration;
 
+/**
+ * Counts users, roles and claim values in a user store. The counts of a request may be made in parallel on pool
+ * threads, which run in the tenant flow of the request; only the tenant id and domain are set in their carbon context.
+ */
 public interface UserStoreCountRetriever {
 
     void init(RealmConfiguration realmConfiguration) throws UserStoreCounterException;
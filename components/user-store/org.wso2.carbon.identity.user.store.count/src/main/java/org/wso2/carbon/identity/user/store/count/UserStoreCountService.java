@@ -19,12 +19,24 @@ package org.wso2.carbon.identity.user.store.count;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.context.CarbonContext;
+import org.wso2.carbon.context.PrivilegedCarbonContext;
+import org.wso2.carbon.identity.user.store.count.cache.UserStoreCountCache;
+import org.wso2.carbon.identity.user.store.count.cache.UserTotalCounter;
 import org.wso2.carbon.identity.user.store.count.dto.PairDTO;
 import org.wso2.carbon.identity.user.store.count.exception.UserStoreCounterException;
 import org.wso2.carbon.identity.user.store.count.jdbc.internal.InternalStoreCountConstants;
+import org.wso2.carbon.identity.user.store.count.internal.UserStoreCountDataHolder;
 import org.wso2.carbon.identity.user.store.count.util.UserStoreCountUtils;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import org.wso2.carbon.user.core.UserCoreConstants;
 
 /**
@@ -40,24 +52,25 @@ public class UserStoreCountService {
      * @param filter the filter for the user name. Use '*' to have all.
      * @return the number of users matching the filter by each domain
      */
-    public PairDTO[] countUsers(String filter) throws UserStoreCounterException {
+    public PairDTO[] countUsers(final String filter) throws UserStoreCounterException {
         Set<String> userStoreDomains = UserStoreCountUtils.getCountEnabledUserStores();
         PairDTO[] userCounts = new PairDTO[userStoreDomains.size()];
+        Long[] counts = countInDomains(userStoreDomains, UserStoreCountCache.USERS, filter,
+                UserStoreCountUtils.isUnfiltered(filter), new DomainCounter() {
+                    @Override
+                    Long count(UserStoreCountRetriever counter) throws UserStoreCounterException {
+                        return counter.countUsers(filter);
+                    }
+
+                    @Override
+                    String getErrorMessage(String userStoreDomain) {
+                        return "Error while getting user count from user store domain : " + userStoreDomain;
+                    }
+                });
         int i = 0;
 
         for (String userStoreDomain : userStoreDomains) {
-            UserStoreCountRetriever counter = UserStoreCountUtils.getCounterInstanceForDomain(userStoreDomain);
-            Long count = Long.valueOf(-1);
-            if (counter != null) {
-                try {
-                    count = counter.countUsers(filter);
-                } catch (UserStoreCounterException e) {
-                    log.error("Error while getting user count from user store domain : " + userStoreDomain, e);
-                }
-            } else {
-                //no action
-            }
-            userCounts[i] = new PairDTO(userStoreDomain, Long.toString(count));
+            userCounts[i] = new PairDTO(userStoreDomain, Long.toString(counts[i]));
             i++;
         }
 
@@ -70,26 +83,26 @@ public class UserStoreCountService {
      * @param filter the filter for the role name. Use '*' to have all.
      * @return the number of roles matching the filter by each domain
      */
-    public PairDTO[] countRoles(String filter) throws UserStoreCounterException {
+    public PairDTO[] countRoles(final String filter) throws UserStoreCounterException {
         Set<String> userStoreDomains = UserStoreCountUtils.getCountEnabledUserStores();
         //add 3 more for the counts of Internal, Application domains
         PairDTO[] roleCounts = new PairDTO[userStoreDomains.size() + 2];
+        Long[] counts = countInDomains(userStoreDomains, UserStoreCountCache.ROLES, filter, false,
+                new DomainCounter() {
+                    @Override
+                    Long count(UserStoreCountRetriever counter) throws UserStoreCounterException {
+                        return counter.countRoles(filter);
+                    }
+
+                    @Override
+                    String getErrorMessage(String userStoreDomain) {
+                        return "Error while getting role count from user store domain : " + userStoreDomain;
+                    }
+                });
         int i = 0;
 
         for (String userStoreDomain : userStoreDomains) {
-            UserStoreCountRetriever counter = UserStoreCountUtils.getCounterInstanceForDomain(userStoreDomain);
-            Long count = Long.valueOf(-1);
-            if (counter != null) {
-                try {
-                    count = counter.countRoles(filter);
-                } catch (UserStoreCounterException e) {
-                    log.error("Error while getting role count from user store domain : " + userStoreDomain, e);
-                }
-            } else {
-                //no action
-            }
-
-            roleCounts[i] = new PairDTO(userStoreDomain, Long.toString(count));
+            roleCounts[i] = new PairDTO(userStoreDomain, Long.toString(counts[i]));
             i++;
         }
 
@@ -108,24 +121,26 @@ public class UserStoreCountService {
      * @param valueFilter filter for the claim values
      * @return the number of users matching the given claim and filter by each domain
      */
-    public PairDTO[] countClaim(String claimURI, String valueFilter) throws UserStoreCounterException {
+    public PairDTO[] countClaim(final String claimURI, final String valueFilter) throws UserStoreCounterException {
         Set<String> userStoreDomains = UserStoreCountUtils.getCountEnabledUserStores();
         PairDTO[] claimCounts = new PairDTO[userStoreDomains.size()];
+        Long[] counts = countInDomains(userStoreDomains, UserStoreCountCache.CLAIM, claimURI + ":" + valueFilter,
+                false, new DomainCounter() {
+                    @Override
+                    Long count(UserStoreCountRetriever counter) throws UserStoreCounterException {
+                        return counter.countClaim(claimURI, valueFilter);
+                    }
+
+                    @Override
+                    String getErrorMessage(String userStoreDomain) {
+                        return "Error while getting user count with claim : " + claimURI + " from user store domain : "
+                                + userStoreDomain;
+                    }
+                });
         int i = 0;
 
         for (String userStoreDomain : userStoreDomains) {
-            UserStoreCountRetriever counter = UserStoreCountUtils.getCounterInstanceForDomain(userStoreDomain);
-            Long count = Long.valueOf(-1);
-            if (counter != null) {
-                try {
-                    count = counter.countClaim(claimURI, valueFilter);
-                } catch (UserStoreCounterException e) {
-                    log.error("Error while getting user count with claim : " + claimURI + " from user store domain : " + userStoreDomain, e);
-                }
-            } else {
-                //no action
-            }
-            claimCounts[i] = new PairDTO(userStoreDomain, Long.toString(count));
+            claimCounts[i] = new PairDTO(userStoreDomain, Long.toString(counts[i]));
             i++;
         }
 
@@ -140,12 +155,21 @@ public class UserStoreCountService {
      */
     public Long countUsersInDomain(String filter, String domain) throws UserStoreCounterException {
 
+        int tenantId = CarbonContext.getThreadLocalCarbonContext().getTenantId();
+        boolean unfiltered = UserStoreCountUtils.isUnfiltered(filter);
+        Long count = getCachedCount(tenantId, UserStoreCountCache.USERS, domain, filter, unfiltered);
+        if (count != null) {
+            return count;
+        }
+
         UserStoreCountRetriever counter = null;
         if (UserStoreCountUtils.isUserStoreEnabled(domain)) {
             counter = UserStoreCountUtils.getCounterInstanceForDomain(domain);
         }
         if (counter != null) {
-            return counter.countUsers(filter);
+            count = counter.countUsers(filter);
+            addCachedCount(tenantId, UserStoreCountCache.USERS, domain, filter, unfiltered, count);
+            return count;
         } else {
             return Long.valueOf(-1);
         }
@@ -164,9 +188,16 @@ public class UserStoreCountService {
         } else if (InternalStoreCountConstants.APPLICATION_DOMAIN.equalsIgnoreCase(domain)) {
             return UserStoreCountUtils.getApplicationRoleCount(filter);
         } else {              //Not an internal domain
+            int tenantId = CarbonContext.getThreadLocalCarbonContext().getTenantId();
+            Long count = getCachedCount(tenantId, UserStoreCountCache.ROLES, domain, filter, false);
+            if (count != null) {
+                return count;
+            }
             UserStoreCountRetriever counter = UserStoreCountUtils.getCounterInstanceForDomain(domain);
             if (counter != null) {
-                return counter.countRoles(filter);
+                count = counter.countRoles(filter);
+                addCachedCount(tenantId, UserStoreCountCache.ROLES, domain, filter, false, count);
+                return count;
             } else {
                 return Long.valueOf(-1);
             }
@@ -182,9 +213,18 @@ public class UserStoreCountService {
      */
     public Long countByClaimInDomain(String claimURI, String valueFilter, String domain) throws UserStoreCounterException {
 
+        int tenantId = CarbonContext.getThreadLocalCarbonContext().getTenantId();
+        String filter = claimURI + ":" + valueFilter;
+        Long count = getCachedCount(tenantId, UserStoreCountCache.CLAIM, domain, filter, false);
+        if (count != null) {
+            return count;
+        }
+
         UserStoreCountRetriever counter = UserStoreCountUtils.getCounterInstanceForDomain(domain);
         if (counter != null) {
-            return counter.countClaim(claimURI, valueFilter);
+            count = counter.countClaim(claimURI, valueFilter);
+            addCachedCount(tenantId, UserStoreCountCache.CLAIM, domain, filter, false, count);
+            return count;
         } else {
             return Long.valueOf(-1);
         }
@@ -202,4 +242,128 @@ public class UserStoreCountService {
 
     }
 
+    /**
+     * Count in each of the given domains. Cached counts are used where available and the rest of the domains are
+     * counted in parallel, in the tenant flow of the caller, with -1 for the domains which could not be counted.
+     *
+     * @param userStoreDomains domains to count in
+     * @param countType        count type of the cache
+     * @param filter           filter of the count, used as the cache key
+     * @param allUsers         whether this counts all the users, which can use the user totals
+     * @param domainCounter    counts in a domain
+     * @return counts in the order of the domains
+     */
+    private Long[] countInDomains(Set<String> userStoreDomains, String countType, String filter, boolean allUsers,
+                                  final DomainCounter domainCounter) throws UserStoreCounterException {
+
+        final int tenantId = CarbonContext.getThreadLocalCarbonContext().getTenantId();
+        final String tenantDomain = CarbonContext.getThreadLocalCarbonContext().getTenantDomain();
+        ExecutorService countExecutor = UserStoreCountDataHolder.getInstance().getCountExecutor();
+        String[] domains = userStoreDomains.toArray(new String[userStoreDomains.size()]);
+        Long[] counts = new Long[domains.length];
+        List<Future<Long>> futures = new ArrayList<>(domains.length);
+
+        for (int i = 0; i < domains.length; i++) {
+            counts[i] = getCachedCount(tenantId, countType, domains[i], filter, allUsers);
+            Future<Long> future = null;
+            if (counts[i] == null) {
+                // Counters take the tenant from the carbon context, so they are built in this thread.
+                final UserStoreCountRetriever counter = UserStoreCountUtils.getCounterInstanceForDomain(domains[i]);
+                if (counter == null) {
+                    counts[i] = Long.valueOf(-1);
+                } else if (countExecutor != null) {
+                    try {
+                        future = countExecutor.submit(new Callable<Long>() {
+                            @Override
+                            public Long call() throws UserStoreCounterException {
+
+                                // Counted in the tenant flow of the caller, as counters may read the carbon context.
+                                try {
+                                    PrivilegedCarbonContext.startTenantFlow();
+                                    PrivilegedCarbonContext carbonContext =
+                                            PrivilegedCarbonContext.getThreadLocalCarbonContext();
+                                    carbonContext.setTenantId(tenantId);
+                                    carbonContext.setTenantDomain(tenantDomain);
+                                    return domainCounter.count(counter);
+                                } finally {
+                                    PrivilegedCarbonContext.endTenantFlow();
+                                }
+                            }
+                        });
+                    } catch (RejectedExecutionException e) {
+                        counts[i] = countInDomain(domainCounter, counter, domains[i]);
+                    }
+                } else {
+                    counts[i] = countInDomain(domainCounter, counter, domains[i]);
+                }
+            }
+            futures.add(future);
+        }
+
+        for (int i = 0; i < domains.length; i++) {
+            Future<Long> future = futures.get(i);
+            if (future != null) {
+                try {
+                    counts[i] = future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new UserStoreCounterException("Interrupted while counting in user store domain : " +
+                            domains[i], e);
+                } catch (ExecutionException e) {
+                    log.error(domainCounter.getErrorMessage(domains[i]), e.getCause());
+                    counts[i] = Long.valueOf(-1);
+                }
+            } else if (counts[i] == null) {
+                counts[i] = Long.valueOf(-1);
+            } else {
+                continue;
+            }
+            addCachedCount(tenantId, countType, domains[i], filter, allUsers, counts[i]);
+        }
+        return counts;
+    }
+
+    private Long countInDomain(DomainCounter domainCounter, UserStoreCountRetriever counter, String userStoreDomain) {
+
+        try {
+            return domainCounter.count(counter);
+        } catch (UserStoreCounterException e) {
+            log.error(domainCounter.getErrorMessage(userStoreDomain), e);
+            return Long.valueOf(-1);
+        }
+    }
+
+    private Long getCachedCount(int tenantId, String countType, String domain, String filter, boolean allUsers) {
+
+        if (allUsers) {
+            Long total = UserTotalCounter.getInstance().getTotal(tenantId, domain);
+            if (total != null) {
+                return total;
+            }
+        }
+        return UserStoreCountCache.getInstance().getCount(tenantId, countType, domain, filter);
+    }
+
+    private void addCachedCount(int tenantId, String countType, String domain, String filter, boolean allUsers,
+                                Long count) {
+
+        if (count == null || count < 0) {
+            return;
+        }
+        UserStoreCountCache.getInstance().addCount(tenantId, countType, domain, filter, count);
+        if (allUsers) {
+            UserTotalCounter.getInstance().setTotal(tenantId, domain, count);
+        }
+    }
+
+    /**
+     * Counts in a single user store domain.
+     */
+    private abstract static class DomainCounter {
+
+        abstract Long count(UserStoreCountRetriever counter) throws UserStoreCounterException;
+
+        abstract String getErrorMessage(String userStoreDomain);
+    }
+
 }
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.identity.user.store.count.cache;
+
+import org.wso2.carbon.identity.user.store.count.util.UserStoreCountUtils;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Node local cache of count results, so that repeated dashboard refreshes within the cache timeout do not count the
+ * user stores again. Results are kept per tenant, count type, user store domain and filter.
+ */
+public class UserStoreCountCache {
+
+    public static final String USERS = "USERS";
+    public static final String ROLES = "ROLES";
+    public static final String CLAIM = "CLAIM";
+
+    private static final int MAX_ENTRIES = 10000;
+    private static UserStoreCountCache instance = new UserStoreCountCache();
+
+    private final ConcurrentMap<String, CachedCount> counts = new ConcurrentHashMap<>();
+
+    private UserStoreCountCache() {
+
+    }
+
+    public static UserStoreCountCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns a cached count.
+     *
+     * @param tenantId  tenant the count belongs to
+     * @param countType one of {@link #USERS}, {@link #ROLES} and {@link #CLAIM}
+     * @param domain    user store domain
+     * @param filter    filter the count was made with, including the claim URI of claim counts
+     * @return the count, null if not cached or expired
+     */
+    public Long getCount(int tenantId, String countType, String domain, String filter) {
+
+        String key = getKey(tenantId, countType, domain, filter);
+        CachedCount cachedCount = counts.get(key);
+        if (cachedCount == null) {
+            return null;
+        }
+        if (cachedCount.isExpired(System.nanoTime())) {
+            counts.remove(key, cachedCount);
+            return null;
+        }
+        return cachedCount.count;
+    }
+
+    public void addCount(int tenantId, String countType, String domain, String filter, Long count) {
+
+        int timeout = UserStoreCountUtils.getResultCacheTimeout();
+        if (timeout <= 0 || count == null || count < 0) {
+            return;
+        }
+        if (counts.size() >= MAX_ENTRIES) {
+            removeExpired();
+        }
+        counts.put(getKey(tenantId, countType, domain, filter), new CachedCount(count,
+                System.nanoTime() + TimeUnit.SECONDS.toNanos(timeout)));
+    }
+
+    private void removeExpired() {
+
+        long now = System.nanoTime();
+        Iterator<CachedCount> iterator = counts.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().isExpired(now)) {
+                iterator.remove();
+            }
+        }
+        if (counts.size() >= MAX_ENTRIES) {
+            counts.clear();
+        }
+    }
+
+    private static String getKey(int tenantId, String countType, String domain, String filter) {
+        return tenantId + ":" + countType + ":" + UserStoreCountUtils.getDomainKey(domain) + ":" + filter;
+    }
+
+    private static final class CachedCount {
+
+        private final Long count;
+        private final long expiryTime;
+
+        private CachedCount(Long count, long expiryTime) {
+
+            this.count = count;
+            this.expiryTime = expiryTime;
+        }
+
+        private boolean isExpired(long now) {
+            return now - expiryTime >= 0;
+        }
+    }
+}
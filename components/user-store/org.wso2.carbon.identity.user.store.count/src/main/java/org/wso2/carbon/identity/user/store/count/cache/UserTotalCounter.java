@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.identity.user.store.count.cache;
+
+import org.wso2.carbon.identity.user.store.count.util.UserStoreCountUtils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Total number of users in each user store domain, kept up to date by the user store count listener as users are
+ * added and deleted through this node, so that counting all the users does not query the user store. A total is
+ * counted from the user store the first time it is needed and again after the resync interval, which corrects the
+ * drift from users added or deleted through other nodes or directly in the user store.
+ */
+public class UserTotalCounter {
+
+    private static UserTotalCounter instance = new UserTotalCounter();
+
+    private final ConcurrentMap<String, Total> totals = new ConcurrentHashMap<>();
+    private volatile boolean enabled;
+
+    private UserTotalCounter() {
+
+    }
+
+    public static UserTotalCounter getInstance() {
+        return instance;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+
+        this.enabled = enabled;
+        if (!enabled) {
+            totals.clear();
+        }
+    }
+
+    /**
+     * Returns the total number of users of a domain.
+     *
+     * @param tenantId tenant of the user store
+     * @param domain   user store domain
+     * @return the total, null if not counted yet or due for a resync
+     */
+    public Long getTotal(int tenantId, String domain) {
+
+        if (!enabled) {
+            return null;
+        }
+        String key = getKey(tenantId, domain);
+        Total total = totals.get(key);
+        if (total == null) {
+            return null;
+        }
+        if (System.nanoTime() - total.countedTime >=
+                TimeUnit.SECONDS.toNanos(UserStoreCountUtils.getUserTotalResyncInterval())) {
+            totals.remove(key, total);
+            return null;
+        }
+        return total.users.get();
+    }
+
+    /**
+     * Sets the total counted from the user store.
+     */
+    public void setTotal(int tenantId, String domain, long users) {
+
+        if (enabled && users >= 0) {
+            totals.put(getKey(tenantId, domain), new Total(users));
+        }
+    }
+
+    /**
+     * Adds to the total of a domain. Totals not counted yet are left to be counted when needed.
+     *
+     * @param tenantId tenant of the user store
+     * @param domain   user store domain
+     * @param delta    number of users added, negative for deleted users
+     */
+    public void addUsers(int tenantId, String domain, long delta) {
+
+        if (!enabled) {
+            return;
+        }
+        Total total = totals.get(getKey(tenantId, domain));
+        if (total != null) {
+            total.users.addAndGet(delta);
+        }
+    }
+
+    private static String getKey(int tenantId, String domain) {
+        return tenantId + ":" + UserStoreCountUtils.getDomainKey(domain);
+    }
+
+    private static final class Total {
+
+        private final AtomicLong users;
+        private final long countedTime = System.nanoTime();
+
+        private Total(long users) {
+            this.users = new AtomicLong(users);
+        }
+    }
+}
@@ -26,13 +26,20 @@ import org.osgi.service.component.ComponentContext;
 import org.wso2.carbon.identity.core.util.IdentityCoreInitializedEvent;
 import org.wso2.carbon.identity.user.store.count.AbstractCountRetrieverFactory;
 import org.wso2.carbon.identity.user.store.count.UserStoreCountRetriever;
+import org.wso2.carbon.identity.user.store.count.cache.UserTotalCounter;
 import org.wso2.carbon.identity.user.store.count.exception.UserStoreCounterException;
 import org.wso2.carbon.identity.user.store.count.jdbc.JDBCCountRetrieverFactory;
 import org.wso2.carbon.identity.user.store.count.jdbc.JDBCUserStoreCountRetriever;
 import org.wso2.carbon.identity.user.store.count.jdbc.internal.InternalCountRetriever;
 import org.wso2.carbon.identity.user.store.count.jdbc.internal.InternalCountRetrieverFactory;
+import org.wso2.carbon.identity.user.store.count.listener.UserStoreCountListener;
+import org.wso2.carbon.identity.user.store.count.util.UserStoreCountUtils;
+import org.wso2.carbon.user.core.listener.UserOperationEventListener;
 import org.wso2.carbon.user.core.service.RealmService;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 /**
  * @scr.component name="identity.user.store.count.component" immediate="true"
  * @scr.reference name="user.realmservice.default"
@@ -103,6 +110,13 @@ public class UserStoreCountDSComponent {
         } else {
             log.error("Identity User Store Count -  JDBCUserStoreCountRetriever could not be registered.");
         }
+
+        UserStoreCountDataHolder.getInstance()
+                .setCountExecutor(Executors.newFixedThreadPool(UserStoreCountUtils.getCountThreadPoolSize()));
+
+        UserStoreCountListener userStoreCountListener = new UserStoreCountListener();
+        bundleContext.registerService(UserOperationEventListener.class.getName(), userStoreCountListener, null);
+        UserTotalCounter.getInstance().setEnabled(userStoreCountListener.isEnable());
     }
 
     protected void deactivate(ComponentContext ctxt) {
@@ -111,6 +125,13 @@ public class UserStoreCountDSComponent {
         }
 
         UserStoreCountDataHolder.getInstance().setBundleContext(null);
+
+        ExecutorService countExecutor = UserStoreCountDataHolder.getInstance().getCountExecutor();
+        if (countExecutor != null) {
+            countExecutor.shutdownNow();
+            UserStoreCountDataHolder.getInstance().setCountExecutor(null);
+        }
+        UserTotalCounter.getInstance().setEnabled(false);
     }
 
     protected void setCountRetrieverFactory(AbstractCountRetrieverFactory countRetrieverFactory) {
@@ -25,6 +25,7 @@ import org.wso2.carbon.user.core.service.RealmService;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 public class UserStoreCountDataHolder {
     private static UserStoreCountDataHolder instance = new UserStoreCountDataHolder();
@@ -32,6 +33,7 @@ public class UserStoreCountDataHolder {
     private BundleContext bundleContext = null;
     private RealmService realmService = null;
     private Map<String, AbstractCountRetrieverFactory> countRetrieverFactories = new HashMap<>();
+    private ExecutorService countExecutor = null;
 
     private UserStoreCountDataHolder() {
 
@@ -61,4 +63,12 @@ public class UserStoreCountDataHolder {
         return countRetrieverFactories;
     }
 
+    public ExecutorService getCountExecutor() {
+        return countExecutor;
+    }
+
+    public void setCountExecutor(ExecutorService countExecutor) {
+        this.countExecutor = countExecutor;
+    }
+
 }
@@ -43,6 +43,12 @@ import java.util.Set;
  */
 public class UserStoreCountUtils {
     public static final String countRetrieverClass = "CountRetrieverClass";
+    public static final String RESULT_CACHE_TIMEOUT = "UserStoreCount.ResultCacheTimeout";
+    public static final String COUNT_THREAD_POOL_SIZE = "UserStoreCount.ThreadPoolSize";
+    public static final String USER_TOTAL_RESYNC_INTERVAL = "UserStoreCount.UserTotalResyncInterval";
+    private static final int DEFAULT_RESULT_CACHE_TIMEOUT = 30;
+    private static final int DEFAULT_COUNT_THREAD_POOL_SIZE = 4;
+    private static final int DEFAULT_USER_TOTAL_RESYNC_INTERVAL = 3600;
     private static Log log = LogFactory.getLog(UserStoreCountUtils.class);
 
     /**
@@ -234,4 +240,64 @@ public class UserStoreCountUtils {
         }
         return isEnabled;
     }
+
+    /**
+     * Returns the key user store domains are kept by in count caches, where the primary user store may not have a
+     * domain name configured.
+     *
+     * @param domain user store domain
+     * @return upper case domain name, the primary domain name if the domain is empty
+     */
+    public static String getDomainKey(String domain) {
+
+        if (StringUtils.isBlank(domain)) {
+            domain = IdentityUtil.getPrimaryDomainName();
+        }
+        return domain.trim().toUpperCase();
+    }
+
+    /**
+     * Whether a user name filter matches all the users, as the '%' used by the user management UI by default.
+     *
+     * @param filter user name filter
+     * @return true if the filter is empty or made only of '%'
+     */
+    public static boolean isUnfiltered(String filter) {
+        return filter == null || StringUtils.isEmpty(filter.trim().replace("%", ""));
+    }
+
+    /**
+     * @return seconds count results are cached for, 0 if not cached
+     */
+    public static int getResultCacheTimeout() {
+        return getIntProperty(RESULT_CACHE_TIMEOUT, DEFAULT_RESULT_CACHE_TIMEOUT);
+    }
+
+    /**
+     * @return number of threads user store domains are counted in parallel with
+     */
+    public static int getCountThreadPoolSize() {
+        return Math.max(1, getIntProperty(COUNT_THREAD_POOL_SIZE, DEFAULT_COUNT_THREAD_POOL_SIZE));
+    }
+
+    /**
+     * @return seconds after which an incrementally maintained user total is counted again from the user store
+     */
+    public static int getUserTotalResyncInterval() {
+        return getIntProperty(USER_TOTAL_RESYNC_INTERVAL, DEFAULT_USER_TOTAL_RESYNC_INTERVAL);
+    }
+
+    private static int getIntProperty(String propertyName, int defaultValue) {
+
+        String value = IdentityUtil.getProperty(propertyName);
+        if (StringUtils.isNotBlank(value)) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                log.warn("Invalid value " + value + " configured for " + propertyName + ". Using the default value " +
+                        defaultValue);
+            }
+        }
+        return defaultValue;
+    }
 }
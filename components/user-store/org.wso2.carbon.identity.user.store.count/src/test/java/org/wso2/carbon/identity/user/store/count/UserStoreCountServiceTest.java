@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.user.store.count;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.reflect.Whitebox;
+import org.testng.IObjectFactory;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.ObjectFactory;
+import org.testng.annotations.Test;
+import org.wso2.carbon.context.CarbonContext;
+import org.wso2.carbon.context.PrivilegedCarbonContext;
+import org.wso2.carbon.identity.user.store.count.cache.UserStoreCountCache;
+import org.wso2.carbon.identity.user.store.count.dto.PairDTO;
+import org.wso2.carbon.identity.user.store.count.exception.UserStoreCounterException;
+import org.wso2.carbon.identity.user.store.count.internal.UserStoreCountDataHolder;
+import org.wso2.carbon.identity.user.store.count.util.UserStoreCountUtils;
+import org.wso2.carbon.user.api.RealmConfiguration;
+
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.when;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.testng.Assert.assertEquals;
+
+@PrepareForTest(UserStoreCountUtils.class)
+public class UserStoreCountServiceTest {
+
+    private static final int TENANT_ID = 1;
+    private static final String TENANT_DOMAIN = "wso2.com";
+    private static final String PRIMARY = "PRIMARY";
+    private static final String SECONDARY = "SECONDARY";
+
+    private ExecutorService countExecutor;
+    private Map<String, StubCountRetriever> counters;
+    private UserStoreCountService countService = new UserStoreCountService();
+
+    @ObjectFactory
+    public IObjectFactory getObjectFactory() {
+        return new org.powermock.modules.testng.PowerMockObjectFactory();
+    }
+
+    @BeforeClass
+    public void setUp() {
+
+        System.setProperty("carbon.home", Paths.get(System.getProperty("user.dir"), "target").toString());
+        countExecutor = Executors.newFixedThreadPool(2);
+        UserStoreCountDataHolder.getInstance().setCountExecutor(countExecutor);
+    }
+
+    @AfterClass
+    public void tearDown() {
+
+        UserStoreCountDataHolder.getInstance().setCountExecutor(null);
+        countExecutor.shutdownNow();
+    }
+
+    @BeforeMethod
+    public void setUpMethod() throws Exception {
+
+        Whitebox.setInternalState(UserStoreCountCache.class, "instance",
+                Whitebox.invokeConstructor(UserStoreCountCache.class));
+
+        counters = new HashMap<>();
+        counters.put(PRIMARY, new StubCountRetriever(10L));
+        counters.put(SECONDARY, new StubCountRetriever(20L));
+
+        mockStatic(UserStoreCountUtils.class);
+        when(UserStoreCountUtils.getCountEnabledUserStores())
+                .thenReturn(new LinkedHashSet<>(Arrays.asList(PRIMARY, SECONDARY)));
+        when(UserStoreCountUtils.getCounterInstanceForDomain(anyString()))
+                .thenAnswer(new Answer<UserStoreCountRetriever>() {
+                    @Override
+                    public UserStoreCountRetriever answer(InvocationOnMock invocation) {
+                        return counters.get((String) invocation.getArguments()[0]);
+                    }
+                });
+        when(UserStoreCountUtils.isUserStoreEnabled(anyString())).thenReturn(true);
+        when(UserStoreCountUtils.isUnfiltered(anyString())).thenCallRealMethod();
+        when(UserStoreCountUtils.getDomainKey(anyString())).thenCallRealMethod();
+        when(UserStoreCountUtils.getResultCacheTimeout()).thenReturn(30);
+
+        PrivilegedCarbonContext.startTenantFlow();
+        PrivilegedCarbonContext carbonContext = PrivilegedCarbonContext.getThreadLocalCarbonContext();
+        carbonContext.setTenantId(TENANT_ID);
+        carbonContext.setTenantDomain(TENANT_DOMAIN);
+    }
+
+    @AfterMethod
+    public void tearDownMethod() {
+        PrivilegedCarbonContext.endTenantFlow();
+    }
+
+    @Test
+    public void testDomainsAreCountedInParallel() throws Exception {
+
+        // Each count waits for the other, so the domains are only counted if they are counted at the same time.
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        counters.get(PRIMARY).barrier = barrier;
+        counters.get(SECONDARY).barrier = barrier;
+
+        assertCounts(countService.countUsers("a%"), 10L, 20L);
+        assertEquals(countService.countRoles("a%").length, 4);
+        assertCounts(countService.countClaim("http://wso2.org/claims/country", "LK"), 10L, 20L);
+    }
+
+    @Test
+    public void testDomainsAreCountedInTenantFlowOfCaller() throws Exception {
+
+        assertCounts(countService.countUsers("a%"), 10L, 20L);
+        for (StubCountRetriever counter : counters.values()) {
+            assertEquals(counter.tenantId, TENANT_ID);
+            assertEquals(counter.tenantDomain, TENANT_DOMAIN);
+        }
+    }
+
+    @Test
+    public void testCountsAreCached() throws Exception {
+
+        assertCounts(countService.countUsers("a%"), 10L, 20L);
+        counters.get(PRIMARY).count = 11L;
+        assertCounts(countService.countUsers("a%"), 10L, 20L);
+        assertEquals(countService.countUsersInDomain("a%", PRIMARY), Long.valueOf(10L));
+        assertEquals(counters.get(PRIMARY).counts.get(), 1);
+        assertEquals(counters.get(SECONDARY).counts.get(), 1);
+
+        // Cached per filter and count type.
+        assertCounts(countService.countUsers("b%"), 11L, 20L);
+        assertCounts(countService.countClaim("http://wso2.org/claims/country", "a%"), 11L, 20L);
+        assertEquals(counters.get(PRIMARY).counts.get(), 3);
+    }
+
+    @Test
+    public void testCountsAreCachedPerTenant() throws Exception {
+
+        assertCounts(countService.countUsers("a%"), 10L, 20L);
+
+        PrivilegedCarbonContext.startTenantFlow();
+        try {
+            PrivilegedCarbonContext.getThreadLocalCarbonContext().setTenantId(2);
+            PrivilegedCarbonContext.getThreadLocalCarbonContext().setTenantDomain("abc.com");
+            assertCounts(countService.countUsers("a%"), 10L, 20L);
+        } finally {
+            PrivilegedCarbonContext.endTenantFlow();
+        }
+        assertEquals(counters.get(PRIMARY).counts.get(), 2);
+    }
+
+    @Test
+    public void testCountsAreNotCachedWhenDisabled() throws Exception {
+
+        when(UserStoreCountUtils.getResultCacheTimeout()).thenReturn(0);
+
+        assertCounts(countService.countUsers("a%"), 10L, 20L);
+        assertCounts(countService.countUsers("a%"), 10L, 20L);
+        assertEquals(counters.get(PRIMARY).counts.get(), 2);
+    }
+
+    @Test
+    public void testFailedCountIsNotCached() throws Exception {
+
+        counters.get(SECONDARY).failure = new UserStoreCounterException("Count failed");
+
+        assertCounts(countService.countUsers("a%"), 10L, -1L);
+        counters.get(SECONDARY).failure = null;
+        assertCounts(countService.countUsers("a%"), 10L, 20L);
+        assertEquals(counters.get(PRIMARY).counts.get(), 1);
+        assertEquals(counters.get(SECONDARY).counts.get(), 2);
+    }
+
+    @Test
+    public void testDomainWithoutCounter() throws Exception {
+
+        counters.remove(SECONDARY);
+
+        assertCounts(countService.countUsers("a%"), 10L, -1L);
+    }
+
+    @Test
+    public void testDomainsAreCountedInCallerWithoutExecutor() throws Exception {
+
+        UserStoreCountDataHolder.getInstance().setCountExecutor(null);
+        try {
+            assertCounts(countService.countUsers("a%"), 10L, 20L);
+            assertEquals(counters.get(PRIMARY).thread, Thread.currentThread());
+        } finally {
+            UserStoreCountDataHolder.getInstance().setCountExecutor(countExecutor);
+        }
+    }
+
+    private void assertCounts(PairDTO[] counts, long primary, long secondary) {
+
+        assertEquals(counts[0].getKey(), PRIMARY);
+        assertEquals(counts[0].getValue(), Long.toString(primary));
+        assertEquals(counts[1].getKey(), SECONDARY);
+        assertEquals(counts[1].getValue(), Long.toString(secondary));
+    }
+
+    /**
+     * Returns a fixed count, recording the calls and the carbon context they were made in.
+     */
+    private static class StubCountRetriever implements UserStoreCountRetriever {
+
+        private final AtomicInteger counts = new AtomicInteger();
+        private volatile Long count;
+        private volatile UserStoreCounterException failure;
+        private volatile CyclicBarrier barrier;
+        private volatile int tenantId;
+        private volatile String tenantDomain;
+        private volatile Thread thread;
+
+        private StubCountRetriever(Long count) {
+            this.count = count;
+        }
+
+        @Override
+        public void init(RealmConfiguration realmConfiguration) {
+
+        }
+
+        @Override
+        public Long countUsers(String filter) throws UserStoreCounterException {
+            return count();
+        }
+
+        @Override
+        public Long countRoles(String filter) throws UserStoreCounterException {
+            return count();
+        }
+
+        @Override
+        public Long countClaim(String claimURI, String valueFilter) throws UserStoreCounterException {
+            return count();
+        }
+
+        private Long count() throws UserStoreCounterException {
+
+            counts.incrementAndGet();
+            tenantId = CarbonContext.getThreadLocalCarbonContext().getTenantId();
+            tenantDomain = CarbonContext.getThreadLocalCarbonContext().getTenantDomain();
+            thread = Thread.currentThread();
+            if (barrier != null) {
+                try {
+                    barrier.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException | BrokenBarrierException | TimeoutException e) {
+                    throw new UserStoreCounterException("Domains were not counted in parallel", e);
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return count;
+        }
+    }
+}
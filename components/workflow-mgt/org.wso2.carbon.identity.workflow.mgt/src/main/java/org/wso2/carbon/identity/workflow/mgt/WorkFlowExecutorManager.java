@@ -19,7 +19,6 @@
 package org.wso2.carbon.identity.workflow.mgt;
 
 import org.apache.axiom.om.OMElement;
-import org.apache.axiom.om.xpath.AXIOMXPath;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
@@ -27,11 +26,10 @@ import org.apache.commons.logging.LogFactory;
 import org.jaxen.JaxenException;
 import org.wso2.carbon.base.MultitenantConstants;
 import org.wso2.carbon.context.PrivilegedCarbonContext;
-import org.wso2.carbon.identity.workflow.mgt.bean.Parameter;
 import org.wso2.carbon.identity.workflow.mgt.bean.Workflow;
-import org.wso2.carbon.identity.workflow.mgt.bean.WorkflowAssociation;
+import org.wso2.carbon.identity.workflow.mgt.cache.CompiledWorkflowAssociation;
+import org.wso2.carbon.identity.workflow.mgt.cache.WorkflowAssociationCache;
 import org.wso2.carbon.identity.workflow.mgt.dao.RequestEntityRelationshipDAO;
-import org.wso2.carbon.identity.workflow.mgt.dao.WorkflowDAO;
 import org.wso2.carbon.identity.workflow.mgt.dao.WorkflowRequestAssociationDAO;
 import org.wso2.carbon.identity.workflow.mgt.dao.WorkflowRequestDAO;
 import org.wso2.carbon.identity.workflow.mgt.dto.WorkflowRequest;
@@ -88,21 +86,21 @@ public class WorkFlowExecutorManager {
         if (StringUtils.isBlank(workFlowRequest.getUuid())) {
             workFlowRequest.setUuid(UUID.randomUUID().toString());
         }
-        OMElement xmlRequest = WorkflowRequestBuilder.buildXMLRequest(workFlowRequest);
-        WorkflowRequestAssociationDAO requestAssociationDAO = new WorkflowRequestAssociationDAO();
-        WorkflowDAO workflowDAO = new WorkflowDAO();
-        List<WorkflowAssociation> associations =
-                requestAssociationDAO.getWorkflowAssociationsForRequest(workFlowRequest.getEventType(), workFlowRequest
-                        .getTenantId());
+        List<CompiledWorkflowAssociation> associations = WorkflowAssociationCache.getInstance()
+                .getAssociations(workFlowRequest.getEventType(), workFlowRequest.getTenantId());
         if (CollectionUtils.isEmpty(associations)) {
             return new WorkflowExecutorResult(ExecutorResultState.NO_ASSOCIATION);
         }
+        // Built only if one of the association conditions refers to the request.
+        OMElement xmlRequest = null;
         boolean workflowEngaged = false;
         boolean requestSaved = false;
-        for (WorkflowAssociation association : associations) {
+        for (CompiledWorkflowAssociation association : associations) {
             try {
-                AXIOMXPath axiomxPath = new AXIOMXPath(association.getAssociationCondition());
-                if (axiomxPath.booleanValueOf(xmlRequest)) {
+                if (xmlRequest == null && association.requiresRequestDocument()) {
+                    xmlRequest = WorkflowRequestBuilder.buildXMLRequest(workFlowRequest);
+                }
+                if (association.matches(xmlRequest)) {
                     workflowEngaged = true;
                     if (!requestSaved) {
                         WorkflowRequestDAO requestDAO = new WorkflowRequestDAO();
@@ -114,19 +112,17 @@ public class WorkFlowExecutorManager {
                     String relationshipId = UUID.randomUUID().toString();
                     WorkflowRequest requestToSend = workFlowRequest.clone();
                     requestToSend.setUuid(relationshipId);
-                    Workflow workflow = workflowDAO.getWorkflow(association.getWorkflowId());
+                    Workflow workflow = association.getWorkflow();
                     AbstractWorkflow templateImplementation = WorkflowServiceDataHolder.getInstance()
                             .getWorkflowImpls().get(workflow.getTemplateId()).get(workflow.getWorkflowImplId());
-                    List<Parameter> parameterList = workflowDAO.getWorkflowParams(association.getWorkflowId());
-                    templateImplementation.execute(requestToSend, parameterList);
-                    workflowRequestAssociationDAO.addNewRelationship(relationshipId, association.getWorkflowId(),
-                            workFlowRequest
-                                    .getUuid(), WorkflowRequestStatus.PENDING
-                                    .toString(), workFlowRequest.getTenantId());
+                    templateImplementation.execute(requestToSend, association.getParameters());
+                    workflowRequestAssociationDAO.addNewRelationship(relationshipId,
+                            association.getAssociation().getWorkflowId(), workFlowRequest.getUuid(),
+                            WorkflowRequestStatus.PENDING.toString(), workFlowRequest.getTenantId());
                 }
             } catch (JaxenException e) {
-                String errorMsg = "Error when executing the xpath expression:" + association.getAssociationCondition()
-                        + " , on " + xmlRequest;
+                String errorMsg = "Error when executing the xpath expression:" + association.getAssociation()
+                        .getAssociationCondition() + " , on " + xmlRequest;
                 log.error(errorMsg, e);
                 return new WorkflowExecutorResult(ExecutorResultState.FAILED, errorMsg);
             } catch (CloneNotSupportedException e) {
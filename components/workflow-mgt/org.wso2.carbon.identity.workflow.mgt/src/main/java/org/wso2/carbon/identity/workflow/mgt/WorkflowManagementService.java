@@ -249,6 +249,24 @@ public interface WorkflowManagementService {
     WorkflowRequest[] getRequestsFromFilter(String user, String beginDate, String endDate, String
             dateCategory, int tenantId, String status) throws WorkflowException;
 
+    /**
+     * Get a page of requests matching the filter, latest first.
+     *
+     * @param user           User to get requests of, empty to retrieve requests of all users
+     * @param beginDate      lower limit of date range to filter
+     * @param endDate        upper limit of date range to filter
+     * @param dateCategory   filter by created time or last updated time
+     * @param tenantId       tenant id of currently logged in user
+     * @param status         status to filter
+     * @param afterRequestId id of the last request of the previous page, null to retrieve the first page
+     * @param limit          maximum number of requests to retrieve
+     * @return
+     * @throws WorkflowException
+     */
+    WorkflowRequest[] getRequestsFromFilter(String user, String beginDate, String endDate, String dateCategory,
+                                            int tenantId, String status, String afterRequestId, int limit)
+            throws WorkflowException;
+
     List<String> listEntityNames(String wfOperationType, String wfStatus, String entityType, int tenantID, String
             idFilter) throws WorkflowException;
 }
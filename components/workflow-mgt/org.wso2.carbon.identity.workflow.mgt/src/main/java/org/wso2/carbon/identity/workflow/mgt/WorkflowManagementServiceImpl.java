@@ -25,9 +25,10 @@ import org.wso2.carbon.context.CarbonContext;
 import org.wso2.carbon.identity.workflow.mgt.bean.Entity;
 import org.wso2.carbon.identity.workflow.mgt.bean.Parameter;
 import org.wso2.carbon.identity.workflow.mgt.bean.Workflow;
-import org.wso2.carbon.identity.workflow.mgt.bean.WorkflowAssociation;
 import org.wso2.carbon.identity.workflow.mgt.bean.WorkflowRequest;
 import org.wso2.carbon.identity.workflow.mgt.bean.WorkflowRequestAssociation;
+import org.wso2.carbon.identity.workflow.mgt.cache.CompiledWorkflowAssociation;
+import org.wso2.carbon.identity.workflow.mgt.cache.WorkflowAssociationCache;
 import org.wso2.carbon.identity.workflow.mgt.dao.AssociationDAO;
 import org.wso2.carbon.identity.workflow.mgt.dao.RequestEntityRelationshipDAO;
 import org.wso2.carbon.identity.workflow.mgt.dao.WorkflowDAO;
@@ -372,6 +373,7 @@ public class WorkflowManagementServiceImpl implements WorkflowManagementService
             }
         }
         workflowDAO.addWorkflowParams(parameterList, workflow.getWorkflowId(), tenantId);
+        WorkflowAssociationCache.getInstance().invalidate(tenantId);
         for (WorkflowListener workflowListener : workflowListenerList) {
             if (workflowListener.isEnable()) {
                 workflowListener.doPostAddWorkflow(workflow, parameterList, tenantId);
@@ -413,6 +415,7 @@ public class WorkflowManagementServiceImpl implements WorkflowManagementService
         try {
             xpath.compile(condition);
             associationDAO.addAssociation(associationName, workflowId, eventId, condition);
+            invalidateAssociationCache();
         } catch (XPathExpressionException e) {
             log.error("The condition:" + condition + " is not an valid xpath expression.", e);
             throw new WorkflowRuntimeException("The condition is not a valid xpath expression.");
@@ -462,6 +465,7 @@ public class WorkflowManagementServiceImpl implements WorkflowManagementService
             WorkflowManagementUtil.deleteWorkflowRole(StringUtils.deleteWhitespace(workflow.getWorkflowName()));
             workflowDAO.removeWorkflowParams(workflowId);
             workflowDAO.removeWorkflow(workflowId);
+            invalidateAssociationCache();
 
             for (WorkflowListener workflowListener : workflowListenerList) {
                 if (workflowListener.isEnable()) {
@@ -483,6 +487,7 @@ public class WorkflowManagementServiceImpl implements WorkflowManagementService
             }
         }
         associationDAO.removeAssociation(associationId);
+        invalidateAssociationCache();
         for (WorkflowListener workflowListener : workflowListenerList) {
             if (workflowListener.isEnable()) {
                 workflowListener.doPostRemoveAssociation(associationId);
@@ -566,6 +571,7 @@ public class WorkflowManagementServiceImpl implements WorkflowManagementService
         Association association = associationDAO.getAssociation(associationId);
         association.setEnabled(isEnable);
         associationDAO.updateAssociation(association);
+        invalidateAssociationCache();
         for (WorkflowListener workflowListener : workflowListenerList) {
             if (workflowListener.isEnable()) {
                 workflowListener.doPostChangeAssociationState(associationId, isEnable);
@@ -704,8 +710,8 @@ public class WorkflowManagementServiceImpl implements WorkflowManagementService
                 workflowListener.doPreIsEventAssociated(eventType);
             }
         }
-        List<WorkflowAssociation> associations = workflowRequestAssociationDAO.getWorkflowAssociationsForRequest
-                (eventType, CarbonContext.getThreadLocalCarbonContext().getTenantId());
+        List<CompiledWorkflowAssociation> associations = WorkflowAssociationCache.getInstance()
+                .getAssociations(eventType, CarbonContext.getThreadLocalCarbonContext().getTenantId());
         for (WorkflowListener workflowListener : workflowListenerList) {
             if (workflowListener.isEnable()) {
                 workflowListener.doPreIsEventAssociated(eventType);
@@ -823,6 +829,14 @@ public class WorkflowManagementServiceImpl implements WorkflowManagementService
     public WorkflowRequest[] getRequestsFromFilter(String user, String beginDate, String endDate, String
             dateCategory, int tenantId, String status) throws WorkflowException {
 
+        return getRequestsFromFilter(user, beginDate, endDate, dateCategory, tenantId, status, null,
+                WorkflowRequestDAO.MAX_REQUESTS_PER_QUERY);
+    }
+
+    @Override
+    public WorkflowRequest[] getRequestsFromFilter(String user, String beginDate, String endDate, String
+            dateCategory, int tenantId, String status, String afterRequestId, int limit) throws WorkflowException {
+
         SimpleDateFormat dateFormat = new SimpleDateFormat(DATE_FORMAT_FOR_FILTERING);
         Timestamp beginTime;
         Timestamp endTime;
@@ -849,15 +863,13 @@ public class WorkflowManagementServiceImpl implements WorkflowManagementService
             Date parsedEndDate = new Date();
             endTime = new java.sql.Timestamp(parsedEndDate.getTime());
         }
-
-        WorkflowRequest[] resultList;
-        if (StringUtils.isBlank(user)) {
-            resultList = workflowRequestDAO.getRequestsFilteredByTime(beginTime, endTime, dateCategory, tenantId,
-                    status);
-        } else {
-            resultList = workflowRequestDAO.getRequestsOfUserFilteredByTime(user, beginTime, endTime, dateCategory,
-                    tenantId, status);
+        if (limit <= 0 || limit > WorkflowRequestDAO.MAX_REQUESTS_PER_QUERY) {
+            limit = WorkflowRequestDAO.MAX_REQUESTS_PER_QUERY;
         }
+
+        String createdBy = StringUtils.isBlank(user) ? null : user;
+        WorkflowRequest[] resultList = workflowRequestDAO.getRequestsFilteredByTime(createdBy, beginTime, endTime,
+                dateCategory, tenantId, status, afterRequestId, limit);
         for (WorkflowListener workflowListener : workflowListenerList) {
             if (workflowListener.isEnable()) {
                 workflowListener.doPostGetRequestsFromFilter(user, beginDate, endDate, dateCategory, tenantId, status,
@@ -902,5 +914,11 @@ public class WorkflowManagementServiceImpl implements WorkflowManagementService
         return requestEntities;
     }
 
+    /**
+     * Workflows and associations are managed within the tenant they belong to.
+     */
+    private void invalidateAssociationCache() {
 
+        WorkflowAssociationCache.getInstance().invalidate(CarbonContext.getThreadLocalCarbonContext().getTenantId());
+    }
 }
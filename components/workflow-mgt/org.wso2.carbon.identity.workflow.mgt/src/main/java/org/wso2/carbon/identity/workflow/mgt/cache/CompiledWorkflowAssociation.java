@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.workflow.mgt.cache;
+
+import org.apache.axiom.om.OMAbstractFactory;
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.OMNamespace;
+import org.apache.axiom.om.xpath.AXIOMXPath;
+import org.apache.commons.lang.StringUtils;
+import org.jaxen.JaxenException;
+import org.jaxen.expr.BinaryExpr;
+import org.jaxen.expr.Expr;
+import org.jaxen.expr.FunctionCallExpr;
+import org.jaxen.expr.LiteralExpr;
+import org.jaxen.expr.NumberExpr;
+import org.jaxen.expr.UnaryExpr;
+import org.wso2.carbon.identity.workflow.mgt.bean.Parameter;
+import org.wso2.carbon.identity.workflow.mgt.bean.Workflow;
+import org.wso2.carbon.identity.workflow.mgt.bean.WorkflowAssociation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A workflow association with its condition compiled once, together with the workflow and the workflow parameters
+ * it engages. Conditions that do not refer to the request, such as the "boolean(1)" used for associations applied to
+ * all requests, are evaluated at compile time so that the request document does not have to be built for them.
+ */
+public class CompiledWorkflowAssociation {
+
+    // Core functions whose result only depends on their arguments.
+    private static final Set<String> CONTEXT_FREE_FUNCTIONS = new HashSet<>(Arrays.asList("boolean", "not", "true",
+            "false", "concat", "contains", "starts-with", "ends-with", "substring", "substring-before",
+            "substring-after", "string", "string-length", "normalize-space", "translate", "number", "floor",
+            "ceiling", "round", "upper-case", "lower-case"));
+
+    private final WorkflowAssociation association;
+    private final Workflow workflow;
+    private final List<Parameter> parameters;
+    private final AXIOMXPath condition;
+    private final Boolean constantResult;
+    private final JaxenException compileError;
+
+    CompiledWorkflowAssociation(WorkflowAssociation association, Workflow workflow, List<Parameter> parameters) {
+
+        this.association = association;
+        this.workflow = workflow;
+        this.parameters = Collections.unmodifiableList(new ArrayList<>(parameters));
+
+        AXIOMXPath compiled = null;
+        Boolean constant = null;
+        JaxenException error = null;
+        try {
+            compiled = new AXIOMXPath(association.getAssociationCondition());
+            if (!dependsOnContext(compiled.getRootExpr())) {
+                OMElement emptyRequest = OMAbstractFactory.getOMFactory()
+                        .createOMElement("request", (OMNamespace) null);
+                constant = compiled.booleanValueOf(emptyRequest);
+            }
+        } catch (JaxenException e) {
+            error = e;
+        }
+        this.condition = compiled;
+        this.constantResult = constant;
+        this.compileError = error;
+    }
+
+    public WorkflowAssociation getAssociation() {
+        return association;
+    }
+
+    public Workflow getWorkflow() {
+        return workflow;
+    }
+
+    /**
+     * Returns a copy of the workflow parameters, which can be handed over to a workflow implementation.
+     */
+    public List<Parameter> getParameters() {
+        return new ArrayList<>(parameters);
+    }
+
+    /**
+     * Whether the condition has to be evaluated against the request document.
+     */
+    public boolean requiresRequestDocument() {
+        return compileError == null && constantResult == null;
+    }
+
+    /**
+     * Evaluates the association condition.
+     *
+     * @param xmlRequest Request document, which may be null if {@link #requiresRequestDocument()} is false
+     * @return Whether the association engages its workflow for the request
+     * @throws JaxenException If the condition is not a valid xpath or fails to evaluate
+     */
+    public boolean matches(OMElement xmlRequest) throws JaxenException {
+
+        if (compileError != null) {
+            throw compileError;
+        }
+        if (constantResult != null) {
+            return constantResult;
+        }
+        return condition.booleanValueOf(xmlRequest);
+    }
+
+    private static boolean dependsOnContext(Expr expr) {
+
+        if (expr instanceof LiteralExpr || expr instanceof NumberExpr) {
+            return false;
+        }
+        if (expr instanceof UnaryExpr) {
+            return dependsOnContext(((UnaryExpr) expr).getExpr());
+        }
+        if (expr instanceof BinaryExpr) {
+            return dependsOnContext(((BinaryExpr) expr).getLHS()) || dependsOnContext(((BinaryExpr) expr).getRHS());
+        }
+        if (expr instanceof FunctionCallExpr) {
+            FunctionCallExpr functionCall = (FunctionCallExpr) expr;
+            List parameters = functionCall.getParameters();
+            if (StringUtils.isNotEmpty(functionCall.getPrefix()) ||
+                    !CONTEXT_FREE_FUNCTIONS.contains(functionCall.getFunctionName())) {
+                return true;
+            }
+            // Functions such as string() read the context node when called without arguments.
+            if (parameters.isEmpty() && !"true".equals(functionCall.getFunctionName()) &&
+                    !"false".equals(functionCall.getFunctionName())) {
+                return true;
+            }
+            for (Object parameter : parameters) {
+                if (dependsOnContext((Expr) parameter)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        // Location paths, filters and variable references.
+        return true;
+    }
+}
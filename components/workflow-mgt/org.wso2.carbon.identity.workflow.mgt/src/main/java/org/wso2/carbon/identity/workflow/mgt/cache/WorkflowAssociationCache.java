@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.workflow.mgt.cache;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.core.util.LocalTenantCache;
+import org.wso2.carbon.identity.workflow.mgt.bean.Parameter;
+import org.wso2.carbon.identity.workflow.mgt.bean.Workflow;
+import org.wso2.carbon.identity.workflow.mgt.bean.WorkflowAssociation;
+import org.wso2.carbon.identity.workflow.mgt.dao.WorkflowDAO;
+import org.wso2.carbon.identity.workflow.mgt.dao.WorkflowRequestAssociationDAO;
+import org.wso2.carbon.identity.workflow.mgt.exception.InternalWorkflowException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches the enabled workflow associations of each tenant and event type, with their conditions compiled and the
+ * workflows and workflow parameters they engage loaded, so that intercepting an operation does not hit the database.
+ * The entries of a tenant have to be invalidated whenever its workflows or associations change.
+ * <p>
+ * The compiled entries are kept on each node. Invalidating a tenant publishes a new version of the tenant through
+ * a distributed cache, and every node drops its entries of the tenant once it reads a version it has not seen
+ * before, so that a change made on one node of a cluster is enforced by the others on their next request.
+ */
+public class WorkflowAssociationCache {
+
+    private static final Log log = LogFactory.getLog(WorkflowAssociationCache.class);
+
+    public static final String CACHE_TIMEOUT = "WorkflowAssociations.CacheTimeout";
+
+    private static final long DEFAULT_CACHE_TIMEOUT = 300;
+
+    private static final WorkflowAssociationCache instance = new WorkflowAssociationCache(
+            LocalTenantCache.getCacheTimeout(CACHE_TIMEOUT, DEFAULT_CACHE_TIMEOUT));
+
+    private static final String INVALIDATION_CACHE_NAME = "WorkflowAssociationInvalidationCache";
+
+    private final LocalTenantCache<String, List<CompiledWorkflowAssociation>> associations;
+
+    private final BaseCache<Integer, String> invalidationCache;
+
+    private final Map<Integer, String> localVersions = new ConcurrentHashMap<>();
+
+    WorkflowAssociationCache(long timeoutInSeconds) {
+        associations = new LocalTenantCache<>("WorkflowAssociations", timeoutInSeconds);
+        invalidationCache = new BaseCache<>(INVALIDATION_CACHE_NAME);
+    }
+
+    public static WorkflowAssociationCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the enabled associations of the given event type.
+     *
+     * @param eventType Event type of the request
+     * @param tenantId  Tenant of the request
+     * @return Compiled associations, an empty list if the event is not associated with any workflow
+     * @throws InternalWorkflowException If the associations could not be read from the database
+     */
+    public List<CompiledWorkflowAssociation> getAssociations(final String eventType, final int tenantId)
+            throws InternalWorkflowException {
+
+        syncWithCluster(tenantId);
+        return associations.get(tenantId, eventType,
+                new LocalTenantCache.Loader<List<CompiledWorkflowAssociation>, InternalWorkflowException>() {
+                    @Override
+                    public List<CompiledWorkflowAssociation> load() throws InternalWorkflowException {
+                        return loadAssociations(eventType, tenantId);
+                    }
+                });
+    }
+
+    /**
+     * Drops the associations of the given tenant on all nodes of the cluster.
+     *
+     * @param tenantId Tenant whose workflows or associations changed
+     */
+    public void invalidate(int tenantId) {
+
+        String version = UUID.randomUUID().toString();
+        localVersions.put(tenantId, version);
+        associations.invalidate(tenantId);
+        invalidationCache.addToCache(tenantId, version);
+    }
+
+    private void syncWithCluster(int tenantId) {
+
+        String sharedVersion = invalidationCache.getValueFromCache(tenantId);
+        if (sharedVersion != null && !sharedVersion.equals(localVersions.get(tenantId))) {
+            if (log.isDebugEnabled()) {
+                log.debug("Workflow associations of tenant: " + tenantId + " were changed on another node. Dropping "
+                        + "the local entries.");
+            }
+            localVersions.put(tenantId, sharedVersion);
+            associations.invalidate(tenantId);
+        }
+    }
+
+    private List<CompiledWorkflowAssociation> loadAssociations(String eventType, int tenantId)
+            throws InternalWorkflowException {
+
+        List<WorkflowAssociation> workflowAssociations =
+                new WorkflowRequestAssociationDAO().getWorkflowAssociationsForRequest(eventType, tenantId);
+        if (workflowAssociations.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        WorkflowDAO workflowDAO = new WorkflowDAO();
+        Map<String, Workflow> workflows = new HashMap<>();
+        Map<String, List<Parameter>> workflowParams = new HashMap<>();
+        List<CompiledWorkflowAssociation> compiledAssociations = new ArrayList<>(workflowAssociations.size());
+        for (WorkflowAssociation association : workflowAssociations) {
+            String workflowId = association.getWorkflowId();
+            if (!workflows.containsKey(workflowId)) {
+                workflows.put(workflowId, workflowDAO.getWorkflow(workflowId));
+                workflowParams.put(workflowId, workflowDAO.getWorkflowParams(workflowId));
+            }
+            compiledAssociations.add(new CompiledWorkflowAssociation(association, workflows.get(workflowId),
+                    workflowParams.get(workflowId)));
+        }
+        return Collections.unmodifiableList(compiledAssociations);
+    }
+}
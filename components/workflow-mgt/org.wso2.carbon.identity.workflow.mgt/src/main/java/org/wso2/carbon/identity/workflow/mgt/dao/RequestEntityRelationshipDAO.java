@@ -94,10 +94,11 @@ public class RequestEntityRelationshipDAO {
 
         Connection connection = IdentityDatabaseUtil.getDBConnection();
         PreparedStatement prepStmt = null;
-        String query = SQLConstants.GET_PENDING_RELATIONSHIPS_OF_ENTITY;
+        String query = SQLConstants.PENDING_REQUEST_EXISTS_FOR_ENTITY;
         ResultSet resultSet = null;
         try {
             prepStmt = connection.prepareStatement(query);
+            prepStmt.setMaxRows(1);
             prepStmt.setString(1, entity.getEntityType());
             prepStmt.setString(2, entity.getEntityId());
             prepStmt.setString(3, WorkflowRequestStatus.PENDING.toString());
@@ -128,10 +129,11 @@ public class RequestEntityRelationshipDAO {
 
         Connection connection = IdentityDatabaseUtil.getDBConnection();
         PreparedStatement prepStmt = null;
-        String query = SQLConstants.GET_PENDING_RELATIONSHIPS_OF_GIVEN_TYPE_FOR_ENTITY;
+        String query = SQLConstants.PENDING_REQUEST_OF_TYPE_EXISTS_FOR_ENTITY;
         ResultSet resultSet = null;
         try {
             prepStmt = connection.prepareStatement(query);
+            prepStmt.setMaxRows(1);
             prepStmt.setString(1, entity.getEntityType());
             prepStmt.setString(2, entity.getEntityId());
             prepStmt.setString(3, WorkflowRequestStatus.PENDING.toString());
@@ -18,6 +18,7 @@
 
 package org.wso2.carbon.identity.workflow.mgt.dao;
 
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.identity.core.util.IdentityDatabaseUtil;
@@ -25,24 +26,23 @@ import org.wso2.carbon.identity.workflow.mgt.dto.WorkflowRequest;
 import org.wso2.carbon.identity.workflow.mgt.exception.InternalWorkflowException;
 import org.wso2.carbon.identity.workflow.mgt.exception.WorkflowException;
 import org.wso2.carbon.identity.workflow.mgt.util.SQLConstants;
+import org.wso2.carbon.identity.workflow.mgt.util.WorkflowRequestSerializer;
 import org.wso2.carbon.identity.workflow.mgt.util.WorkflowRequestStatus;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.List;
 
 public class WorkflowRequestDAO {
 
     public static final String UPDATED_AT_FILTER = "updatedAt";
     public static final String ALL_TASKS_FILTER = "allTasks";
+    public static final int MAX_REQUESTS_PER_QUERY = 1000;
     private static Log log = LogFactory.getLog(WorkflowRequestDAO.class);
 
     /**
@@ -80,18 +80,15 @@ public class WorkflowRequestDAO {
     }
 
     /**
-     * Serialize the workflow request to be persisted as blob
+     * Serialize the workflow request to be persisted as blob. Requests are written with
+     * {@link WorkflowRequestSerializer}.
      *
      * @param workFlowRequest The workflow request to be persisted
      * @return
      * @throws IOException
      */
     private byte[] serializeWorkflowRequest(WorkflowRequest workFlowRequest) throws IOException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        ObjectOutputStream oos = new ObjectOutputStream(baos);
-        oos.writeObject(workFlowRequest);
-        oos.close();
-        return baos.toByteArray();
+        return WorkflowRequestSerializer.serialize(workFlowRequest);
     }
 
     /**
@@ -183,7 +180,8 @@ public class WorkflowRequestDAO {
     }
 
     /**
-     * Deserialize the persisted Workflow request
+     * Deserialize the persisted Workflow request, which may also have been persisted with Java serialization by
+     * an earlier version.
      *
      * @param serializedData Serialized request
      * @return
@@ -192,13 +190,7 @@ public class WorkflowRequestDAO {
      */
     private WorkflowRequest deserializeWorkflowRequest(byte[] serializedData) throws IOException,
                                                                                      ClassNotFoundException {
-        ByteArrayInputStream bais = new ByteArrayInputStream(serializedData);
-        ObjectInputStream ois = new ObjectInputStream(bais);
-        Object objectRead = ois.readObject();
-        if (objectRead != null && objectRead instanceof WorkflowRequest) {
-            return (WorkflowRequest) objectRead;
-        }
-        return null;
+        return WorkflowRequestSerializer.deserialize(serializedData);
     }
 
     /**
@@ -292,124 +284,92 @@ public class WorkflowRequestDAO {
             userName, Timestamp beginTime, Timestamp endTime, String timeCategory, int tenantId, String status) throws
             InternalWorkflowException {
 
+        return getRequestsFilteredByTime(userName, beginTime, endTime, timeCategory, tenantId, status, null,
+                MAX_REQUESTS_PER_QUERY);
+    }
+
+    /**
+     * Get requests created/updated in given time period
+     *
+     * @param beginTime    lower limit of date range to filter
+     * @param endTime      upper limit of date range to filter
+     * @param timeCategory filter by created time or last updated time ?
+     * @param tenant       tenant id of currently logged in user
+     * @return
+     * @throws InternalWorkflowException
+     */
+    public org.wso2.carbon.identity.workflow.mgt.bean.WorkflowRequest[]
+    getRequestsFilteredByTime(Timestamp beginTime, Timestamp endTime, String timeCategory, int tenant, String status)
+            throws InternalWorkflowException {
+
+        return getRequestsFilteredByTime(null, beginTime, endTime, timeCategory, tenant, status, null,
+                MAX_REQUESTS_PER_QUERY);
+    }
+
+    /**
+     * Get a page of requests created/updated in given time period, latest first. Pages are read with a keyset on the
+     * filtered time and the request id, so that reading a page does not depend on how many requests precede it.
+     *
+     * @param userName       User to get requests of, null or empty to retrieve requests of all users
+     * @param beginTime      lower limit of date range to filter
+     * @param endTime        upper limit of date range to filter
+     * @param timeCategory   filter by created time or last updated time ?
+     * @param tenantId       tenant id of currently logged in user
+     * @param status         status to filter, null, empty or {@link #ALL_TASKS_FILTER} to retrieve requests of any
+     *                       status
+     * @param afterRequestId id of the last request of the previous page, null to retrieve the first page
+     * @param limit          maximum number of requests to retrieve
+     * @return
+     * @throws InternalWorkflowException
+     */
+    public org.wso2.carbon.identity.workflow.mgt.bean.WorkflowRequest[] getRequestsFilteredByTime(String userName,
+            Timestamp beginTime, Timestamp endTime, String timeCategory, int tenantId, String status,
+            String afterRequestId, int limit) throws InternalWorkflowException {
+
+        String timeColumn = UPDATED_AT_FILTER.equals(timeCategory) ? SQLConstants.REQUEST_UPDATED_AT_COLUMN :
+                SQLConstants.REQUEST_CREATED_AT_COLUMN;
+        boolean filterByUser = StringUtils.isNotEmpty(userName);
+        boolean filterByStatus = StringUtils.isNotEmpty(status) && !ALL_TASKS_FILTER.equals(status);
+
         Connection connection = IdentityDatabaseUtil.getDBConnection();
         PreparedStatement prepStmt = null;
         String query = "";
-
         ResultSet resultSet = null;
         try {
+            Timestamp afterTime = null;
+            if (afterRequestId != null) {
+                afterTime = getRequestTime(connection, afterRequestId, timeColumn);
+            }
 
-            if (connection.getMetaData().getDriverName().contains("MySQL")
-                    || connection.getMetaData().getDriverName().contains("H2")) {
-                if (timeCategory == UPDATED_AT_FILTER) {
-                    if (status.equals(ALL_TASKS_FILTER) || status.equals("")) {
-                        query = SQLConstants.GET_REQUESTS_OF_USER_FILTER_FROM_UPDATED_TIME_MYSQL;
-                    } else {
-                        query = SQLConstants.GET_REQUESTS_OF_USER_FILTER_FROM_UPDATED_TIME_AND_STATUS_MYSQL;
-                    }
-                } else {
-                    if (status.equals(ALL_TASKS_FILTER) || status.equals("")) {
-                        query = SQLConstants.GET_REQUESTS_OF_USER_FILTER_FROM_CREATED_TIME_MYSQL;
-                    } else {
-                        query = SQLConstants.GET_REQUESTS_OF_USER_FILTER_FROM_CREATED_TIME_AND_STATUS_MYSQL;
-                    }
-                }
-            } else if (connection.getMetaData().getDatabaseProductName().contains("DB2")) {
-                if (timeCategory == UPDATED_AT_FILTER) {
-                    if (status.equals(ALL_TASKS_FILTER) || status.equals("")) {
-                        query = SQLConstants.GET_REQUESTS_OF_USER_FILTER_FROM_UPDATED_TIME_DB2SQl;
-                    } else {
-                        query = SQLConstants.GET_REQUESTS_OF_USER_FILTER_FROM_UPDATED_TIME_AND_STATUS_DB2SQL;
-                    }
-                } else {
-                    if (status.equals(ALL_TASKS_FILTER) || status.equals("")) {
-                        query = SQLConstants.GET_REQUESTS_OF_USER_FILTER_FROM_CREATED_TIME_DB2SQL;
-                    } else {
-                        query = SQLConstants.GET_REQUESTS_OF_USER_FILTER_FROM_CREATED_TIME_AND_STATUS_DB2SQL;
-                    }
-                }
-            } else if (connection.getMetaData().getDriverName().contains("MS SQL")) {
-                if (timeCategory == UPDATED_AT_FILTER) {
-                    if (status.equals(ALL_TASKS_FILTER) || status.equals("")) {
-                        query = SQLConstants.GET_REQUESTS_OF_USER_FILTER_FROM_UPDATED_TIME_MSSQL;
-                    } else {
-                        query = SQLConstants.GET_REQUESTS_OF_USER_FILTER_FROM_UPDATED_TIME_AND_STATUS_MSSQL;
-                    }
-                } else {
-                    if (status.equals(ALL_TASKS_FILTER) || status.equals("")) {
-                        query = SQLConstants.GET_REQUESTS_OF_USER_FILTER_FROM_CREATED_TIME_MSSQL;
-                    } else {
-                        query = SQLConstants.GET_REQUESTS_OF_USER_FILTER_FROM_CREATED_TIME_AND_STATUS_MSSQL;
-                    }
-                }
-            } else if (connection.getMetaData().getDriverName().contains("Microsoft") || connection.getMetaData()
-                    .getDriverName().contains("microsoft")) {
-                if (timeCategory == UPDATED_AT_FILTER) {
-                    if (status.equals(ALL_TASKS_FILTER) || status.equals("")) {
-                        query = SQLConstants.GET_REQUESTS_OF_USER_FILTER_FROM_UPDATED_TIME_MSSQL;
-                    } else {
-                        query = SQLConstants.GET_REQUESTS_OF_USER_FILTER_FROM_UPDATED_TIME_AND_STATUS_MSSQL;
-                    }
-                } else {
-                    if (status.equals(ALL_TASKS_FILTER) || status.equals("")) {
-                        query = SQLConstants.GET_REQUESTS_OF_USER_FILTER_FROM_CREATED_TIME_MSSQL;
-                    } else {
-                        query = SQLConstants.GET_REQUESTS_OF_USER_FILTER_FROM_CREATED_TIME_AND_STATUS_MSSQL;
-                    }
-                }
-            } else if (connection.getMetaData().getDriverName().contains("PostgreSQL")) {
-                if (timeCategory == UPDATED_AT_FILTER) {
-                    if (status.equals(ALL_TASKS_FILTER) || status.equals("")) {
-                        query = SQLConstants.GET_REQUESTS_OF_USER_FILTER_FROM_UPDATED_TIME_POSTGRESQL;
-                    } else {
-                        query = SQLConstants.GET_REQUESTS_OF_USER_FILTER_FROM_UPDATED_TIME_AND_STATUS_POSTGRESQL;
-                    }
-                } else {
-                    if (status.equals(ALL_TASKS_FILTER) || status.equals("")) {
-                        query = SQLConstants.GET_REQUESTS_OF_USER_FILTER_FROM_CREATED_TIME_POSTGRESQL;
-                    } else {
-                        query = SQLConstants.GET_REQUESTS_OF_USER_FILTER_FROM_CREATED_TIME_AND_STATUS_POSTGRESQL;
-                    }
-                }
-            } else if (connection.getMetaData().getDriverName().contains("Informix")) {
-                // Driver name = "IBM Informix JDBC Driver for IBM Informix Dynamic Server"
-                if (timeCategory == UPDATED_AT_FILTER) {
-                    if (status.equals(ALL_TASKS_FILTER) || status.equals("")) {
-                        query = SQLConstants.GET_REQUESTS_OF_USER_FILTER_FROM_UPDATED_TIME_INFORMIX;
-                    } else {
-                        query = SQLConstants.GET_REQUESTS_OF_USER_FILTER_FROM_UPDATED_TIME_AND_STATUS_INFORMIX;
-                    }
-                } else {
-                    if (status.equals(ALL_TASKS_FILTER) || status.equals("")) {
-                        query = SQLConstants.GET_REQUESTS_OF_USER_FILTER_FROM_CREATED_TIME_INFORMIX;
-                    } else {
-                        query = SQLConstants.GET_REQUESTS_OF_USER_FILTER_FROM_CREATED_TIME_AND_STATUS_INFORMIX;
-                    }
-                }
-
-            } else {
-                if (timeCategory == UPDATED_AT_FILTER) {
-                    if (status.equals(ALL_TASKS_FILTER) || status.equals("")) {
-                        query = SQLConstants.GET_REQUESTS_OF_USER_FILTER_FROM_UPDATED_TIME_ORACLE;
-                    } else {
-                        query = SQLConstants.GET_REQUESTS_OF_USER_FILTER_FROM_UPDATED_TIME_AND_STATUS_ORACLE;
-                    }
-                } else {
-                    if (status.equals(ALL_TASKS_FILTER) || status.equals("")) {
-                        query = SQLConstants.GET_REQUESTS_OF_USER_FILTER_FROM_CREATED_TIME_ORACLE;
-                    } else {
-                        query = SQLConstants.GET_REQUESTS_OF_USER_FILTER_FROM_CREATED_TIME_AND_STATUS_ORACLE;
-                    }
-                }
+            StringBuilder queryBuilder = new StringBuilder(String.format(SQLConstants.GET_REQUESTS_FILTERED_BY_TIME,
+                    timeColumn));
+            if (filterByUser) {
+                queryBuilder.append(SQLConstants.CREATED_BY_FILTER);
             }
+            if (filterByStatus) {
+                queryBuilder.append(SQLConstants.STATUS_FILTER);
+            }
+            if (afterTime != null) {
+                queryBuilder.append(String.format(SQLConstants.REQUESTS_AFTER_FILTER, timeColumn));
+            }
+            queryBuilder.append(String.format(SQLConstants.ORDER_REQUESTS_BY_TIME, timeColumn));
+            query = limitRows(connection, queryBuilder.toString(), limit);
+
             prepStmt = connection.prepareStatement(query);
-            prepStmt.setString(1, userName);
-            prepStmt.setTimestamp(2, beginTime);
-            prepStmt.setTimestamp(3, endTime);
-            prepStmt.setInt(4, tenantId);
-            if (status.equals(ALL_TASKS_FILTER) || status.equals("")) {
-            } else {
-                prepStmt.setString(5, status);
+            int parameterIndex = 1;
+            prepStmt.setInt(parameterIndex++, tenantId);
+            prepStmt.setTimestamp(parameterIndex++, beginTime);
+            prepStmt.setTimestamp(parameterIndex++, endTime);
+            if (filterByUser) {
+                prepStmt.setString(parameterIndex++, userName);
+            }
+            if (filterByStatus) {
+                prepStmt.setString(parameterIndex++, status);
+            }
+            if (afterTime != null) {
+                prepStmt.setTimestamp(parameterIndex++, afterTime);
+                prepStmt.setTimestamp(parameterIndex++, afterTime);
+                prepStmt.setString(parameterIndex, afterRequestId);
             }
             resultSet = prepStmt.executeQuery();
             ArrayList<org.wso2.carbon.identity.workflow.mgt.bean.WorkflowRequest> requestDTOs = new ArrayList<>();
@@ -427,12 +387,7 @@ public class WorkflowRequestDAO {
                 requestDTO.setCreatedBy(resultSet.getString(SQLConstants.CREATED_BY_COLUMN));
                 requestDTOs.add(requestDTO);
             }
-            org.wso2.carbon.identity.workflow.mgt.bean.WorkflowRequest[] requestArray =
-                    new org.wso2.carbon.identity.workflow.mgt.bean.WorkflowRequest[requestDTOs.size()];
-            for (int i = 0; i < requestDTOs.size(); i++) {
-                requestArray[i] = requestDTOs.get(i);
-            }
-            return requestArray;
+            return requestDTOs.toArray(new org.wso2.carbon.identity.workflow.mgt.bean.WorkflowRequest[0]);
         } catch (SQLException e) {
             throw new InternalWorkflowException("Error when executing the sql query:" + query, e);
         } catch (ClassNotFoundException | IOException e) {
@@ -443,166 +398,93 @@ public class WorkflowRequestDAO {
     }
 
     /**
-     * Get requests created/updated in given time period
+     * Delete requests that were completed before the given time. Entity and workflow relationships of the deleted
+     * requests are removed along with them.
      *
-     * @param beginTime    lower limit of date range to filter
-     * @param endTime      upper limit of date range to filter
-     * @param timeCategory filter by created time or last updated time ?
-     * @param tenant       tenant id of currently logged in user
-     * @return
+     * @param updatedBefore requests last updated before this time are deleted
+     * @param limit         maximum number of requests to delete
+     * @return number of requests deleted
      * @throws InternalWorkflowException
      */
-    public org.wso2.carbon.identity.workflow.mgt.bean.WorkflowRequest[]
-    getRequestsFilteredByTime(Timestamp beginTime, Timestamp endTime, String timeCategory, int tenant, String status)
-            throws InternalWorkflowException {
+    public int deleteCompletedRequests(Timestamp updatedBefore, int limit) throws InternalWorkflowException {
 
         Connection connection = IdentityDatabaseUtil.getDBConnection();
-        PreparedStatement prepStmt = null;
-        String query = "";
-
+        PreparedStatement selectStmt = null;
+        PreparedStatement deleteStmt = null;
         ResultSet resultSet = null;
-
+        String query = "";
         try {
-            if (connection.getMetaData().getDriverName().contains("MySQL")
-                    || connection.getMetaData().getDriverName().contains("H2")) {
-                if (timeCategory == UPDATED_AT_FILTER) {
-                    if (status.equals(ALL_TASKS_FILTER) || status.equals("")) {
-                        query = SQLConstants.GET_REQUESTS_FILTER_FROM_UPDATED_TIME_MYSQL;
-                    } else {
-                        query = SQLConstants.GET_REQUESTS_FILTER_FROM_UPDATED_TIME_AND_STATUS_MYSQL;
-                    }
-                } else {
-                    if (status.equals(ALL_TASKS_FILTER) || status.equals("")) {
-                        query = SQLConstants.GET_REQUESTS_FILTER_FROM_CREATED_TIME_MYSQL;
-                    } else {
-                        query = SQLConstants.GET_REQUESTS_FILTER_FROM_CREATED_TIME_AND_STATUS_MYSQL;
-                    }
-                }
-            } else if (connection.getMetaData().getDatabaseProductName().contains("DB2")) {
-                if (timeCategory == UPDATED_AT_FILTER) {
-                    if (status.equals(ALL_TASKS_FILTER) || status.equals("")) {
-                        query = SQLConstants.GET_REQUESTS_FILTER_FROM_UPDATED_TIME_DB2SQL;
-                    } else {
-                        query = SQLConstants.GET_REQUESTS_FILTER_FROM_UPDATED_TIME_AND_STATUS_DB2SQL;
-                    }
-                } else {
-                    if (status.equals(ALL_TASKS_FILTER) || status.equals("")) {
-                        query = SQLConstants.GET_REQUESTS_FILTER_FROM_CREATED_TIME_DB2SQL;
-                    } else {
-                        query = SQLConstants.GET_REQUESTS_FILTER_FROM_CREATED_TIME_AND_STATUS_DB2SQL;
-                    }
-                }
-            } else if (connection.getMetaData().getDriverName().contains("MS SQL")) {
-                if (timeCategory == UPDATED_AT_FILTER) {
-                    if (status.equals(ALL_TASKS_FILTER) || status.equals("")) {
-                        query = SQLConstants.GET_REQUESTS_FILTER_FROM_UPDATED_TIME_MSSQL;
-                    } else {
-                        query = SQLConstants.GET_REQUESTS_FILTER_FROM_UPDATED_TIME_AND_STATUS_MSSQL;
-                    }
-                } else {
-                    if (status.equals(ALL_TASKS_FILTER) || status.equals("")) {
-                        query = SQLConstants.GET_REQUESTS_FILTER_FROM_CREATED_TIME_MSSQL;
-                    } else {
-                        query = SQLConstants.GET_REQUESTS_FILTER_FROM_CREATED_TIME_AND_STATUS_MSSQL;
-                    }
-                }
-            } else if (connection.getMetaData().getDriverName().contains("Microsoft") || connection.getMetaData()
-                    .getDriverName().contains("microsoft")) {
-                if (timeCategory == UPDATED_AT_FILTER) {
-                    if (status.equals(ALL_TASKS_FILTER) || status.equals("")) {
-                        query = SQLConstants.GET_REQUESTS_FILTER_FROM_UPDATED_TIME_MSSQL;
-                    } else {
-                        query = SQLConstants.GET_REQUESTS_FILTER_FROM_UPDATED_TIME_AND_STATUS_MSSQL;
-                    }
-                } else {
-                    if (status.equals(ALL_TASKS_FILTER) || status.equals("")) {
-                        query = SQLConstants.GET_REQUESTS_FILTER_FROM_CREATED_TIME_MSSQL;
-                    } else {
-                        query = SQLConstants.GET_REQUESTS_FILTER_FROM_CREATED_TIME_AND_STATUS_MSSQL;
-                    }
-                }
-            } else if (connection.getMetaData().getDriverName().contains("PostgreSQL")) {
-                if (timeCategory == UPDATED_AT_FILTER) {
-                    if (status.equals(ALL_TASKS_FILTER) || status.equals("")) {
-                        query = SQLConstants.GET_REQUESTS_FILTER_FROM_UPDATED_TIME_POSTGRESQL;
-                    } else {
-                        query = SQLConstants.GET_REQUESTS_FILTER_FROM_UPDATED_TIME_AND_STATUS_POSTGRESQL;
-                    }
-                } else {
-                    if (status.equals(ALL_TASKS_FILTER) || status.equals("")) {
-                        query = SQLConstants.GET_REQUESTS_FILTER_FROM_CREATED_TIME_POSTGRESQL;
-                    } else {
-                        query = SQLConstants.GET_REQUESTS_FILTER_FROM_CREATED_TIME_AND_STATUS_POSTGRESQL;
-                    }
-                }
-            } else if (connection.getMetaData().getDriverName().contains("Informix")) {
-                // Driver name = "IBM Informix JDBC Driver for IBM Informix Dynamic Server"
-                if (timeCategory == UPDATED_AT_FILTER) {
-                    if (status.equals(ALL_TASKS_FILTER) || status.equals("")) {
-                        query = SQLConstants.GET_REQUESTS_FILTER_FROM_UPDATED_TIME_INFORMIX;
-                    } else {
-                        query = SQLConstants.GET_REQUESTS_FILTER_FROM_UPDATED_TIME_AND_STATUS_INFORMIX;
-                    }
-                } else {
-                    if (status.equals(ALL_TASKS_FILTER) || status.equals("")) {
-                        query = SQLConstants.GET_REQUESTS_FILTER_FROM_CREATED_TIME_INFORMIX;
-                    } else {
-                        query = SQLConstants.GET_REQUESTS_FILTER_FROM_CREATED_TIME_AND_STATUS_INFORMIX;
-                    }
-                }
-
-            } else {
-                if (timeCategory == UPDATED_AT_FILTER) {
-                    if (status.equals(ALL_TASKS_FILTER) || status.equals("")) {
-                        query = SQLConstants.GET_REQUESTS_FILTER_FROM_UPDATED_TIME_ORACLE;
-                    } else {
-                        query = SQLConstants.GET_REQUESTS_FILTER_FROM_UPDATED_TIME_AND_STATUS_ORACLE;
-                    }
-                } else {
-                    if (status.equals(ALL_TASKS_FILTER) || status.equals("")) {
-                        query = SQLConstants.GET_REQUESTS_FILTER_FROM_CREATED_TIME_ORACLE;
-                    } else {
-                        query = SQLConstants.GET_REQUESTS_FILTER_FROM_CREATED_TIME_AND_STATUS_ORACLE;
-                    }
-                }
-            }
-            prepStmt = connection.prepareStatement(query);
-            prepStmt.setTimestamp(1, beginTime);
-            prepStmt.setTimestamp(2, endTime);
-            prepStmt.setInt(3, tenant);
-            if (status.equals(ALL_TASKS_FILTER) || status.equals("")) {
-            } else {
-                prepStmt.setString(4, status);
-            }
-            resultSet = prepStmt.executeQuery();
-            ArrayList<org.wso2.carbon.identity.workflow.mgt.bean.WorkflowRequest> requestDTOs = new ArrayList<>();
+            query = limitRows(connection, SQLConstants.GET_COMPLETED_REQUESTS_UPDATED_BEFORE, limit);
+            selectStmt = connection.prepareStatement(query);
+            selectStmt.setString(1, WorkflowRequestStatus.APPROVED.toString());
+            selectStmt.setString(2, WorkflowRequestStatus.REJECTED.toString());
+            selectStmt.setString(3, WorkflowRequestStatus.FAILED.toString());
+            selectStmt.setString(4, WorkflowRequestStatus.DELETED.toString());
+            selectStmt.setTimestamp(5, updatedBefore);
+            resultSet = selectStmt.executeQuery();
+            List<String> requestIds = new ArrayList<>();
             while (resultSet.next()) {
-                org.wso2.carbon.identity.workflow.mgt.bean.WorkflowRequest
-                        requestDTO = new org.wso2.carbon.identity.workflow.mgt.bean.WorkflowRequest();
-                requestDTO.setRequestId(resultSet.getString(SQLConstants.REQUEST_UUID_COLUMN));
-                requestDTO.setEventType(resultSet.getString(SQLConstants.REQUEST_OPERATION_TYPE_COLUMN));
-                requestDTO.setCreatedAt(resultSet.getTimestamp(SQLConstants.REQUEST_CREATED_AT_COLUMN).toString());
-                requestDTO.setUpdatedAt(resultSet.getTimestamp(SQLConstants.REQUEST_UPDATED_AT_COLUMN).toString());
-                requestDTO.setStatus(resultSet.getString(SQLConstants.REQUEST_STATUS_COLUMN));
-                requestDTO.setRequestParams((deserializeWorkflowRequest(resultSet.getBytes(SQLConstants
-                        .REQUEST_COLUMN)))
-                        .getRequestParameterAsString());
-                requestDTO.setCreatedBy(resultSet.getString(SQLConstants.CREATED_BY_COLUMN));
-                requestDTOs.add(requestDTO);
+                requestIds.add(resultSet.getString(SQLConstants.REQUEST_UUID_COLUMN));
             }
-            org.wso2.carbon.identity.workflow.mgt.bean.WorkflowRequest[] requestArray =
-                    new org.wso2.carbon.identity.workflow.mgt.bean.WorkflowRequest[requestDTOs.size()];
-            for (int i = 0; i < requestDTOs.size(); i++) {
-                requestArray[i] = requestDTOs.get(i);
+            if (requestIds.isEmpty()) {
+                return 0;
             }
-            return requestArray;
+
+            query = SQLConstants.DELETE_REQUEST;
+            deleteStmt = connection.prepareStatement(query);
+            for (String requestId : requestIds) {
+                deleteStmt.setString(1, requestId);
+                deleteStmt.addBatch();
+            }
+            deleteStmt.executeBatch();
+            connection.commit();
+            return requestIds.size();
         } catch (SQLException e) {
+            IdentityDatabaseUtil.rollBack(connection);
             throw new InternalWorkflowException("Error when executing the sql query:" + query, e);
-        } catch (ClassNotFoundException | IOException e) {
-            throw new InternalWorkflowException("Error when deserializing a workflow request.", e);
         } finally {
-            IdentityDatabaseUtil.closeAllConnections(connection, resultSet, prepStmt);
+            IdentityDatabaseUtil.closeStatement(deleteStmt);
+            IdentityDatabaseUtil.closeAllConnections(connection, resultSet, selectStmt);
+        }
+    }
+
+    private Timestamp getRequestTime(Connection connection, String requestId, String timeColumn)
+            throws SQLException, InternalWorkflowException {
+
+        PreparedStatement prepStmt = null;
+        ResultSet resultSet = null;
+        try {
+            prepStmt = connection.prepareStatement(SQLConstants.GET_TIMES_OF_REQUEST);
+            prepStmt.setString(1, requestId);
+            resultSet = prepStmt.executeQuery();
+            if (resultSet.next()) {
+                return resultSet.getTimestamp(timeColumn);
+            }
+            throw new InternalWorkflowException("A workflow request with id " + requestId + " does not exist.");
+        } finally {
+            IdentityDatabaseUtil.closeResultSet(resultSet);
+            IdentityDatabaseUtil.closeStatement(prepStmt);
+        }
+    }
+
+    /**
+     * Limit the rows returned by a query with the syntax of the database in use.
+     */
+    private String limitRows(Connection connection, String query, int limit) throws SQLException {
+
+        String driverName = connection.getMetaData().getDriverName();
+        if (driverName.contains("MySQL") || driverName.contains("H2") || driverName.contains("PostgreSQL")) {
+            return query + " LIMIT " + limit;
+        } else if (connection.getMetaData().getDatabaseProductName().contains("DB2")) {
+            return query + " FETCH FIRST " + limit + " ROWS ONLY";
+        } else if (driverName.contains("MS SQL") || driverName.contains("Microsoft") ||
+                driverName.contains("microsoft")) {
+            return "SELECT TOP " + limit + query.substring("SELECT".length());
+        } else if (driverName.contains("Informix")) {
+            // Driver name = "IBM Informix JDBC Driver for IBM Informix Dynamic Server"
+            return "SELECT FIRST " + limit + query.substring("SELECT".length());
         }
+        return "SELECT * FROM (" + query + ") WHERE ROWNUM <= " + limit;
     }
 
     /**
@@ -34,6 +34,7 @@ import org.wso2.carbon.identity.workflow.mgt.listener.WorkflowExecutorManagerLis
 import org.wso2.carbon.identity.workflow.mgt.listener.WorkflowListener;
 import org.wso2.carbon.identity.workflow.mgt.template.AbstractTemplate;
 import org.wso2.carbon.identity.workflow.mgt.util.WFConstant;
+import org.wso2.carbon.identity.workflow.mgt.util.WorkflowRequestCleanUpService;
 import org.wso2.carbon.identity.workflow.mgt.workflow.AbstractWorkflow;
 import org.wso2.carbon.user.core.listener.UserOperationEventListener;
 import org.wso2.carbon.user.core.service.RealmService;
@@ -79,6 +80,8 @@ import org.wso2.carbon.utils.ConfigurationContextService;
  */
 public class WorkflowMgtServiceComponent {
 
+    private WorkflowRequestCleanUpService requestCleanUpService;
+
 
     protected void activate(ComponentContext context) {
 
@@ -109,6 +112,15 @@ public class WorkflowMgtServiceComponent {
             System.setProperty(WFConstant.KEYSTORE_PASSWORD_SYSTEM_PROPERTY_ID, ServerConfiguration.getInstance()
                     .getFirstProperty(WFConstant.KEYSTORE_PASSWORD_CARBON_CONFIG_PATH));
         }
+        requestCleanUpService = WorkflowRequestCleanUpService.startIfEnabled();
+    }
+
+    protected void deactivate(ComponentContext context) {
+
+        if (requestCleanUpService != null) {
+            requestCleanUpService.shutdown();
+            requestCleanUpService = null;
+        }
     }
 
     private static Log log = LogFactory.getLog(WorkflowMgtServiceComponent.class);
@@ -33,6 +33,13 @@ public class WFConstant {
     public static final String KEYSTORE_CARBON_CONFIG_PATH = "Security.KeyStore.Location";
     public static final String KEYSTORE_PASSWORD_CARBON_CONFIG_PATH = "Security.KeyStore.Password";
 
+    public static final String REQUEST_CLEANUP_ENABLE = "JDBCPersistenceManager.WorkflowRequestCleanUp.Enable";
+    public static final String REQUEST_CLEANUP_RETENTION_PERIOD =
+            "JDBCPersistenceManager.WorkflowRequestCleanUp.RetentionPeriod";
+    public static final String REQUEST_CLEANUP_PERIOD = "JDBCPersistenceManager.WorkflowRequestCleanUp.CleanUpPeriod";
+    public static final String REQUEST_CLEANUP_CHUNK_SIZE =
+            "JDBCPersistenceManager.WorkflowRequestCleanUp.DeleteChunkSize";
+
 
     public static final Set<Class> NUMERIC_CLASSES;
 
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.workflow.mgt.util;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+import org.wso2.carbon.identity.workflow.mgt.dao.WorkflowRequestDAO;
+import org.wso2.carbon.identity.workflow.mgt.exception.InternalWorkflowException;
+
+import java.sql.Timestamp;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically deletes completed workflow requests which were last updated before the configured retention period,
+ * so that the request table does not grow without bound. Requests are deleted in chunks to keep transactions short.
+ */
+public final class WorkflowRequestCleanUpService {
+
+    private static final Log log = LogFactory.getLog(WorkflowRequestCleanUpService.class);
+
+    private static final long DEFAULT_RETENTION_PERIOD = 129600;
+    private static final long DEFAULT_CLEANUP_PERIOD = 1440;
+    private static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    private final ScheduledExecutorService scheduler;
+    private final long retentionPeriod;
+    private final long cleanUpPeriod;
+    private final int chunkSize;
+
+    /**
+     * @param retentionPeriod  minutes for which completed requests are kept
+     * @param cleanUpPeriod    minutes between clean up runs
+     * @param chunkSize        number of requests deleted in one transaction
+     */
+    public WorkflowRequestCleanUpService(long retentionPeriod, long cleanUpPeriod, int chunkSize) {
+        this.retentionPeriod = retentionPeriod;
+        this.cleanUpPeriod = cleanUpPeriod;
+        this.chunkSize = chunkSize;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    /**
+     * Starts the clean up if it is enabled in identity.xml.
+     *
+     * @return the started clean up service, null if the clean up is disabled
+     */
+    public static WorkflowRequestCleanUpService startIfEnabled() {
+
+        if (!Boolean.parseBoolean(IdentityUtil.getProperty(WFConstant.REQUEST_CLEANUP_ENABLE))) {
+            return null;
+        }
+        long retentionPeriod = readPositiveLong(WFConstant.REQUEST_CLEANUP_RETENTION_PERIOD, DEFAULT_RETENTION_PERIOD);
+        long cleanUpPeriod = readPositiveLong(WFConstant.REQUEST_CLEANUP_PERIOD, DEFAULT_CLEANUP_PERIOD);
+        int chunkSize = (int) Math.min(Integer.MAX_VALUE,
+                readPositiveLong(WFConstant.REQUEST_CLEANUP_CHUNK_SIZE, DEFAULT_CHUNK_SIZE));
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Workflow request clean up enabled to run in %d minute intervals, deleting " +
+                    "requests completed %d minutes ago in chunks of %d", cleanUpPeriod, retentionPeriod, chunkSize));
+        }
+
+        WorkflowRequestCleanUpService cleanUpService =
+                new WorkflowRequestCleanUpService(retentionPeriod, cleanUpPeriod, chunkSize);
+        cleanUpService.activateCleanUp();
+        return cleanUpService;
+    }
+
+    public void activateCleanUp() {
+        scheduler.scheduleWithFixedDelay(new RequestCleanUpTask(), cleanUpPeriod, cleanUpPeriod, TimeUnit.MINUTES);
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Deletes the expired requests chunk by chunk.
+     *
+     * @return number of requests deleted
+     * @throws InternalWorkflowException
+     */
+    public long removeExpiredRequests() throws InternalWorkflowException {
+
+        Timestamp updatedBefore = new Timestamp(System.currentTimeMillis() -
+                TimeUnit.MINUTES.toMillis(retentionPeriod));
+        WorkflowRequestDAO requestDAO = new WorkflowRequestDAO();
+        long deletedCount = 0;
+        int deletedInChunk;
+        do {
+            deletedInChunk = requestDAO.deleteCompletedRequests(updatedBefore, chunkSize);
+            deletedCount += deletedInChunk;
+        } while (deletedInChunk == chunkSize && !Thread.currentThread().isInterrupted());
+        return deletedCount;
+    }
+
+    private static long readPositiveLong(String property, long defaultValue) {
+
+        String value = IdentityUtil.getProperty(property);
+        if (StringUtils.isNotBlank(value)) {
+            try {
+                long parsedValue = Long.parseLong(value.trim());
+                if (parsedValue > 0) {
+                    return parsedValue;
+                }
+            } catch (NumberFormatException e) {
+                // Falls back to the default below.
+            }
+            log.warn("Invalid value " + value + " configured for " + property + ". Using the default value " +
+                    defaultValue);
+        }
+        return defaultValue;
+    }
+
+    private final class RequestCleanUpTask implements Runnable {
+
+        @Override
+        public void run() {
+
+            log.debug("Start running the workflow request cleanup task.");
+            try {
+                long deletedCount = removeExpiredRequests();
+                log.info("Workflow request cleanup task removed " + deletedCount + " completed requests.");
+            } catch (InternalWorkflowException e) {
+                log.error("Error while removing completed workflow requests.", e);
+            }
+            log.debug("Stop running the workflow request cleanup task.");
+        }
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.workflow.mgt.util;
+
+import org.wso2.carbon.identity.workflow.mgt.bean.RequestParameter;
+import org.wso2.carbon.identity.workflow.mgt.dto.WorkflowRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes workflow requests to be persisted. Requests are written in a compact, versioned binary form instead of
+ * Java serialization, which is several times larger and slow to read back when listing requests. Requests persisted
+ * with Java serialization by earlier versions are still read.
+ */
+public final class WorkflowRequestSerializer {
+
+    // Java serialization streams start with 0xACED, so these never collide with requests persisted earlier.
+    private static final byte MAGIC_1 = 'W';
+    private static final byte MAGIC_2 = 'R';
+    private static final byte VERSION_1 = 1;
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_BOOLEAN = 2;
+    private static final byte TYPE_INTEGER = 3;
+    private static final byte TYPE_LONG = 4;
+    private static final byte TYPE_DOUBLE = 5;
+    private static final byte TYPE_LIST = 6;
+    private static final byte TYPE_MAP = 7;
+    private static final byte TYPE_SERIALIZED = 8;
+
+    private WorkflowRequestSerializer() {
+
+    }
+
+    public static byte[] serialize(WorkflowRequest request) throws IOException {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(MAGIC_1);
+        out.writeByte(MAGIC_2);
+        out.writeByte(VERSION_1);
+        writeString(out, request.getUuid());
+        writeString(out, request.getEventType());
+        out.writeInt(request.getTenantId());
+        List<RequestParameter> parameters = request.getRequestParameters();
+        if (parameters == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(parameters.size());
+            for (RequestParameter parameter : parameters) {
+                writeString(out, parameter.getName());
+                writeString(out, parameter.getValueType());
+                out.writeBoolean(parameter.isRequiredInWorkflow());
+                writeValue(out, parameter.getValue());
+            }
+        }
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    public static WorkflowRequest deserialize(byte[] data) throws IOException, ClassNotFoundException {
+
+        if (data == null || data.length == 0) {
+            return null;
+        }
+        if (data.length < 3 || data[0] != MAGIC_1 || data[1] != MAGIC_2) {
+            return deserializeJavaObject(data);
+        }
+        if (data[2] != VERSION_1) {
+            throw new IOException("Unsupported workflow request encoding version: " + data[2]);
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, 3, data.length - 3));
+        WorkflowRequest request = new WorkflowRequest();
+        request.setUuid(readString(in));
+        request.setEventType(readString(in));
+        request.setTenantId(in.readInt());
+        int parameterCount = in.readInt();
+        if (parameterCount >= 0) {
+            List<RequestParameter> parameters = new ArrayList<>(parameterCount);
+            for (int i = 0; i < parameterCount; i++) {
+                RequestParameter parameter = new RequestParameter();
+                parameter.setName(readString(in));
+                parameter.setValueType(readString(in));
+                parameter.setRequiredInWorkflow(in.readBoolean());
+                parameter.setValue(readValue(in));
+                parameters.add(parameter);
+            }
+            request.setRequestParameters(parameters);
+        }
+        return request;
+    }
+
+    private static WorkflowRequest deserializeJavaObject(byte[] data) throws IOException, ClassNotFoundException {
+
+        ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(data));
+        try {
+            Object objectRead = ois.readObject();
+            if (objectRead instanceof WorkflowRequest) {
+                return (WorkflowRequest) objectRead;
+            }
+            return null;
+        } finally {
+            ois.close();
+        }
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+
+        if (value == null) {
+            out.writeByte(TYPE_NULL);
+        } else if (value instanceof String) {
+            out.writeByte(TYPE_STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(TYPE_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(TYPE_INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(TYPE_LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Double) {
+            out.writeByte(TYPE_DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            out.writeByte(TYPE_LIST);
+            out.writeInt(list.size());
+            for (Object item : list) {
+                writeValue(out, item);
+            }
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            out.writeByte(TYPE_MAP);
+            out.writeInt(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeValue(out, entry.getKey());
+                writeValue(out, entry.getValue());
+            }
+        } else {
+            // Values of type OTHER are kept as they are.
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream oos = new ObjectOutputStream(bytes);
+            oos.writeObject(value);
+            oos.close();
+            out.writeByte(TYPE_SERIALIZED);
+            out.writeInt(bytes.size());
+            bytes.writeTo(out);
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException, ClassNotFoundException {
+
+        byte type = in.readByte();
+        switch (type) {
+            case TYPE_NULL:
+                return null;
+            case TYPE_STRING:
+                return readString(in);
+            case TYPE_BOOLEAN:
+                return in.readBoolean();
+            case TYPE_INTEGER:
+                return in.readInt();
+            case TYPE_LONG:
+                return in.readLong();
+            case TYPE_DOUBLE:
+                return in.readDouble();
+            case TYPE_LIST:
+                int size = in.readInt();
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in));
+                }
+                return list;
+            case TYPE_MAP:
+                int entries = in.readInt();
+                Map<Object, Object> map = new HashMap<>();
+                for (int i = 0; i < entries; i++) {
+                    map.put(readValue(in), readValue(in));
+                }
+                return map;
+            case TYPE_SERIALIZED:
+                byte[] serialized = new byte[in.readInt()];
+                in.readFully(serialized);
+                ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(serialized));
+                try {
+                    return ois.readObject();
+                } finally {
+                    ois.close();
+                }
+            default:
+                throw new IOException("Unknown value type in workflow request: " + type);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
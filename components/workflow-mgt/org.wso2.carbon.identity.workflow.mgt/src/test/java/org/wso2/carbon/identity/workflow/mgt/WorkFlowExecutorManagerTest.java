@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.workflow.mgt;
+
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.core.classloader.annotations.SuppressStaticInitializationFor;
+import org.powermock.reflect.Whitebox;
+import org.testng.IObjectFactory;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.ObjectFactory;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.workflow.mgt.bean.Parameter;
+import org.wso2.carbon.identity.workflow.mgt.bean.RequestParameter;
+import org.wso2.carbon.identity.workflow.mgt.bean.Workflow;
+import org.wso2.carbon.identity.workflow.mgt.bean.WorkflowAssociation;
+import org.wso2.carbon.identity.workflow.mgt.cache.CompiledWorkflowAssociation;
+import org.wso2.carbon.identity.workflow.mgt.cache.WorkflowAssociationCache;
+import org.wso2.carbon.identity.workflow.mgt.dto.WorkflowRequest;
+import org.wso2.carbon.identity.workflow.mgt.util.ExecutorResultState;
+import org.wso2.carbon.identity.workflow.mgt.util.WorkflowDataType;
+import org.wso2.carbon.identity.workflow.mgt.util.WorkflowRequestBuilder;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.when;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.powermock.api.mockito.PowerMockito.spy;
+import static org.powermock.api.mockito.PowerMockito.verifyStatic;
+import static org.testng.Assert.assertEquals;
+
+@PrepareForTest({WorkflowAssociationCache.class, WorkflowRequestBuilder.class})
+@SuppressStaticInitializationFor("org.wso2.carbon.identity.workflow.mgt.cache.WorkflowAssociationCache")
+public class WorkFlowExecutorManagerTest {
+
+    private static final String USERNAME_CONDITION = "boolean(//*[local-name()='parameter'][@name='Username']" +
+            "/*[local-name()='value']/*[local-name()='itemValue'][text()='%s'])";
+
+    private WorkflowAssociationCache associationCache;
+
+    @ObjectFactory
+    public IObjectFactory getObjectFactory() {
+        return new org.powermock.modules.testng.PowerMockObjectFactory();
+    }
+
+    @BeforeClass
+    public void setUp() {
+
+        System.setProperty("carbon.home", Paths.get(System.getProperty("user.dir"), "target").toString());
+    }
+
+    @BeforeMethod
+    public void setUpMocks() {
+
+        associationCache = mock(WorkflowAssociationCache.class);
+        mockStatic(WorkflowAssociationCache.class);
+        when(WorkflowAssociationCache.getInstance()).thenReturn(associationCache);
+        // Spied so that the request document is built as usual, while the calls are recorded.
+        spy(WorkflowRequestBuilder.class);
+    }
+
+    @Test
+    public void testRequestNotBuiltForConstantConditions() throws Exception {
+
+        when(associationCache.getAssociations(anyString(), anyInt())).thenReturn(compile("boolean(0)", "false()"));
+
+        assertEquals(WorkFlowExecutorManager.getInstance().executeWorkflow(createRequest()).getExecutorResultState(),
+                ExecutorResultState.CONDITION_FAILED);
+        verifyStatic(times(0));
+        WorkflowRequestBuilder.buildXMLRequest(any(WorkflowRequest.class));
+    }
+
+    @Test
+    public void testRequestBuiltOnceForContextConditions() throws Exception {
+
+        when(associationCache.getAssociations(anyString(), anyInt())).thenReturn(compile("boolean(0)",
+                String.format(USERNAME_CONDITION, "alice"), String.format(USERNAME_CONDITION, "carol")));
+
+        assertEquals(WorkFlowExecutorManager.getInstance().executeWorkflow(createRequest()).getExecutorResultState(),
+                ExecutorResultState.CONDITION_FAILED);
+        verifyStatic(times(1));
+        WorkflowRequestBuilder.buildXMLRequest(any(WorkflowRequest.class));
+    }
+
+    @Test
+    public void testNoAssociations() throws Exception {
+
+        when(associationCache.getAssociations(anyString(), anyInt()))
+                .thenReturn(Collections.<CompiledWorkflowAssociation>emptyList());
+
+        assertEquals(WorkFlowExecutorManager.getInstance().executeWorkflow(createRequest()).getExecutorResultState(),
+                ExecutorResultState.NO_ASSOCIATION);
+        verifyStatic(times(0));
+        WorkflowRequestBuilder.buildXMLRequest(any(WorkflowRequest.class));
+    }
+
+    private List<CompiledWorkflowAssociation> compile(String... conditions) throws Exception {
+
+        List<CompiledWorkflowAssociation> associations = new ArrayList<>();
+        for (String condition : conditions) {
+            WorkflowAssociation association = new WorkflowAssociation();
+            association.setAssociationCondition(condition);
+            association.setWorkflowId("workflow1");
+            associations.add(Whitebox.invokeConstructor(CompiledWorkflowAssociation.class,
+                    new Class[]{WorkflowAssociation.class, Workflow.class, List.class},
+                    new Object[]{association, new Workflow(), Collections.<Parameter>emptyList()}));
+        }
+        return associations;
+    }
+
+    private WorkflowRequest createRequest() {
+
+        RequestParameter username = new RequestParameter();
+        username.setName("Username");
+        username.setValue("bob");
+        username.setValueType(WorkflowDataType.STRING_TYPE);
+        username.setRequiredInWorkflow(true);
+
+        WorkflowRequest request = new WorkflowRequest();
+        request.setEventType("ADD_USER");
+        request.setTenantId(-1234);
+        request.setRequestParameters(Collections.singletonList(username));
+        return request;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.workflow.mgt.cache;
+
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.xpath.AXIOMXPath;
+import org.jaxen.JaxenException;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.workflow.mgt.bean.Parameter;
+import org.wso2.carbon.identity.workflow.mgt.bean.RequestParameter;
+import org.wso2.carbon.identity.workflow.mgt.bean.Workflow;
+import org.wso2.carbon.identity.workflow.mgt.bean.WorkflowAssociation;
+import org.wso2.carbon.identity.workflow.mgt.dto.WorkflowRequest;
+import org.wso2.carbon.identity.workflow.mgt.util.WorkflowDataType;
+import org.wso2.carbon.identity.workflow.mgt.util.WorkflowRequestBuilder;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+
+public class CompiledWorkflowAssociationTest {
+
+    private static final String USERNAME_CONDITION = "boolean(//*[local-name()='parameter'][@name='Username']" +
+            "/*[local-name()='value']/*[local-name()='itemValue'][text()='%s'])";
+    private static final String ROLES_CONDITION = "boolean(//*[local-name()='parameter'][@name='Roles']" +
+            "/*[local-name()='value']/*[local-name()='itemValue'][contains(text(),'%s')])";
+
+    private OMElement xmlRequest;
+
+    @BeforeClass
+    public void setUp() throws Exception {
+
+        System.setProperty("carbon.home", Paths.get(System.getProperty("user.dir"), "target").toString());
+        xmlRequest = WorkflowRequestBuilder.buildXMLRequest(createRequest());
+    }
+
+    @DataProvider(name = "conditions")
+    public Object[][] getConditions() {
+
+        return new Object[][]{
+                // Condition, whether the request document is needed to evaluate it
+                {"boolean(1)", false},
+                {"boolean(0)", false},
+                {"true()", false},
+                {"not(false())", false},
+                {"concat('a','b')='ab'", false},
+                {"1 < 2", false},
+                {"string-length('abc') = 4", false},
+                {"boolean(string())", true},
+                {String.format(USERNAME_CONDITION, "bob"), true},
+                {String.format(USERNAME_CONDITION, "alice"), true},
+                {String.format(ROLES_CONDITION, "admin"), true},
+                {String.format(ROLES_CONDITION, "guest"), true},
+                {String.format(USERNAME_CONDITION, "bob") + " and " + String.format(ROLES_CONDITION, "manager"),
+                        true},
+                {"boolean(1) or " + String.format(ROLES_CONDITION, "guest"), true},
+        };
+    }
+
+    @Test(dataProvider = "conditions")
+    public void testMatchesLikePerRequestEvaluation(String condition, boolean requiresRequestDocument)
+            throws Exception {
+
+        CompiledWorkflowAssociation association = compile(condition);
+
+        assertEquals(association.requiresRequestDocument(), requiresRequestDocument, condition);
+        assertEquals(association.matches(xmlRequest), new AXIOMXPath(condition).booleanValueOf(xmlRequest),
+                condition);
+    }
+
+    @Test(dataProvider = "conditions")
+    public void testConstantConditionsDoNotNeedRequest(String condition, boolean requiresRequestDocument)
+            throws Exception {
+
+        if (requiresRequestDocument) {
+            return;
+        }
+        assertEquals(compile(condition).matches(null), new AXIOMXPath(condition).booleanValueOf(xmlRequest),
+                condition);
+    }
+
+    @Test(expectedExceptions = JaxenException.class)
+    public void testInvalidConditionFailsOnMatch() throws Exception {
+
+        CompiledWorkflowAssociation association = compile("boolean(");
+
+        assertEquals(association.requiresRequestDocument(), false);
+        association.matches(xmlRequest);
+    }
+
+    static CompiledWorkflowAssociation compile(String condition) {
+
+        WorkflowAssociation association = new WorkflowAssociation();
+        association.setAssociationCondition(condition);
+        association.setWorkflowId("workflow1");
+        return new CompiledWorkflowAssociation(association, new Workflow(), Collections.<Parameter>emptyList());
+    }
+
+    static WorkflowRequest createRequest() {
+
+        RequestParameter username = new RequestParameter();
+        username.setName("Username");
+        username.setValue("bob");
+        username.setValueType(WorkflowDataType.STRING_TYPE);
+        username.setRequiredInWorkflow(true);
+
+        RequestParameter roles = new RequestParameter();
+        roles.setName("Roles");
+        roles.setValue(new ArrayList<Object>(Arrays.asList("admin", "manager")));
+        roles.setValueType(WorkflowDataType.STRING_LIST_TYPE);
+        roles.setRequiredInWorkflow(true);
+
+        List<RequestParameter> parameters = new ArrayList<>();
+        parameters.add(username);
+        parameters.add(roles);
+
+        WorkflowRequest request = new WorkflowRequest();
+        request.setUuid("request1");
+        request.setEventType("ADD_USER");
+        request.setTenantId(-1234);
+        request.setRequestParameters(parameters);
+        return request;
+    }
+}
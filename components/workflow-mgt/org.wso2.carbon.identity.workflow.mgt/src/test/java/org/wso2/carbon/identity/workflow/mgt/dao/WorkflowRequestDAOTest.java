@@ -0,0 +1,318 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.workflow.mgt.dao;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.powermock.reflect.Whitebox;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.core.persistence.JDBCPersistenceManager;
+import org.wso2.carbon.identity.workflow.mgt.bean.Entity;
+import org.wso2.carbon.identity.workflow.mgt.bean.RequestParameter;
+import org.wso2.carbon.identity.workflow.mgt.bean.WorkflowRequest;
+import org.wso2.carbon.identity.workflow.mgt.util.WorkflowDataType;
+import org.wso2.carbon.identity.workflow.mgt.util.WorkflowRequestCleanUpService;
+import org.wso2.carbon.identity.workflow.mgt.util.WorkflowRequestSerializer;
+import org.wso2.carbon.identity.workflow.mgt.util.WorkflowRequestStatus;
+
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class WorkflowRequestDAOTest {
+
+    private static final String DB_SCRIPT = "workflow-requests.sql";
+    private static final String ADD_REQUEST = "INSERT INTO WF_REQUEST (UUID, CREATED_BY, TENANT_ID, OPERATION_TYPE, " +
+            "CREATED_AT, UPDATED_AT, STATUS, REQUEST) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final int TENANT_ID = 1;
+    private static final String ADD_USER = "ADD_USER";
+    private static final String USER_ENTITY = "USER";
+
+    private Connection keepAliveConnection;
+    private Object previousPersistenceManager;
+    private WorkflowRequestDAO requestDAO = new WorkflowRequestDAO();
+    private RequestEntityRelationshipDAO relationshipDAO = new RequestEntityRelationshipDAO();
+
+    @BeforeClass
+    public void setUp() throws Exception {
+
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:WorkflowRequestDAOTest");
+        // The in-memory database lives as long as a connection to it is open.
+        keepAliveConnection = dataSource.getConnection();
+        try (Statement statement = keepAliveConnection.createStatement()) {
+            statement.executeUpdate("RUNSCRIPT FROM '" + Paths.get(getClass().getResource("/dbScripts/" +
+                    DB_SCRIPT).toURI()).toString() + "'");
+        }
+
+        JDBCPersistenceManager persistenceManager = Whitebox.newInstance(JDBCPersistenceManager.class);
+        Whitebox.setInternalState(persistenceManager, "dataSource", dataSource);
+        previousPersistenceManager = Whitebox.getInternalState(JDBCPersistenceManager.class, "instance");
+        Whitebox.setInternalState(JDBCPersistenceManager.class, "instance", persistenceManager);
+    }
+
+    @AfterClass
+    public void tearDown() throws Exception {
+
+        Whitebox.setInternalState(JDBCPersistenceManager.class, "instance", previousPersistenceManager);
+        keepAliveConnection.close();
+    }
+
+    @BeforeMethod
+    public void clearRequests() throws Exception {
+
+        try (Statement statement = keepAliveConnection.createStatement()) {
+            statement.executeUpdate("DELETE FROM WF_REQUEST");
+        }
+    }
+
+    @Test
+    public void testKeysetPagingReturnsEveryRequestOnce() throws Exception {
+
+        long baseTime = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1);
+        List<String> expectedOrder = new ArrayList<>();
+        final List<Long> createdTimes = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            // Requests are created three at a time, so that pages have to be split between requests of the same time.
+            long createdTime = baseTime + TimeUnit.SECONDS.toMillis(i / 3);
+            addRequest(String.format("request-%02d", i), "admin", createdTime, createdTime,
+                    WorkflowRequestStatus.PENDING);
+            expectedOrder.add(String.format("request-%02d", i));
+            createdTimes.add(createdTime);
+        }
+        Collections.sort(expectedOrder, new Comparator<String>() {
+            @Override
+            public int compare(String request1, String request2) {
+
+                long time1 = createdTimes.get(Integer.parseInt(request1.substring("request-".length())));
+                long time2 = createdTimes.get(Integer.parseInt(request2.substring("request-".length())));
+                return time1 != time2 ? Long.compare(time2, time1) : request2.compareTo(request1);
+            }
+        });
+
+        List<String> pagedOrder = new ArrayList<>();
+        List<Integer> pageSizes = new ArrayList<>();
+        String lastRequestId = null;
+        WorkflowRequest[] page;
+        do {
+            page = requestDAO.getRequestsFilteredByTime(null, new Timestamp(baseTime - 1000),
+                    new Timestamp(baseTime + TimeUnit.MINUTES.toMillis(1)), "createdAt", TENANT_ID, null,
+                    lastRequestId, 10);
+            pageSizes.add(page.length);
+            for (WorkflowRequest request : page) {
+                pagedOrder.add(request.getRequestId());
+                lastRequestId = request.getRequestId();
+            }
+        } while (page.length > 0);
+
+        assertEquals(pageSizes, Arrays.asList(10, 10, 5, 0));
+        assertEquals(pagedOrder, expectedOrder);
+    }
+
+    @Test
+    public void testRequestsAreFilteredByUserStatusAndUpdatedTime() throws Exception {
+
+        long now = System.currentTimeMillis();
+        long hourAgo = now - TimeUnit.HOURS.toMillis(1);
+        long dayAgo = now - TimeUnit.DAYS.toMillis(1);
+        addRequest("request-1", "admin", dayAgo, hourAgo, WorkflowRequestStatus.APPROVED);
+        addRequest("request-2", "admin", dayAgo, dayAgo, WorkflowRequestStatus.PENDING);
+        addRequest("request-3", "bob", hourAgo, hourAgo, WorkflowRequestStatus.PENDING);
+
+        Timestamp begin = new Timestamp(now - TimeUnit.HOURS.toMillis(2));
+        Timestamp end = new Timestamp(now);
+        assertEquals(requestIds(requestDAO.getRequestsFilteredByTime(begin, end,
+                WorkflowRequestDAO.UPDATED_AT_FILTER, TENANT_ID, WorkflowRequestDAO.ALL_TASKS_FILTER)),
+                Arrays.asList("request-3", "request-1"));
+        assertEquals(requestIds(requestDAO.getRequestsFilteredByTime(begin, end, "createdAt", TENANT_ID,
+                WorkflowRequestDAO.ALL_TASKS_FILTER)), Collections.singletonList("request-3"));
+        assertEquals(requestIds(requestDAO.getRequestsOfUserFilteredByTime("admin", begin, end,
+                WorkflowRequestDAO.UPDATED_AT_FILTER, TENANT_ID, WorkflowRequestStatus.APPROVED.toString())),
+                Collections.singletonList("request-1"));
+        assertEquals(requestIds(requestDAO.getRequestsFilteredByTime(begin, end,
+                WorkflowRequestDAO.UPDATED_AT_FILTER, TENANT_ID + 1, null)), Collections.<String>emptyList());
+
+        WorkflowRequest request = requestDAO.getRequestsFilteredByTime(begin, end, "createdAt", TENANT_ID,
+                null)[0];
+        assertEquals(request.getCreatedBy(), "bob");
+        assertEquals(request.getEventType(), ADD_USER);
+        assertTrue(request.getRequestParams().contains("bob"));
+    }
+
+    @Test
+    public void testRowsAreLimited() throws Exception {
+
+        long createdTime = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(1);
+        for (int i = 0; i < 5; i++) {
+            addRequest("request-" + i, "admin", createdTime, createdTime, WorkflowRequestStatus.PENDING);
+        }
+
+        assertEquals(requestDAO.getRequestsFilteredByTime(null, new Timestamp(0),
+                new Timestamp(System.currentTimeMillis()), "createdAt", TENANT_ID, null, null, 3).length, 3);
+    }
+
+    @DataProvider(name = "databases")
+    public Object[][] getDatabases() {
+
+        String query = "SELECT UUID FROM WF_REQUEST";
+        return new Object[][]{
+                {"MySQL Connector Java", "MySQL", query + " LIMIT 5"},
+                {"H2 JDBC Driver", "H2", query + " LIMIT 5"},
+                {"PostgreSQL Native Driver", "PostgreSQL", query + " LIMIT 5"},
+                {"IBM Data Server Driver for JDBC and SQLJ", "DB2/LINUXX8664", query + " FETCH FIRST 5 ROWS ONLY"},
+                {"Microsoft JDBC Driver 6.0 for SQL Server", "Microsoft SQL Server", "SELECT TOP 5 UUID FROM " +
+                        "WF_REQUEST"},
+                {"IBM Informix JDBC Driver for IBM Informix Dynamic Server", "Informix Dynamic Server",
+                        "SELECT FIRST 5 UUID FROM WF_REQUEST"},
+                {"Oracle JDBC driver", "Oracle", "SELECT * FROM (" + query + ") WHERE ROWNUM <= 5"},
+        };
+    }
+
+    @Test(dataProvider = "databases")
+    public void testLimitRows(String driverName, String productName, String expectedQuery) throws Exception {
+
+        DatabaseMetaData metaData = mock(DatabaseMetaData.class);
+        when(metaData.getDriverName()).thenReturn(driverName);
+        when(metaData.getDatabaseProductName()).thenReturn(productName);
+        Connection connection = mock(Connection.class);
+        when(connection.getMetaData()).thenReturn(metaData);
+
+        String query = Whitebox.invokeMethod(requestDAO, "limitRows", connection, "SELECT UUID FROM WF_REQUEST", 5);
+        assertEquals(query, expectedQuery);
+    }
+
+    @Test
+    public void testEntityHasPendingWorkflows() throws Exception {
+
+        long now = System.currentTimeMillis();
+        addRequest("request-1", "admin", now, now, WorkflowRequestStatus.PENDING);
+        addRequest("request-2", "admin", now, now, WorkflowRequestStatus.APPROVED);
+        relationshipDAO.addRelationship(new Entity("bob", USER_ENTITY, TENANT_ID), "request-1");
+        relationshipDAO.addRelationship(new Entity("alice", USER_ENTITY, TENANT_ID), "request-2");
+
+        assertTrue(relationshipDAO.entityHasPendingWorkflows(new Entity("bob", USER_ENTITY, TENANT_ID)));
+        assertFalse(relationshipDAO.entityHasPendingWorkflows(new Entity("alice", USER_ENTITY, TENANT_ID)));
+        assertFalse(relationshipDAO.entityHasPendingWorkflows(new Entity("bob", USER_ENTITY, TENANT_ID + 1)));
+        assertFalse(relationshipDAO.entityHasPendingWorkflows(new Entity("bob", "ROLE", TENANT_ID)));
+        assertTrue(relationshipDAO.entityHasPendingWorkflowsOfType(new Entity("bob", USER_ENTITY, TENANT_ID),
+                ADD_USER));
+        assertFalse(relationshipDAO.entityHasPendingWorkflowsOfType(new Entity("bob", USER_ENTITY, TENANT_ID),
+                "DELETE_USER"));
+
+        requestDAO.updateStatusOfRequest("request-1", WorkflowRequestStatus.APPROVED.toString());
+        assertFalse(relationshipDAO.entityHasPendingWorkflows(new Entity("bob", USER_ENTITY, TENANT_ID)));
+    }
+
+    @Test
+    public void testCleanUpDeletesExpiredCompletedRequestsInChunks() throws Exception {
+
+        long now = System.currentTimeMillis();
+        long twoDaysAgo = now - TimeUnit.DAYS.toMillis(2);
+        addRequest("approved-1", "admin", twoDaysAgo, twoDaysAgo, WorkflowRequestStatus.APPROVED);
+        addRequest("approved-2", "admin", twoDaysAgo, twoDaysAgo, WorkflowRequestStatus.APPROVED);
+        addRequest("rejected-1", "admin", twoDaysAgo, twoDaysAgo, WorkflowRequestStatus.REJECTED);
+        addRequest("failed-1", "admin", twoDaysAgo, twoDaysAgo, WorkflowRequestStatus.FAILED);
+        addRequest("deleted-1", "admin", twoDaysAgo, twoDaysAgo, WorkflowRequestStatus.DELETED);
+        addRequest("pending-1", "admin", twoDaysAgo, twoDaysAgo, WorkflowRequestStatus.PENDING);
+        addRequest("approved-recent", "admin", twoDaysAgo, now, WorkflowRequestStatus.APPROVED);
+        relationshipDAO.addRelationship(new Entity("bob", USER_ENTITY, TENANT_ID), "approved-1");
+
+        // One day retention, deleting two requests at a time.
+        WorkflowRequestCleanUpService cleanUpService = new WorkflowRequestCleanUpService(
+                TimeUnit.DAYS.toMinutes(1), 60, 2);
+        try {
+            assertEquals(cleanUpService.removeExpiredRequests(), 5L);
+            assertEquals(cleanUpService.removeExpiredRequests(), 0L);
+        } finally {
+            cleanUpService.shutdown();
+        }
+
+        Set<String> remaining = new HashSet<>();
+        try (Statement statement = keepAliveConnection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT UUID FROM WF_REQUEST")) {
+            while (resultSet.next()) {
+                remaining.add(resultSet.getString(1));
+            }
+        }
+        assertEquals(remaining, new HashSet<>(Arrays.asList("pending-1", "approved-recent")));
+        try (Statement statement = keepAliveConnection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM WF_REQUEST_ENTITY_RELATIONSHIP")) {
+            resultSet.next();
+            assertEquals(resultSet.getInt(1), 0);
+        }
+    }
+
+    private void addRequest(String requestId, String createdBy, long createdTime, long updatedTime,
+                            WorkflowRequestStatus status) throws Exception {
+
+        RequestParameter username = new RequestParameter();
+        username.setName("Username");
+        username.setValue(createdBy.equals("admin") ? "user-of-" + requestId : createdBy);
+        username.setValueType(WorkflowDataType.STRING_TYPE);
+        username.setRequiredInWorkflow(true);
+        org.wso2.carbon.identity.workflow.mgt.dto.WorkflowRequest request =
+                new org.wso2.carbon.identity.workflow.mgt.dto.WorkflowRequest();
+        request.setUuid(requestId);
+        request.setEventType(ADD_USER);
+        request.setTenantId(TENANT_ID);
+        request.setRequestParameters(Collections.singletonList(username));
+
+        try (PreparedStatement prepStmt = keepAliveConnection.prepareStatement(ADD_REQUEST)) {
+            prepStmt.setString(1, requestId);
+            prepStmt.setString(2, createdBy);
+            prepStmt.setInt(3, TENANT_ID);
+            prepStmt.setString(4, ADD_USER);
+            prepStmt.setTimestamp(5, new Timestamp(createdTime));
+            prepStmt.setTimestamp(6, new Timestamp(updatedTime));
+            prepStmt.setString(7, status.toString());
+            prepStmt.setBytes(8, WorkflowRequestSerializer.serialize(request));
+            prepStmt.executeUpdate();
+        }
+    }
+
+    private List<String> requestIds(WorkflowRequest[] requests) {
+
+        List<String> requestIds = new ArrayList<>();
+        for (WorkflowRequest request : requests) {
+            requestIds.add(request.getRequestId());
+        }
+        return requestIds;
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.workflow.mgt.util;
+
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.workflow.mgt.bean.RequestParameter;
+import org.wso2.carbon.identity.workflow.mgt.dto.WorkflowRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class WorkflowRequestSerializerTest {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+
+        WorkflowRequest request = createRequest();
+
+        assertRequestEquals(WorkflowRequestSerializer.deserialize(WorkflowRequestSerializer.serialize(request)),
+                request);
+    }
+
+    @Test
+    public void testRoundTripWithoutParameters() throws Exception {
+
+        WorkflowRequest request = new WorkflowRequest();
+        request.setUuid("request2");
+        request.setTenantId(1);
+        request.setRequestParameters(null);
+
+        WorkflowRequest decoded = WorkflowRequestSerializer.deserialize(WorkflowRequestSerializer.serialize(request));
+        assertEquals(decoded.getUuid(), "request2");
+        assertNull(decoded.getEventType());
+        assertEquals(decoded.getTenantId(), 1);
+        assertNull(decoded.getRequestParameters());
+    }
+
+    @Test
+    public void testLegacyJavaSerializedRequestIsRead() throws Exception {
+
+        WorkflowRequest request = createRequest();
+        byte[] legacy = javaSerialize(request);
+
+        assertRequestEquals(WorkflowRequestSerializer.deserialize(legacy), request);
+        assertTrue(WorkflowRequestSerializer.serialize(request).length < legacy.length);
+    }
+
+    @Test
+    public void testLegacyJavaSerializedObjectOfOtherTypeIsIgnored() throws Exception {
+        assertNull(WorkflowRequestSerializer.deserialize(javaSerialize("not a request")));
+    }
+
+    @Test
+    public void testEmptyPayload() throws Exception {
+
+        assertNull(WorkflowRequestSerializer.deserialize(null));
+        assertNull(WorkflowRequestSerializer.deserialize(new byte[0]));
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testUnknownVersionIsRejected() throws Exception {
+
+        byte[] encoded = WorkflowRequestSerializer.serialize(createRequest());
+        encoded[2] = 99;
+        WorkflowRequestSerializer.deserialize(encoded);
+    }
+
+    private WorkflowRequest createRequest() {
+
+        Map<String, Object> claims = new HashMap<>();
+        claims.put("http://wso2.org/claims/givenname", "Bob");
+        claims.put("http://wso2.org/claims/lastname", null);
+
+        List<RequestParameter> parameters = new ArrayList<>();
+        parameters.add(createParameter("Username", "bob", WorkflowDataType.STRING_TYPE, true));
+        parameters.add(createParameter("Locked", Boolean.TRUE, WorkflowDataType.BOOLEAN_TYPE, true));
+        parameters.add(createParameter("Attempts", 3, WorkflowDataType.INTEGER_TYPE, false));
+        parameters.add(createParameter("Expiry", 1514764800000L, WorkflowDataType.OTHER_TYPE, false));
+        parameters.add(createParameter("Score", 0.75, WorkflowDataType.DOUBLE_TYPE, false));
+        parameters.add(createParameter("Roles", new ArrayList<Object>(Arrays.asList("admin", "manager", null)),
+                WorkflowDataType.STRING_LIST_TYPE, true));
+        parameters.add(createParameter("Claims", claims, WorkflowDataType.STRING_STRING_MAP_TYPE, true));
+        parameters.add(createParameter("Credential", null, WorkflowDataType.STRING_TYPE, false));
+        parameters.add(createParameter("Created", new Date(1514764800000L), WorkflowDataType.OTHER_TYPE, false));
+
+        WorkflowRequest request = new WorkflowRequest();
+        request.setUuid("request1");
+        request.setEventType("ADD_USER");
+        request.setTenantId(-1234);
+        request.setRequestParameters(parameters);
+        return request;
+    }
+
+    private RequestParameter createParameter(String name, Object value, String valueType, boolean required) {
+
+        RequestParameter parameter = new RequestParameter();
+        parameter.setName(name);
+        parameter.setValue(value);
+        parameter.setValueType(valueType);
+        parameter.setRequiredInWorkflow(required);
+        return parameter;
+    }
+
+    private void assertRequestEquals(WorkflowRequest actual, WorkflowRequest expected) {
+
+        assertEquals(actual.getUuid(), expected.getUuid());
+        assertEquals(actual.getEventType(), expected.getEventType());
+        assertEquals(actual.getTenantId(), expected.getTenantId());
+        assertEquals(actual.getRequestParameters().size(), expected.getRequestParameters().size());
+        for (int i = 0; i < expected.getRequestParameters().size(); i++) {
+            RequestParameter actualParameter = actual.getRequestParameters().get(i);
+            RequestParameter expectedParameter = expected.getRequestParameters().get(i);
+            assertEquals(actualParameter.getName(), expectedParameter.getName());
+            assertEquals(actualParameter.getValueType(), expectedParameter.getValueType());
+            assertEquals(actualParameter.isRequiredInWorkflow(), expectedParameter.isRequiredInWorkflow());
+            assertEquals(actualParameter.getValue(), expectedParameter.getValue(), expectedParameter.getName());
+        }
+    }
+
+    private byte[] javaSerialize(Object object) throws IOException {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(bytes);
+        oos.writeObject(object);
+        oos.close();
+        return bytes.toByteArray();
+    }
+}
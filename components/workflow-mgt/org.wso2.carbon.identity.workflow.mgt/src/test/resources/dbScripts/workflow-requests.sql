@@ -0,0 +1,26 @@
+CREATE TABLE IF NOT EXISTS WF_REQUEST (
+    UUID VARCHAR (45),
+    CREATED_BY VARCHAR (255),
+    TENANT_ID INTEGER DEFAULT -1,
+    OPERATION_TYPE VARCHAR (50),
+    CREATED_AT TIMESTAMP,
+    UPDATED_AT TIMESTAMP,
+    STATUS VARCHAR (30),
+    REQUEST BLOB,
+    PRIMARY KEY (UUID)
+);
+
+CREATE TABLE IF NOT EXISTS WF_REQUEST_ENTITY_RELATIONSHIP(
+  REQUEST_ID VARCHAR (45),
+  ENTITY_NAME VARCHAR (255),
+  ENTITY_TYPE VARCHAR (50),
+  TENANT_ID INTEGER DEFAULT -1,
+  PRIMARY KEY(REQUEST_ID, ENTITY_NAME, ENTITY_TYPE, TENANT_ID),
+  FOREIGN KEY (REQUEST_ID) REFERENCES WF_REQUEST(UUID)ON DELETE CASCADE
+);
+
+CREATE INDEX IDX_WF_REQ_TENANT_CREATED ON WF_REQUEST (TENANT_ID, CREATED_AT);
+CREATE INDEX IDX_WF_REQ_TENANT_UPDATED ON WF_REQUEST (TENANT_ID, UPDATED_AT);
+CREATE INDEX IDX_WF_REQ_CREATED_BY ON WF_REQUEST (CREATED_BY, TENANT_ID);
+CREATE INDEX IDX_WF_REQ_STATUS_UPDATED ON WF_REQUEST (STATUS, UPDATED_AT);
+CREATE INDEX IDX_WF_REQ_ENTITY ON WF_REQUEST_ENTITY_RELATIONSHIP (ENTITY_NAME, ENTITY_TYPE, TENANT_ID);
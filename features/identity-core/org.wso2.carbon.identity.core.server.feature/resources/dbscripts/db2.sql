@@ -255,6 +255,10 @@ CREATE TABLE IDN_AUTH_SESSION_STORE (
             PRIMARY KEY (SESSION_ID, SESSION_TYPE, TIME_CREATED, OPERATION)
 )
 /
+
+CREATE INDEX IDX_AUTH_SESSION_TENANT_TC ON IDN_AUTH_SESSION_STORE (TENANT_ID, TIME_CREATED)
+/
+
 CREATE TABLE SP_APP (
         ID INTEGER NOT NULL,
         TENANT_ID INTEGER NOT NULL,
@@ -876,6 +880,17 @@ CREATE TABLE WF_REQUEST_ENTITY_RELATIONSHIP(
   FOREIGN KEY (REQUEST_ID) REFERENCES WF_REQUEST(UUID)ON DELETE CASCADE)
 /
 
+CREATE INDEX IDX_WF_REQ_TENANT_CREATED ON WF_REQUEST (TENANT_ID, CREATED_AT)
+/
+CREATE INDEX IDX_WF_REQ_TENANT_UPDATED ON WF_REQUEST (TENANT_ID, UPDATED_AT)
+/
+CREATE INDEX IDX_WF_REQ_CREATED_BY ON WF_REQUEST (CREATED_BY, TENANT_ID)
+/
+CREATE INDEX IDX_WF_REQ_STATUS_UPDATED ON WF_REQUEST (STATUS, UPDATED_AT)
+/
+CREATE INDEX IDX_WF_REQ_ENTITY ON WF_REQUEST_ENTITY_RELATIONSHIP (ENTITY_NAME, ENTITY_TYPE, TENANT_ID)
+/
+
 CREATE TABLE WF_WORKFLOW_REQUEST_RELATION(
   RELATIONSHIP_ID VARCHAR (45) NOT NULL,
   WORKFLOW_ID VARCHAR (45),
@@ -1054,3 +1069,34 @@ CREATE TRIGGER IDN_SAML2_ASSERTION_STORE_TRIG NO CASCADE
                     SET (NEW.ID) = (NEXTVAL FOR IDN_SAML2_ASSERTION_STORE_SEQ);
                 END
 /
+
+CREATE TABLE IDN_SAML2_SERVICE_PROVIDER (
+  ID INTEGER NOT NULL,
+  ISSUER VARCHAR(255) NOT NULL,
+  TENANT_ID INTEGER NOT NULL,
+  PRIMARY KEY (ID),
+  CONSTRAINT SAML2_SP_ISSUER_CONSTRAINT UNIQUE (ISSUER, TENANT_ID))
+/
+CREATE SEQUENCE IDN_SAML2_SERVICE_PROVIDER_SEQ START WITH 1 INCREMENT BY 1 NOCACHE
+/
+CREATE TRIGGER IDN_SAML2_SERVICE_PROVIDER_TRIG NO CASCADE
+            BEFORE INSERT
+            ON IDN_SAML2_SERVICE_PROVIDER
+            REFERENCING NEW AS NEW
+            FOR EACH ROW MODE DB2SQL
+                BEGIN ATOMIC
+                    SET (NEW.ID) = (NEXTVAL FOR IDN_SAML2_SERVICE_PROVIDER_SEQ);
+                END
+/
+
+CREATE TABLE IDN_SAML2_SP_PROPERTY (
+  SP_ID INTEGER NOT NULL,
+  PROPERTY_NAME VARCHAR(255) NOT NULL,
+  VALUE_INDEX INTEGER NOT NULL,
+  PROPERTY_VALUE VARCHAR(1024),
+  PRIMARY KEY (SP_ID, PROPERTY_NAME, VALUE_INDEX),
+  FOREIGN KEY (SP_ID) REFERENCES IDN_SAML2_SERVICE_PROVIDER(ID) ON DELETE CASCADE)
+/
+
+CREATE INDEX IDX_SAML2_SP_TENANT ON IDN_SAML2_SERVICE_PROVIDER (TENANT_ID)
+/
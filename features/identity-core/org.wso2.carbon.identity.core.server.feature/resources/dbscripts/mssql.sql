@@ -242,6 +242,8 @@ CREATE TABLE IDN_AUTH_SESSION_STORE (
   PRIMARY KEY (SESSION_ID, SESSION_TYPE, TIME_CREATED, OPERATION)
 );
 
+CREATE INDEX IDX_AUTH_SESSION_TENANT_TC ON IDN_AUTH_SESSION_STORE (TENANT_ID, TIME_CREATED);
+
 IF NOT  EXISTS (SELECT * FROM SYS.OBJECTS WHERE OBJECT_ID = OBJECT_ID(N'[DBO].[SP_APP]') AND TYPE IN (N'U'))
 CREATE TABLE SP_APP (
   ID INTEGER NOT NULL IDENTITY,
@@ -655,6 +657,12 @@ CREATE TABLE WF_REQUEST_ENTITY_RELATIONSHIP(
   FOREIGN KEY (REQUEST_ID) REFERENCES WF_REQUEST(UUID)ON DELETE CASCADE
 );
 
+CREATE INDEX IDX_WF_REQ_TENANT_CREATED ON WF_REQUEST (TENANT_ID, CREATED_AT);
+CREATE INDEX IDX_WF_REQ_TENANT_UPDATED ON WF_REQUEST (TENANT_ID, UPDATED_AT);
+CREATE INDEX IDX_WF_REQ_CREATED_BY ON WF_REQUEST (CREATED_BY, TENANT_ID);
+CREATE INDEX IDX_WF_REQ_STATUS_UPDATED ON WF_REQUEST (STATUS, UPDATED_AT);
+CREATE INDEX IDX_WF_REQ_ENTITY ON WF_REQUEST_ENTITY_RELATIONSHIP (ENTITY_NAME, ENTITY_TYPE, TENANT_ID);
+
 IF NOT  EXISTS (SELECT * FROM SYS.OBJECTS WHERE OBJECT_ID = OBJECT_ID(N'[DBO].[WF_WORKFLOW_REQUEST_RELATION]') AND TYPE IN (N'U'))
 CREATE TABLE WF_WORKFLOW_REQUEST_RELATION(
   RELATIONSHIP_ID VARCHAR (45),
@@ -763,3 +771,24 @@ CREATE TABLE IDN_SAML2_ASSERTION_STORE (
   SAML2_ASSERTION  VARCHAR(4096) ,
   PRIMARY KEY (ID)
 );
+
+IF NOT  EXISTS (SELECT * FROM SYS.OBJECTS WHERE OBJECT_ID = OBJECT_ID(N'[DBO].[IDN_SAML2_SERVICE_PROVIDER]') AND TYPE IN (N'U'))
+CREATE TABLE IDN_SAML2_SERVICE_PROVIDER (
+  ID INTEGER NOT NULL IDENTITY,
+  ISSUER VARCHAR(255) NOT NULL,
+  TENANT_ID INTEGER NOT NULL,
+  PRIMARY KEY (ID),
+  CONSTRAINT SAML2_SP_ISSUER_CONSTRAINT UNIQUE (ISSUER, TENANT_ID)
+);
+
+IF NOT  EXISTS (SELECT * FROM SYS.OBJECTS WHERE OBJECT_ID = OBJECT_ID(N'[DBO].[IDN_SAML2_SP_PROPERTY]') AND TYPE IN (N'U'))
+CREATE TABLE IDN_SAML2_SP_PROPERTY (
+  SP_ID INTEGER NOT NULL,
+  PROPERTY_NAME VARCHAR(255) NOT NULL,
+  VALUE_INDEX INTEGER NOT NULL,
+  PROPERTY_VALUE VARCHAR(1024),
+  PRIMARY KEY (SP_ID, PROPERTY_NAME, VALUE_INDEX),
+  FOREIGN KEY (SP_ID) REFERENCES IDN_SAML2_SERVICE_PROVIDER(ID) ON DELETE CASCADE
+);
+
+CREATE INDEX IDX_SAML2_SP_TENANT ON IDN_SAML2_SERVICE_PROVIDER (TENANT_ID);
@@ -220,6 +220,8 @@ CREATE TABLE IF NOT EXISTS IDN_AUTH_SESSION_STORE (
             PRIMARY KEY (SESSION_ID, SESSION_TYPE, TIME_CREATED, OPERATION)
 )ENGINE INNODB;
 
+CREATE INDEX IDX_AUTH_SESSION_TENANT_TC ON IDN_AUTH_SESSION_STORE (TENANT_ID, TIME_CREATED);
+
 CREATE TABLE IF NOT EXISTS SP_APP (
         ID INTEGER NOT NULL AUTO_INCREMENT,
         TENANT_ID INTEGER NOT NULL,
@@ -604,6 +606,12 @@ CREATE TABLE IF NOT EXISTS WF_REQUEST_ENTITY_RELATIONSHIP(
   FOREIGN KEY (REQUEST_ID) REFERENCES WF_REQUEST(UUID)ON DELETE CASCADE
 )ENGINE INNODB;
 
+CREATE INDEX IDX_WF_REQ_TENANT_CREATED ON WF_REQUEST (TENANT_ID, CREATED_AT);
+CREATE INDEX IDX_WF_REQ_TENANT_UPDATED ON WF_REQUEST (TENANT_ID, UPDATED_AT);
+CREATE INDEX IDX_WF_REQ_CREATED_BY ON WF_REQUEST (CREATED_BY, TENANT_ID);
+CREATE INDEX IDX_WF_REQ_STATUS_UPDATED ON WF_REQUEST (STATUS, UPDATED_AT);
+CREATE INDEX IDX_WF_REQ_ENTITY ON WF_REQUEST_ENTITY_RELATIONSHIP (ENTITY_NAME, ENTITY_TYPE, TENANT_ID);
+
 CREATE TABLE IF NOT EXISTS WF_WORKFLOW_REQUEST_RELATION(
   RELATIONSHIP_ID VARCHAR (45),
   WORKFLOW_ID VARCHAR (45),
@@ -702,3 +710,22 @@ CREATE TABLE IF NOT EXISTS  IDN_SAML2_ASSERTION_STORE (
   SAML2_ASSERTION  VARCHAR(4096) ,
   PRIMARY KEY (ID)
 )ENGINE INNODB;
+
+CREATE TABLE IF NOT EXISTS IDN_SAML2_SERVICE_PROVIDER (
+  ID INTEGER NOT NULL AUTO_INCREMENT,
+  ISSUER VARCHAR(255) NOT NULL,
+  TENANT_ID INTEGER NOT NULL,
+  PRIMARY KEY (ID),
+  CONSTRAINT SAML2_SP_ISSUER_CONSTRAINT UNIQUE (ISSUER, TENANT_ID)
+)ENGINE INNODB;
+
+CREATE TABLE IF NOT EXISTS IDN_SAML2_SP_PROPERTY (
+  SP_ID INTEGER NOT NULL,
+  PROPERTY_NAME VARCHAR(255) NOT NULL,
+  VALUE_INDEX INTEGER NOT NULL,
+  PROPERTY_VALUE VARCHAR(1024),
+  PRIMARY KEY (SP_ID, PROPERTY_NAME, VALUE_INDEX),
+  FOREIGN KEY (SP_ID) REFERENCES IDN_SAML2_SERVICE_PROVIDER(ID) ON DELETE CASCADE
+)ENGINE INNODB;
+
+CREATE INDEX IDX_SAML2_SP_TENANT ON IDN_SAML2_SERVICE_PROVIDER (TENANT_ID);